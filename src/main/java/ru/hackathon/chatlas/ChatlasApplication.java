@@ -1,16 +1,48 @@
 package ru.hackathon.chatlas;
 
 import lombok.extern.slf4j.Slf4j;
+import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
 import org.telegram.telegrambots.longpolling.TelegramBotsLongPollingApplication;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.hackathon.chatlas.analysis.ApproximateChatAnalyzer;
 import ru.hackathon.chatlas.analysis.ChatAnalyzer;
-import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.analysis.EntityExtractor;
+import ru.hackathon.chatlas.analysis.EntityExtractors;
+import ru.hackathon.chatlas.analysis.ParallelChatAnalyzer;
+import ru.hackathon.chatlas.checkpoint.ChatCheckpointStore;
+import ru.hackathon.chatlas.checkpoint.FileChatCheckpointStoreImpl;
+import ru.hackathon.chatlas.config.BotConfig;
 import ru.hackathon.chatlas.export.ReportRenderer;
-import ru.hackathon.chatlas.export.StubReportRenderer;
+import ru.hackathon.chatlas.export.ReportRendererImpl;
 import ru.hackathon.chatlas.parser.ChatExportParser;
-import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
+import ru.hackathon.chatlas.parser.ExportDecompressor;
+import ru.hackathon.chatlas.parser.ParallelChatExportParserImpl;
+import ru.hackathon.chatlas.telegram.BatchProcessingService;
+import ru.hackathon.chatlas.telegram.BatchSessionRegistry;
+import ru.hackathon.chatlas.telegram.ChatUpdateDispatcher;
 import ru.hackathon.chatlas.telegram.ChatlasBot;
 import ru.hackathon.chatlas.telegram.ChatProcessingService;
+import ru.hackathon.chatlas.telegram.CpuStageLimiter;
+import ru.hackathon.chatlas.telegram.DownloadSpooler;
+import ru.hackathon.chatlas.telegram.ProcessingScheduler;
+import ru.hackathon.chatlas.telegram.ReportCache;
+import ru.hackathon.chatlas.telegram.WebhookServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class ChatlasApplication {
@@ -23,17 +55,71 @@ public class ChatlasApplication {
         }
 
         try {
-            // TODO: Dev4 - заменить StubReportRenderer на реальную реализацию.
-            ChatExportParser parser = new JacksonChatExportParserImpl();
-            ChatAnalyzer analyzer = new ChatAnalyzerImpl();
-            ReportRenderer renderer = new StubReportRenderer();
+            ChatExportParser parser = new ParallelChatExportParserImpl(
+                    ForkJoinPool.commonPool(),
+                    readLongEnv(BotConfig.PARALLEL_PARSE_THRESHOLD_ENV, BotConfig.PARALLEL_PARSE_THRESHOLD_BYTES));
+            ChatAnalyzer analyzer = new ParallelChatAnalyzer(
+                    ForkJoinPool.commonPool(),
+                    (int) readLongEnv(
+                            BotConfig.PARALLEL_ANALYSIS_THRESHOLD_ENV, BotConfig.PARALLEL_ANALYSIS_THRESHOLD_MESSAGES),
+                    readEntityExtractors());
+            ReportRenderer renderer = new ReportRendererImpl(ReportRendererImpl.Options.defaults()
+                    .withCsvCellThreshold(readLongEnv(BotConfig.CSV_CELL_THRESHOLD_ENV, BotConfig.CSV_CELL_THRESHOLD))
+                    .withRowWindow((int) readLongEnv(BotConfig.EXCEL_ROW_WINDOW_ENV, BotConfig.EXCEL_ROW_WINDOW))
+                    .withExcelEngine(readExcelEngine())
+                    .withSectionExecutor(readReportSectionExecutor()));
+
+            ChatProcessingService.PipelineMode pipelineMode = readPipelineMode();
+
+            ChatCheckpointStore checkpointStore = readCheckpointStore();
 
-            ChatProcessingService processingService = new ChatProcessingService(parser, analyzer, renderer);
-            ChatlasBot bot = new ChatlasBot(botToken, processingService);
+            ChatAnalyzer approximateAnalyzer = new ApproximateChatAnalyzer(
+                    (int) readLongEnv(BotConfig.APPROXIMATE_TOP_N_ENV, BotConfig.APPROXIMATE_TOP_N),
+                    (int) readLongEnv(
+                            BotConfig.APPROXIMATE_SKETCH_CAPACITY_ENV, BotConfig.APPROXIMATE_SKETCH_CAPACITY));
 
-            TelegramBotsLongPollingApplication botsApplication = new TelegramBotsLongPollingApplication();
-            botsApplication.registerBot(botToken, bot);
-            log.info("Chatlas bot successfully started");
+            ChatProcessingService processingService = new ChatProcessingService(
+                    parser, analyzer, renderer, ChatProcessingService.Options.defaults()
+                            .withPipelineMode(pipelineMode)
+                            .withCheckpointStore(checkpointStore)
+                            .withApproximateAnalyzer(approximateAnalyzer));
+            DownloadSpooler downloadSpooler = new DownloadSpooler(
+                    readLongEnv(BotConfig.SPOOL_THRESHOLD_ENV, BotConfig.SPOOL_THRESHOLD_BYTES),
+                    Path.of(readStringEnv(BotConfig.SPOOL_DIR_ENV, System.getProperty("java.io.tmpdir"))));
+            ExportDecompressor exportDecompressor = new ExportDecompressor(
+                    readLongEnv(BotConfig.MAX_DECOMPRESSED_BYTES_ENV, BotConfig.MAX_DECOMPRESSED_BYTES));
+            BatchProcessingService batchProcessingService = new BatchProcessingService(
+                    processingService,
+                    Executors.newFixedThreadPool(
+                            (int) readLongEnv(BotConfig.BATCH_PARALLELISM_ENV, BotConfig.BATCH_PARALLELISM)));
+            BatchSessionRegistry batchSessions = new BatchSessionRegistry(
+                    (int) readLongEnv(BotConfig.BATCH_MAX_FILES_ENV, BotConfig.BATCH_MAX_FILES));
+            ReportCache reportCache = new ReportCache(
+                    readLongEnv(BotConfig.REPORT_CACHE_MAX_BYTES_ENV, BotConfig.REPORT_CACHE_MAX_BYTES),
+                    Path.of(readStringEnv(BotConfig.SPOOL_DIR_ENV, System.getProperty("java.io.tmpdir"))));
+            CpuStageLimiter cpuStages = new CpuStageLimiter(
+                    (int) readLongEnv(BotConfig.CPU_STAGE_PARALLELISM_ENV, BotConfig.CPU_STAGE_PARALLELISM));
+            ProcessingScheduler scheduler = new ProcessingScheduler(
+                    readLongEnv(BotConfig.PROCESSING_MEMORY_BUDGET_ENV, BotConfig.PROCESSING_MEMORY_BUDGET_BYTES),
+                    (int) readLongEnv(BotConfig.PROCESSING_QUEUE_CAPACITY_ENV, BotConfig.PROCESSING_QUEUE_CAPACITY));
+            startStatsLogging(scheduler,
+                    readLongEnv(BotConfig.PROCESSING_STATS_INTERVAL_ENV, BotConfig.PROCESSING_STATS_INTERVAL_SECONDS));
+            ChatlasBot bot = new ChatlasBot(
+                    botToken, processingService, downloadSpooler, exportDecompressor,
+                    batchProcessingService, batchSessions, reportCache, cpuStages, scheduler);
+
+            LongPollingUpdateConsumer updateConsumer = readUpdateConsumer(bot);
+            String updateMode = readStringEnv(BotConfig.UPDATE_MODE_ENV, "LONG_POLLING").toUpperCase();
+            if (updateMode.equals("WEBHOOK")) {
+                startWebhook(botToken, updateConsumer);
+            } else {
+                if (!updateMode.equals("LONG_POLLING")) {
+                    log.warn("Unknown update mode '{}', using LONG_POLLING", updateMode);
+                }
+                TelegramBotsLongPollingApplication botsApplication = new TelegramBotsLongPollingApplication();
+                botsApplication.registerBot(botToken, updateConsumer);
+            }
+            log.info("Chatlas bot successfully started (pipeline mode: {}, update mode: {})", pipelineMode, updateMode);
         } catch (TelegramApiException e) {
             log.error("Failed to register Telegram bot", e);
             System.exit(1);
@@ -42,4 +128,195 @@ public class ChatlasApplication {
             System.exit(1);
         }
     }
+
+    /**
+     * Прочитать режим конвейера из переменной окружения (по умолчанию FUSED).
+     */
+    private static ChatProcessingService.PipelineMode readPipelineMode() {
+        String value = System.getenv(BotConfig.PIPELINE_MODE_ENV);
+        if (value == null || value.isBlank()) {
+            return ChatProcessingService.PipelineMode.FUSED;
+        }
+        try {
+            return ChatProcessingService.PipelineMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown pipeline mode '{}', using FUSED", value);
+            return ChatProcessingService.PipelineMode.FUSED;
+        }
+    }
+
+    private static ReportRendererImpl.ExcelEngine readExcelEngine() {
+        String value = System.getenv(BotConfig.EXCEL_ENGINE_ENV);
+        if (value == null || value.isBlank()) {
+            return ReportRendererImpl.ExcelEngine.POI;
+        }
+        try {
+            return ReportRendererImpl.ExcelEngine.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown Excel engine '{}', using POI", value);
+            return ReportRendererImpl.ExcelEngine.POI;
+        }
+    }
+
+    /**
+     * Исполнитель для одновременного построения листов Excel: null - листы строятся по очереди (по умолчанию).
+     */
+    private static Executor readReportSectionExecutor() {
+        String value = System.getenv(BotConfig.REPORT_RENDER_MODE_ENV);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return switch (value.trim().toUpperCase()) {
+            case "SEQUENTIAL" -> null;
+            case "CONCURRENT" -> ForkJoinPool.commonPool();
+            default -> {
+                log.warn("Unknown report render mode '{}', using SEQUENTIAL", value);
+                yield null;
+            }
+        };
+    }
+
+    /**
+     * Выбрать обработку обновлений: по умолчанию PER_CHAT - чаты обрабатываются параллельно на виртуальных потоках
+     * с сохранением порядка внутри чата, SINGLE_THREAD - все обновления по очереди в одном потоке.
+     */
+    private static LongPollingUpdateConsumer readUpdateConsumer(ChatlasBot bot) {
+        String value = System.getenv(BotConfig.UPDATE_CONSUMER_MODE_ENV);
+        if (value != null && value.trim().equalsIgnoreCase("SINGLE_THREAD")) {
+            return bot;
+        }
+        if (value != null && !value.isBlank() && !value.trim().equalsIgnoreCase("PER_CHAT")) {
+            log.warn("Unknown update consumer mode '{}', using PER_CHAT", value);
+        }
+        return new ChatUpdateDispatcher(bot::consume, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Периодически писать в лог состояние очереди обработки (глубина, занятая память, ожидание, отказы),
+     * если с прошлой записи что-то изменилось или в очереди есть задачи.
+     */
+    private static void startStatsLogging(ProcessingScheduler scheduler, long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("processing-stats").daemon().factory());
+        ProcessingScheduler.Stats[] last = new ProcessingScheduler.Stats[1];
+        executor.scheduleAtFixedRate(() -> {
+            ProcessingScheduler.Stats stats = scheduler.stats();
+            if (!stats.equals(last[0]) || stats.queueDepth() > 0 || stats.running() > 0) {
+                log.info("Processing scheduler: {}", stats);
+                last[0] = stats;
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Запустить прием обновлений по вебхуку и, если задан публичный адрес, зарегистрировать его в Telegram.
+     * Без секрета сервер принимал бы обновления от кого угодно, поэтому секрет обязателен:
+     * если он не задан, а адрес задан, секрет генерируется и передается в {@code setWebhook}.
+     */
+    private static void startWebhook(String botToken, LongPollingUpdateConsumer updateConsumer)
+            throws IOException, TelegramApiException
+    {
+        String path = readStringEnv(BotConfig.WEBHOOK_PATH_ENV, BotConfig.WEBHOOK_PATH);
+        String url = readStringEnv(BotConfig.WEBHOOK_URL_ENV, null);
+        String secret = readStringEnv(BotConfig.WEBHOOK_SECRET_ENV, null);
+        if (secret == null) {
+            if (url == null) {
+                throw new IllegalStateException(BotConfig.WEBHOOK_SECRET_ENV + " must be set in WEBHOOK mode when "
+                        + BotConfig.WEBHOOK_URL_ENV + " is not set");
+            }
+            secret = generateWebhookSecret();
+            log.info("{} is not set, using a generated webhook secret", BotConfig.WEBHOOK_SECRET_ENV);
+        }
+        WebhookServer webhookServer = new WebhookServer(
+                new InetSocketAddress((int) readLongEnv(BotConfig.WEBHOOK_PORT_ENV, BotConfig.WEBHOOK_PORT)),
+                path,
+                secret,
+                readLongEnv(BotConfig.WEBHOOK_MAX_BODY_BYTES_ENV, BotConfig.WEBHOOK_MAX_BODY_BYTES),
+                updateConsumer);
+        webhookServer.start();
+
+        if (url == null) {
+            log.info("{} is not set, webhook is expected to be registered externally", BotConfig.WEBHOOK_URL_ENV);
+            return;
+        }
+        new OkHttpTelegramClient(botToken).execute(SetWebhook.builder()
+                .url(url)
+                .secretToken(secret)
+                .build());
+        log.info("Webhook registered");
+    }
+
+    /**
+     * Случайный секрет вебхука: 32 байта в base64url без дополнения (Telegram допускает A-Z, a-z, 0-9, _ и -).
+     */
+    private static String generateWebhookSecret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Создать хранилище контрольных точек, если задан его каталог (по умолчанию выключено).
+     */
+    private static ChatCheckpointStore readCheckpointStore() {
+        String directory = readStringEnv(BotConfig.CHECKPOINT_DIR_ENV, null);
+        if (directory == null) {
+            return null;
+        }
+        log.info("Incremental analysis enabled, checkpoints directory: {}", directory);
+        return new FileChatCheckpointStoreImpl(Path.of(directory));
+    }
+
+    /**
+     * Прочитать дополнительные типы сущностей из переменной окружения (по умолчанию только упоминания).
+     */
+    private static List<EntityExtractor> readEntityExtractors() {
+        String value = readStringEnv(BotConfig.ENTITY_TYPES_ENV, null);
+        if (value == null) {
+            return List.of();
+        }
+        Map<String, EntityExtractor> extractors = new LinkedHashMap<>();
+        for (String type : value.split(",")) {
+            String trimmed = type.trim().toLowerCase();
+            if (trimmed.isEmpty() || EntityExtractors.MENTION.equals(trimmed)) {
+                continue;
+            }
+            EntityExtractor extractor = EntityExtractors.forType(trimmed);
+            if (extractor == null) {
+                log.warn("Unknown entity type '{}' in {}, supported: {}",
+                        trimmed, BotConfig.ENTITY_TYPES_ENV, EntityExtractors.OPTIONAL_TYPES);
+                continue;
+            }
+            extractors.putIfAbsent(trimmed, extractor);
+        }
+        log.info("Extra entity types enabled: {}", extractors.keySet());
+        return List.copyOf(extractors.values());
+    }
+
+    /**
+     * Прочитать строковый параметр из переменной окружения.
+     */
+    private static String readStringEnv(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Прочитать числовой параметр из переменной окружения.
+     */
+    private static long readLongEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value '{}' for {}, using {}", value, name, defaultValue);
+            return defaultValue;
+        }
+    }
 }
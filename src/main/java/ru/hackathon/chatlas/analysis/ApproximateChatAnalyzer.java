@@ -0,0 +1,179 @@
+package ru.hackathon.chatlas.analysis;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.config.BotConfig;
+import ru.hackathon.chatlas.domain.ApproximateSummary;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+import ru.hackathon.chatlas.parser.ForkableSink;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Приближенный анализатор для очень больших чатов: память фиксирована и не зависит от размера экспорта.
+ * Количество уникальных участников и упоминаний оценивается через {@link HyperLogLog},
+ * самые активные авторы и самые частые упоминания ищутся через {@link SpaceSaving}.
+ * Правила извлечения те же, что в {@link ChatAnalyzerImpl}. Результат содержит только самые частые элементы
+ * и {@link ApproximateSummary} с оценками и границами погрешности. Дополнительные сущности
+ * ({@link EntityExtractor}) и активность всех участников в этом режиме не собираются:
+ * их точные наборы не ограничены по памяти.
+ */
+@Slf4j
+public class ApproximateChatAnalyzer implements ChatAnalyzer {
+
+    /**
+     * Точность HyperLogLog: 2^14 регистров (16 КБ на оценку), относительная ошибка ~0.8%.
+     */
+    private static final int HLL_PRECISION = 14;
+
+    private final int topN;
+    private final int sketchCapacity;
+    // Только упоминания: дополнительные сущности в этом режиме не собираются.
+    private final EntityExtractorTable extractors = new EntityExtractorTable(List.of());
+
+    /**
+     * Анализатор с параметрами по умолчанию.
+     */
+    public ApproximateChatAnalyzer() {
+        this(BotConfig.APPROXIMATE_TOP_N, BotConfig.APPROXIMATE_SKETCH_CAPACITY);
+    }
+
+    /**
+     * @param topN сколько самых частых участников и упоминаний попадает в результат.
+     * @param sketchCapacity количество счетчиков поиска частых элементов (не меньше topN):
+     * чем больше, тем точнее счетчики и больше памяти.
+     */
+    public ApproximateChatAnalyzer(int topN, int sketchCapacity) {
+        if (topN < 1) {
+            throw new IllegalArgumentException("topN must be positive: " + topN);
+        }
+        this.topN = topN;
+        this.sketchCapacity = Math.max(topN, sketchCapacity);
+    }
+
+    @Override
+    public ChatAnalysisResult analyze(ChatExport chatExport) throws ChatAnalysisException {
+        if (chatExport == null) {
+            throw new ChatAnalysisException("ChatExport cannot be null");
+        }
+
+        AnalysisSink sink = newSink();
+        if (chatExport.getMessages() != null) {
+            ChatExportSink.MessageHeader header = new ChatExportSink.MessageHeader();
+            for (ChatExport.Message message : chatExport.getMessages()) {
+                if (message != null) {
+                    sink.onMessage(message, header);
+                }
+            }
+        }
+        return sink.getResult();
+    }
+
+    @Override
+    public AnalysisSink newSink() {
+        return new Sink();
+    }
+
+    /**
+     * Приемник событий с фиксированным объемом памяти.
+     */
+    private class Sink implements AnalysisSink {
+
+        private final HyperLogLog participantCounts = new HyperLogLog(HLL_PRECISION);
+        private final HyperLogLog mentionCounts = new HyperLogLog(HLL_PRECISION);
+        private final SpaceSaving topParticipants = new SpaceSaving(sketchCapacity);
+        private final SpaceSaving topMentions = new SpaceSaving(sketchCapacity);
+        private long deletedAccountMessages;
+
+        @Override
+        public void onMessage(MessageHeader message) {
+            String fromId = message.fromId();
+            String from = message.from();
+            if (fromId == null || from == null || fromId.isBlank()) {
+                return;
+            }
+            if (ChatAnalyzerImpl.isDeletedAccount(from)) {
+                deletedAccountMessages++;
+                return;
+            }
+            long key = ParticipantTable.key(fromId);
+            participantCounts.addHash(key != ParticipantTable.NON_CANONICAL
+                    ? HyperLogLog.mix64(key)
+                    : HyperLogLog.hash(fromId));
+            topParticipants.offer(fromId, from);
+        }
+
+        @Override
+        public void onEntity(String type, String text) {
+            // Тот же разбор и та же проверка, что в точном режиме; в оценки попадает только текст.
+            if (extractors.slotOf(type) != EntityExtractorTable.MENTION_SLOT) {
+                return;
+            }
+            String mentionText = extractors.extractor(EntityExtractorTable.MENTION_SLOT).extract(text, null);
+            if (mentionText == null || ChatAnalyzerImpl.createMention(mentionText) == null) {
+                return;
+            }
+            mentionCounts.addHash(HyperLogLog.hash(mentionText));
+            topMentions.offer(mentionText, mentionText);
+        }
+
+        @Override
+        public AnalysisSink fork() {
+            return new Sink();
+        }
+
+        @Override
+        public void join(ForkableSink forked) {
+            Sink other = (Sink) forked;
+            participantCounts.merge(other.participantCounts);
+            mentionCounts.merge(other.mentionCounts);
+            topParticipants.merge(other.topParticipants);
+            topMentions.merge(other.topMentions);
+            deletedAccountMessages += other.deletedAccountMessages;
+        }
+
+        @Override
+        public ChatAnalysisResult getResult() {
+            if (deletedAccountMessages > 0) {
+                log.info("Skipped {} messages from deleted accounts", deletedAccountMessages);
+            }
+
+            List<ApproximateSummary.TopEntry> participantEntries = toEntries(topParticipants.top(topN));
+            List<ApproximateSummary.TopEntry> mentionEntries = toEntries(topMentions.top(topN));
+            Set<Participant> participants = HashSet.newHashSet(participantEntries.size());
+            for (ApproximateSummary.TopEntry entry : participantEntries) {
+                participants.add(new Participant(entry.id(), entry.label()));
+            }
+            Set<Mention> mentions = HashSet.newHashSet(mentionEntries.size());
+            for (ApproximateSummary.TopEntry entry : mentionEntries) {
+                mentions.add(new Mention(entry.id()));
+            }
+
+            ApproximateSummary summary = new ApproximateSummary(
+                    participantCounts.estimate(),
+                    mentionCounts.estimate(),
+                    participantCounts.relativeStandardError(),
+                    participantEntries,
+                    mentionEntries);
+            log.info("Approximate analysis completed: ~{} participants, ~{} mentions (relative error {})",
+                    summary.participantsEstimate(), summary.mentionsEstimate(), summary.relativeStandardError());
+            return new ChatAnalysisResult(participants, mentions, Map.of(), Map.of(), summary);
+        }
+
+        private List<ApproximateSummary.TopEntry> toEntries(List<SpaceSaving.Counter> counters) {
+            List<ApproximateSummary.TopEntry> entries = new ArrayList<>(counters.size());
+            for (SpaceSaving.Counter counter : counters) {
+                entries.add(new ApproximateSummary.TopEntry(
+                        counter.key(), counter.label(), counter.count(), counter.error()));
+            }
+            return entries;
+        }
+    }
+}
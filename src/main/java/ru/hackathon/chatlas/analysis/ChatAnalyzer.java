@@ -2,6 +2,7 @@ package ru.hackathon.chatlas.analysis;
 
 import ru.hackathon.chatlas.domain.ChatAnalysisResult;
 import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.parser.ForkableSink;
 
 /**
  * Интерфейс для анализа экспорта чата и извлечения участников и упоминаний.
@@ -17,6 +18,30 @@ public interface ChatAnalyzer {
      */
     ChatAnalysisResult analyze(ChatExport chatExport) throws ChatAnalysisException;
 
+    /**
+     * Создать приемник для совмещенного режима "парсинг + анализ":
+     * парсер передает в него события по сообщениям, извлечение идет по ходу чтения файла,
+     * промежуточная доменная модель не строится.
+     *
+     * @return новый пустой приемник.
+     */
+    AnalysisSink newSink();
+
+    /**
+     * Приемник событий парсинга, накапливающий участников и упоминания.
+     * Результаты анализа частей файла сливаются, поэтому приемник всегда можно разделить на части.
+     */
+    interface AnalysisSink extends ForkableSink {
+
+        @Override
+        AnalysisSink fork();
+
+        /**
+         * @return результат анализа по всем полученным событиям.
+         */
+        ChatAnalysisResult getResult();
+    }
+
     /**
      * Исключение при анализе чата.
      */
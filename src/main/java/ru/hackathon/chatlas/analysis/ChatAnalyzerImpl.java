@@ -5,12 +5,23 @@ import ru.hackathon.chatlas.domain.ChatAnalysisResult;
 import ru.hackathon.chatlas.domain.ChatExport;
 import ru.hackathon.chatlas.domain.Mention;
 import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+import ru.hackathon.chatlas.parser.ForkableSink;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Реализация анализатора чата: извлекает участников и упоминания из экспорта.
+ * Обработка сообщения от уже встреченного автора не выделяет памяти: участники хранятся
+ * в {@link ParticipantTable} по числовому id, объекты доменной модели создаются только при сборке результата.
+ * В том же проходе по номеру участника считаются его сообщения, упоминания и даты первого/последнего сообщения.
+ * Текстовые сущности за один проход распределяются по извлекателям через {@link EntityExtractorTable}:
+ * упоминания анализируются всегда, остальные типы - если для них передан {@link EntityExtractor}.
  */
 @Slf4j
 public class ChatAnalyzerImpl implements ChatAnalyzer {
@@ -18,6 +29,22 @@ public class ChatAnalyzerImpl implements ChatAnalyzer {
     private static final String DELETED_ACCOUNT_NAME_EN = "Deleted Account";
     private static final String DELETED_ACCOUNT_NAME_RU = "Удалённый аккаунт";
 
+    private final EntityExtractorTable extractors;
+
+    /**
+     * Анализатор участников и упоминаний.
+     */
+    public ChatAnalyzerImpl() {
+        this(List.of());
+    }
+
+    /**
+     * @param extraExtractors извлекатели дополнительных сущностей (упоминания анализируются всегда).
+     */
+    public ChatAnalyzerImpl(List<EntityExtractor> extraExtractors) {
+        this.extractors = new EntityExtractorTable(extraExtractors);
+    }
+
     @Override
     public ChatAnalysisResult analyze(ChatExport chatExport) throws ChatAnalysisException {
         if (chatExport == null) {
@@ -26,91 +53,132 @@ public class ChatAnalyzerImpl implements ChatAnalyzer {
 
         if (chatExport.getMessages() == null) {
             log.warn("ChatExport has null messages list, returning empty result");
-            return new ChatAnalysisResult(Set.of(), Set.of());
+            return ChatAnalysisResult.empty();
         }
 
-        Set<Participant> participants = new HashSet<>();
-        Set<Mention> mentions = new HashSet<>();
-
+        AnalysisSink sink = newSink();
+        // Один заголовок на весь проход: сообщение от уже встреченного автора не выделяет памяти.
+        ChatExportSink.MessageHeader header = new ChatExportSink.MessageHeader();
         for (ChatExport.Message message : chatExport.getMessages()) {
             if (message == null) {
                 continue;
             }
-
-            // Извлекаем участника (если это не удалённый аккаунт).
-            extractParticipant(message, participants);
-
-            // Извлекаем упоминания.
-            extractMentions(message, mentions);
+            sink.onMessage(message, header);
         }
+        return sink.getResult();
+    }
 
-        log.info("Analysis completed: {} participants, {} mentions", participants.size(), mentions.size());
-        return new ChatAnalysisResult(participants, mentions);
+    @Override
+    public AnalysisSink newSink() {
+        return new Sink();
     }
 
     /**
-     * Извлечь участника из сообщения (если он не является удалённым аккаунтом).
+     * Приемник событий: сообщения поступают по одному (из списка или прямо из потокового парсера).
+     * Правила извлечения - в {@link MessageRules}, здесь все участники и упоминания в одной таблице.
      */
-    private void extractParticipant(ChatExport.Message message, Set<Participant> participants) {
-        String from = message.getFrom();
-        String fromId = message.getFromId();
+    private class Sink extends MessageRules implements AnalysisSink {
+
+        // Ключи - числовой id участника и текст упоминания: проверка "уже видели" не требует создания объектов.
+        private final ParticipantTable participants = new ParticipantTable();
+        private final Map<String, Mention> mentions = new HashMap<>();
 
-        // Пропускаем, если нет обязательных полей.
-        // fromId должен быть не null и не blank.
-        // from должен быть не null (может быть blank, кажется, в Telegram можно указать пустое имя).
-        if (fromId == null || fromId.isBlank() || from == null) {
-            return;
+        Sink() {
+            super(ChatAnalyzerImpl.this.extractors);
         }
 
-        // Пропускаем удалённые аккаунты.
-        if (isDeletedAccount(from)) {
-            log.info("Skipping deleted account: fromId={}, from={}", fromId, from);
-            return;
+        @Override
+        public void onMessage(MessageHeader message) {
+            addMessage(message.fromId(), message.from(), message.date());
         }
 
-        try {
-            participants.add(new Participant(fromId, from));
-        } catch (IllegalArgumentException e) {
-            log.warn("Failed to create Participant: fromId={}, from={}, error={}", fromId, from, e.getMessage());
+        @Override
+        public void onEntity(String type, String text) {
+            onEntity(type, text, null);
         }
-    }
 
-    /**
-     * Извлечь упоминания из сообщения.
-     */
-    private void extractMentions(ChatExport.Message message, Set<Mention> mentions) {
-        if (message.getTextEntities() == null) {
-            return;
+        @Override
+        public void onEntity(String type, String text, String href) {
+            addEntity(type, text, href);
         }
 
-        for (ChatExport.TextEntity entity : message.getTextEntities()) {
-            if (entity == null) {
-                continue;
+        @Override
+        ParticipantTable participantsFor(long key, String fromId) {
+            return participants;
+        }
+
+        @Override
+        Map<String, Mention> mentionsFor(String mentionText) {
+            return mentions;
+        }
+
+        @Override
+        public AnalysisSink fork() {
+            return new Sink();
+        }
+
+        @Override
+        public void join(ForkableSink forked) {
+            // Части вливаются по порядку, поэтому при дублях сохраняется первое встреченное имя.
+            Sink other = (Sink) forked;
+            participants.mergeFrom(other.participants);
+            other.mentions.forEach(mentions::putIfAbsent);
+            for (int slot = EntityExtractorTable.MENTION_SLOT + 1; slot < entities.length; slot++) {
+                entities[slot].addAll(other.entities[slot]);
             }
+            deletedAccountMessages += other.deletedAccountMessages;
+        }
 
-            // Ищем сущности типа "mention".
-            if ("mention".equals(entity.getType()) && entity.getText() != null) {
-                String mentionText = entity.getText().trim();
-                if (!mentionText.isBlank()) {
-                    try {
-                        mentions.add(new Mention(mentionText));
-                    } catch (IllegalArgumentException e) {
-                        log.warn("Failed to create Mention: text={}, error={}", mentionText, e.getMessage());
-                    }
-                }
+        @Override
+        public ChatAnalysisResult getResult() {
+            if (deletedAccountMessages > 0) {
+                log.info("Skipped {} messages from deleted accounts", deletedAccountMessages);
             }
+            log.info("Analysis completed: {} participants, {} mentions", participants.size(), mentions.size());
+            Set<Participant> participantSet = HashSet.newHashSet(participants.size());
+            participants.addTo(participantSet);
+            Map<String, ParticipantActivity> activity = HashMap.newHashMap(participants.size());
+            participants.addActivityTo(activity);
+            return new ChatAnalysisResult(
+                    participantSet, new HashSet<>(mentions.values()), extractors.toEntities(entities), activity, null);
         }
     }
 
     /**
-     * Проверить, является ли аккаунт удалённым.
+     * Создать упоминание.
+     *
+     * @return упоминание или null, если текст не прошел валидацию доменной модели.
      */
-    private boolean isDeletedAccount(String from) {
+    static Mention createMention(String mentionText) {
+        try {
+            return new Mention(mentionText);
+        } catch (IllegalArgumentException e) {
+            log.warn("Failed to create Mention: text={}, error={}", mentionText, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Проверить, является ли аккаунт удалённым (без учета регистра и пробелов по краям).
+     * Сравнение идет на месте, без создания строк в нижнем регистре.
+     */
+    static boolean isDeletedAccount(String from) {
         if (from == null) {
             return false;
         }
-        String fromLower = from.toLowerCase().trim();
-        return fromLower.equals(DELETED_ACCOUNT_NAME_EN.toLowerCase())
-                || fromLower.equals(DELETED_ACCOUNT_NAME_RU.toLowerCase());
+        int start = 0;
+        int end = from.length();
+        while (start < end && from.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && from.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return equalsIgnoreCase(from, start, end, DELETED_ACCOUNT_NAME_EN)
+                || equalsIgnoreCase(from, start, end, DELETED_ACCOUNT_NAME_RU);
+    }
+
+    private static boolean equalsIgnoreCase(String value, int start, int end, String expected) {
+        return end - start == expected.length() && value.regionMatches(true, start, expected, 0, expected.length());
     }
 }
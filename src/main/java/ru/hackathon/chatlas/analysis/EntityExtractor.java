@@ -0,0 +1,24 @@
+package ru.hackathon.chatlas.analysis;
+
+/**
+ * Извлекатель значений текстовых сущностей одного типа (mention, hashtag, url и т.д.).
+ * Анализатор за один проход по сущностям сообщения передает каждую сущность извлекателю ее типа
+ * через заранее построенную таблицу "тип -> извлекатель" и собирает уникальные значения.
+ * Реализации не должны хранить состояние: один извлекатель используется всеми потоками анализа.
+ */
+public interface EntityExtractor {
+
+    /**
+     * @return тип текстовой сущности Telegram, который обрабатывает извлекатель.
+     */
+    String entityType();
+
+    /**
+     * Получить значение сущности для отчета.
+     *
+     * @param text текст сущности (может быть null).
+     * @param href адрес ссылки (только у text_link, иначе null).
+     * @return нормализованное значение или null, если сущность не нужно учитывать.
+     */
+    String extract(String text, String href);
+}
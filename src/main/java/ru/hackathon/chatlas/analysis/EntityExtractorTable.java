@@ -0,0 +1,82 @@
+package ru.hackathon.chatlas.analysis;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Заранее построенная таблица "тип сущности -> слот извлекателя".
+ * Диспетчеризация сущности - один поиск в хэш-таблице независимо от количества извлекателей
+ * (а не сравнение типа с каждым извлекателем по очереди). Слот 0 всегда занят упоминаниями.
+ */
+final class EntityExtractorTable {
+
+    static final int MENTION_SLOT = 0;
+
+    private final EntityExtractor[] extractors;
+    private final Map<String, Integer> slots;
+
+    /**
+     * @param extraExtractors извлекатели помимо упоминаний (типы не должны повторяться).
+     */
+    EntityExtractorTable(List<EntityExtractor> extraExtractors) {
+        extractors = new EntityExtractor[extraExtractors.size() + 1];
+        slots = HashMap.newHashMap(extractors.length);
+        extractors[MENTION_SLOT] = EntityExtractors.mention();
+        slots.put(EntityExtractors.MENTION, MENTION_SLOT);
+        for (int i = 0; i < extraExtractors.size(); i++) {
+            EntityExtractor extractor = extraExtractors.get(i);
+            if (slots.putIfAbsent(extractor.entityType(), i + 1) != null) {
+                throw new IllegalArgumentException("Duplicate extractor for entity type " + extractor.entityType());
+            }
+            extractors[i + 1] = extractor;
+        }
+    }
+
+    /**
+     * @return слот извлекателя для типа или -1, если тип не анализируется.
+     */
+    int slotOf(String type) {
+        if (type == null) {
+            return -1;
+        }
+        Integer slot = slots.get(type);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * @return количество слотов (включая упоминания).
+     */
+    int size() {
+        return extractors.length;
+    }
+
+    EntityExtractor extractor(int slot) {
+        return extractors[slot];
+    }
+
+    /**
+     * @return пустые наборы значений по слотам дополнительных сущностей (слот упоминаний не используется).
+     */
+    @SuppressWarnings("unchecked")
+    Set<String>[] newValueSets() {
+        Set<String>[] sets = new Set[extractors.length];
+        for (int slot = MENTION_SLOT + 1; slot < sets.length; slot++) {
+            sets[slot] = new HashSet<>();
+        }
+        return sets;
+    }
+
+    /**
+     * @return наборы значений по типам сущностей для результата анализа.
+     */
+    Map<String, Set<String>> toEntities(Set<String>[] sets) {
+        Map<String, Set<String>> entities = HashMap.newHashMap(extractors.length - 1);
+        for (int slot = MENTION_SLOT + 1; slot < sets.length; slot++) {
+            entities.put(extractors[slot].entityType(), sets[slot]);
+        }
+        return entities;
+    }
+}
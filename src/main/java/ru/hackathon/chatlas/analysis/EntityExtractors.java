@@ -0,0 +1,124 @@
+package ru.hackathon.chatlas.analysis;
+
+import java.util.List;
+
+/**
+ * Стандартные извлекатели текстовых сущностей Telegram.
+ */
+public final class EntityExtractors {
+
+    public static final String MENTION = "mention";
+    public static final String MENTION_NAME = "mention_name";
+    public static final String HASHTAG = "hashtag";
+    public static final String URL = "url";
+    public static final String TEXT_LINK = "text_link";
+    public static final String EMAIL = "email";
+    public static final String PHONE = "phone";
+    public static final String BOT_COMMAND = "bot_command";
+
+    /**
+     * Типы со стандартными извлекателями, кроме mention (упоминания анализируются всегда).
+     */
+    public static final List<String> OPTIONAL_TYPES =
+            List.of(MENTION_NAME, HASHTAG, URL, TEXT_LINK, EMAIL, PHONE, BOT_COMMAND);
+
+    private static final EntityExtractor MENTION_EXTRACTOR = trimmedText(MENTION);
+
+    private EntityExtractors() {
+        // Утильный класс.
+    }
+
+    /**
+     * @return извлекатель упоминаний (@username): текст без пробелов по краям.
+     */
+    public static EntityExtractor mention() {
+        return MENTION_EXTRACTOR;
+    }
+
+    /**
+     * Найти стандартный извлекатель по типу сущности.
+     *
+     * @return извлекатель или null, если стандартного извлекателя для типа нет.
+     */
+    public static EntityExtractor forType(String type) {
+        return switch (type) {
+            case MENTION -> MENTION_EXTRACTOR;
+            case MENTION_NAME, HASHTAG, URL, EMAIL, BOT_COMMAND -> trimmedText(type);
+            case TEXT_LINK -> textLink();
+            case PHONE -> phone();
+            default -> null;
+        };
+    }
+
+    /**
+     * @return извлекатель, берущий текст сущности без пробелов по краям (пустой текст не учитывается).
+     */
+    public static EntityExtractor trimmedText(String type) {
+        return new EntityExtractor() {
+            @Override
+            public String entityType() {
+                return type;
+            }
+
+            @Override
+            public String extract(String text, String href) {
+                return trimToNull(text);
+            }
+        };
+    }
+
+    /**
+     * @return извлекатель ссылок под текстом: значение - адрес ссылки, а не видимый текст.
+     */
+    public static EntityExtractor textLink() {
+        return new EntityExtractor() {
+            @Override
+            public String entityType() {
+                return TEXT_LINK;
+            }
+
+            @Override
+            public String extract(String text, String href) {
+                return trimToNull(href);
+            }
+        };
+    }
+
+    /**
+     * @return извлекатель телефонов: остаются только цифры и ведущий "+", чтобы разные записи одного номера совпали.
+     */
+    public static EntityExtractor phone() {
+        return new EntityExtractor() {
+            @Override
+            public String entityType() {
+                return PHONE;
+            }
+
+            @Override
+            public String extract(String text, String href) {
+                if (text == null) {
+                    return null;
+                }
+                StringBuilder digits = new StringBuilder(text.length());
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c >= '0' && c <= '9' || c == '+' && digits.isEmpty()) {
+                        digits.append(c);
+                    }
+                }
+                return digits.isEmpty() || digits.length() == 1 && digits.charAt(0) == '+'
+                        ? null
+                        : digits.toString();
+            }
+        };
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        // trim возвращает ту же строку, если пробелов по краям нет.
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.hackathon.chatlas.analysis;
+
+/**
+ * Оценка количества уникальных элементов (HyperLogLog) в фиксированном объеме памяти:
+ * 2^precision однобайтовых регистров независимо от размера входа.
+ * Относительная стандартная ошибка - 1.04 / sqrt(2^precision).
+ */
+final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision количество бит хэша на номер регистра (4..18).
+     */
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be in [4, 18]: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Учесть элемент по его 64-битному хэшу (хэш должен быть хорошо перемешан, см. {@link #mix64(long)}).
+     */
+    void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Единичный бит-ограничитель: ранг не превышает 64 - precision + 1.
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Объединить с другой оценкой той же точности (результат - оценка объединения множеств).
+     */
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog with different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return оценка количества уникальных элементов.
+     */
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Поправка для малых количеств: подсчет пустых регистров (linear counting) точнее.
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return относительная стандартная ошибка оценки.
+     */
+    double relativeStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * 64-битный хэш строки без создания объектов (FNV-1a с финальным перемешиванием).
+     */
+    static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * Финализатор MurmurHash3: равномерно перемешивает все биты числа.
+     */
+    static long mix64(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.hackathon.chatlas.analysis;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.domain.Mention;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Правила извлечения из одного сообщения, общие для {@link ChatAnalyzerImpl} и {@link ParallelChatAnalyzer}:
+ * автор (без удалённых аккаунтов, при дублях сохраняется первое имя), распределение текстовых сущностей
+ * по слотам {@link EntityExtractorTable} и проверка упоминаний.
+ * В какую таблицу участников и в какой набор упоминаний записывать, решает наследник: одна таблица
+ * у последовательного анализатора или шард по ключу у параллельного.
+ */
+@Slf4j
+abstract class MessageRules {
+
+    final EntityExtractorTable extractors;
+    final Set<String>[] entities;
+    long deletedAccountMessages;
+    // Таблица и номер автора текущего сообщения: к нему относятся упоминания из сущностей сообщения.
+    private ParticipantTable currentParticipants;
+    private int currentAuthor = ParticipantTable.ABSENT;
+
+    MessageRules(EntityExtractorTable extractors) {
+        this.extractors = extractors;
+        this.entities = extractors.newValueSets();
+    }
+
+    /**
+     * Таблица, в которой хранится участник с этим ключом.
+     */
+    abstract ParticipantTable participantsFor(long key, String fromId);
+
+    /**
+     * Набор, в котором хранится упоминание с этим текстом.
+     */
+    abstract Map<String, Mention> mentionsFor(String mentionText);
+
+    /**
+     * Начало сообщения: найти или добавить автора и учесть его сообщение.
+     */
+    final void addMessage(String fromId, String from, long date) {
+        currentAuthor = ParticipantTable.ABSENT;
+        // Пропускаем, если нет обязательных полей.
+        // fromId должен быть не null и не blank.
+        // from должен быть не null (может быть blank, кажется, в Telegram можно указать пустое имя).
+        if (fromId == null || from == null) {
+            return;
+        }
+
+        // Пропускаем удалённые аккаунты, даже если их fromId уже встречался: такие сообщения не учитываются
+        // в активности, и результат не зависит от порядка сообщений.
+        // Итог пишется в лог один раз по объединенному счетчику; первый случай каждой копии - только на уровне debug.
+        if (ChatAnalyzerImpl.isDeletedAccount(from)) {
+            if (deletedAccountMessages++ == 0) {
+                log.debug("Skipping deleted account: fromId={}, from={}", fromId, from);
+            }
+            return;
+        }
+
+        // Уже встреченный автор - самый частый случай, он не требует объектов.
+        // При дублях сохраняется первое встреченное имя.
+        long key = ParticipantTable.key(fromId);
+        ParticipantTable participants = participantsFor(key, fromId);
+        int ordinal = participants.ordinal(key, fromId);
+        if (ordinal == ParticipantTable.ABSENT) {
+            if (fromId.isBlank()) {
+                return;
+            }
+            ordinal = participants.putIfAbsent(key, fromId, from);
+        }
+        participants.recordMessage(ordinal, date);
+        currentParticipants = participants;
+        currentAuthor = ordinal;
+    }
+
+    /**
+     * Текстовая сущность текущего сообщения.
+     */
+    final void addEntity(String type, String text, String href) {
+        // Один поиск по таблице вместо сравнения типа с каждым извлекателем.
+        int slot = extractors.slotOf(type);
+        if (slot < 0) {
+            return;
+        }
+        String value = extractors.extractor(slot).extract(text, href);
+        if (value == null) {
+            return;
+        }
+        if (slot == EntityExtractorTable.MENTION_SLOT) {
+            if (addMention(value) && currentAuthor != ParticipantTable.ABSENT) {
+                currentParticipants.recordMention(currentAuthor);
+            }
+        } else {
+            entities[slot].add(value);
+        }
+    }
+
+    /**
+     * Добавить упоминание (текст уже без пробелов по краям).
+     *
+     * @return true, если текст - корректное упоминание.
+     */
+    private boolean addMention(String mentionText) {
+        Map<String, Mention> mentions = mentionsFor(mentionText);
+        if (mentions.containsKey(mentionText)) {
+            return true;
+        }
+        Mention mention = ChatAnalyzerImpl.createMention(mentionText);
+        if (mention != null) {
+            mentions.put(mentionText, mention);
+        }
+        return mention != null;
+    }
+}
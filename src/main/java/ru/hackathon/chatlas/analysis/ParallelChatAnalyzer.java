@@ -0,0 +1,325 @@
+package ru.hackathon.chatlas.analysis;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.config.BotConfig;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный анализатор чата для режима TWO_PHASE.
+ * Список сообщений делится на диапазоны, которые разбираются на {@link ForkJoinPool}.
+ * Каждый диапазон собирает своих участников и упоминания в наборы, разбитые на шарды по хэшу
+ * id участника / текста упоминания. Затем каждый шард сливается отдельной задачей: шарды не пересекаются,
+ * поэтому слияние идет без общих блокировок. Диапазоны сливаются в порядке сообщений,
+ * так что результат (включая "первое имя участника побеждает" и счетчики активности участников)
+ * совпадает с {@link ChatAnalyzerImpl}.
+ * Небольшие чаты (меньше порога) анализируются последовательно.
+ */
+@Slf4j
+public class ParallelChatAnalyzer implements ChatAnalyzer {
+
+    /**
+     * Количество диапазонов на поток пула: запас для балансировки неравномерных диапазонов.
+     */
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * Минимальный размер диапазона: меньшие диапазоны не окупают накладные расходы на задачу и слияние.
+     */
+    private static final int MIN_RANGE_MESSAGES = 1024;
+
+    private final ForkJoinPool pool;
+    private final int sequentialThresholdMessages;
+    private final EntityExtractorTable extractors;
+    private final ChatAnalyzerImpl sequential;
+
+    /**
+     * Анализатор на общем пуле с порогом по умолчанию.
+     */
+    public ParallelChatAnalyzer() {
+        this(ForkJoinPool.commonPool(), BotConfig.PARALLEL_ANALYSIS_THRESHOLD_MESSAGES);
+    }
+
+    /**
+     * @param pool пул для анализа диапазонов.
+     * @param sequentialThresholdMessages количество сообщений, ниже которого анализ идет последовательно.
+     */
+    public ParallelChatAnalyzer(ForkJoinPool pool, int sequentialThresholdMessages) {
+        this(pool, sequentialThresholdMessages, List.of());
+    }
+
+    /**
+     * @param pool пул для анализа диапазонов.
+     * @param sequentialThresholdMessages количество сообщений, ниже которого анализ идет последовательно.
+     * @param extraExtractors извлекатели дополнительных сущностей (упоминания анализируются всегда).
+     */
+    public ParallelChatAnalyzer(
+            ForkJoinPool pool,
+            int sequentialThresholdMessages,
+            List<EntityExtractor> extraExtractors)
+    {
+        this.pool = pool;
+        this.sequentialThresholdMessages = sequentialThresholdMessages;
+        this.extractors = new EntityExtractorTable(extraExtractors);
+        this.sequential = new ChatAnalyzerImpl(extraExtractors);
+    }
+
+    @Override
+    public ChatAnalysisResult analyze(ChatExport chatExport) throws ChatAnalysisException {
+        if (chatExport == null) {
+            throw new ChatAnalysisException("ChatExport cannot be null");
+        }
+
+        List<ChatExport.Message> messages = chatExport.getMessages();
+        if (messages == null || messages.size() < sequentialThresholdMessages) {
+            return sequential.analyze(chatExport);
+        }
+
+        int shardCount = Integer.highestOneBit(Math.max(1, pool.getParallelism()) * 2 - 1);
+        int rangeCount = Math.max(1, Math.min(
+                pool.getParallelism() * RANGES_PER_THREAD,
+                messages.size() / MIN_RANGE_MESSAGES));
+        log.info("Analyzing {} messages in parallel: {} ranges, {} shards", messages.size(), rangeCount, shardCount);
+        try {
+            return pool.invoke(new AnalyzeTask(messages, extractors, rangeCount, shardCount));
+        } catch (RuntimeException e) {
+            throw new ChatAnalysisException("Failed to analyze chat in parallel", e);
+        }
+    }
+
+    /**
+     * В совмещенном режиме параллелизмом управляет парсер через fork/join приемника,
+     * поэтому используется приемник последовательного анализатора.
+     */
+    @Override
+    public AnalysisSink newSink() {
+        return sequential.newSink();
+    }
+
+    /**
+     * Корневая задача: анализ диапазонов, послойное слияние шардов, сборка результата.
+     */
+    private static class AnalyzeTask extends RecursiveTask<ChatAnalysisResult> {
+
+        private final List<ChatExport.Message> messages;
+        private final EntityExtractorTable extractors;
+        private final int rangeCount;
+        private final int shardCount;
+
+        AnalyzeTask(
+                List<ChatExport.Message> messages,
+                EntityExtractorTable extractors,
+                int rangeCount,
+                int shardCount)
+        {
+            this.messages = messages;
+            this.extractors = extractors;
+            this.rangeCount = rangeCount;
+            this.shardCount = shardCount;
+        }
+
+        @Override
+        protected ChatAnalysisResult compute() {
+            List<RangeTask> ranges = new ArrayList<>(rangeCount);
+            int size = messages.size();
+            for (int i = 0; i < rangeCount; i++) {
+                int from = (int) ((long) size * i / rangeCount);
+                int to = (int) ((long) size * (i + 1) / rangeCount);
+                ranges.add(new RangeTask(messages, extractors, from, to, shardCount));
+            }
+            ForkJoinTask.invokeAll(ranges);
+
+            List<ShardedSets> partials = new ArrayList<>(rangeCount);
+            for (RangeTask range : ranges) {
+                partials.add(range.join());
+            }
+
+            List<RecursiveAction> merges = new ArrayList<>(shardCount + extractors.size());
+            for (int shard = 0; shard < shardCount; shard++) {
+                merges.add(new ShardMergeTask(partials, shard));
+            }
+            for (int slot = EntityExtractorTable.MENTION_SLOT + 1; slot < extractors.size(); slot++) {
+                merges.add(new EntityMergeTask(partials, slot));
+            }
+            ForkJoinTask.invokeAll(merges);
+
+            ShardedSets merged = partials.get(0);
+            long deletedAccountMessages = 0;
+            for (ShardedSets partial : partials) {
+                deletedAccountMessages += partial.deletedAccountMessages;
+            }
+            if (deletedAccountMessages > 0) {
+                log.info("Skipped {} messages from deleted accounts", deletedAccountMessages);
+            }
+            ChatAnalysisResult result = merged.toResult();
+            log.info("Analysis completed: {} participants, {} mentions",
+                    result.getParticipantsCount(), result.getMentionsCount());
+            return result;
+        }
+    }
+
+    /**
+     * Анализ одного диапазона сообщений в собственные шардированные наборы.
+     */
+    private static class RangeTask extends RecursiveTask<ShardedSets> {
+
+        private final List<ChatExport.Message> messages;
+        private final EntityExtractorTable extractors;
+        private final int from;
+        private final int to;
+        private final int shardCount;
+
+        RangeTask(
+                List<ChatExport.Message> messages,
+                EntityExtractorTable extractors,
+                int from,
+                int to,
+                int shardCount)
+        {
+            this.messages = messages;
+            this.extractors = extractors;
+            this.from = from;
+            this.to = to;
+            this.shardCount = shardCount;
+        }
+
+        @Override
+        protected ShardedSets compute() {
+            ShardedSets sets = new ShardedSets(extractors, shardCount);
+            for (int i = from; i < to; i++) {
+                ChatExport.Message message = messages.get(i);
+                if (message == null) {
+                    continue;
+                }
+                sets.addMessage(message.getFromId(), message.getFrom(), message.getDateUnixtime());
+                if (message.getTextEntities() != null) {
+                    for (ChatExport.TextEntity entity : message.getTextEntities()) {
+                        if (entity != null) {
+                            sets.addEntity(entity.getType(), entity.getText(), entity.getHref());
+                        }
+                    }
+                }
+            }
+            return sets;
+        }
+    }
+
+    /**
+     * Слияние одного шарда всех диапазонов в шард первого диапазона.
+     * Каждая задача владеет своим шардом, поэтому блокировки не нужны.
+     */
+    private static class ShardMergeTask extends RecursiveAction {
+
+        private final List<ShardedSets> partials;
+        private final int shard;
+
+        ShardMergeTask(List<ShardedSets> partials, int shard) {
+            this.partials = partials;
+            this.shard = shard;
+        }
+
+        @Override
+        protected void compute() {
+            ParticipantTable participants = partials.get(0).participants[shard];
+            Map<String, Mention> mentions = partials.get(0).mentions[shard];
+            // Порядок диапазонов сохраняется: при дублях fromId побеждает имя из более раннего сообщения.
+            for (int i = 1; i < partials.size(); i++) {
+                participants.mergeFrom(partials.get(i).participants[shard]);
+                partials.get(i).mentions[shard].forEach(mentions::putIfAbsent);
+            }
+        }
+    }
+
+    /**
+     * Слияние значений одного типа дополнительных сущностей всех диапазонов в набор первого диапазона.
+     */
+    private static class EntityMergeTask extends RecursiveAction {
+
+        private final List<ShardedSets> partials;
+        private final int slot;
+
+        EntityMergeTask(List<ShardedSets> partials, int slot) {
+            this.partials = partials;
+            this.slot = slot;
+        }
+
+        @Override
+        protected void compute() {
+            Set<String> values = partials.get(0).entities[slot];
+            for (int i = 1; i < partials.size(); i++) {
+                values.addAll(partials.get(i).entities[slot]);
+            }
+        }
+    }
+
+    /**
+     * Участники и упоминания одного диапазона, разбитые на шарды по хэшу ключа.
+     * Правила извлечения - общие с {@link ChatAnalyzerImpl} ({@link MessageRules}).
+     */
+    private static class ShardedSets extends MessageRules {
+
+        private final ParticipantTable[] participants;
+        private final Map<String, Mention>[] mentions;
+        private final int shardMask;
+
+        @SuppressWarnings("unchecked")
+        ShardedSets(EntityExtractorTable extractors, int shardCount) {
+            super(extractors);
+            participants = new ParticipantTable[shardCount];
+            mentions = new Map[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                participants[i] = new ParticipantTable();
+                mentions[i] = new HashMap<>();
+            }
+            shardMask = shardCount - 1;
+        }
+
+        @Override
+        ParticipantTable participantsFor(long key, String fromId) {
+            int hash = key == ParticipantTable.NON_CANONICAL ? fromId.hashCode() : ParticipantTable.hash(key);
+            return participants[shardOf(hash)];
+        }
+
+        @Override
+        Map<String, Mention> mentionsFor(String mentionText) {
+            return mentions[shardOf(mentionText.hashCode() * 0x9E3779B9)];
+        }
+
+        ChatAnalysisResult toResult() {
+            int participantsCount = 0;
+            int mentionsCount = 0;
+            for (int i = 0; i < participants.length; i++) {
+                participantsCount += participants[i].size();
+                mentionsCount += mentions[i].size();
+            }
+            Set<Participant> participantSet = HashSet.newHashSet(participantsCount);
+            Set<Mention> mentionSet = HashSet.newHashSet(mentionsCount);
+            Map<String, ParticipantActivity> activity = HashMap.newHashMap(participantsCount);
+            for (int i = 0; i < participants.length; i++) {
+                participants[i].addTo(participantSet);
+                participants[i].addActivityTo(activity);
+                mentionSet.addAll(mentions[i].values());
+            }
+            return new ChatAnalysisResult(participantSet, mentionSet, extractors.toEntities(entities), activity, null);
+        }
+
+        private int shardOf(int hash) {
+            // Старшие биты хэша, чтобы шард не коррелировал со слотом таблицы внутри шарда.
+            return (hash >>> 16) & shardMask;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package ru.hackathon.chatlas.analysis;
+
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Таблица уникальных участников с ключом по числовому id Telegram.
+ * {@code from_id} вида {@code user123456789} / {@code channel123} / {@code chat123} кодируется в одно число:
+ * тег префикса в старших битах и числовая часть в младших. Такие ключи хранятся в примитивном массиве
+ * с открытой адресацией (линейное пробирование). Остальные id (неизвестный префикс, ведущие нули и т.п.)
+ * хранятся в обычной карте. Каждый участник получает плотный порядковый номер (в порядке появления),
+ * по которому в примитивных массивах лежат его имя и счетчики активности.
+ * Поиск и обновление счетчиков не создают объектов и не считают хэш строки.
+ * Объекты {@link Participant} и {@link ParticipantActivity} создаются только при сборке результата.
+ */
+final class ParticipantTable {
+
+    /**
+     * Признак id, который не кодируется в число и хранится в карте.
+     */
+    static final long NON_CANONICAL = -1;
+
+    /**
+     * Номер, возвращаемый для отсутствующего участника.
+     */
+    static final int ABSENT = -1;
+
+    private static final String[] PREFIXES = {null, "user", "channel", "chat"};
+    private static final int VALUE_BITS = 60;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+
+    /**
+     * Не больше 18 цифр: 10^18 - 1 помещается в {@link #VALUE_BITS} бит.
+     */
+    private static final int MAX_DIGITS = 18;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Хэш-индекс: пустой слот - 0 (у закодированного ключа тег всегда ненулевой), в slotOrdinals - номер участника.
+    private long[] slotKeys = new long[INITIAL_CAPACITY];
+    private int[] slotOrdinals = new int[INITIAL_CAPACITY];
+    private int canonicalSize;
+    private Map<String, Integer> nonCanonical;
+
+    // Данные по номеру участника.
+    private int size;
+    private long[] keys = new long[INITIAL_CAPACITY / 2];
+    private String[] fromIds = new String[INITIAL_CAPACITY / 2];
+    private String[] names = new String[INITIAL_CAPACITY / 2];
+    private long[] messageCounts = new long[INITIAL_CAPACITY / 2];
+    private long[] mentionCounts = new long[INITIAL_CAPACITY / 2];
+    private long[] firstDates = new long[INITIAL_CAPACITY / 2];
+    private long[] lastDates = new long[INITIAL_CAPACITY / 2];
+
+    /**
+     * Закодировать {@code from_id} в числовой ключ.
+     *
+     * @return ключ или {@link #NON_CANONICAL}, если id не укладывается в формат "префикс + число".
+     */
+    static long key(String fromId) {
+        for (int tag = 1; tag < PREFIXES.length; tag++) {
+            String prefix = PREFIXES[tag];
+            if (fromId.startsWith(prefix)) {
+                long value = parseDigits(fromId, prefix.length());
+                return value < 0 ? NON_CANONICAL : ((long) tag << VALUE_BITS) | value;
+            }
+        }
+        return NON_CANONICAL;
+    }
+
+    /**
+     * Перемешанный хэш ключа (финализатор MurmurHash3): младшие биты - слот таблицы, старшие - шард.
+     */
+    static int hash(long key) {
+        return (int) HyperLogLog.mix64(key);
+    }
+
+    /**
+     * @param key ключ из {@link #key(String)}.
+     * @param fromId исходный id (нужен для id, не закодированных в число).
+     * @return номер участника или {@link #ABSENT}, если его нет в таблице.
+     */
+    int ordinal(long key, String fromId) {
+        if (key == NON_CANONICAL) {
+            Integer ordinal = nonCanonical != null ? nonCanonical.get(fromId) : null;
+            return ordinal != null ? ordinal : ABSENT;
+        }
+        int slot = slot(key);
+        return slotKeys[slot] == key ? slotOrdinals[slot] : ABSENT;
+    }
+
+    /**
+     * Добавить участника, если его еще нет (при дублях сохраняется первое имя).
+     *
+     * @return номер участника.
+     */
+    int putIfAbsent(long key, String fromId, String displayName) {
+        if (key == NON_CANONICAL) {
+            if (nonCanonical == null) {
+                nonCanonical = new HashMap<>();
+            }
+            Integer existing = nonCanonical.get(fromId);
+            if (existing != null) {
+                return existing;
+            }
+            int ordinal = append(key, fromId, displayName);
+            nonCanonical.put(fromId, ordinal);
+            return ordinal;
+        }
+        int slot = slot(key);
+        if (slotKeys[slot] == key) {
+            return slotOrdinals[slot];
+        }
+        int ordinal = append(key, null, displayName);
+        slotKeys[slot] = key;
+        slotOrdinals[slot] = ordinal;
+        if (++canonicalSize * 2 > slotKeys.length) {
+            resize();
+        }
+        return ordinal;
+    }
+
+    /**
+     * Учесть сообщение участника.
+     *
+     * @param date время отправки в секундах Unix (0 - неизвестно, в датах не учитывается).
+     */
+    void recordMessage(int ordinal, long date) {
+        messageCounts[ordinal]++;
+        if (date != 0) {
+            firstDates[ordinal] = ParticipantActivity.minDate(firstDates[ordinal], date);
+            lastDates[ordinal] = Math.max(lastDates[ordinal], date);
+        }
+    }
+
+    /**
+     * Учесть упоминание в сообщении участника.
+     */
+    void recordMention(int ordinal) {
+        mentionCounts[ordinal]++;
+    }
+
+    /**
+     * Влить участников другой таблицы вместе с их счетчиками.
+     * Участники добавляются в порядке их номеров, поэтому при дублях сохраняется имя из этой таблицы.
+     */
+    void mergeFrom(ParticipantTable other) {
+        for (int i = 0; i < other.size; i++) {
+            String fromId = other.keys[i] == NON_CANONICAL ? other.fromIds[i] : null;
+            int ordinal = putIfAbsent(other.keys[i], fromId, other.names[i]);
+            messageCounts[ordinal] += other.messageCounts[i];
+            mentionCounts[ordinal] += other.mentionCounts[i];
+            firstDates[ordinal] = ParticipantActivity.minDate(firstDates[ordinal], other.firstDates[i]);
+            lastDates[ordinal] = Math.max(lastDates[ordinal], other.lastDates[i]);
+        }
+    }
+
+    /**
+     * @return количество уникальных участников.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Создать объекты участников и добавить их в коллекцию.
+     */
+    void addTo(Collection<Participant> target) {
+        for (int i = 0; i < size; i++) {
+            target.add(new Participant(fromId(i), names[i]));
+        }
+    }
+
+    /**
+     * Создать объекты активности участников и добавить их в карту по fromId.
+     */
+    void addActivityTo(Map<String, ParticipantActivity> target) {
+        for (int i = 0; i < size; i++) {
+            String fromId = fromId(i);
+            target.put(fromId, new ParticipantActivity(
+                    fromId, names[i], messageCounts[i], mentionCounts[i], firstDates[i], lastDates[i]));
+        }
+    }
+
+    private String fromId(int ordinal) {
+        long key = keys[ordinal];
+        return key == NON_CANONICAL ? fromIds[ordinal] : PREFIXES[(int) (key >>> VALUE_BITS)] + (key & VALUE_MASK);
+    }
+
+    private int append(long key, String fromId, String displayName) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            fromIds = Arrays.copyOf(fromIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            messageCounts = Arrays.copyOf(messageCounts, capacity);
+            mentionCounts = Arrays.copyOf(mentionCounts, capacity);
+            firstDates = Arrays.copyOf(firstDates, capacity);
+            lastDates = Arrays.copyOf(lastDates, capacity);
+        }
+        keys[size] = key;
+        fromIds[size] = fromId;
+        names[size] = displayName;
+        return size++;
+    }
+
+    /**
+     * @return слот с этим ключом или пустой слот, в который его нужно вставить.
+     */
+    private int slot(long key) {
+        int mask = slotKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (slotKeys[slot] != 0 && slotKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldKeys = slotKeys;
+        int[] oldOrdinals = slotOrdinals;
+        slotKeys = new long[oldKeys.length * 2];
+        slotOrdinals = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                slotKeys[slot] = oldKeys[i];
+                slotOrdinals[slot] = oldOrdinals[i];
+            }
+        }
+    }
+
+    /**
+     * Разобрать десятичное число без знака и ведущих нулей (чтобы id однозначно восстанавливался из ключа).
+     *
+     * @return число или -1, если суффикс не является таким числом.
+     */
+    private static long parseDigits(String fromId, int start) {
+        int length = fromId.length() - start;
+        if (length == 0 || length > MAX_DIGITS || (length > 1 && fromId.charAt(start) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < fromId.length(); i++) {
+            char c = fromId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
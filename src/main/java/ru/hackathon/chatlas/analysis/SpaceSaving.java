@@ -0,0 +1,201 @@
+package ru.hackathon.chatlas.analysis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Поиск самых частых элементов потока (алгоритм Space-Saving) в фиксированном объеме памяти:
+ * хранится не больше {@code capacity} счетчиков. Когда места нет, новый элемент вытесняет
+ * элемент с минимальным счетчиком и наследует его значение как погрешность.
+ * Любой элемент, встретившийся больше N / capacity раз (N - длина потока), гарантированно есть в сводке,
+ * а его точное количество лежит в [{@code count - error}, {@code count}].
+ * Счетчики лежат в min-куче с индексом по ключу: обновление - O(log capacity).
+ */
+final class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> index;
+    private final Counter[] heap;
+    private int size;
+
+    /**
+     * @param capacity максимальное количество счетчиков.
+     */
+    SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.index = HashMap.newHashMap(capacity);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Учесть одно появление элемента.
+     *
+     * @param key ключ элемента.
+     * @param label подпись элемента (сохраняется при первом попадании элемента в сводку).
+     */
+    void offer(String key, String label) {
+        offer(key, label, 1, 0);
+    }
+
+    /**
+     * Объединить с другой сводкой (результат - сводка объединенного потока).
+     * Если элемента нет в одной из заполненных сводок, его количество там не больше ее минимального счетчика:
+     * этот минимум добавляется и к счетчику, и к погрешности.
+     */
+    void merge(SpaceSaving other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+        List<Counter> combined = new ArrayList<>(size + other.size);
+        for (int i = 0; i < size; i++) {
+            Counter counter = heap[i];
+            Counter same = other.index.get(counter.key);
+            combined.add(same != null
+                    ? new Counter(counter.key, counter.label, counter.count + same.count, counter.error + same.error)
+                    : new Counter(counter.key, counter.label, counter.count + otherMin, counter.error + otherMin));
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter counter = other.heap[i];
+            if (!index.containsKey(counter.key)) {
+                combined.add(new Counter(counter.key, counter.label, counter.count + thisMin, counter.error + thisMin));
+            }
+        }
+        combined.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+
+        index.clear();
+        size = 0;
+        for (int i = 0; i < combined.size() && i < capacity; i++) {
+            Counter counter = combined.get(i);
+            index.put(counter.key, counter);
+            counter.position = size;
+            heap[size++] = counter;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * @param limit максимальное количество элементов.
+     * @return самые частые элементы по убыванию счетчика.
+     */
+    List<Counter> top(int limit) {
+        List<Counter> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(heap[i]);
+        }
+        counters.sort(Comparator.comparingLong((Counter counter) -> counter.count).reversed()
+                .thenComparing(counter -> counter.key));
+        return counters.subList(0, Math.min(limit, counters.size()));
+    }
+
+    /**
+     * @return минимальный счетчик заполненной сводки (0, если место еще есть: отсутствующих элементов не было).
+     */
+    long minCount() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    private void offer(String key, String label, long count, long error) {
+        Counter counter = index.get(key);
+        if (counter != null) {
+            counter.count += count;
+            counter.error += error;
+            siftDown(counter.position);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter(key, label, count, error);
+            index.put(key, counter);
+            counter.position = size;
+            heap[size++] = counter;
+            siftUp(counter.position);
+            return;
+        }
+        // Вытесняем минимальный счетчик: новый элемент мог встречаться до этого не больше min раз.
+        Counter min = heap[0];
+        index.remove(min.key);
+        long minCount = min.count;
+        min.key = key;
+        min.label = label;
+        min.error = minCount + error;
+        min.count = minCount + count;
+        index.put(key, min);
+        siftDown(0);
+    }
+
+    private void siftUp(int position) {
+        Counter counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(counter, position);
+    }
+
+    private void siftDown(int position) {
+        Counter counter = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(counter, position);
+    }
+
+    private void place(Counter counter, int position) {
+        heap[position] = counter;
+        counter.position = position;
+    }
+
+    /**
+     * Счетчик элемента.
+     */
+    static final class Counter {
+        private String key;
+        private String label;
+        private long count;
+        private long error;
+        private int position;
+
+        private Counter(String key, String label, long count, long error) {
+            this.key = key;
+            this.label = label;
+            this.count = count;
+            this.error = error;
+        }
+
+        String key() {
+            return key;
+        }
+
+        String label() {
+            return label;
+        }
+
+        long count() {
+            return count;
+        }
+
+        long error() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.hackathon.chatlas.checkpoint;
+
+import ru.hackathon.chatlas.domain.ChatCheckpoint;
+
+/**
+ * Хранилище контрольных точек анализа чатов для инкрементального повторного анализа.
+ * Контрольные точки разделены по чатам бота, из которых прислан экспорт: id из экспорта не уникален
+ * между пользователями (в личной переписке это id собеседника), и без этого один пользователь получал бы
+ * в отчете участников и упоминания из чужого экспорта.
+ */
+public interface ChatCheckpointStore {
+
+    /**
+     * Загрузить контрольную точку чата.
+     *
+     * @param key чат бота и чат из экспорта.
+     * @return контрольная точка или null, если чат еще не анализировался.
+     * @throws ChatCheckpointStoreException если контрольную точку не удалось прочитать.
+     */
+    ChatCheckpoint load(Key key) throws ChatCheckpointStoreException;
+
+    /**
+     * Сохранить контрольную точку вместо уже сохраненной для того же чата.
+     * Точка уже содержит накопленный результат (загруженная точка плюс новые сообщения), поэтому повторно
+     * с сохраненной не объединяется: иначе счетчики активности удваивались бы при каждой загрузке.
+     *
+     * @param key чат бота и чат из экспорта.
+     * @param checkpoint новая контрольная точка.
+     * @throws ChatCheckpointStoreException если контрольную точку не удалось сохранить.
+     */
+    void save(Key key, ChatCheckpoint checkpoint) throws ChatCheckpointStoreException;
+
+    /**
+     * Ключ контрольной точки.
+     *
+     * @param requesterChatId чат бота, из которого прислан экспорт.
+     * @param exportType тип чата из экспорта (может быть null).
+     * @param exportId идентификатор чата из экспорта.
+     */
+    record Key(long requesterChatId, String exportType, long exportId) {
+    }
+
+    /**
+     * Исключение при работе с хранилищем контрольных точек.
+     */
+    class ChatCheckpointStoreException extends Exception {
+        public ChatCheckpointStoreException(String message) {
+            super(message);
+        }
+
+        public ChatCheckpointStoreException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package ru.hackathon.chatlas.checkpoint;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatCheckpoint;
+import ru.hackathon.chatlas.parser.ForkableSink;
+
+import java.util.List;
+
+/**
+ * Приемник анализа с учетом контрольной точки чата.
+ * По чату бота, id и типу чата из экспорта загружает контрольную точку и просит парсер пропустить
+ * уже учтенные сообщения, анализирует только остальные и объединяет их результат с накопленным.
+ * Точка загружается, когда парсер спрашивает пропускаемые сообщения: к этому моменту заголовок экспорта прочитан.
+ */
+@Slf4j
+public class CheckpointingAnalysisSink implements ChatAnalyzer.AnalysisSink {
+
+    private final ChatAnalyzer.AnalysisSink delegate;
+    private final ChatCheckpointStore store;
+    private final long requesterChatId;
+    private final CheckpointingAnalysisSink root;
+
+    private Long chatId;
+    private String chatType;
+    private ChatCheckpointStore.Key key;
+    private ChatCheckpoint checkpoint;
+    private ChatAnalysisResult newMessagesResult;
+    private long firstMessageId = Long.MAX_VALUE;
+    private long lastMessageId = Long.MIN_VALUE;
+
+    /**
+     * @param delegate приемник анализатора для новых сообщений.
+     * @param store хранилище контрольных точек.
+     * @param requesterChatId чат бота, из которого прислан экспорт.
+     */
+    public CheckpointingAnalysisSink(
+            ChatAnalyzer.AnalysisSink delegate,
+            ChatCheckpointStore store,
+            long requesterChatId)
+    {
+        this.delegate = delegate;
+        this.store = store;
+        this.requesterChatId = requesterChatId;
+        this.root = this;
+    }
+
+    private CheckpointingAnalysisSink(ChatAnalyzer.AnalysisSink delegate, CheckpointingAnalysisSink root) {
+        this.delegate = delegate;
+        this.store = root.store;
+        this.requesterChatId = root.requesterChatId;
+        this.root = root;
+    }
+
+    @Override
+    public void onChatType(String type) {
+        this.chatType = type;
+    }
+
+    @Override
+    public void onChatId(long chatId) {
+        this.chatId = chatId;
+    }
+
+    @Override
+    public MessageIdRange skippedMessageIds() {
+        ChatCheckpoint rootCheckpoint = root.loadCheckpoint();
+        return rootCheckpoint == null
+                ? null
+                : new MessageIdRange(rootCheckpoint.firstMessageId(), rootCheckpoint.lastMessageId());
+    }
+
+    @Override
+    public void onMessage(MessageHeader message) {
+        if (message.hasId()) {
+            firstMessageId = Math.min(firstMessageId, message.id());
+            lastMessageId = Math.max(lastMessageId, message.id());
+        }
+        delegate.onMessage(message);
+    }
+
+    @Override
+    public void onEntity(String type, String text) {
+        delegate.onEntity(type, text);
+    }
+
+    @Override
+    public void onEntity(String type, String text, String href) {
+        delegate.onEntity(type, text, href);
+    }
+
+    @Override
+    public void onMessageEnd() {
+        delegate.onMessageEnd();
+    }
+
+    @Override
+    public ChatAnalyzer.AnalysisSink fork() {
+        return new CheckpointingAnalysisSink(delegate.fork(), root);
+    }
+
+    @Override
+    public void join(ForkableSink forked) {
+        CheckpointingAnalysisSink other = (CheckpointingAnalysisSink) forked;
+        delegate.join(other.delegate);
+        firstMessageId = Math.min(firstMessageId, other.firstMessageId);
+        lastMessageId = Math.max(lastMessageId, other.lastMessageId);
+    }
+
+    /**
+     * @return результат анализа новых сообщений, объединенный с накопленным в контрольной точке.
+     */
+    @Override
+    public ChatAnalysisResult getResult() {
+        newMessagesResult = delegate.getResult();
+        ChatCheckpoint checkpoint = loadCheckpoint();
+        return checkpoint == null
+                ? newMessagesResult
+                : ChatAnalysisResult.merge(List.of(checkpoint.result(), newMessagesResult));
+    }
+
+    /**
+     * Построить контрольную точку по итогам анализа. Она заменяет загруженную точку целиком.
+     * Диапазон учтенных id расширяется, только если новые сообщения пересекаются с ним или примыкают к нему.
+     * Иначе между диапазонами остается промежуток, которого не было ни в одном экспорте, и общий диапазон
+     * пропустил бы его в следующем экспорте: тогда точка строится только по новым сообщениям.
+     *
+     * @param result результат, полученный из {@link #getResult()} (уже объединенный с загруженной точкой).
+     * @return контрольная точка или null, если сохранять нечего (нет id чата или новых сообщений с id).
+     */
+    public ChatCheckpoint toCheckpoint(ChatAnalysisResult result) {
+        if (key == null || firstMessageId > lastMessageId) {
+            return null;
+        }
+        if (checkpoint == null) {
+            return new ChatCheckpoint(chatId, firstMessageId, lastMessageId, result);
+        }
+        if (firstMessageId > checkpoint.lastMessageId() + 1 || lastMessageId < checkpoint.firstMessageId() - 1) {
+            log.info("Messages {}..{} of chat {} do not continue checkpoint {}..{}, replacing the checkpoint",
+                    firstMessageId, lastMessageId, chatId, checkpoint.firstMessageId(), checkpoint.lastMessageId());
+            return new ChatCheckpoint(chatId, firstMessageId, lastMessageId, newMessagesResult);
+        }
+        return new ChatCheckpoint(chatId,
+                Math.min(firstMessageId, checkpoint.firstMessageId()),
+                Math.max(lastMessageId, checkpoint.lastMessageId()),
+                result);
+    }
+
+    /**
+     * @return ключ, под которым загружена контрольная точка (под ним же ее нужно сохранить),
+     * или null, если в экспорте нет id чата.
+     */
+    public ChatCheckpointStore.Key getKey() {
+        return key;
+    }
+
+    /**
+     * Загрузить контрольную точку при первом обращении, когда id и тип чата уже известны.
+     * Копии приемника параллельного парсера обращаются к корневому уже после его загрузки.
+     */
+    private synchronized ChatCheckpoint loadCheckpoint() {
+        if (key != null || chatId == null) {
+            return checkpoint;
+        }
+        key = new ChatCheckpointStore.Key(requesterChatId, chatType, chatId);
+        try {
+            checkpoint = store.load(key);
+        } catch (ChatCheckpointStore.ChatCheckpointStoreException e) {
+            // Контрольная точка - только оптимизация: без нее чат анализируется целиком.
+            log.warn("Failed to load checkpoint for chat {}, analyzing all messages: {}", chatId, e.getMessage());
+            checkpoint = null;
+        }
+        if (checkpoint != null) {
+            log.info("Found checkpoint for chat {}: messages {}..{} already analyzed",
+                    chatId, checkpoint.firstMessageId(), checkpoint.lastMessageId());
+        }
+        return checkpoint;
+    }
+}
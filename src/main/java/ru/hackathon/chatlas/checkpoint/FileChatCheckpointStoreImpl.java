@@ -0,0 +1,229 @@
+package ru.hackathon.chatlas.checkpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatCheckpoint;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Файловое хранилище контрольных точек: по одному сжатому JSON-файлу на чат,
+ * {@code <чат бота>/<тип чата>-<id чата из экспорта>.json.gz}. Файл записывается во временный
+ * и атомарно переименовывается, поэтому переживает перезапуски и не повреждается при сбое во время записи.
+ */
+@Slf4j
+public class FileChatCheckpointStoreImpl implements ChatCheckpointStore {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int MAX_TYPE_LENGTH = 32;
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    /**
+     * Блокировки по хешу ключа: их число не растет с числом чатов.
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /**
+     * @param directory каталог для файлов контрольных точек (создается при необходимости).
+     */
+    public FileChatCheckpointStoreImpl(Path directory) {
+        this.directory = directory;
+        this.objectMapper = new ObjectMapper();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public ChatCheckpoint load(Key key) throws ChatCheckpointStoreException {
+        synchronized (lockFor(key)) {
+            return read(key);
+        }
+    }
+
+    @Override
+    public void save(Key key, ChatCheckpoint checkpoint) throws ChatCheckpointStoreException {
+        synchronized (lockFor(key)) {
+            write(key, checkpoint);
+            log.info("Checkpoint saved for chat {} of requester {}: messages {}..{}, {} participants, {} mentions",
+                    checkpoint.chatId(), key.requesterChatId(), checkpoint.firstMessageId(),
+                    checkpoint.lastMessageId(), checkpoint.result().getParticipantsCount(),
+                    checkpoint.result().getMentionsCount());
+        }
+    }
+
+    private Object lockFor(Key key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+
+    private ChatCheckpoint read(Key key) throws ChatCheckpointStoreException {
+        Path file = fileFor(key);
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+            return fromStored(objectMapper.readValue(input, StoredCheckpoint.class));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            throw new ChatCheckpointStoreException("Failed to read checkpoint " + file, e);
+        }
+    }
+
+    private void write(Key key, ChatCheckpoint checkpoint) throws ChatCheckpointStoreException {
+        Path file = fileFor(key);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(tempFile))) {
+                objectMapper.writeValue(output, toStored(checkpoint));
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new ChatCheckpointStoreException("Failed to write checkpoint " + file, e);
+        }
+    }
+
+    private Path fileFor(Key key) {
+        return directory
+                .resolve(Long.toString(key.requesterChatId()))
+                .resolve(typeName(key.exportType()) + "-" + key.exportId() + ".json.gz");
+    }
+
+    /**
+     * Тип чата приходит из присланного файла, поэтому в имя файла попадают только безопасные символы.
+     */
+    private static String typeName(String exportType) {
+        if (exportType == null || exportType.isEmpty()) {
+            return "unknown";
+        }
+        int length = Math.min(exportType.length(), MAX_TYPE_LENGTH);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(exportType.charAt(i));
+            name.append((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' ? c : '_');
+        }
+        return name.toString();
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static StoredCheckpoint toStored(ChatCheckpoint checkpoint) {
+        List<List<String>> participants = new ArrayList<>(checkpoint.result().participants().size());
+        for (Participant participant : checkpoint.result().participants()) {
+            participants.add(List.of(participant.fromId(), participant.displayName()));
+        }
+        List<String> mentions = new ArrayList<>(checkpoint.result().mentions().size());
+        for (Mention mention : checkpoint.result().mentions()) {
+            mentions.add(mention.mentionText());
+        }
+        Map<String, List<String>> entities = null;
+        if (!checkpoint.result().entities().isEmpty()) {
+            entities = new TreeMap<>();
+            for (Map.Entry<String, Set<String>> entry : checkpoint.result().entities().entrySet()) {
+                entities.put(entry.getKey(), List.copyOf(entry.getValue()));
+            }
+        }
+        List<StoredActivity> activity = new ArrayList<>(checkpoint.result().activity().size());
+        for (ParticipantActivity participantActivity : checkpoint.result().activity().values()) {
+            activity.add(new StoredActivity(
+                    participantActivity.fromId(),
+                    participantActivity.messageCount(),
+                    participantActivity.mentionCount(),
+                    participantActivity.firstMessageDate(),
+                    participantActivity.lastMessageDate()));
+        }
+        return new StoredCheckpoint(
+                checkpoint.chatId(),
+                checkpoint.firstMessageId(),
+                checkpoint.lastMessageId(),
+                participants,
+                mentions,
+                entities,
+                activity);
+    }
+
+    private static ChatCheckpoint fromStored(StoredCheckpoint stored) {
+        Set<Participant> participants = HashSet.newHashSet(stored.participants().size());
+        Map<String, String> names = HashMap.newHashMap(stored.participants().size());
+        for (List<String> participant : stored.participants()) {
+            participants.add(new Participant(participant.get(0), participant.get(1)));
+            names.put(participant.get(0), participant.get(1));
+        }
+        Set<Mention> mentions = HashSet.newHashSet(stored.mentions().size());
+        for (String mention : stored.mentions()) {
+            mentions.add(new Mention(mention));
+        }
+        Map<String, Set<String>> entities = new HashMap<>();
+        if (stored.entities() != null) {
+            stored.entities().forEach((type, values) -> entities.put(type, new HashSet<>(values)));
+        }
+        Map<String, ParticipantActivity> activity = new HashMap<>();
+        if (stored.activity() != null) {
+            for (StoredActivity storedActivity : stored.activity()) {
+                String displayName = names.get(storedActivity.fromId());
+                if (displayName != null) {
+                    activity.put(storedActivity.fromId(), new ParticipantActivity(
+                            storedActivity.fromId(),
+                            displayName,
+                            storedActivity.messages(),
+                            storedActivity.mentions(),
+                            storedActivity.firstDate(),
+                            storedActivity.lastDate()));
+                }
+            }
+        }
+        return new ChatCheckpoint(stored.chatId(), stored.firstMessageId(), stored.lastMessageId(),
+                new ChatAnalysisResult(participants, mentions, entities, activity, null));
+    }
+
+    /**
+     * Компактное представление контрольной точки в файле: участники - пары [fromId, имя].
+     * Дополнительные сущности ({@code entities}) и активность ({@code activity}) могут отсутствовать
+     * в точках, сохраненных до их появления.
+     */
+    private record StoredCheckpoint(
+            long chatId,
+            long firstMessageId,
+            long lastMessageId,
+            List<List<String>> participants,
+            List<String> mentions,
+            Map<String, List<String>> entities,
+            List<StoredActivity> activity)
+    {
+    }
+
+    /**
+     * Активность участника в файле (имя берется из списка участников).
+     */
+    private record StoredActivity(String fromId, long messages, long mentions, long firstDate, long lastDate) {
+    }
+}
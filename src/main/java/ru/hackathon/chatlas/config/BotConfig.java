@@ -2,6 +2,8 @@ package ru.hackathon.chatlas.config;
 
 import lombok.Getter;
 
+import java.time.Duration;
+
 /**
  * Конфигурация бота с основными параметрами.
  */
@@ -15,6 +17,278 @@ public class BotConfig {
      */
     public static final int EXCEL_THRESHOLD = 51;
 
+    /**
+     * Количество ячеек отчета, начиная с которого вместо Excel строится CSV со сжатием gzip
+     * (если формат в чате не выбран явно): около 140 000 участников с активностью.
+     */
+    public static final long CSV_CELL_THRESHOLD = 1_000_000;
+
+    /**
+     * Переменная окружения для переопределения порога CSV.
+     */
+    public static final String CSV_CELL_THRESHOLD_ENV = "CHATLAS_CSV_CELL_THRESHOLD";
+
+    /**
+     * Количество последних строк листа Excel, которые держатся в памяти при построении отчета.
+     * Более ранние строки сбрасываются во временный сжатый файл.
+     */
+    public static final int EXCEL_ROW_WINDOW = 100;
+
+    /**
+     * Переменная окружения для переопределения окна строк Excel.
+     */
+    public static final String EXCEL_ROW_WINDOW_ENV = "CHATLAS_EXCEL_ROW_WINDOW";
+
+    /**
+     * Переменная окружения с реализацией записи Excel (POI или OOXML).
+     */
+    public static final String EXCEL_ENGINE_ENV = "CHATLAS_EXCEL_ENGINE";
+
+    /**
+     * Переменная окружения с режимом построения листов Excel (SEQUENTIAL или CONCURRENT).
+     */
+    public static final String REPORT_RENDER_MODE_ENV = "CHATLAS_REPORT_RENDER_MODE";
+
+    /**
+     * Переменная окружения с режимом конвейера обработки (TWO_PHASE или FUSED).
+     */
+    public static final String PIPELINE_MODE_ENV = "CHATLAS_PIPELINE_MODE";
+
+    /**
+     * Порог размера файла (в байтах), начиная с которого массив сообщений разбирается параллельно.
+     * Файлы меньше порога разбираются последовательно: накладные расходы на задачи не окупаются.
+     */
+    public static final long PARALLEL_PARSE_THRESHOLD_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Переменная окружения для переопределения порога параллельного парсинга.
+     */
+    public static final String PARALLEL_PARSE_THRESHOLD_ENV = "CHATLAS_PARALLEL_PARSE_THRESHOLD_BYTES";
+
+    /**
+     * Порог количества сообщений, начиная с которого уже разобранный чат анализируется параллельно (режим TWO_PHASE).
+     */
+    public static final int PARALLEL_ANALYSIS_THRESHOLD_MESSAGES = 50_000;
+
+    /**
+     * Переменная окружения для переопределения порога параллельного анализа.
+     */
+    public static final String PARALLEL_ANALYSIS_THRESHOLD_ENV = "CHATLAS_PARALLEL_ANALYSIS_THRESHOLD_MESSAGES";
+
+    /**
+     * Порог размера файла (в байтах), выше которого скачанный файл сбрасывается во временный файл на диске
+     * и парсится из отображения в память, а не из кучи.
+     */
+    public static final long SPOOL_THRESHOLD_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Переменная окружения для переопределения порога сброса на диск.
+     */
+    public static final String SPOOL_THRESHOLD_ENV = "CHATLAS_SPOOL_THRESHOLD_BYTES";
+
+    /**
+     * Переменная окружения с каталогом для временных файлов (по умолчанию java.io.tmpdir).
+     */
+    public static final String SPOOL_DIR_ENV = "CHATLAS_SPOOL_DIR";
+
+    /**
+     * Максимальный объем распакованных данных (в байтах) для сжатых экспортов (.zip, .json.gz).
+     * Защищает от zip-бомб: при превышении обработка файла прерывается.
+     */
+    public static final long MAX_DECOMPRESSED_BYTES = 1024L * 1024 * 1024;
+
+    /**
+     * Переменная окружения для переопределения лимита распакованных данных.
+     */
+    public static final String MAX_DECOMPRESSED_BYTES_ENV = "CHATLAS_MAX_DECOMPRESSED_BYTES";
+
+    /**
+     * Максимальное количество файлов в одном пакете (/batch ... /done).
+     */
+    public static final int BATCH_MAX_FILES = 10;
+
+    /**
+     * Переменная окружения для переопределения максимального количества файлов в пакете.
+     */
+    public static final String BATCH_MAX_FILES_ENV = "CHATLAS_BATCH_MAX_FILES";
+
+    /**
+     * Количество файлов пакета, которые скачиваются и обрабатываются одновременно.
+     */
+    public static final int BATCH_PARALLELISM = 4;
+
+    /**
+     * Переменная окружения для переопределения количества одновременно обрабатываемых файлов пакета.
+     */
+    public static final String BATCH_PARALLELISM_ENV = "CHATLAS_BATCH_PARALLELISM";
+
+    /**
+     * Бюджет памяти (по оценке от размера файлов) на одновременно обрабатываемые файлы.
+     * Задачи сверх бюджета ждут в очереди: половина кучи 256 МБ, остальное - кэш отчетов и служебные объекты.
+     */
+    public static final long PROCESSING_MEMORY_BUDGET_BYTES = 128L * 1024 * 1024;
+
+    /**
+     * Переменная окружения для переопределения бюджета памяти на обработку.
+     */
+    public static final String PROCESSING_MEMORY_BUDGET_ENV = "CHATLAS_PROCESSING_MEMORY_BUDGET";
+
+    /**
+     * Сколько задач обработки может ждать в очереди; следующие отклоняются с сообщением пользователю.
+     */
+    public static final int PROCESSING_QUEUE_CAPACITY = 20;
+
+    /**
+     * Переменная окружения для переопределения длины очереди обработки.
+     */
+    public static final String PROCESSING_QUEUE_CAPACITY_ENV = "CHATLAS_PROCESSING_QUEUE_CAPACITY";
+
+    /**
+     * Как часто (в секундах) писать в лог состояние очереди обработки, пока в ней есть задачи или что-то
+     * изменилось; 0 - не писать.
+     */
+    public static final long PROCESSING_STATS_INTERVAL_SECONDS = 60;
+
+    /**
+     * Переменная окружения для переопределения периода записи состояния очереди обработки.
+     */
+    public static final String PROCESSING_STATS_INTERVAL_ENV = "CHATLAS_PROCESSING_STATS_INTERVAL_SECONDS";
+
+    /**
+     * Таймаут установления соединения с серверами Telegram.
+     */
+    public static final Duration HTTP_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Наибольшая пауза в ответе Telegram (в том числе при скачивании файла), после которой запрос прерывается.
+     */
+    public static final Duration HTTP_READ_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Сколько запросов к Telegram (отправка сообщений и скачивание файлов) выполняется одновременно.
+     */
+    public static final int HTTP_MAX_REQUESTS = 32;
+
+    /**
+     * Сколько сообщений в секунду бот отправляет всего (лимит Telegram - около 30).
+     */
+    public static final double SEND_GLOBAL_PER_SECOND = 30;
+
+    /**
+     * Сколько сообщений в секунду бот отправляет в один чат (лимит Telegram - около одного).
+     */
+    public static final double SEND_CHAT_PER_SECOND = 1;
+
+    /**
+     * Сколько сообщений можно отправить в чат подряд без ожидания (например, "Обрабатываю..." и отчет).
+     */
+    public static final int SEND_CHAT_BURST = 3;
+
+    /**
+     * Переменная окружения со способом получения обновлений (LONG_POLLING или WEBHOOK).
+     */
+    public static final String UPDATE_MODE_ENV = "CHATLAS_UPDATE_MODE";
+
+    /**
+     * Переменная окружения с публичным адресом вебхука для {@code setWebhook}.
+     * Если не задана, вебхук должен быть зарегистрирован заранее (например, прокси перед ботом).
+     */
+    public static final String WEBHOOK_URL_ENV = "CHATLAS_WEBHOOK_URL";
+
+    /**
+     * Порт встроенного HTTP-сервера вебхука.
+     */
+    public static final int WEBHOOK_PORT = 8080;
+
+    /**
+     * Переменная окружения для переопределения порта вебхука.
+     */
+    public static final String WEBHOOK_PORT_ENV = "CHATLAS_WEBHOOK_PORT";
+
+    /**
+     * Путь, на который Telegram присылает обновления.
+     */
+    public static final String WEBHOOK_PATH = "/telegram/webhook";
+
+    /**
+     * Переменная окружения для переопределения пути вебхука.
+     */
+    public static final String WEBHOOK_PATH_ENV = "CHATLAS_WEBHOOK_PATH";
+
+    /**
+     * Переменная окружения с секретом вебхука: Telegram присылает его в заголовке каждого запроса.
+     * В режиме WEBHOOK обязательна, если не задан {@link #WEBHOOK_URL_ENV}: иначе секрет генерируется при запуске.
+     */
+    public static final String WEBHOOK_SECRET_ENV = "CHATLAS_WEBHOOK_SECRET";
+
+    /**
+     * Наибольший размер тела запроса вебхука: обновления Telegram занимают единицы килобайт.
+     */
+    public static final long WEBHOOK_MAX_BODY_BYTES = 1024 * 1024;
+
+    /**
+     * Переменная окружения для переопределения наибольшего размера тела запроса вебхука.
+     */
+    public static final String WEBHOOK_MAX_BODY_BYTES_ENV = "CHATLAS_WEBHOOK_MAX_BODY_BYTES";
+
+    /**
+     * Переменная окружения с режимом обработки обновлений (SINGLE_THREAD или PER_CHAT).
+     */
+    public static final String UPDATE_CONSUMER_MODE_ENV = "CHATLAS_UPDATE_CONSUMER_MODE";
+
+    /**
+     * Количество одновременно выполняемых тяжелых для процессора этапов (разбор, анализ, построение файла).
+     */
+    public static final int CPU_STAGE_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Переменная окружения для переопределения количества одновременных тяжелых этапов.
+     */
+    public static final String CPU_STAGE_PARALLELISM_ENV = "CHATLAS_CPU_STAGE_PARALLELISM";
+
+    /**
+     * Переменная окружения с каталогом контрольных точек для инкрементального анализа повторных экспортов.
+     * Если не задана, контрольные точки не сохраняются и каждый файл анализируется целиком.
+     */
+    public static final String CHECKPOINT_DIR_ENV = "CHATLAS_CHECKPOINT_DIR";
+
+    /**
+     * Максимальный суммарный объем (в байтах) кэша готовых отчетов по одинаковым файлам.
+     */
+    public static final long REPORT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Переменная окружения для переопределения объема кэша отчетов (0 - не кэшировать).
+     */
+    public static final String REPORT_CACHE_MAX_BYTES_ENV = "CHATLAS_REPORT_CACHE_MAX_BYTES";
+
+    /**
+     * Сколько самых активных авторов и самых частых упоминаний попадает в результат приближенного режима (/mode approx).
+     */
+    public static final int APPROXIMATE_TOP_N = 50;
+
+    /**
+     * Переменная окружения для переопределения размера топа приближенного режима.
+     */
+    public static final String APPROXIMATE_TOP_N_ENV = "CHATLAS_APPROXIMATE_TOP_N";
+
+    /**
+     * Количество счетчиков поиска частых элементов в приближенном режиме.
+     * Определяет память анализа (не зависит от размера чата) и точность счетчиков топа.
+     */
+    public static final int APPROXIMATE_SKETCH_CAPACITY = 10_000;
+
+    /**
+     * Переменная окружения для переопределения количества счетчиков приближенного режима.
+     */
+    public static final String APPROXIMATE_SKETCH_CAPACITY_ENV = "CHATLAS_APPROXIMATE_SKETCH_CAPACITY";
+
+    /**
+     * Переменная окружения со списком дополнительных типов сущностей через запятую
+     * (например, {@code hashtag,url,text_link}). Упоминания анализируются всегда, остальные типы по умолчанию выключены.
+     */
+    public static final String ENTITY_TYPES_ENV = "CHATLAS_ENTITY_TYPES";
+
     private BotConfig() {
         // Утильный класс.
     }
@@ -0,0 +1,53 @@
+package ru.hackathon.chatlas.domain;
+
+import java.util.List;
+
+/**
+ * Сводка приближенного анализа: оценки количества уникальных участников и упоминаний
+ * и самые частые из них вместе с границами погрешности.
+ *
+ * @param participantsEstimate оценка количества уникальных участников.
+ * @param mentionsEstimate оценка количества уникальных упоминаний.
+ * @param relativeStandardError относительная стандартная ошибка оценок количества
+ * (с вероятностью ~95% оценка отличается от точного значения не больше чем на две такие ошибки).
+ * @param topParticipants самые активные авторы по убыванию количества сообщений.
+ * @param topMentions самые частые упоминания по убыванию количества.
+ */
+public record ApproximateSummary(
+        long participantsEstimate,
+        long mentionsEstimate,
+        double relativeStandardError,
+        List<TopEntry> topParticipants,
+        List<TopEntry> topMentions)
+{
+
+    public ApproximateSummary {
+        if (topParticipants == null) {
+            throw new IllegalArgumentException("topParticipants cannot be null");
+        }
+        if (topMentions == null) {
+            throw new IllegalArgumentException("topMentions cannot be null");
+        }
+        topParticipants = List.copyOf(topParticipants);
+        topMentions = List.copyOf(topMentions);
+    }
+
+    /**
+     * Частый элемент с приближенным счетчиком.
+     * Точное количество лежит в диапазоне [{@code count - error}, {@code count}].
+     *
+     * @param id fromId участника или текст упоминания.
+     * @param label имя участника или текст упоминания.
+     * @param count оценка количества сверху.
+     * @param error максимальное завышение оценки.
+     */
+    public record TopEntry(String id, String label, long count, long error) {
+
+        /**
+         * @return гарантированное (минимальное) количество.
+         */
+        public long guaranteedCount() {
+            return count - error;
+        }
+    }
+}
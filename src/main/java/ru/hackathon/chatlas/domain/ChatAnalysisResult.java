@@ -1,11 +1,28 @@
 package ru.hackathon.chatlas.domain;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Результат анализа чата: уникальные участники и упоминания.
+ * В приближенном режиме наборы содержат только самые частые элементы,
+ * а количества и границы погрешности берутся из {@link #approximation()}.
+ *
+ * @param entities уникальные значения дополнительных текстовых сущностей по типу (hashtag, url и т.д.);
+ * в карте только включенные типы.
+ * @param activity активность участников по fromId (пустая карта, если не собиралась).
+ * @param approximation сводка приближенного анализа (null - результат точный).
  */
-public record ChatAnalysisResult(Set<Participant> participants, Set<Mention> mentions) {
+public record ChatAnalysisResult(
+        Set<Participant> participants,
+        Set<Mention> mentions,
+        Map<String, Set<String>> entities,
+        Map<String, ParticipantActivity> activity,
+        ApproximateSummary approximation)
+{
 
     public ChatAnalysisResult {
         if (participants == null) {
@@ -14,26 +31,87 @@ public record ChatAnalysisResult(Set<Participant> participants, Set<Mention> men
         if (mentions == null) {
             throw new IllegalArgumentException("mentions cannot be null");
         }
+        if (entities == null) {
+            entities = Map.of();
+        }
+        if (activity == null) {
+            activity = Map.of();
+        }
+    }
+
+    /**
+     * Пустой точный результат: нет ни участников, ни упоминаний.
+     */
+    public static ChatAnalysisResult empty() {
+        return new ChatAnalysisResult(Set.of(), Set.of(), Map.of(), Map.of(), null);
+    }
+
+    /**
+     * Объединить результаты анализа нескольких файлов с дедупликацией
+     * по {@link Participant#fromId()}, {@link Mention#mentionText()} и значениям дополнительных сущностей.
+     * При совпадении fromId остается имя из более раннего результата в списке, а активность складывается.
+     *
+     * @param results результаты анализа в порядке файлов.
+     * @return объединенный результат.
+     */
+    public static ChatAnalysisResult merge(List<ChatAnalysisResult> results) {
+        int participantsCount = 0;
+        int mentionsCount = 0;
+        for (ChatAnalysisResult result : results) {
+            if (result.isApproximate()) {
+                throw new IllegalArgumentException("Approximate results cannot be merged");
+            }
+            participantsCount += result.participants().size();
+            mentionsCount += result.mentions().size();
+        }
+
+        Set<Participant> participants = HashSet.newHashSet(participantsCount);
+        Set<Mention> mentions = HashSet.newHashSet(mentionsCount);
+        Map<String, Set<String>> entities = new HashMap<>();
+        Map<String, ParticipantActivity> activity = HashMap.newHashMap(participantsCount);
+        for (ChatAnalysisResult result : results) {
+            participants.addAll(result.participants());
+            mentions.addAll(result.mentions());
+            result.entities().forEach((type, values) ->
+                    entities.computeIfAbsent(type, key -> new HashSet<>()).addAll(values));
+            result.activity().forEach((fromId, participantActivity) ->
+                    activity.merge(fromId, participantActivity, ParticipantActivity::merge));
+        }
+        return new ChatAnalysisResult(participants, mentions, entities, activity, null);
+    }
+
+    /**
+     * @return true, если результат получен в приближенном режиме.
+     */
+    public boolean isApproximate() {
+        return approximation != null;
+    }
+
+    /**
+     * Получить количество уникальных участников (в приближенном режиме - оценку).
+     */
+    public long getParticipantsCount() {
+        return approximation != null ? approximation.participantsEstimate() : participants.size();
     }
 
     /**
-     * Получить количество уникальных участников.
+     * Получить количество уникальных упоминаний (в приближенном режиме - оценку).
      */
-    public int getParticipantsCount() {
-        return participants.size();
+    public long getMentionsCount() {
+        return approximation != null ? approximation.mentionsEstimate() : mentions.size();
     }
 
     /**
-     * Получить количество уникальных упоминаний.
+     * @return уникальные значения сущностей типа (пустой набор, если тип не анализировался).
      */
-    public int getMentionsCount() {
-        return mentions.size();
+    public Set<String> getEntities(String type) {
+        return entities.getOrDefault(type, Set.of());
     }
 
     /**
      * Получить общее количество уникальных сущностей (участники + упоминания).
      */
-    public int getTotalCount() {
+    public long getTotalCount() {
         return getParticipantsCount() + getMentionsCount();
     }
 }
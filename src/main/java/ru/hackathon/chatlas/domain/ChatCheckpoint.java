@@ -0,0 +1,22 @@
+package ru.hackathon.chatlas.domain;
+
+/**
+ * Контрольная точка анализа чата: диапазон уже учтенных id сообщений
+ * и накопленные по ним участники и упоминания.
+ *
+ * @param chatId идентификатор чата из экспорта.
+ * @param firstMessageId наименьший учтенный id сообщения.
+ * @param lastMessageId наибольший учтенный id сообщения.
+ * @param result накопленный результат анализа.
+ */
+public record ChatCheckpoint(long chatId, long firstMessageId, long lastMessageId, ChatAnalysisResult result) {
+
+    public ChatCheckpoint {
+        if (firstMessageId > lastMessageId) {
+            throw new IllegalArgumentException("firstMessageId cannot be greater than lastMessageId");
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("result cannot be null");
+        }
+    }
+}
@@ -26,14 +26,41 @@ public class ChatExport {
      */
     @Data
     public static class Message {
+        /**
+         * Идентификатор сообщения в чате (в экспорте возрастает от старых сообщений к новым).
+         */
+        private Long id;
+
         private String from;
 
         @JsonProperty("from_id")
         private String fromId;
 
+        /**
+         * Время отправки в секундах Unix (0 - неизвестно).
+         * Заполняется из {@code date_unixtime}, а для старых экспортов без него - из {@code date}.
+         */
+        private long dateUnixtime;
+
         @JsonProperty("text_entities")
         private List<TextEntity> textEntities;
 
+        @JsonProperty("date_unixtime")
+        void readDateUnixtime(String value) {
+            long parsed = MessageDates.parseUnixtime(value);
+            if (parsed != 0) {
+                dateUnixtime = parsed;
+            }
+        }
+
+        @JsonProperty("date")
+        void readDate(String value) {
+            // date_unixtime точнее: date используется, только если его нет (порядок полей не гарантирован).
+            if (dateUnixtime == 0) {
+                dateUnixtime = MessageDates.parseLocalDateTime(value);
+            }
+        }
+
         /**
          * Получить текст сообщения из textEntities.
          * Используется для удобства, основная логика работы с textEntities.
@@ -57,5 +84,7 @@ public class ChatExport {
     public static class TextEntity {
         private String type;
         private String text;
+        // Адрес ссылки (для text_link, у которой text - только видимый текст).
+        private String href;
     }
 }
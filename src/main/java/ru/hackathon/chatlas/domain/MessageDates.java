@@ -0,0 +1,99 @@
+package ru.hackathon.chatlas.domain;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Разбор дат сообщений экспорта Telegram в секунды Unix без промежуточных строк и объектов даты.
+ * Поле {@code date_unixtime} (строка с числом секунд) точнее: {@code date} записано в локальном времени
+ * экспортировавшего без часового пояса и считается UTC. Оно используется только для старых экспортов
+ * без {@code date_unixtime}.
+ */
+public final class MessageDates {
+
+    /**
+     * Длина {@code date} в формате {@code yyyy-MM-ddTHH:mm:ss}.
+     */
+    private static final int LOCAL_DATE_TIME_LENGTH = 19;
+
+    private static final int MAX_UNIXTIME_DIGITS = 18;
+
+    private MessageDates() {
+        // Утильный класс.
+    }
+
+    /**
+     * @return секунды Unix или 0, если значение не является неотрицательным целым числом.
+     */
+    public static long parseUnixtime(char[] chars, int offset, int length) {
+        if (length == 0 || length > MAX_UNIXTIME_DIGITS) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @return секунды Unix (дата считается UTC) или 0, если значение не в формате {@code yyyy-MM-ddTHH:mm:ss}.
+     */
+    public static long parseLocalDateTime(char[] chars, int offset, int length) {
+        if (length != LOCAL_DATE_TIME_LENGTH
+                || chars[offset + 4] != '-' || chars[offset + 7] != '-' || chars[offset + 10] != 'T'
+                || chars[offset + 13] != ':' || chars[offset + 16] != ':')
+        {
+            return 0;
+        }
+        int year = digits(chars, offset, 4);
+        int month = digits(chars, offset + 5, 2);
+        int day = digits(chars, offset + 8, 2);
+        int hour = digits(chars, offset + 11, 2);
+        int minute = digits(chars, offset + 14, 2);
+        int second = digits(chars, offset + 17, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59)
+        {
+            return 0;
+        }
+        try {
+            return LocalDate.of(year, month, day).toEpochDay() * 86_400 + hour * 3_600L + minute * 60L + second;
+        } catch (DateTimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return секунды Unix или 0, если значение null или не является датой.
+     */
+    public static long parseUnixtime(String value) {
+        return value == null ? 0 : parseUnixtime(value.toCharArray(), 0, value.length());
+    }
+
+    /**
+     * @return секунды Unix (дата считается UTC) или 0, если значение null или не является датой.
+     */
+    public static long parseLocalDateTime(String value) {
+        return value == null ? 0 : parseLocalDateTime(value.toCharArray(), 0, value.length());
+    }
+
+    /**
+     * @return число из {@code count} десятичных цифр или -1, если среди символов есть не цифра.
+     */
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.hackathon.chatlas.domain;
+
+import java.util.Comparator;
+
+/**
+ * Активность участника чата.
+ *
+ * @param fromId идентификатор участника.
+ * @param displayName имя участника.
+ * @param messageCount количество сообщений.
+ * @param mentionCount количество упоминаний (@username) в сообщениях участника.
+ * @param firstMessageDate время первого сообщения в секундах Unix (0 - неизвестно).
+ * @param lastMessageDate время последнего сообщения в секундах Unix (0 - неизвестно).
+ */
+public record ParticipantActivity(
+        String fromId,
+        String displayName,
+        long messageCount,
+        long mentionCount,
+        long firstMessageDate,
+        long lastMessageDate)
+{
+
+    /**
+     * Порядок по активности: больше сообщений - раньше, при равенстве - по fromId.
+     */
+    public static final Comparator<ParticipantActivity> BY_ACTIVITY =
+            Comparator.comparingLong(ParticipantActivity::messageCount).reversed()
+                    .thenComparing(ParticipantActivity::fromId);
+
+    public ParticipantActivity {
+        if (fromId == null || fromId.isBlank()) {
+            throw new IllegalArgumentException("fromId cannot be null or blank");
+        }
+        if (displayName == null) {
+            throw new IllegalArgumentException("displayName cannot be null");
+        }
+    }
+
+    /**
+     * Сложить активность того же участника из другой части чата (имя остается из этой).
+     */
+    public ParticipantActivity merge(ParticipantActivity other) {
+        return new ParticipantActivity(
+                fromId,
+                displayName,
+                messageCount + other.messageCount,
+                mentionCount + other.mentionCount,
+                minDate(firstMessageDate, other.firstMessageDate),
+                Math.max(lastMessageDate, other.lastMessageDate));
+    }
+
+    /**
+     * Минимум из известных дат (0 - неизвестная дата, она не учитывается).
+     */
+    public static long minDate(long first, long second) {
+        if (first == 0) {
+            return second;
+        }
+        return second == 0 ? first : Math.min(first, second);
+    }
+}
@@ -1,17 +1,135 @@
 package ru.hackathon.chatlas.domain;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
 /**
- * Представление сырого файла экспорта чата в виде строки JSON.
+ * Представление сырого файла экспорта чата.
+ * Содержимое хранится в виде источника байт UTF-8 (массив, буфер, поток или файл),
+ * чтобы парсер читал его напрямую, без промежуточной строки.
  * Используется для передачи между слоями до парсинга.
  */
-public record RawChatFile(String fileName, String jsonContent) {
+public record RawChatFile(String fileName, Content content) {
 
     public RawChatFile {
         if (fileName == null || fileName.isBlank()) {
             throw new IllegalArgumentException("fileName cannot be null or blank");
         }
-        if (jsonContent == null) {
-            throw new IllegalArgumentException("jsonContent cannot be null");
+        if (content == null) {
+            throw new IllegalArgumentException("content cannot be null");
+        }
+    }
+
+    /**
+     * Создать файл из строки JSON (удобно для тестов и небольших данных).
+     */
+    public RawChatFile(String fileName, String jsonContent) {
+        this(fileName, new StringContent(jsonContent));
+    }
+
+    /**
+     * Создать файл из массива байт UTF-8.
+     */
+    public RawChatFile(String fileName, byte[] bytes) {
+        this(fileName, new BytesContent(bytes, 0, bytes == null ? 0 : bytes.length));
+    }
+
+    /**
+     * Создать файл из части массива байт UTF-8 (без копирования).
+     */
+    public static RawChatFile ofBytes(String fileName, byte[] bytes, int offset, int length) {
+        return new RawChatFile(fileName, new BytesContent(bytes, offset, length));
+    }
+
+    /**
+     * Создать файл из буфера байт UTF-8 (например, отображенного в память файла).
+     * Читаются байты от position до limit, сам буфер не изменяется.
+     */
+    public static RawChatFile ofBuffer(String fileName, ByteBuffer buffer) {
+        return new RawChatFile(fileName, new BufferContent(buffer));
+    }
+
+    /**
+     * Создать файл из потока байт UTF-8. Поток читается один раз и закрывается парсером.
+     */
+    public static RawChatFile ofStream(String fileName, InputStream inputStream) {
+        return new RawChatFile(fileName, new StreamContent(inputStream));
+    }
+
+    /**
+     * Создать файл из файла на диске.
+     */
+    public static RawChatFile ofPath(String fileName, Path path) {
+        return new RawChatFile(fileName, new PathContent(path));
+    }
+
+    /**
+     * Источник содержимого файла экспорта.
+     */
+    public sealed interface Content permits StringContent, BytesContent, BufferContent, StreamContent, PathContent {
+    }
+
+    /**
+     * Содержимое в виде строки JSON.
+     */
+    public record StringContent(String json) implements Content {
+        public StringContent {
+            if (json == null) {
+                throw new IllegalArgumentException("jsonContent cannot be null");
+            }
+        }
+    }
+
+    /**
+     * Содержимое в виде части массива байт UTF-8.
+     */
+    public record BytesContent(byte[] bytes, int offset, int length) implements Content {
+        public BytesContent {
+            if (bytes == null) {
+                throw new IllegalArgumentException("bytes cannot be null");
+            }
+            if (offset < 0 || length < 0 || offset + length > bytes.length) {
+                throw new IllegalArgumentException("Invalid byte range: offset=" + offset + ", length=" + length);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "BytesContent[length=" + length + "]";
+        }
+    }
+
+    /**
+     * Содержимое в виде буфера байт UTF-8 (в том числе вне кучи, например {@link java.nio.MappedByteBuffer}).
+     */
+    public record BufferContent(ByteBuffer buffer) implements Content {
+        public BufferContent {
+            if (buffer == null) {
+                throw new IllegalArgumentException("buffer cannot be null");
+            }
+        }
+    }
+
+    /**
+     * Содержимое в виде потока байт UTF-8.
+     */
+    public record StreamContent(InputStream inputStream) implements Content {
+        public StreamContent {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("inputStream cannot be null");
+            }
+        }
+    }
+
+    /**
+     * Содержимое в виде файла на диске.
+     */
+    public record PathContent(Path path) implements Content {
+        public PathContent {
+            if (path == null) {
+                throw new IllegalArgumentException("path cannot be null");
+            }
         }
     }
 }
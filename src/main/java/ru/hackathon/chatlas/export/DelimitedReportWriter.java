@@ -0,0 +1,308 @@
+package ru.hackathon.chatlas.export;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Запись отчета в CSV (RFC 4180) или TSV, по желанию со сжатием gzip.
+ * Листы отчета идут в файле подряд разделами: строка с названием листа, строка заголовков, строки данных;
+ * разделы отделены пустой строкой. Файл начинается с BOM UTF-8, чтобы Excel правильно показывал кириллицу.
+ * Символы кодируются в UTF-8 прямо в переиспользуемый буфер байтов, без промежуточных строк и без
+ * {@link java.io.Writer}: память на запись не зависит от количества строк.
+ * В TSV экранирования нет, поэтому табуляции и переводы строк внутри значений заменяются пробелами.
+ * Текст, который табличный редактор принял бы за формулу (начинается с {@code = + - @}, табуляции
+ * или возврата каретки), предваряется апострофом: имена участников приходят из чужого экспорта.
+ * Упоминание вида {@code @username} (после {@code @} только латиница, цифры и {@code _}) формулой быть не может
+ * и пишется как есть, так же как в Excel.
+ */
+final class DelimitedReportWriter implements WorkbookWriter, RowWriter {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Наибольшая длина UTF-8 одного кодового пункта: столько места должно оставаться в буфере перед записью символа.
+     */
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final OutputStream output;
+    private final byte separator;
+    private final boolean quoted;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private final byte[] cachedDate = new byte[10];
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private int position;
+    private boolean rowStarted;
+    private boolean firstCell;
+
+    /**
+     * @param output поток файла (не закрывается).
+     * @param separator разделитель: ',' для CSV (значения с разделителем, кавычками и переводами строк
+     * берутся в кавычки) или '\t' для TSV.
+     * @param gzip сжимать ли файл gzip.
+     */
+    DelimitedReportWriter(OutputStream output, char separator, boolean gzip) throws IOException {
+        // Закрытие сжатия не должно закрывать поток вызывающего.
+        OutputStream target = new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        this.output = gzip ? new GZIPOutputStream(target, BUFFER_BYTES) : target;
+        this.separator = (byte) separator;
+        this.quoted = separator != '\t';
+    }
+
+    @Override
+    public void write(List<ReportSheet> sheets) throws IOException {
+        // BOM: без него Excel открывает UTF-8 как однобайтовую кодировку и портит кириллицу.
+        put((byte) 0xEF);
+        put((byte) 0xBB);
+        put((byte) 0xBF);
+        for (int i = 0; i < sheets.size(); i++) {
+            ReportSheet sheet = sheets.get(i);
+            if (i > 0) {
+                // Пустая строка между разделами.
+                startRow();
+            }
+            startRow();
+            text(sheet.name());
+            startRow();
+            for (String header : sheet.headers()) {
+                text(header);
+            }
+            sheet.body().writeRows(this);
+        }
+        endRow();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        output.close();
+    }
+
+    @Override
+    public void startRow() throws IOException {
+        endRow();
+        rowStarted = true;
+        firstCell = true;
+    }
+
+    @Override
+    public void text(String value) throws IOException {
+        startCell();
+        boolean formulaLike = isFormulaLike(value);
+        if (quoted && (formulaLike || needsQuotes(value))) {
+            put((byte) '"');
+            if (formulaLike) {
+                put((byte) '\'');
+            }
+            writeChars(value, true);
+            put((byte) '"');
+        } else {
+            if (formulaLike) {
+                put((byte) '\'');
+            }
+            writeChars(value, false);
+        }
+    }
+
+    @Override
+    public void number(long value) throws IOException {
+        startCell();
+        if (value < 0) {
+            put((byte) '-');
+            // Long.MIN_VALUE в отчетах не встречается: модуль остальных значений помещается в long.
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    @Override
+    public void percent(double value) throws IOException {
+        startCell();
+        writeChars(String.format(Locale.ROOT, "%.2f%%", value * 100), false);
+    }
+
+    @Override
+    public void date(long epochDay) throws IOException {
+        startCell();
+        // Дата экспорта одна на все строки: она форматируется один раз.
+        if (epochDay != cachedEpochDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            putDigits(cachedDate, 0, date.getYear(), 4);
+            cachedDate[4] = '-';
+            putDigits(cachedDate, 5, date.getMonthValue(), 2);
+            cachedDate[7] = '-';
+            putDigits(cachedDate, 8, date.getDayOfMonth(), 2);
+            cachedEpochDay = epochDay;
+        }
+        ensureCapacity(cachedDate.length);
+        System.arraycopy(cachedDate, 0, buffer, position, cachedDate.length);
+        position += cachedDate.length;
+    }
+
+    @Override
+    public void dateTime(long epochSeconds) throws IOException {
+        startCell();
+        if (epochSeconds == 0) {
+            return;
+        }
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC);
+        ensureCapacity(19);
+        putDigits(buffer, position, dateTime.getYear(), 4);
+        buffer[position + 4] = '-';
+        putDigits(buffer, position + 5, dateTime.getMonthValue(), 2);
+        buffer[position + 7] = '-';
+        putDigits(buffer, position + 8, dateTime.getDayOfMonth(), 2);
+        buffer[position + 10] = ' ';
+        putDigits(buffer, position + 11, dateTime.getHour(), 2);
+        buffer[position + 13] = ':';
+        putDigits(buffer, position + 14, dateTime.getMinute(), 2);
+        buffer[position + 16] = ':';
+        putDigits(buffer, position + 17, dateTime.getSecond(), 2);
+        position += 19;
+    }
+
+    private void startCell() throws IOException {
+        if (!firstCell) {
+            put(separator);
+        }
+        firstCell = false;
+    }
+
+    private void endRow() throws IOException {
+        if (rowStarted) {
+            // RFC 4180 требует CRLF; для TSV он тоже безопасен.
+            ensureCapacity(2);
+            buffer[position++] = '\r';
+            buffer[position++] = '\n';
+            rowStarted = false;
+        }
+    }
+
+    private static boolean isFormulaLike(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (first == '@') {
+            return !isUsername(value);
+        }
+        return first == '=' || first == '+' || first == '-' || first == '\t' || first == '\r';
+    }
+
+    /**
+     * @return true, если после {@code @} идут только латинские буквы, цифры и {@code _} (как в username Telegram).
+     */
+    private static boolean isUsername(String value) {
+        if (value.length() < 2) {
+            return false;
+        }
+        for (int i = 1; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == separator || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Закодировать строку в UTF-8 прямо в буфер.
+     *
+     * @param inQuotes значение в кавычках: кавычки удваиваются; иначе в TSV табуляции и переводы строк
+     * заменяются пробелами.
+     */
+    private void writeChars(String value, boolean inQuotes) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (position > BUFFER_BYTES - MAX_CHAR_BYTES - 1) {
+                flushBuffer();
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (inQuotes && c == '"') {
+                    buffer[position++] = '"';
+                } else if (!quoted && (c == '\t' || c == '\n' || c == '\r')) {
+                    c = ' ';
+                }
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Непарный суррогат не кодируется в UTF-8: заменяется '?', как в String.getBytes.
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private static void putDigits(byte[] target, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private void put(byte value) throws IOException {
+        ensureCapacity(1);
+        buffer[position++] = value;
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (position + bytes > BUFFER_BYTES) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            output.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ru.hackathon.chatlas.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Запись одной XML-части книги .xlsx: служебных частей и листов.
+ * Экранирование XML пишет отрезки исходной строки прямо в буфер без промежуточных строк,
+ * числа пишутся через буфер цифр. Значения ячеек пишутся inline, заголовки - ссылками на общие строки.
+ */
+final class OoxmlPartWriter implements RowWriter {
+
+    static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    /**
+     * Номер дня 1970-01-01 в системе дат Excel 1900.
+     */
+    private static final long EXCEL_EPOCH_DAY = 25_569;
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    /**
+     * Дробная часть даты-времени пишется с 10 знаками: погрешность меньше 10 мкс, секунды читаются точно.
+     */
+    private static final int FRACTION_DIGITS = 10;
+    private static final long FRACTION_SCALE = 10_000_000_000L;
+
+    // Индексы стилей ячеек в styles.xml (cellXfs).
+    static final int HEADER_STYLE = 1;
+    static final int DATE_STYLE = 2;
+    static final int DATE_TIME_STYLE = 3;
+    static final int PERCENT_STYLE = 4;
+
+    private final Writer writer;
+    private final char[] digits = new char[20];
+    private boolean rowOpen;
+    private int rowIndex;
+
+    /**
+     * @param writer буферизованный поток символов части (не закрывается).
+     */
+    OoxmlPartWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Записать лист целиком.
+     *
+     * @param sheet лист.
+     * @param headerStrings индексы заголовков колонок в таблице общих строк.
+     */
+    void writeSheet(ReportSheet sheet, int[] headerStrings) throws IOException {
+        raw(XML_DECLARATION);
+        raw("<worksheet xmlns=\"" + MAIN_NS + "\">");
+        raw("<sheetViews><sheetView workbookViewId=\"0\">"
+                + "<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>"
+                + "</sheetView></sheetViews>");
+        raw("<cols>");
+        for (int i = 0; i < headerStrings.length; i++) {
+            raw("<col min=\"");
+            rawNumber(i + 1);
+            raw("\" max=\"");
+            rawNumber(i + 1);
+            raw("\" width=\"");
+            rawNumber(WorkbookFormats.columnWidth(i));
+            raw("\" customWidth=\"1\"/>");
+        }
+        raw("</cols><sheetData>");
+        rowIndex = 0;
+
+        startRow();
+        for (int headerString : headerStrings) {
+            raw("<c t=\"s\" s=\"" + HEADER_STYLE + "\"><v>");
+            rawNumber(headerString);
+            raw("</v></c>");
+        }
+        sheet.body().writeRows(this);
+        if (rowOpen) {
+            raw("</row>");
+            rowOpen = false;
+        }
+        raw("</sheetData></worksheet>");
+    }
+
+    @Override
+    public void startRow() throws IOException {
+        if (rowOpen) {
+            raw("</row>");
+        }
+        raw("<row r=\"");
+        rawNumber(++rowIndex);
+        raw("\">");
+        rowOpen = true;
+    }
+
+    @Override
+    public void text(String value) throws IOException {
+        raw("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        escaped(value);
+        raw("</t></is></c>");
+    }
+
+    @Override
+    public void number(long value) throws IOException {
+        raw("<c><v>");
+        rawNumber(value);
+        raw("</v></c>");
+    }
+
+    @Override
+    public void percent(double value) throws IOException {
+        raw("<c s=\"" + PERCENT_STYLE + "\"><v>");
+        raw(Double.toString(value));
+        raw("</v></c>");
+    }
+
+    @Override
+    public void date(long epochDay) throws IOException {
+        raw("<c s=\"" + DATE_STYLE + "\"><v>");
+        rawNumber(epochDay + EXCEL_EPOCH_DAY);
+        raw("</v></c>");
+    }
+
+    @Override
+    public void dateTime(long epochSeconds) throws IOException {
+        if (epochSeconds == 0) {
+            raw("<c/>");
+            return;
+        }
+        long seconds = Math.floorMod(epochSeconds, SECONDS_PER_DAY);
+        raw("<c s=\"" + DATE_TIME_STYLE + "\"><v>");
+        rawNumber(Math.floorDiv(epochSeconds, SECONDS_PER_DAY) + EXCEL_EPOCH_DAY);
+        if (seconds != 0) {
+            // Доля суток с округлением: секунды < 86400, поэтому результат меньше FRACTION_SCALE.
+            long fraction = (seconds * FRACTION_SCALE + SECONDS_PER_DAY / 2) / SECONDS_PER_DAY;
+            writer.write('.');
+            rawFraction(fraction);
+        }
+        raw("</v></c>");
+    }
+
+    /**
+     * Записать разметку как есть.
+     */
+    void raw(String markup) throws IOException {
+        writer.write(markup);
+    }
+
+    /**
+     * Записать строку с экранированием XML: отрезки без спецсимволов пишутся в буфер как есть.
+     * Управляющие символы, недопустимые в XML 1.0, пропускаются.
+     */
+    void escaped(String value) throws IOException {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '&' -> replacement = "&amp;";
+                case '<' -> replacement = "&lt;";
+                case '>' -> replacement = "&gt;";
+                case '"' -> replacement = "&quot;";
+                default -> {
+                    if ((c >= 0x20 && c < 0xFFFE) || c == '\t' || c == '\n' || c == '\r') {
+                        continue;
+                    }
+                    replacement = "";
+                }
+            }
+            writer.write(value, start, i - start);
+            writer.write(replacement);
+            start = i + 1;
+        }
+        writer.write(value, start, length - start);
+    }
+
+    /**
+     * Записать десятичное число через буфер цифр (без промежуточной строки).
+     */
+    void rawNumber(long value) throws IOException {
+        if (value < 0) {
+            writer.write('-');
+            // Long.MIN_VALUE в отчетах не встречается: модуль остальных значений помещается в long.
+            value = -value;
+        }
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        writer.write(digits, position, digits.length - position);
+    }
+
+    /**
+     * Записать дробную часть: {@link #FRACTION_DIGITS} цифр с ведущими нулями.
+     */
+    private void rawFraction(long value) throws IOException {
+        for (int position = FRACTION_DIGITS - 1; position >= 0; position--) {
+            digits[position] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        writer.write(digits, 0, FRACTION_DIGITS);
+    }
+}
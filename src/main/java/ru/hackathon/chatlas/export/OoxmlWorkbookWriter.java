@@ -0,0 +1,284 @@
+package ru.hackathon.chatlas.export;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Запись минимальной книги .xlsx (Office Open XML) без Apache POI и без DOM.
+ * Последовательно части пишутся потоком в {@link ZipOutputStream}: листы - строка за строкой,
+ * служебные части (книга, связи, стили, общие строки, типы содержимого) - после листов.
+ * Значения ячеек пишутся inline, поэтому память не зависит от количества строк. В таблицу общих строк
+ * попадают только заголовки колонок (они повторяются на разных листах).
+ * Если задан {@link Executor}, листы форматируются и сжимаются одновременно, каждый в свой буфер,
+ * и склеиваются в архив {@link PrecompressedZipWriter}: память растет до размера сжатых листов.
+ */
+final class OoxmlWorkbookWriter implements WorkbookWriter {
+
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String DOCUMENT_RELATIONSHIPS_NS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String CONTENT_TYPE_PREFIX = "application/vnd.openxmlformats-officedocument.spreadsheetml.";
+
+    private final OutputStream output;
+    private final Executor executor;
+    private final Map<String, Integer> sharedStrings = new LinkedHashMap<>();
+    private int sharedStringReferences;
+    private ZipOutputStream zip;
+
+    /**
+     * @param output поток файла .xlsx (не закрывается).
+     * @param executor исполнитель для одновременной записи листов (null - последовательно).
+     */
+    OoxmlWorkbookWriter(OutputStream output, Executor executor) {
+        this.output = output;
+        this.executor = executor;
+    }
+
+    @Override
+    public void write(List<ReportSheet> sheets) throws IOException {
+        List<int[]> headerStrings = new ArrayList<>(sheets.size());
+        for (ReportSheet sheet : sheets) {
+            int[] indexes = new int[sheet.headers().length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = sharedString(sheet.headers()[i]);
+            }
+            headerStrings.add(indexes);
+        }
+
+        if (executor == null) {
+            writeSequentially(sheets, headerStrings);
+        } else {
+            writeConcurrently(sheets, headerStrings);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zip != null) {
+            zip.close();
+        }
+    }
+
+    private void writeSequentially(List<ReportSheet> sheets, List<int[]> headerStrings) throws IOException {
+        // Закрытие архива не должно закрывать поток вызывающего.
+        zip = new ZipOutputStream(new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+        Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+        OoxmlPartWriter xml = new OoxmlPartWriter(writer);
+        for (int i = 0; i < sheets.size(); i++) {
+            zip.putNextEntry(new ZipEntry(sheetPartName(i + 1)));
+            xml.writeSheet(sheets.get(i), headerStrings.get(i));
+            writer.flush();
+        }
+        for (Map.Entry<String, PrecompressedZipWriter.Content> part : serviceParts(sheets).entrySet()) {
+            zip.putNextEntry(new ZipEntry(part.getKey()));
+            part.getValue().write(writer);
+            writer.flush();
+        }
+        zip.finish();
+    }
+
+    private void writeConcurrently(List<ReportSheet> sheets, List<int[]> headerStrings) throws IOException {
+        List<CompletableFuture<PrecompressedZipWriter.Part>> sheetParts = new ArrayList<>(sheets.size());
+        for (int i = 0; i < sheets.size(); i++) {
+            ReportSheet sheet = sheets.get(i);
+            int[] indexes = headerStrings.get(i);
+            sheetParts.add(CompletableFuture.supplyAsync(
+                    () -> deflate(writer -> new OoxmlPartWriter(writer).writeSheet(sheet, indexes)), executor));
+        }
+
+        PrecompressedZipWriter archive = new PrecompressedZipWriter(output);
+        for (int i = 0; i < sheetParts.size(); i++) {
+            archive.add(sheetPartName(i + 1), join(sheetParts.get(i)));
+        }
+        for (Map.Entry<String, PrecompressedZipWriter.Content> part : serviceParts(sheets).entrySet()) {
+            archive.add(part.getKey(), deflate(part.getValue()));
+        }
+        archive.finish();
+    }
+
+    private static PrecompressedZipWriter.Part deflate(PrecompressedZipWriter.Content content) {
+        try {
+            return PrecompressedZipWriter.Part.deflate(writer -> {
+                Writer buffered = new BufferedWriter(writer);
+                content.write(buffered);
+                buffered.flush();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static PrecompressedZipWriter.Part join(CompletableFuture<PrecompressedZipWriter.Part> future)
+            throws IOException
+    {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String sheetPartName(int sheetNumber) {
+        return "xl/worksheets/sheet" + sheetNumber + ".xml";
+    }
+
+    /**
+     * Служебные части пакета в порядке записи (известны только после списка листов).
+     */
+    private Map<String, PrecompressedZipWriter.Content> serviceParts(List<ReportSheet> sheets) {
+        Map<String, PrecompressedZipWriter.Content> parts = new LinkedHashMap<>();
+        parts.put("xl/workbook.xml", writer -> writeWorkbook(new OoxmlPartWriter(writer), sheets));
+        parts.put("_rels/.rels", writer -> writeRootRelationships(new OoxmlPartWriter(writer)));
+        parts.put("xl/_rels/workbook.xml.rels",
+                writer -> writeWorkbookRelationships(new OoxmlPartWriter(writer), sheets.size()));
+        parts.put("xl/styles.xml", writer -> writeStyles(new OoxmlPartWriter(writer)));
+        parts.put("xl/sharedStrings.xml", writer -> writeSharedStrings(new OoxmlPartWriter(writer)));
+        parts.put("[Content_Types].xml", writer -> writeContentTypes(new OoxmlPartWriter(writer), sheets.size()));
+        return parts;
+    }
+
+    private static void writeWorkbook(OoxmlPartWriter xml, List<ReportSheet> sheets) throws IOException {
+        xml.raw(OoxmlPartWriter.XML_DECLARATION);
+        xml.raw("<workbook xmlns=\"" + OoxmlPartWriter.MAIN_NS + "\" xmlns:r=\"" + DOCUMENT_RELATIONSHIPS_NS + "\">");
+        xml.raw("<sheets>");
+        for (int i = 1; i <= sheets.size(); i++) {
+            xml.raw("<sheet name=\"");
+            xml.escaped(sheets.get(i - 1).name());
+            xml.raw("\" sheetId=\"");
+            xml.rawNumber(i);
+            xml.raw("\" r:id=\"rId");
+            xml.rawNumber(i);
+            xml.raw("\"/>");
+        }
+        xml.raw("</sheets></workbook>");
+    }
+
+    private static void writeRootRelationships(OoxmlPartWriter xml) throws IOException {
+        xml.raw(OoxmlPartWriter.XML_DECLARATION);
+        xml.raw("<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">");
+        xml.raw("<Relationship Id=\"rId1\" Type=\"" + DOCUMENT_RELATIONSHIPS_NS + "/officeDocument\""
+                + " Target=\"xl/workbook.xml\"/>");
+        xml.raw("</Relationships>");
+    }
+
+    private static void writeWorkbookRelationships(OoxmlPartWriter xml, int sheets) throws IOException {
+        xml.raw(OoxmlPartWriter.XML_DECLARATION);
+        xml.raw("<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">");
+        for (int i = 1; i <= sheets; i++) {
+            writeRelationship(xml, i, "worksheet", "worksheets/sheet" + i + ".xml");
+        }
+        writeRelationship(xml, sheets + 1, "styles", "styles.xml");
+        writeRelationship(xml, sheets + 2, "sharedStrings", "sharedStrings.xml");
+        xml.raw("</Relationships>");
+    }
+
+    private static void writeRelationship(OoxmlPartWriter xml, int id, String type, String target)
+            throws IOException
+    {
+        xml.raw("<Relationship Id=\"rId");
+        xml.rawNumber(id);
+        xml.raw("\" Type=\"" + DOCUMENT_RELATIONSHIPS_NS + "/" + type + "\" Target=\"" + target + "\"/>");
+    }
+
+    private static void writeStyles(OoxmlPartWriter xml) throws IOException {
+        xml.raw(OoxmlPartWriter.XML_DECLARATION);
+        xml.raw("<styleSheet xmlns=\"" + OoxmlPartWriter.MAIN_NS + "\">"
+                + "<numFmts count=\"2\">"
+                + "<numFmt numFmtId=\"164\" formatCode=\"" + WorkbookFormats.DATE_FORMAT + "\"/>"
+                + "<numFmt numFmtId=\"165\" formatCode=\"" + WorkbookFormats.DATE_TIME_FORMAT + "\"/>"
+                + "</numFmts>"
+                + "<fonts count=\"2\">"
+                + "<font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+                + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+                + "</fonts>"
+                + "<fills count=\"2\">"
+                + "<fill><patternFill patternType=\"none\"/></fill>"
+                + "<fill><patternFill patternType=\"gray125\"/></fill>"
+                + "</fills>"
+                + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+                + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+                + "<cellXfs count=\"5\">"
+                + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+                + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+                + "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                + "<xf numFmtId=\"165\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                // 10 - встроенный формат "0.00%".
+                + "<xf numFmtId=\"10\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                + "</cellXfs>"
+                + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+                + "</styleSheet>");
+    }
+
+    private void writeSharedStrings(OoxmlPartWriter xml) throws IOException {
+        xml.raw(OoxmlPartWriter.XML_DECLARATION);
+        xml.raw("<sst xmlns=\"" + OoxmlPartWriter.MAIN_NS + "\" count=\"");
+        xml.rawNumber(sharedStringReferences);
+        xml.raw("\" uniqueCount=\"");
+        xml.rawNumber(sharedStrings.size());
+        xml.raw("\">");
+        for (String value : sharedStrings.keySet()) {
+            xml.raw("<si><t xml:space=\"preserve\">");
+            xml.escaped(value);
+            xml.raw("</t></si>");
+        }
+        xml.raw("</sst>");
+    }
+
+    private static void writeContentTypes(OoxmlPartWriter xml, int sheets) throws IOException {
+        xml.raw(OoxmlPartWriter.XML_DECLARATION);
+        xml.raw("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"" + CONTENT_TYPE_PREFIX + "sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/styles.xml\" ContentType=\"" + CONTENT_TYPE_PREFIX + "styles+xml\"/>"
+                + "<Override PartName=\"/xl/sharedStrings.xml\""
+                + " ContentType=\"" + CONTENT_TYPE_PREFIX + "sharedStrings+xml\"/>");
+        for (int i = 1; i <= sheets; i++) {
+            xml.raw("<Override PartName=\"/xl/worksheets/sheet");
+            xml.rawNumber(i);
+            xml.raw(".xml\" ContentType=\"" + CONTENT_TYPE_PREFIX + "worksheet+xml\"/>");
+        }
+        xml.raw("</Types>");
+    }
+
+    private int sharedString(String value) {
+        sharedStringReferences++;
+        Integer index = sharedStrings.get(value);
+        if (index == null) {
+            index = sharedStrings.size();
+            sharedStrings.put(value, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,191 @@
+package ru.hackathon.chatlas.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Запись zip-архива из заранее сжатых частей.
+ * {@link java.util.zip.ZipOutputStream} сжимает записи только последовательно в одном потоке,
+ * а части, сжатые {@link Part#deflate} (raw deflate), можно готовить одновременно и склеивать здесь.
+ * Поддерживается только формат без ZIP64: каждая часть и весь архив меньше 4 ГБ.
+ */
+final class PrecompressedZipWriter {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int UTF8_NAMES_FLAG = 1 << 11;
+    private static final int DEFLATED = 8;
+    private static final long MAX_SIZE = 0xFFFF_FFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final OutputStream output;
+    private final int dosTime;
+    private final int dosDate;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private final byte[] header = new byte[46];
+    private long offset;
+
+    /**
+     * @param output поток архива (не закрывается).
+     */
+    PrecompressedZipWriter(OutputStream output) {
+        this.output = output;
+        LocalDateTime now = LocalDateTime.now();
+        this.dosTime = now.getHour() << 11 | now.getMinute() << 5 | now.getSecond() / 2;
+        this.dosDate = Math.max(now.getYear() - 1980, 0) << 9 | now.getMonthValue() << 5 | now.getDayOfMonth();
+    }
+
+    /**
+     * Добавить запись архива.
+     */
+    void add(String name, Part part) throws IOException {
+        if (entries.size() == MAX_ENTRIES || offset + part.length() > MAX_SIZE) {
+            throw new IOException("Archive is too large for ZIP without ZIP64");
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        entries.add(new CentralEntry(nameBytes, part.crc(), part.length(), part.size(), offset));
+
+        putInt(0, LOCAL_HEADER_SIGNATURE);
+        putShort(4, VERSION);
+        putShort(6, UTF8_NAMES_FLAG);
+        putShort(8, DEFLATED);
+        putShort(10, dosTime);
+        putShort(12, dosDate);
+        putInt(14, (int) part.crc());
+        putInt(18, part.length());
+        putInt(22, (int) part.size());
+        putShort(26, nameBytes.length);
+        putShort(28, 0);
+        output.write(header, 0, 30);
+        output.write(nameBytes);
+        output.write(part.data(), 0, part.length());
+        offset += 30L + nameBytes.length + part.length();
+    }
+
+    /**
+     * Записать центральный каталог (поток не закрывается).
+     */
+    void finish() throws IOException {
+        long directoryOffset = offset;
+        for (CentralEntry entry : entries) {
+            putInt(0, CENTRAL_HEADER_SIGNATURE);
+            putShort(4, VERSION);
+            putShort(6, VERSION);
+            putShort(8, UTF8_NAMES_FLAG);
+            putShort(10, DEFLATED);
+            putShort(12, dosTime);
+            putShort(14, dosDate);
+            putInt(16, (int) entry.crc());
+            putInt(20, entry.compressedSize());
+            putInt(24, (int) entry.size());
+            putShort(28, entry.name().length);
+            // Дополнительные поля, комментарий, номер диска, атрибуты.
+            putShort(30, 0);
+            putShort(32, 0);
+            putShort(34, 0);
+            putShort(36, 0);
+            putInt(38, 0);
+            putInt(42, (int) entry.offset());
+            output.write(header, 0, 46);
+            output.write(entry.name());
+            offset += 46L + entry.name().length;
+        }
+        if (offset > MAX_SIZE) {
+            throw new IOException("Archive is too large for ZIP without ZIP64");
+        }
+
+        putInt(0, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        putShort(4, 0);
+        putShort(6, 0);
+        putShort(8, entries.size());
+        putShort(10, entries.size());
+        putInt(12, (int) (offset - directoryOffset));
+        putInt(16, (int) directoryOffset);
+        putShort(20, 0);
+        output.write(header, 0, 22);
+        output.flush();
+    }
+
+    private void putShort(int position, int value) {
+        header[position] = (byte) value;
+        header[position + 1] = (byte) (value >>> 8);
+    }
+
+    private void putInt(int position, int value) {
+        putShort(position, value);
+        putShort(position + 2, value >>> 16);
+    }
+
+    /**
+     * Содержимое части в текстовом виде.
+     */
+    @FunctionalInterface
+    interface Content {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Сжатая часть архива.
+     *
+     * @param data сжатые данные (raw deflate) в первых {@code length} байтах.
+     * @param length размер сжатых данных.
+     * @param crc CRC-32 исходных данных.
+     * @param size размер исходных данных.
+     */
+    record Part(byte[] data, int length, long crc, long size) {
+
+        /**
+         * Записать содержимое в UTF-8 и сжать (можно вызывать одновременно из разных потоков).
+         */
+        static Part deflate(Content content) throws IOException {
+            Buffer buffer = new Buffer();
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                DeflaterOutputStream deflated = new DeflaterOutputStream(buffer, deflater, BUFFER_BYTES);
+                CheckedOutputStream checked = new CheckedOutputStream(deflated, new CRC32());
+                Writer writer = new OutputStreamWriter(checked, StandardCharsets.UTF_8);
+                content.write(writer);
+                writer.flush();
+                deflated.finish();
+                long size = deflater.getBytesRead();
+                if (size > MAX_SIZE) {
+                    throw new IOException("Part is too large for ZIP without ZIP64");
+                }
+                return new Part(buffer.array(), buffer.size(), checked.getChecksum().getValue(), size);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private record CentralEntry(byte[] name, long crc, int compressedSize, long size, long offset) {
+    }
+
+    /**
+     * Буфер без копирования массива при чтении результата.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        private Buffer() {
+            super(BUFFER_BYTES);
+        }
+
+        private byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -2,10 +2,11 @@ package ru.hackathon.chatlas.export;
 
 import ru.hackathon.chatlas.domain.ChatAnalysisResult;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 /**
- * Сервис для форматирования результата анализа: текст или Excel.
- *
- * @implNote TODO: Dev4: Реализовать логику выбора формата и генерации результата.
+ * Сервис для форматирования результата анализа: текст или файл (Excel, CSV, TSV).
  */
 public interface ReportRenderer {
 
@@ -13,42 +14,144 @@ public interface ReportRenderer {
      * Отформатировать результат анализа в зависимости от количества сущностей.
      *
      * @param analysisResult результат анализа чата.
-     * @return результат в формате текста или Excel.
+     * @return результат в формате текста или файла ({@link ReportFormat#AUTO}).
      * @throws ReportRenderException если не удалось сформировать результат.
      */
     ReportResult render(ChatAnalysisResult analysisResult) throws ReportRenderException;
 
+    /**
+     * Отформатировать результат анализа в выбранном формате файла.
+     * Небольшой результат всегда отправляется текстом, формат влияет только на файловые отчеты.
+     * Рендереры без выбора формата игнорируют его.
+     *
+     * @param analysisResult результат анализа чата.
+     * @param format формат файла.
+     * @return результат в формате текста или файла.
+     * @throws ReportRenderException если не удалось сформировать результат.
+     */
+    default ReportResult render(ChatAnalysisResult analysisResult, ReportFormat format) throws ReportRenderException {
+        return render(analysisResult);
+    }
+
     /**
      * Результат форматирования отчета.
      */
     enum OutputType {
         TEXT,
+        CSV,
+        TSV,
         EXCEL
     }
 
+    /**
+     * Формат файлового отчета, выбранный в чате.
+     */
+    enum ReportFormat {
+        /**
+         * Excel, а для очень больших результатов - CSV со сжатием gzip.
+         */
+        AUTO(null, false),
+        XLSX(OutputType.EXCEL, false),
+        CSV(OutputType.CSV, false),
+        CSV_GZIP(OutputType.CSV, true),
+        TSV(OutputType.TSV, false),
+        TSV_GZIP(OutputType.TSV, true);
+
+        private final OutputType type;
+        private final boolean gzip;
+
+        ReportFormat(OutputType type, boolean gzip) {
+            this.type = type;
+            this.gzip = gzip;
+        }
+
+        /**
+         * @return тип файла (null для {@link #AUTO}: выбирается по размеру результата).
+         */
+        public OutputType getType() {
+            return type;
+        }
+
+        /**
+         * @return сжимается ли файл gzip.
+         */
+        public boolean isGzip() {
+            return gzip;
+        }
+    }
+
     /**
      * Результат форматирования.
      */
     interface ReportResult {
         /**
-         * @return тип результата (TEXT или EXCEL).
+         * @return тип результата (TEXT, CSV, TSV или EXCEL).
          */
         OutputType getType();
 
         /**
-         * @return текст для отправки в чат (null, если getType() == EXCEL).
+         * @return текст для отправки в чат (null для файловых отчетов).
          */
         String getText();
 
         /**
-         * @return данные Excel в виде байтов (null, если getType() == TEXT).
+         * Файл целиком в памяти: для больших отчетов удобнее {@link #writeExcel(OutputStream)}.
+         *
+         * @return данные Excel в виде байтов (null, если getType() != EXCEL).
          */
         byte[] getExcelBytes();
 
         /**
-         * @return имя файла Excel (null, если getType() == TEXT).
+         * @return имя файла Excel (null, если getType() != EXCEL).
          */
         String getExcelFileName();
+
+        /**
+         * @return имя файла отчета любого файлового типа (null, если getType() == TEXT).
+         */
+        default String getFileName() {
+            return getExcelFileName();
+        }
+
+        /**
+         * Записать файл отчета любого файлового типа в поток (поток не закрывается).
+         *
+         * @throws IOException если не удалось построить или записать файл.
+         */
+        default void writeFile(OutputStream output) throws IOException {
+            writeExcel(output);
+        }
+
+        /**
+         * Записать файл Excel в поток (поток не закрывается). Потоковые результаты строят файл при каждой записи,
+         * не держа его в памяти целиком. Файлы CSV и TSV записываются через {@link #writeFile(OutputStream)}.
+         *
+         * @throws IOException если не удалось построить или записать файл.
+         * @throws IllegalStateException если файл отчета - не Excel.
+         */
+        default void writeExcel(OutputStream output) throws IOException {
+            byte[] excelBytes = getExcelBytes();
+            if (excelBytes != null) {
+                output.write(excelBytes);
+            }
+        }
+
+        /**
+         * @return примерный объем памяти, которую занимает результат (для ограничения кэша отчетов).
+         */
+        default long estimatedSizeBytes() {
+            long size = 0;
+            if (getText() != null) {
+                size += 2L * getText().length();
+            }
+            if (getExcelBytes() != null) {
+                size += getExcelBytes().length;
+            }
+            if (getFileName() != null) {
+                size += 2L * getFileName().length();
+            }
+            return size;
+        }
     }
 
     /**
@@ -0,0 +1,650 @@
+package ru.hackathon.chatlas.export;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.config.BotConfig;
+import ru.hackathon.chatlas.domain.ApproximateSummary;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Рендерер отчетов: при небольшом количестве сущностей - список в чат, иначе - файл в выбранном формате.
+ * В формате {@link ReportFormat#AUTO} строится Excel, а если оценка стоимости Excel (количество ячеек)
+ * превышает порог - CSV со сжатием gzip: он пишется в разы быстрее и занимает меньше места.
+ * Файлы пишутся потоково через {@link WorkbookWriter}: память на построение отчета не зависит от количества строк.
+ * Реализация записи Excel выбирается {@link ExcelEngine}: Apache POI (SXSSF) или прямая запись OOXML без POI.
+ * {@link #render} не строит файл сразу: он пишется в поток получателя при {@link ReportResult#writeFile},
+ * поэтому файл целиком в памяти не хранится.
+ */
+@Slf4j
+public class ReportRendererImpl implements ReportRenderer {
+
+    private static final String PARTICIPANTS_SHEET = "Участники";
+    private static final String MENTIONS_SHEET = "Упоминания";
+    private static final String SUMMARY_SHEET = "Сводка";
+    private static final String EMPTY_NAME = "(без имени)";
+
+    /**
+     * Оценка памяти на одну сущность результата анализа (объект, строки, узел множества) для кэша отчетов.
+     */
+    private static final long ESTIMATED_ENTITY_BYTES = 160;
+
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    /**
+     * Названия дополнительных сущностей для заголовков текста и листов Excel.
+     */
+    private static final Map<String, String> ENTITY_TITLES = Map.of(
+            "mention_name", "Упоминания по имени",
+            "hashtag", "Хэштеги",
+            "url", "Ссылки",
+            "text_link", "Ссылки под текстом",
+            "email", "Email",
+            "phone", "Телефоны",
+            "bot_command", "Команды ботов");
+
+    private final int excelThreshold;
+    private final long csvCellThreshold;
+    private final int rowWindow;
+    private final ExcelEngine excelEngine;
+    private final Executor sectionExecutor;
+    private final Clock clock;
+
+    /**
+     * Рендерер с настройками по умолчанию.
+     */
+    public ReportRendererImpl() {
+        this(Options.defaults());
+    }
+
+    /**
+     * @param options пороги, реализация записи Excel, исполнитель для листов и часы.
+     */
+    public ReportRendererImpl(Options options) {
+        this.excelThreshold = options.excelThreshold();
+        this.csvCellThreshold = options.csvCellThreshold();
+        this.rowWindow = options.rowWindow();
+        this.excelEngine = options.excelEngine();
+        this.sectionExecutor = options.sectionExecutor();
+        this.clock = options.clock();
+    }
+
+    @Override
+    public ReportResult render(ChatAnalysisResult analysisResult) throws ReportRenderException {
+        return render(analysisResult, ReportFormat.AUTO);
+    }
+
+    @Override
+    public ReportResult render(ChatAnalysisResult analysisResult, ReportFormat format) throws ReportRenderException {
+        if (analysisResult == null) {
+            throw new ReportRenderException("Analysis result cannot be null");
+        }
+        if (format == null) {
+            throw new ReportRenderException("Report format cannot be null");
+        }
+
+        long totalCount = analysisResult.getTotalCount();
+        if (totalCount < excelThreshold) {
+            log.info("Rendering text report: {} entities", totalCount);
+            return new TextReport(renderText(analysisResult));
+        }
+
+        OutputType type = format.getType();
+        boolean gzip = format.isGzip();
+        if (type == null) {
+            long cells = estimateCells(analysisResult);
+            type = cells >= csvCellThreshold ? OutputType.CSV : OutputType.EXCEL;
+            gzip = type == OutputType.CSV;
+            log.info("Estimated report size: {} cells, choosing {}", cells, type);
+        }
+
+        // Файл строится при записи результата (например, прямо во временный файл для отправки).
+        log.info("Prepared {} report{}: {} entities", type == OutputType.EXCEL ? "Excel (" + excelEngine + ")" : type,
+                gzip ? " (gzip)" : "", totalCount);
+        return new StreamingFileReport(
+                analysisResult, LocalDate.now(clock).toEpochDay(), type, gzip, fileName(type, gzip));
+    }
+
+    /**
+     * Записать Excel-отчет прямо в поток (поток не закрывается).
+     *
+     * @param analysisResult результат анализа.
+     * @param output поток для файла .xlsx.
+     * @throws ReportRenderException если не удалось построить или записать книгу.
+     */
+    public void writeExcel(ChatAnalysisResult analysisResult, OutputStream output) throws ReportRenderException {
+        writeExcel(analysisResult, LocalDate.now(clock).toEpochDay(), output);
+    }
+
+    private void writeExcel(
+            ChatAnalysisResult analysisResult,
+            long exportDate,
+            OutputStream output) throws ReportRenderException
+    {
+        writeFile(analysisResult, exportDate, OutputType.EXCEL, false, output);
+    }
+
+    private void writeFile(
+            ChatAnalysisResult analysisResult,
+            long exportDate,
+            OutputType type,
+            boolean gzip,
+            OutputStream output) throws ReportRenderException
+    {
+        try (WorkbookWriter workbook = newWorkbookWriter(type, gzip, output)) {
+            workbook.write(prepareSheets(analysisResult, exportDate));
+        } catch (IOException | RuntimeException e) {
+            throw new ReportRenderException("Failed to write " + type + " report: " + e.getMessage(), e);
+        }
+    }
+
+    private WorkbookWriter newWorkbookWriter(OutputType type, boolean gzip, OutputStream output) throws IOException {
+        return switch (type) {
+            case CSV -> new DelimitedReportWriter(output, ',', gzip);
+            case TSV -> new DelimitedReportWriter(output, '\t', gzip);
+            case EXCEL -> switch (excelEngine) {
+                case POI -> new SxssfWorkbookWriter(output, rowWindow);
+                case OOXML -> new OoxmlWorkbookWriter(output, sectionExecutor);
+            };
+            case TEXT -> throw new IllegalArgumentException("Text report has no file");
+        };
+    }
+
+    /**
+     * Оценка стоимости построения файла: количество ячеек на всех листах.
+     * Приближенный результат содержит только сводку и топы, поэтому всегда дешев.
+     */
+    private static long estimateCells(ChatAnalysisResult analysisResult) {
+        if (analysisResult.isApproximate()) {
+            return 0;
+        }
+        long cells = (long) analysisResult.participants().size() * (analysisResult.activity().isEmpty() ? 3 : 7)
+                + 2L * analysisResult.mentions().size();
+        for (Set<String> values : analysisResult.entities().values()) {
+            cells += 2L * values.size();
+        }
+        return cells;
+    }
+
+    /**
+     * Подготовить листы книги: листы независимы, поэтому при заданном исполнителе сортируются одновременно.
+     */
+    private List<ReportSheet> prepareSheets(ChatAnalysisResult analysisResult, long exportDate) {
+        List<Supplier<ReportSheet>> preparations = analysisResult.isApproximate()
+                ? approximateSheets(analysisResult.approximation(), exportDate)
+                : exactSheets(analysisResult, exportDate);
+        List<ReportSheet> sheets = new ArrayList<>(preparations.size());
+        if (sectionExecutor == null) {
+            for (Supplier<ReportSheet> preparation : preparations) {
+                sheets.add(preparation.get());
+            }
+            return sheets;
+        }
+
+        List<CompletableFuture<ReportSheet>> futures = new ArrayList<>(preparations.size());
+        for (Supplier<ReportSheet> preparation : preparations) {
+            futures.add(CompletableFuture.supplyAsync(preparation, sectionExecutor));
+        }
+        for (CompletableFuture<ReportSheet> future : futures) {
+            try {
+                sheets.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return sheets;
+    }
+
+    private static List<Supplier<ReportSheet>> exactSheets(ChatAnalysisResult analysisResult, long exportDate) {
+        List<Supplier<ReportSheet>> sheets = new ArrayList<>();
+        sheets.add(() -> participantsSheet(analysisResult, exportDate));
+        sheets.add(() -> valuesSheet(MENTIONS_SHEET, "Username", mentionTexts(analysisResult.mentions()), exportDate));
+        for (Map.Entry<String, Set<String>> entry : sortedEntities(analysisResult.entities())) {
+            sheets.add(() -> valuesSheet(entityTitle(entry.getKey()), "Значение", entry.getValue(), exportDate));
+        }
+        return sheets;
+    }
+
+    private static ReportSheet participantsSheet(ChatAnalysisResult analysisResult, long exportDate) {
+        Map<String, ParticipantActivity> activity = analysisResult.activity();
+        if (activity.isEmpty()) {
+            List<Participant> participants = sortedParticipants(analysisResult);
+            return new ReportSheet(
+                    PARTICIPANTS_SHEET,
+                    new String[] {"Дата экспорта", "Username", "Имя и фамилия"},
+                    rows -> {
+                        for (Participant participant : participants) {
+                            rows.startRow();
+                            rows.date(exportDate);
+                            rows.text(participant.fromId());
+                            rows.text(participant.displayName());
+                        }
+                    });
+        }
+
+        // Полная сортировка намеренна: на листе все участники, а не только самые активные.
+        // Сортируются сами записи активности: без поиска в карте на каждое сравнение.
+        List<ParticipantActivity> participants = new ArrayList<>(analysisResult.participants().size());
+        for (Participant participant : analysisResult.participants()) {
+            ParticipantActivity participantActivity = activity.get(participant.fromId());
+            participants.add(participantActivity != null
+                    ? participantActivity
+                    : new ParticipantActivity(participant.fromId(), participant.displayName(), 0, 0, 0, 0));
+        }
+        participants.sort(ParticipantActivity.BY_ACTIVITY);
+        return new ReportSheet(
+                PARTICIPANTS_SHEET,
+                new String[] {"Дата экспорта", "Username", "Имя и фамилия", "Сообщений", "Упоминаний",
+                        "Первое сообщение (UTC)", "Последнее сообщение (UTC)"},
+                rows -> {
+                    for (ParticipantActivity participant : participants) {
+                        rows.startRow();
+                        rows.date(exportDate);
+                        rows.text(participant.fromId());
+                        rows.text(participant.displayName());
+                        rows.number(participant.messageCount());
+                        rows.number(participant.mentionCount());
+                        rows.dateTime(participant.firstMessageDate());
+                        rows.dateTime(participant.lastMessageDate());
+                    }
+                });
+    }
+
+    private static ReportSheet valuesSheet(
+            String name,
+            String valueHeader,
+            Collection<String> unsortedValues,
+            long exportDate)
+    {
+        List<String> values = new ArrayList<>(unsortedValues);
+        values.sort(Comparator.naturalOrder());
+        return new ReportSheet(name, new String[] {"Дата экспорта", valueHeader}, rows -> {
+            for (String value : values) {
+                rows.startRow();
+                rows.date(exportDate);
+                rows.text(value);
+            }
+        });
+    }
+
+    private static List<Supplier<ReportSheet>> approximateSheets(ApproximateSummary summary, long exportDate) {
+        ReportSheet summarySheet = new ReportSheet(SUMMARY_SHEET, new String[] {"Показатель", "Значение"}, rows -> {
+            rows.startRow();
+            rows.text("Дата экспорта");
+            rows.date(exportDate);
+            rows.startRow();
+            rows.text("Участников (оценка)");
+            rows.number(summary.participantsEstimate());
+            rows.startRow();
+            rows.text("Упоминаний (оценка)");
+            rows.number(summary.mentionsEstimate());
+            rows.startRow();
+            rows.text("Относительная погрешность оценок");
+            rows.percent(summary.relativeStandardError());
+            rows.startRow();
+            rows.text("Приближенный режим: на листах только самые частые участники и упоминания, "
+                    + "точное количество лежит между колонками \"не меньше\" и \"не больше\".");
+        });
+        ReportSheet participantsSheet = new ReportSheet(
+                PARTICIPANTS_SHEET,
+                new String[] {"Дата экспорта", "Username", "Имя и фамилия", "Сообщений (не больше)",
+                        "Сообщений (не меньше)"},
+                rows -> writeTopEntries(rows, exportDate, summary.topParticipants(), true));
+        // У упоминаний подпись совпадает с id, поэтому колонки имени нет.
+        ReportSheet mentionsSheet = new ReportSheet(
+                MENTIONS_SHEET,
+                new String[] {"Дата экспорта", "Username", "Упоминаний (не больше)", "Упоминаний (не меньше)"},
+                rows -> writeTopEntries(rows, exportDate, summary.topMentions(), false));
+        // Топы уже упорядочены и невелики: подготавливать нечего.
+        return List.of(() -> summarySheet, () -> participantsSheet, () -> mentionsSheet);
+    }
+
+    private static void writeTopEntries(
+            RowWriter rows,
+            long exportDate,
+            List<ApproximateSummary.TopEntry> entries,
+            boolean withLabel) throws IOException
+    {
+        for (ApproximateSummary.TopEntry entry : entries) {
+            rows.startRow();
+            rows.date(exportDate);
+            rows.text(entry.id());
+            if (withLabel) {
+                rows.text(entry.label());
+            }
+            rows.number(entry.count());
+            rows.number(entry.guaranteedCount());
+        }
+    }
+
+    /**
+     * Текстовый отчет: участники (самые активные первыми, если активность собиралась), упоминания
+     * и дополнительные сущности.
+     */
+    private String renderText(ChatAnalysisResult analysisResult) {
+        if (analysisResult.isApproximate()) {
+            return renderApproximateText(analysisResult.approximation());
+        }
+        StringBuilder text = new StringBuilder();
+        List<Participant> participants = sortedParticipants(analysisResult);
+        text.append(PARTICIPANTS_SHEET).append(" (").append(participants.size()).append("):\n");
+        int index = 1;
+        for (Participant participant : participants) {
+            text.append(index++).append(". ")
+                    .append(participant.displayName().isBlank() ? EMPTY_NAME : participant.displayName())
+                    .append(" (").append(participant.fromId()).append(')');
+            ParticipantActivity participantActivity = analysisResult.activity().get(participant.fromId());
+            if (participantActivity != null) {
+                text.append(" - сообщений: ").append(participantActivity.messageCount());
+            }
+            text.append('\n');
+        }
+
+        List<String> mentions = mentionTexts(analysisResult.mentions());
+        mentions.sort(Comparator.naturalOrder());
+        appendSection(text, MENTIONS_SHEET, mentions);
+        for (Map.Entry<String, Set<String>> entry : sortedEntities(analysisResult.entities())) {
+            List<String> values = new ArrayList<>(entry.getValue());
+            values.sort(Comparator.naturalOrder());
+            appendSection(text, entityTitle(entry.getKey()), values);
+        }
+        return text.toString().stripTrailing();
+    }
+
+    private static String renderApproximateText(ApproximateSummary summary) {
+        StringBuilder text = new StringBuilder()
+                .append("Приближенный анализ (погрешность ~")
+                .append(String.format(Locale.ROOT, "%.1f", summary.relativeStandardError() * 100)).append("%)\n")
+                .append("Участников: ~").append(summary.participantsEstimate()).append('\n')
+                .append("Упоминаний: ~").append(summary.mentionsEstimate()).append('\n');
+        appendTopSection(text, "Самые активные участники", summary.topParticipants());
+        appendTopSection(text, "Самые частые упоминания", summary.topMentions());
+        return text.toString().stripTrailing();
+    }
+
+    private static void appendTopSection(StringBuilder text, String title, List<ApproximateSummary.TopEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        text.append('\n').append(title).append(":\n");
+        int index = 1;
+        for (ApproximateSummary.TopEntry entry : entries) {
+            text.append(index++).append(". ").append(entry.label());
+            if (!entry.label().equals(entry.id())) {
+                text.append(" (").append(entry.id()).append(')');
+            }
+            text.append(" - ").append(entry.guaranteedCount()).append('-').append(entry.count()).append('\n');
+        }
+    }
+
+    private static void appendSection(StringBuilder text, String title, List<String> values) {
+        text.append('\n').append(title).append(" (").append(values.size()).append("):\n");
+        for (String value : values) {
+            text.append(value).append('\n');
+        }
+    }
+
+    /**
+     * Участники по убыванию активности (если она собиралась), иначе - по fromId.
+     * Сортируется весь список: отчет перечисляет всех участников.
+     */
+    private static List<Participant> sortedParticipants(ChatAnalysisResult analysisResult) {
+        List<Participant> participants = new ArrayList<>(analysisResult.participants());
+        Map<String, ParticipantActivity> activity = analysisResult.activity();
+        if (activity.isEmpty()) {
+            participants.sort(Comparator.comparing(Participant::fromId));
+        } else {
+            participants.sort(Comparator
+                    .comparingLong((Participant participant) -> messageCount(activity, participant)).reversed()
+                    .thenComparing(Participant::fromId));
+        }
+        return participants;
+    }
+
+    private static long messageCount(Map<String, ParticipantActivity> activity, Participant participant) {
+        ParticipantActivity participantActivity = activity.get(participant.fromId());
+        return participantActivity != null ? participantActivity.messageCount() : 0;
+    }
+
+    private static List<String> mentionTexts(Set<Mention> mentions) {
+        List<String> texts = new ArrayList<>(mentions.size());
+        for (Mention mention : mentions) {
+            texts.add(mention.mentionText());
+        }
+        return texts;
+    }
+
+    private static List<Map.Entry<String, Set<String>>> sortedEntities(Map<String, Set<String>> entities) {
+        List<Map.Entry<String, Set<String>>> entries = new ArrayList<>(entities.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        return entries;
+    }
+
+    private static String entityTitle(String type) {
+        return ENTITY_TITLES.getOrDefault(type, type);
+    }
+
+    private String fileName(OutputType type, boolean gzip) {
+        String extension = switch (type) {
+            case CSV -> ".csv";
+            case TSV -> ".tsv";
+            default -> ".xlsx";
+        };
+        return "chatlas_" + FILE_NAME_FORMAT.format(LocalDateTime.ofInstant(Instant.now(clock), clock.getZone()))
+                + extension + (gzip ? ".gz" : "");
+    }
+
+    /**
+     * Настройки рендерера. Значения по умолчанию - {@link #defaults()}, отдельные настройки меняются
+     * методами {@code with...}.
+     *
+     * @param excelThreshold количество сущностей (участники + упоминания), начиная с которого строится файл.
+     * @param csvCellThreshold количество ячеек отчета, начиная с которого в формате {@link ReportFormat#AUTO}
+     * вместо Excel строится CSV со сжатием gzip.
+     * @param rowWindow сколько последних строк листа держится в памяти (только для {@link ExcelEngine#POI}).
+     * @param excelEngine реализация записи Excel.
+     * @param sectionExecutor исполнитель для одновременной подготовки листов (сортировка), а для
+     * {@link ExcelEngine#OOXML} - и их записи; null - листы готовятся и пишутся по очереди.
+     * @param clock часы для даты экспорта и имени файла.
+     */
+    public record Options(
+            int excelThreshold,
+            long csvCellThreshold,
+            int rowWindow,
+            ExcelEngine excelEngine,
+            Executor sectionExecutor,
+            Clock clock)
+    {
+        public Options {
+            if (rowWindow < 1) {
+                throw new IllegalArgumentException("rowWindow must be positive: " + rowWindow);
+            }
+        }
+
+        /**
+         * @return пороги из {@link BotConfig}, Apache POI, последовательная запись листов и системные часы.
+         */
+        public static Options defaults() {
+            return new Options(BotConfig.EXCEL_THRESHOLD, BotConfig.CSV_CELL_THRESHOLD, BotConfig.EXCEL_ROW_WINDOW,
+                    ExcelEngine.POI, null, Clock.systemDefaultZone());
+        }
+
+        public Options withExcelThreshold(int excelThreshold) {
+            return new Options(excelThreshold, csvCellThreshold, rowWindow, excelEngine, sectionExecutor, clock);
+        }
+
+        public Options withCsvCellThreshold(long csvCellThreshold) {
+            return new Options(excelThreshold, csvCellThreshold, rowWindow, excelEngine, sectionExecutor, clock);
+        }
+
+        public Options withRowWindow(int rowWindow) {
+            return new Options(excelThreshold, csvCellThreshold, rowWindow, excelEngine, sectionExecutor, clock);
+        }
+
+        public Options withExcelEngine(ExcelEngine excelEngine) {
+            return new Options(excelThreshold, csvCellThreshold, rowWindow, excelEngine, sectionExecutor, clock);
+        }
+
+        public Options withSectionExecutor(Executor sectionExecutor) {
+            return new Options(excelThreshold, csvCellThreshold, rowWindow, excelEngine, sectionExecutor, clock);
+        }
+
+        public Options withClock(Clock clock) {
+            return new Options(excelThreshold, csvCellThreshold, rowWindow, excelEngine, sectionExecutor, clock);
+        }
+    }
+
+    /**
+     * Реализация записи Excel.
+     */
+    public enum ExcelEngine {
+        /**
+         * Apache POI (SXSSF): окно строк в памяти, остальные - во временных сжатых файлах.
+         */
+        POI,
+        /**
+         * Прямая запись частей OOXML в zip-архив без POI: без временных файлов и без загрузки классов POI.
+         */
+        OOXML
+    }
+
+    /**
+     * Текстовый отчет.
+     */
+    private record TextReport(String text) implements ReportResult {
+
+        @Override
+        public OutputType getType() {
+            return OutputType.TEXT;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public byte[] getExcelBytes() {
+            return null;
+        }
+
+        @Override
+        public String getExcelFileName() {
+            return null;
+        }
+    }
+
+    /**
+     * Файловый отчет, который строится при каждой записи: хранит только результат анализа, дату экспорта
+     * и имя файла, поэтому файл никогда не лежит в памяти целиком (кроме вызова {@link #getExcelBytes()}).
+     */
+    private final class StreamingFileReport implements ReportResult {
+
+        private final ChatAnalysisResult analysisResult;
+        private final long exportDate;
+        private final OutputType type;
+        private final boolean gzip;
+        private final String fileName;
+
+        private StreamingFileReport(
+                ChatAnalysisResult analysisResult,
+                long exportDate,
+                OutputType type,
+                boolean gzip,
+                String fileName)
+        {
+            this.analysisResult = analysisResult;
+            this.exportDate = exportDate;
+            this.type = type;
+            this.gzip = gzip;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public OutputType getType() {
+            return type;
+        }
+
+        @Override
+        public String getText() {
+            return null;
+        }
+
+        @Override
+        public byte[] getExcelBytes() {
+            if (type != OutputType.EXCEL) {
+                return null;
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                writeFile(output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return output.toByteArray();
+        }
+
+        @Override
+        public String getExcelFileName() {
+            return type == OutputType.EXCEL ? fileName : null;
+        }
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public void writeExcel(OutputStream output) throws IOException {
+            // Молча ничего не записать для CSV/TSV нельзя: вызывающий отправил бы пустой файл.
+            if (type != OutputType.EXCEL) {
+                throw new IllegalStateException("Report is " + type + ", not Excel: use writeFile");
+            }
+            writeFile(output);
+        }
+
+        @Override
+        public void writeFile(OutputStream output) throws IOException {
+            try {
+                ReportRendererImpl.this.writeFile(analysisResult, exportDate, type, gzip, output);
+            } catch (ReportRenderException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public long estimatedSizeBytes() {
+            long entities = analysisResult.participants().size() + analysisResult.mentions().size()
+                    + analysisResult.activity().size();
+            for (Set<String> values : analysisResult.entities().values()) {
+                entities += values.size();
+            }
+            return entities * ESTIMATED_ENTITY_BYTES + 2L * fileName.length();
+        }
+    }
+}
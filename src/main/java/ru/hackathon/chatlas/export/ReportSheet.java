@@ -0,0 +1,22 @@
+package ru.hackathon.chatlas.export;
+
+import java.io.IOException;
+
+/**
+ * Подготовленный лист отчета: строки уже отсортированы, тело только записывает их.
+ * Листы независимы друг от друга, поэтому могут готовиться и записываться одновременно.
+ *
+ * @param name название листа.
+ * @param headers заголовки колонок (строка заголовков закреплена при прокрутке).
+ * @param body запись строк листа.
+ */
+record ReportSheet(String name, String[] headers, Body body) {
+
+    /**
+     * Запись строк листа.
+     */
+    @FunctionalInterface
+    interface Body {
+        void writeRows(RowWriter rows) throws IOException;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.hackathon.chatlas.export;
+
+import java.io.IOException;
+
+/**
+ * Запись строк листа Excel: ячейки строки пишутся слева направо.
+ */
+interface RowWriter {
+
+    /**
+     * Начать новую строку листа.
+     */
+    void startRow() throws IOException;
+
+    void text(String value) throws IOException;
+
+    void number(long value) throws IOException;
+
+    /**
+     * @param value доля (0.01 - 1%).
+     */
+    void percent(double value) throws IOException;
+
+    /**
+     * @param epochDay дата (дней от 1970-01-01).
+     */
+    void date(long epochDay) throws IOException;
+
+    /**
+     * @param epochSeconds время UTC в секундах Unix (0 - неизвестно, ячейка остается пустой).
+     */
+    void dateTime(long epochSeconds) throws IOException;
+}
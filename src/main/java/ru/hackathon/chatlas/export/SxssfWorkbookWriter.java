@@ -0,0 +1,128 @@
+package ru.hackathon.chatlas.export;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Запись книги на Apache POI {@link SXSSFWorkbook}: в памяти держится только окно из последних
+ * {@code rowWindow} строк листа, остальные сразу сбрасываются во временный сжатый файл, а строки
+ * записываются прямо в ячейки (inline), без общей таблицы строк на весь файл.
+ * Временные файлы удаляются в {@link #close()}.
+ */
+@Slf4j
+final class SxssfWorkbookWriter implements WorkbookWriter, RowWriter {
+
+    private final OutputStream output;
+    private final SXSSFWorkbook workbook;
+    private final CellStyle header;
+    private final CellStyle date;
+    private final CellStyle dateTime;
+    private final CellStyle percent;
+
+    private Sheet sheet;
+    private Row row;
+    private int rowIndex;
+    private int column;
+
+    SxssfWorkbookWriter(OutputStream output, int rowWindow) {
+        this.output = output;
+        // Без общей таблицы строк (inline), временные файлы листов сжимаются.
+        this.workbook = new SXSSFWorkbook(null, rowWindow, true, false);
+        // Стили создаются один раз на книгу (количество стилей в файле ограничено).
+        Font bold = workbook.createFont();
+        bold.setBold(true);
+        this.header = workbook.createCellStyle();
+        this.header.setFont(bold);
+        this.date = workbook.createCellStyle();
+        this.date.setDataFormat(workbook.createDataFormat().getFormat(WorkbookFormats.DATE_FORMAT));
+        this.dateTime = workbook.createCellStyle();
+        this.dateTime.setDataFormat(workbook.createDataFormat().getFormat(WorkbookFormats.DATE_TIME_FORMAT));
+        this.percent = workbook.createCellStyle();
+        this.percent.setDataFormat(workbook.createDataFormat().getFormat(WorkbookFormats.PERCENT_FORMAT));
+    }
+
+    @Override
+    public void write(List<ReportSheet> sheets) throws IOException {
+        for (ReportSheet reportSheet : sheets) {
+            startSheet(reportSheet.name(), reportSheet.headers());
+            reportSheet.body().writeRows(this);
+        }
+        workbook.write(output);
+    }
+
+    private void startSheet(String name, String[] headers) {
+        sheet = workbook.createSheet(name);
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(header);
+            // POI задает ширину в 1/256 символа.
+            sheet.setColumnWidth(i, WorkbookFormats.columnWidth(i) * 256);
+        }
+        sheet.createFreezePane(0, 1);
+        rowIndex = 1;
+    }
+
+    @Override
+    public void startRow() {
+        row = sheet.createRow(rowIndex++);
+        column = 0;
+    }
+
+    @Override
+    public void text(String value) {
+        row.createCell(column++).setCellValue(value);
+    }
+
+    @Override
+    public void number(long value) {
+        row.createCell(column++).setCellValue(value);
+    }
+
+    @Override
+    public void percent(double value) {
+        Cell cell = row.createCell(column++);
+        cell.setCellValue(value);
+        cell.setCellStyle(percent);
+    }
+
+    @Override
+    public void date(long epochDay) {
+        Cell cell = row.createCell(column++);
+        cell.setCellValue(LocalDate.ofEpochDay(epochDay));
+        cell.setCellStyle(date);
+    }
+
+    @Override
+    public void dateTime(long epochSeconds) {
+        if (epochSeconds == 0) {
+            column++;
+            return;
+        }
+        Cell cell = row.createCell(column++);
+        cell.setCellValue(LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC));
+        cell.setCellStyle(dateTime);
+    }
+
+    @Override
+    public void close() {
+        try {
+            workbook.close();
+        } catch (IOException e) {
+            log.warn("Failed to close Excel workbook: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.hackathon.chatlas.export;
+
+/**
+ * Общие для всех реализаций {@link WorkbookWriter} форматы ячеек и ширины колонок,
+ * чтобы отчеты разных реализаций выглядели одинаково.
+ */
+final class WorkbookFormats {
+
+    static final String DATE_FORMAT = "dd.mm.yyyy";
+    static final String DATE_TIME_FORMAT = "dd.mm.yyyy hh:mm";
+    static final String PERCENT_FORMAT = "0.00%";
+
+    /**
+     * Ширина колонок в символах: автоподбор ширины требует хранить все строки.
+     */
+    private static final int NARROW_COLUMN_WIDTH = 14;
+    private static final int WIDE_COLUMN_WIDTH = 32;
+
+    private WorkbookFormats() {
+        // Утильный класс.
+    }
+
+    /**
+     * @return ширина колонки в символах (первая колонка - дата, остальные - широкие).
+     */
+    static int columnWidth(int column) {
+        return column == 0 ? NARROW_COLUMN_WIDTH : WIDE_COLUMN_WIDTH;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.hackathon.chatlas.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Запись книги Excel из подготовленных листов.
+ * Раскладка отчета (листы, колонки) задается в {@link ReportRendererImpl}, реализации отвечают только за формат.
+ * {@link #close()} освобождает ресурсы (временные файлы и т.п.) и должен вызываться и после ошибки.
+ */
+interface WorkbookWriter extends Closeable {
+
+    /**
+     * Записать книгу целиком (поток не закрывается).
+     *
+     * @param sheets листы в порядке их следования в книге.
+     */
+    void write(List<ReportSheet> sheets) throws IOException;
+}
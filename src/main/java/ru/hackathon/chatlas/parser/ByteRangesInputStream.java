@@ -0,0 +1,75 @@
+package ru.hackathon.chatlas.parser;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Поток, последовательно отдающий несколько диапазонов буфера, разделенных пробелом.
+ * Позволяет разобрать часть массива messages как последовательность корневых JSON-объектов
+ * (запятые между элементами заменяются пробелом) без копирования буфера.
+ */
+final class ByteRangesInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    private final int[] starts;
+    private final int[] ends;
+    private final int toIndex;
+
+    private int rangeIndex;
+    private int position;
+    private boolean separatorPending;
+
+    /**
+     * @param buffer исходный буфер (позиции абсолютные).
+     * @param starts начала диапазонов.
+     * @param ends концы диапазонов (не включительно).
+     * @param fromIndex индекс первого диапазона.
+     * @param toIndex индекс после последнего диапазона.
+     */
+    ByteRangesInputStream(ByteBuffer buffer, int[] starts, int[] ends, int fromIndex, int toIndex) {
+        this.buffer = buffer;
+        this.starts = starts;
+        this.ends = ends;
+        this.toIndex = toIndex;
+        this.rangeIndex = fromIndex;
+        this.position = fromIndex < toIndex ? starts[fromIndex] : 0;
+    }
+
+    @Override
+    public int read() {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        int written = 0;
+        while (written < length && rangeIndex < toIndex) {
+            if (separatorPending) {
+                target[offset + written++] = ' ';
+                separatorPending = false;
+                continue;
+            }
+
+            int available = ends[rangeIndex] - position;
+            if (available == 0) {
+                rangeIndex++;
+                if (rangeIndex < toIndex) {
+                    position = starts[rangeIndex];
+                    separatorPending = true;
+                }
+                continue;
+            }
+
+            int chunk = Math.min(available, length - written);
+            buffer.get(position, target, offset + written, chunk);
+            position += chunk;
+            written += chunk;
+        }
+        return written == 0 ? -1 : written;
+    }
+}
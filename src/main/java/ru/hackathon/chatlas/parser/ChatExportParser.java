@@ -3,6 +3,10 @@ package ru.hackathon.chatlas.parser;
 import ru.hackathon.chatlas.domain.ChatExport;
 import ru.hackathon.chatlas.domain.RawChatFile;
 
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
 /**
  * Интерфейс для парсинга JSON-экспорта чата Telegram в доменную модель.
  */
@@ -17,6 +21,64 @@ public interface ChatExportParser {
      */
     ChatExport parse(RawChatFile file) throws ChatExportParseException;
 
+    /**
+     * Распарсить JSON-файл экспорта чата, передавая сообщения потребителю по одному.
+     * Реализация по умолчанию сначала строит полный список сообщений,
+     * потоковые реализации не материализуют его целиком.
+     *
+     * @param file сырой файл экспорта чата.
+     * @param messageConsumer потребитель сообщений в порядке их следования в файле.
+     * @return объект ChatExport с метаданными чата (без списка сообщений).
+     * @throws ChatExportParseException если файл не получается распарсить.
+     */
+    default ChatExport parse(RawChatFile file, Consumer<ChatExport.Message> messageConsumer)
+            throws ChatExportParseException
+    {
+        ChatExport chatExport = parse(file);
+        List<ChatExport.Message> messages = chatExport.getMessages();
+        if (messages != null) {
+            messages.stream()
+                    .filter(Objects::nonNull)
+                    .forEach(messageConsumer);
+        }
+        chatExport.setMessages(null);
+        return chatExport;
+    }
+
+    /**
+     * Распарсить JSON-файл экспорта чата, передавая события по сообщениям в приемник.
+     * Реализация по умолчанию строит полную доменную модель и пересылает сообщения в виде событий
+     * (кроме пропускаемых приемником), потоковые реализации генерируют события прямо по ходу чтения файла.
+     *
+     * @param file сырой файл экспорта чата.
+     * @param sink приемник событий.
+     * @return объект ChatExport с метаданными чата (без списка сообщений).
+     * @throws ChatExportParseException если файл не получается распарсить.
+     */
+    default ChatExport parse(RawChatFile file, ChatExportSink sink) throws ChatExportParseException {
+        ChatExport chatExport = parse(file);
+        if (chatExport.getType() != null) {
+            sink.onChatType(chatExport.getType());
+        }
+        if (chatExport.getId() != null) {
+            sink.onChatId(chatExport.getId());
+        }
+        ChatExportSink.MessageIdRange skipped = sink.skippedMessageIds();
+        List<ChatExport.Message> messages = chatExport.getMessages();
+        if (messages != null) {
+            ChatExportSink.MessageHeader header = new ChatExportSink.MessageHeader();
+            for (ChatExport.Message message : messages) {
+                boolean isSkipped = skipped != null && message != null && message.getId() != null
+                        && skipped.contains(message.getId());
+                if (message != null && !isSkipped) {
+                    sink.onMessage(message, header);
+                }
+            }
+        }
+        chatExport.setMessages(null);
+        return chatExport;
+    }
+
     /**
      * Исключение при парсинге JSON-экспорта.
      */
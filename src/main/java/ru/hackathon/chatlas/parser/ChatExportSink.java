@@ -0,0 +1,228 @@
+package ru.hackathon.chatlas.parser;
+
+import ru.hackathon.chatlas.domain.ChatExport;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Приемник событий парсинга экспорта чата.
+ * Парсер вызывает методы по мере чтения файла, промежуточная доменная модель не строится.
+ * Для каждого сообщения порядок вызовов: {@link #onMessage(MessageHeader)},
+ * затем {@link #onEntity(String, String)} для каждой текстовой сущности, затем {@link #onMessageEnd()}.
+ * Приемники, которые можно заполнять по частям параллельно, реализуют {@link ForkableSink}.
+ */
+public interface ChatExportSink {
+
+    /**
+     * Идентификатор чата из метаданных экспорта.
+     * В экспортах Telegram поле id идет до массива messages, поэтому событие приходит до сообщений.
+     *
+     * @param chatId идентификатор чата.
+     */
+    default void onChatId(long chatId) {
+    }
+
+    /**
+     * Тип чата из метаданных экспорта ({@code personal_chat}, {@code private_group} и т.п.).
+     * В экспортах Telegram поле type идет до массива messages.
+     *
+     * @param type тип чата.
+     */
+    default void onChatType(String type) {
+    }
+
+    /**
+     * Диапазон id сообщений, которые приемнику не нужны (например, уже учтены при прошлом анализе).
+     * Парсер не передает такие сообщения и может пропускать их, не разбирая, рассчитывая на то,
+     * что id сообщений в экспорте возрастают.
+     * Запрашивается после {@link #onChatId(long)} и {@link #onChatType(String)}.
+     *
+     * @return диапазон пропускаемых id или null, если нужны все сообщения.
+     */
+    default MessageIdRange skippedMessageIds() {
+        return null;
+    }
+
+    /**
+     * Начало сообщения.
+     * Парсер переиспользует один объект заголовка для всех сообщений, поэтому сохранять его нельзя:
+     * нужные поля копируются во время вызова.
+     *
+     * @param message заголовок сообщения: id, автор и время отправки.
+     */
+    void onMessage(MessageHeader message);
+
+    /**
+     * Текстовая сущность текущего сообщения.
+     *
+     * @param type тип сущности (plain, mention и т.д., может быть null).
+     * @param text текст сущности (может быть null).
+     */
+    void onEntity(String type, String text);
+
+    /**
+     * Текстовая сущность текущего сообщения вместе с адресом ссылки.
+     * По умолчанию адрес отбрасывается - его используют только приемники, которым он нужен.
+     *
+     * @param type тип сущности (plain, mention и т.д., может быть null).
+     * @param text текст сущности (может быть null).
+     * @param href адрес ссылки для text_link (в остальных случаях null).
+     */
+    default void onEntity(String type, String text, String href) {
+        onEntity(type, text);
+    }
+
+    /**
+     * Конец текущего сообщения.
+     */
+    default void onMessageEnd() {
+    }
+
+    /**
+     * Передать готовое сообщение доменной модели в виде событий.
+     * Для цикла по многим сообщениям - {@link #onMessage(ChatExport.Message, MessageHeader)} с одним заголовком.
+     */
+    default void onMessage(ChatExport.Message message) {
+        onMessage(message, new MessageHeader());
+    }
+
+    /**
+     * Передать готовое сообщение доменной модели в виде событий, заполнив переданный заголовок.
+     * Заголовок переиспользуется вызывающим для всех сообщений, как в потоковом парсере.
+     *
+     * @param message сообщение.
+     * @param header заголовок, который перезаписывается полями сообщения.
+     */
+    default void onMessage(ChatExport.Message message, MessageHeader header) {
+        onMessage(header.set(message.getId(), message.getFromId(), message.getFrom(), message.getDateUnixtime()));
+        if (message.getTextEntities() != null) {
+            for (ChatExport.TextEntity entity : message.getTextEntities()) {
+                if (entity != null) {
+                    onEntity(entity.getType(), entity.getText(), entity.getHref());
+                }
+            }
+        }
+        onMessageEnd();
+    }
+
+    /**
+     * Создать приемник, собирающий из событий объекты сообщений доменной модели.
+     *
+     * @param messageConsumer потребитель собранных сообщений.
+     */
+    static ChatExportSink ofMessages(Consumer<ChatExport.Message> messageConsumer) {
+        return new ChatExportSink() {
+            private ChatExport.Message current;
+
+            @Override
+            public void onMessage(MessageHeader message) {
+                current = new ChatExport.Message();
+                current.setId(message.hasId() ? message.id() : null);
+                current.setDateUnixtime(message.date());
+                current.setFromId(message.fromId());
+                current.setFrom(message.from());
+                current.setTextEntities(new ArrayList<>());
+            }
+
+            @Override
+            public void onEntity(String type, String text) {
+                onEntity(type, text, null);
+            }
+
+            @Override
+            public void onEntity(String type, String text, String href) {
+                ChatExport.TextEntity entity = new ChatExport.TextEntity();
+                entity.setType(type);
+                entity.setText(text);
+                entity.setHref(href);
+                current.getTextEntities().add(entity);
+            }
+
+            @Override
+            public void onMessageEnd() {
+                messageConsumer.accept(current);
+                current = null;
+            }
+        };
+    }
+
+    /**
+     * Заголовок сообщения: поля, которые приходят до его текстовых сущностей.
+     * Изменяемый, чтобы парсер передавал сообщения без создания объектов.
+     */
+    final class MessageHeader {
+
+        private boolean hasId;
+        private long id;
+        private String fromId;
+        private String from;
+        private long date;
+
+        /**
+         * Заполнить заголовок полями очередного сообщения.
+         *
+         * @param id идентификатор сообщения (может быть null).
+         * @param fromId идентификатор автора (может быть null).
+         * @param from имя автора (может быть null).
+         * @param date время отправки в секундах Unix (0 - неизвестно).
+         * @return этот же заголовок.
+         */
+        public MessageHeader set(Long id, String fromId, String from, long date) {
+            this.hasId = id != null;
+            this.id = id != null ? id : 0;
+            this.fromId = fromId;
+            this.from = from;
+            this.date = date;
+            return this;
+        }
+
+        /**
+         * @return true, если у сообщения есть id.
+         */
+        public boolean hasId() {
+            return hasId;
+        }
+
+        /**
+         * @return идентификатор сообщения (0, если его нет - см. {@link #hasId()}).
+         */
+        public long id() {
+            return id;
+        }
+
+        /**
+         * @return идентификатор автора (может быть null).
+         */
+        public String fromId() {
+            return fromId;
+        }
+
+        /**
+         * @return имя автора (может быть null).
+         */
+        public String from() {
+            return from;
+        }
+
+        /**
+         * @return время отправки в секундах Unix (0 - неизвестно).
+         */
+        public long date() {
+            return date;
+        }
+    }
+
+    /**
+     * Диапазон id сообщений (включительно с обеих сторон).
+     */
+    record MessageIdRange(long from, long to) {
+
+        /**
+         * @return true, если id входит в диапазон.
+         */
+        public boolean contains(long id) {
+            return id >= from && id <= to;
+        }
+    }
+}
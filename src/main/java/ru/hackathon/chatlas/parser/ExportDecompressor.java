@@ -0,0 +1,174 @@
+package ru.hackathon.chatlas.parser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Потоковая распаковка сжатых экспортов чата (.zip из Telegram Desktop и .json.gz).
+ * Распакованные данные сразу идут в парсер, без сохранения в память или на диск.
+ * Общий объем распакованных данных ограничен для защиты от zip-бомб.
+ */
+@Slf4j
+public class ExportDecompressor {
+
+    /**
+     * Имя файла экспорта внутри zip-архива Telegram Desktop.
+     */
+    private static final String ZIP_ENTRY_NAME = "result.json";
+
+    private final long maxDecompressedBytes;
+
+    /**
+     * @param maxDecompressedBytes максимальный объем распакованных данных в байтах.
+     */
+    public ExportDecompressor(long maxDecompressedBytes) {
+        this.maxDecompressedBytes = maxDecompressedBytes;
+    }
+
+    /**
+     * Формат файла экспорта, определяемый по имени файла.
+     */
+    public enum Format {
+        JSON,
+        GZIP,
+        ZIP;
+
+        /**
+         * @return формат файла или null, если формат не поддерживается.
+         */
+        public static Format detect(String fileName) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".json")) {
+                return JSON;
+            }
+            if (lower.endsWith(".json.gz")) {
+                return GZIP;
+            }
+            if (lower.endsWith(".zip")) {
+                return ZIP;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Открыть поток с JSON экспорта поверх сжатого потока.
+     *
+     * @param format формат сжатого файла (GZIP или ZIP).
+     * @param compressed сжатый поток (закрывается вместе с результатом).
+     * @return поток распакованного JSON.
+     * @throws IOException если архив поврежден или в нем нет файла экспорта.
+     */
+    public InputStream open(Format format, InputStream compressed) throws IOException {
+        return switch (format) {
+            case JSON -> compressed;
+            case GZIP -> new LimitedInputStream(new GZIPInputStream(compressed, 64 * 1024), maxDecompressedBytes);
+            case ZIP -> openZipEntry(compressed);
+        };
+    }
+
+    /**
+     * Найти в zip-архиве файл result.json (в корне или в папке экспорта) и встать на его начало.
+     * Пропускаемые записи тоже распаковываются, поэтому они учитываются в общем лимите.
+     */
+    private InputStream openZipEntry(InputStream compressed) throws IOException {
+        ZipInputStream zip = new ZipInputStream(compressed);
+        LimitedInputStream limited = new LimitedInputStream(zip, maxDecompressedBytes);
+        try {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory() && isExportEntry(entry.getName())) {
+                    log.info("Found export entry in zip archive: {}", entry.getName());
+                    return limited;
+                }
+                limited.skip(Long.MAX_VALUE);
+            }
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+        zip.close();
+        throw new IOException("Zip archive does not contain " + ZIP_ENTRY_NAME);
+    }
+
+    private static boolean isExportEntry(String entryName) {
+        String name = entryName.replace('\\', '/');
+        String baseName = name.substring(name.lastIndexOf('/') + 1);
+        return baseName.equalsIgnoreCase(ZIP_ENTRY_NAME);
+    }
+
+    /**
+     * Превышен лимит объема распакованных данных.
+     */
+    public static class DecompressedSizeLimitException extends IOException {
+        public DecompressedSizeLimitException(long limit) {
+            super("Decompressed size exceeds limit of " + limit + " bytes");
+        }
+    }
+
+    /**
+     * Поток, считающий прочитанные байты и прерывающий чтение при превышении лимита.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Пропуск реализован через чтение, чтобы распакованные байты тоже учитывались в лимите.
+            byte[] scratch = new byte[8192];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        private void count(int read) throws IOException {
+            count += read;
+            if (count > limit) {
+                throw new DecompressedSizeLimitException(limit);
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
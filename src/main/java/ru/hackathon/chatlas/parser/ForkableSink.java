@@ -0,0 +1,24 @@
+package ru.hackathon.chatlas.parser;
+
+/**
+ * Приемник, который можно разделить на независимые части для параллельного разбора файла.
+ * Параллельный парсер создает по части на кусок файла через {@link #fork()} и вливает их результаты
+ * через {@link #join(ForkableSink)}; приемники без этого интерфейса получают события последовательно.
+ */
+public interface ForkableSink extends ChatExportSink {
+
+    /**
+     * Создать независимый пустой приемник того же вида для параллельной обработки части файла.
+     *
+     * @return новый приемник.
+     */
+    ForkableSink fork();
+
+    /**
+     * Влить в этот приемник результат приемника, созданного через {@link #fork()}.
+     * Части вливаются в порядке их следования в файле.
+     *
+     * @param forked приемник, ранее полученный из {@link #fork()}.
+     */
+    void join(ForkableSink forked);
+}
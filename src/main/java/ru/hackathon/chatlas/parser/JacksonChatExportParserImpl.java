@@ -1,5 +1,6 @@
 package ru.hackathon.chatlas.parser;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -20,14 +21,14 @@ public class JacksonChatExportParserImpl implements ChatExportParser {
 
     @Override
     public ChatExport parse(RawChatFile file) throws ChatExportParseException {
-        try {
-            log.info("Parsing file: {}", file.fileName());
+        log.info("Parsing file: {}", file.fileName());
 
-            if (file.jsonContent().isBlank()) {
+        try (JsonParser jsonParser = JsonSources.createParser(objectMapper.getFactory(), file)) {
+            if (jsonParser.nextToken() == null) {
                 throw new ChatExportParseException("JSON content is blank");
             }
 
-            return objectMapper.readValue(file.jsonContent(), ChatExport.class);
+            return objectMapper.readValue(jsonParser, ChatExport.class);
 
         } catch (Exception e) {
             log.error("Parse error: {}", e.getMessage());
@@ -0,0 +1,39 @@
+package ru.hackathon.chatlas.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import ru.hackathon.chatlas.domain.RawChatFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Создание Jackson-парсера напрямую из источника содержимого {@link RawChatFile}.
+ * Для байтовых источников Jackson декодирует UTF-8 сам, без промежуточной строки.
+ */
+final class JsonSources {
+
+    private JsonSources() {
+        // Утильный класс.
+    }
+
+    static JsonParser createParser(JsonFactory jsonFactory, RawChatFile file) throws IOException {
+        return switch (file.content()) {
+            case RawChatFile.StringContent content -> jsonFactory.createParser(content.json());
+            case RawChatFile.BytesContent content ->
+                    jsonFactory.createParser(content.bytes(), content.offset(), content.length());
+            case RawChatFile.BufferContent content -> createParser(jsonFactory, content.buffer().duplicate());
+            case RawChatFile.StreamContent content -> jsonFactory.createParser(content.inputStream());
+            case RawChatFile.PathContent content -> jsonFactory.createParser(content.path().toFile());
+        };
+    }
+
+    private static JsonParser createParser(JsonFactory jsonFactory, ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            return jsonFactory.createParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        // Буфер вне кучи (например, отображенный в память файл) читается кусками во внутренний буфер Jackson.
+        return jsonFactory.createParser(new ByteBufferBackedInputStream(buffer));
+    }
+}
@@ -0,0 +1,149 @@
+package ru.hackathon.chatlas.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Быстрый структурный предпросмотр JSON экспорта: находит границы объектов-сообщений
+ * внутри массива messages верхнего уровня. Учитывает строки и экранирование,
+ * но ничего не декодирует и не создает объектов на каждое сообщение.
+ */
+final class MessageArrayScanner {
+
+    private static final byte[] MESSAGES_KEY = "messages".getBytes(StandardCharsets.US_ASCII);
+
+    private MessageArrayScanner() {
+        // Утильный класс.
+    }
+
+    /**
+     * Разметка файла экспорта.
+     *
+     * @param arrayStart позиция '[' массива messages.
+     * @param arrayEnd позиция ']' массива messages.
+     * @param starts позиции '{' сообщений.
+     * @param ends позиции сразу после '}' сообщений.
+     * @param count количество найденных сообщений.
+     */
+    record Layout(int arrayStart, int arrayEnd, int[] starts, int[] ends, int count) {
+    }
+
+    /**
+     * Просканировать буфер (от нулевой позиции до limit).
+     *
+     * @return разметка или null, если структуру надежно определить не удалось
+     * (тогда файл разбирается последовательным парсером, который и сообщит об ошибке, если она есть).
+     */
+    static Layout scan(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int depth = 0;
+        boolean inString = false;
+        boolean stringEscaped = false;
+        int stringStart = -1;
+        int stringEnd = -1;
+        boolean messagesKey = false;
+        int arrayStart = -1;
+        int arrayEnd = -1;
+        int elementStart = -1;
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        int count = 0;
+
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+
+            if (inString) {
+                if (b == '\\') {
+                    stringEscaped = true;
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                    stringEnd = i;
+                }
+                continue;
+            }
+
+            switch (b) {
+                case '"' -> {
+                    inString = true;
+                    stringEscaped = false;
+                    stringStart = i + 1;
+                }
+                case ':' -> {
+                    if (depth == 1) {
+                        messagesKey = !stringEscaped && isMessagesKey(buffer, stringStart, stringEnd);
+                    }
+                }
+                case ',' -> {
+                    if (depth == 1) {
+                        messagesKey = false;
+                    }
+                }
+                case '{', '[' -> {
+                    if (depth == 0 && (b != '{' || i != firstNonWhitespace(buffer))) {
+                        return null;
+                    }
+                    if (depth == 1 && messagesKey) {
+                        if (b != '[' || arrayStart != -1) {
+                            // Массив messages не массив или встречается дважды - отдаем последовательному парсеру.
+                            return null;
+                        }
+                        arrayStart = i;
+                    } else if (depth == 2 && b == '{' && arrayStart != -1 && arrayEnd == -1) {
+                        elementStart = i;
+                    }
+                    depth++;
+                }
+                case '}', ']' -> {
+                    depth--;
+                    if (depth < 0) {
+                        return null;
+                    }
+                    boolean inMessagesArray = arrayStart != -1 && arrayEnd == -1;
+                    if (inMessagesArray && depth == 2 && b == '}') {
+                        if (count == starts.length) {
+                            starts = Arrays.copyOf(starts, count * 2);
+                            ends = Arrays.copyOf(ends, count * 2);
+                        }
+                        starts[count] = elementStart;
+                        ends[count] = i + 1;
+                        count++;
+                    } else if (inMessagesArray && depth == 1) {
+                        arrayEnd = i;
+                    }
+                }
+                default -> {
+                    // Скаляры и пробелы структуру не меняют.
+                }
+            }
+        }
+
+        if (inString || depth != 0 || arrayStart == -1 || arrayEnd == -1) {
+            return null;
+        }
+        return new Layout(arrayStart, arrayEnd, starts, ends, count);
+    }
+
+    private static boolean isMessagesKey(ByteBuffer buffer, int start, int end) {
+        if (start < 0 || end - start != MESSAGES_KEY.length) {
+            return false;
+        }
+        for (int i = 0; i < MESSAGES_KEY.length; i++) {
+            if (buffer.get(start + i) != MESSAGES_KEY[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int firstNonWhitespace(ByteBuffer buffer) {
+        for (int i = 0; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,324 @@
+package ru.hackathon.chatlas.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.config.BotConfig;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.RawChatFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Параллельный парсер экспорта чата для очень больших файлов.
+ * Сначала дешевым структурным проходом находит границы сообщений в массиве messages,
+ * затем разбирает куски массива на {@link ForkJoinPool} и сливает частичные результаты по порядку.
+ * Файлы меньше порога, потоковые источники и нестандартная структура JSON
+ * обрабатываются последовательным {@link StreamingChatExportParserImpl}.
+ */
+@Slf4j
+public class ParallelChatExportParserImpl implements ChatExportParser {
+
+    /**
+     * Минимальный размер куска: меньшие куски не окупают накладные расходы на задачу.
+     */
+    private static final int MIN_CHUNK_BYTES = 256 * 1024;
+
+    /**
+     * Количество кусков на один поток пула (для выравнивания нагрузки).
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final StreamingChatExportParserImpl sequentialParser;
+    private final JsonFactory jsonFactory;
+    private final ForkJoinPool pool;
+    private final long sequentialThresholdBytes;
+
+    public ParallelChatExportParserImpl() {
+        this(ForkJoinPool.commonPool(), BotConfig.PARALLEL_PARSE_THRESHOLD_BYTES);
+    }
+
+    /**
+     * @param pool пул для разбора кусков.
+     * @param sequentialThresholdBytes файлы меньше этого размера разбираются последовательно.
+     */
+    public ParallelChatExportParserImpl(ForkJoinPool pool, long sequentialThresholdBytes) {
+        this.sequentialParser = new StreamingChatExportParserImpl();
+        this.jsonFactory = new JsonFactory();
+        this.pool = pool;
+        this.sequentialThresholdBytes = sequentialThresholdBytes;
+    }
+
+    @Override
+    public ChatExport parse(RawChatFile file) throws ChatExportParseException {
+        Plan plan = plan(file);
+        if (plan == null) {
+            return sequentialParser.parse(file);
+        }
+
+        List<List<ChatExport.Message>> parts = parseChunks(plan, (chunkIndex, from, to) -> {
+            List<ChatExport.Message> messages = new ArrayList<>(to - from);
+            parseChunk(plan, from, to, ChatExportSink.ofMessages(messages::add));
+            return messages;
+        });
+
+        ChatExport chatExport = parseHeader(plan, ChatExportSink.ofMessages(message -> { }));
+        List<ChatExport.Message> messages = new ArrayList<>(plan.layout().count());
+        parts.forEach(messages::addAll);
+        chatExport.setMessages(messages);
+        return chatExport;
+    }
+
+    @Override
+    public ChatExport parse(RawChatFile file, Consumer<ChatExport.Message> messageConsumer)
+            throws ChatExportParseException
+    {
+        // Потребителю сообщения нужны строго по порядку и по одному - параллелизм тут ничего не дает.
+        return sequentialParser.parse(file, messageConsumer);
+    }
+
+    @Override
+    public ChatExport parse(RawChatFile file, ChatExportSink sink) throws ChatExportParseException {
+        // Приемник, который нельзя разделить на части, получает события последовательно.
+        Plan plan = sink instanceof ForkableSink ? plan(file) : null;
+        if (plan == null) {
+            return sequentialParser.parse(file, sink);
+        }
+        ForkableSink forkable = (ForkableSink) sink;
+
+        // Метаданные разбираются первыми: по id чата приемник решает, какие сообщения ему уже не нужны.
+        ChatExport chatExport = parseHeader(plan, sink);
+        ChatExportSink.MessageIdRange skipped = sink.skippedMessageIds();
+        Plan chunkPlan = skipped != null ? skipPrefix(plan, skipped) : plan;
+
+        // Каждому куску - свой приемник, частичные результаты сливаются по порядку в конце.
+        List<ForkableSink> forks = new ArrayList<>(chunkPlan.chunkCount());
+        while (forks.size() < chunkPlan.chunkCount()) {
+            forks.add(forkable.fork());
+        }
+
+        List<ForkableSink> parts = parseChunks(chunkPlan, (chunkIndex, from, to) -> {
+            ForkableSink chunkSink = forks.get(chunkIndex);
+            parseChunk(chunkPlan, from, to, chunkSink);
+            return chunkSink;
+        });
+        parts.forEach(forkable::join);
+        return chatExport;
+    }
+
+    /**
+     * Убрать из плана пропускаемые приемником сообщения в начале массива.
+     * Двоичный поиск по id опирается на то, что id в экспорте возрастают;
+     * остальные сообщения из диапазона отсеиваются при разборе кусков.
+     */
+    private Plan skipPrefix(Plan plan, ChatExportSink.MessageIdRange skipped) throws ChatExportParseException {
+        MessageArrayScanner.Layout layout = plan.layout();
+        Long firstId = readMessageId(plan, 0);
+        if (firstId == null || !skipped.contains(firstId)) {
+            return plan;
+        }
+
+        // Ищем первое сообщение за пределами диапазона.
+        int low = 1;
+        int high = layout.count();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Long id = readMessageId(plan, middle);
+            if (id == null) {
+                return plan;
+            }
+            if (id <= skipped.to()) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        log.info("Skipping {} of {} messages already covered by checkpoint", low, layout.count());
+        return new Plan(plan.buffer(), layout, splitIntoChunks(layout, low, plan.chunkCount()));
+    }
+
+    private Long readMessageId(Plan plan, int index) throws ChatExportParseException {
+        MessageArrayScanner.Layout layout = plan.layout();
+        ByteRangesInputStream input = new ByteRangesInputStream(
+                plan.buffer(), layout.starts(), layout.ends(), index, index + 1);
+        try (JsonParser parser = jsonFactory.createParser(input)) {
+            return sequentialParser.readMessageId(parser);
+        } catch (IOException e) {
+            log.error("Parse error: {}", e.getMessage());
+            throw new ChatExportParseException("Failed to parse JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Подготовить план параллельного разбора.
+     *
+     * @return план или null, если файл нужно разбирать последовательно.
+     */
+    private Plan plan(RawChatFile file) throws ChatExportParseException {
+        ByteBuffer buffer = toByteBuffer(file);
+        if (buffer == null || buffer.limit() < sequentialThresholdBytes) {
+            return null;
+        }
+
+        long scanStart = System.nanoTime();
+        MessageArrayScanner.Layout layout = MessageArrayScanner.scan(buffer);
+        if (layout == null || layout.count() < 2) {
+            log.info("Falling back to sequential parsing for file {}", file.fileName());
+            return null;
+        }
+
+        int targetChunks = Math.max(1, Math.min(
+                pool.getParallelism() * CHUNKS_PER_THREAD,
+                buffer.limit() / MIN_CHUNK_BYTES));
+        int[] chunkBounds = splitIntoChunks(layout, 0, targetChunks);
+
+        log.info("Parsing file in parallel mode: {} ({} bytes, {} messages, {} chunks, pre-scan {} ms)",
+                file.fileName(), buffer.limit(), layout.count(), chunkBounds.length - 1,
+                (System.nanoTime() - scanStart) / 1_000_000);
+        return new Plan(buffer, layout, chunkBounds);
+    }
+
+    /**
+     * Разбить сообщения начиная с fromIndex на куски примерно равного размера в байтах.
+     *
+     * @return индексы границ кусков: кусок i - сообщения [bounds[i], bounds[i + 1]).
+     */
+    private static int[] splitIntoChunks(MessageArrayScanner.Layout layout, int fromIndex, int targetChunks) {
+        if (fromIndex >= layout.count()) {
+            return new int[] {layout.count(), layout.count()};
+        }
+        long totalBytes = (long) layout.ends()[layout.count() - 1] - layout.starts()[fromIndex];
+        long bytesPerChunk = Math.max(1, totalBytes / targetChunks);
+
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(fromIndex);
+        int chunkStartOffset = layout.starts()[fromIndex];
+        for (int i = fromIndex; i < layout.count(); i++) {
+            if (layout.ends()[i] - chunkStartOffset >= bytesPerChunk && i + 1 < layout.count()) {
+                bounds.add(i + 1);
+                chunkStartOffset = layout.starts()[i + 1];
+            }
+        }
+        bounds.add(layout.count());
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Разобрать все куски на пуле и вернуть их результаты в порядке следования в файле.
+     */
+    private <T> List<T> parseChunks(Plan plan, ChunkTask<T> chunkTask) throws ChatExportParseException {
+        int[] bounds = plan.chunkBounds();
+        List<Callable<T>> tasks = new ArrayList<>(plan.chunkCount());
+        for (int i = 0; i < plan.chunkCount(); i++) {
+            int chunkIndex = i;
+            tasks.add(() -> chunkTask.parse(chunkIndex, bounds[chunkIndex], bounds[chunkIndex + 1]));
+        }
+
+        List<T> parts = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                parts.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChatExportParseException("Parallel parsing was interrupted", e);
+        } catch (ExecutionException e) {
+            // Пул может обернуть исключение задачи несколько раз - ищем исходную ошибку ввода/разбора.
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException ioException) {
+                    log.error("Parse error: {}", ioException.getMessage());
+                    throw new ChatExportParseException("Failed to parse JSON: " + ioException.getMessage(), ioException);
+                }
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Parallel parsing failed", e.getCause());
+        }
+        return parts;
+    }
+
+    private void parseChunk(Plan plan, int from, int to, ChatExportSink sink) throws IOException {
+        MessageArrayScanner.Layout layout = plan.layout();
+        ByteRangesInputStream input = new ByteRangesInputStream(
+                plan.buffer(), layout.starts(), layout.ends(), from, to);
+        try (JsonParser parser = jsonFactory.createParser(input)) {
+            sequentialParser.readRootMessages(parser, sink);
+        }
+    }
+
+    /**
+     * Разобрать метаданные чата: весь файл, кроме содержимого массива messages.
+     */
+    private ChatExport parseHeader(Plan plan, ChatExportSink sink) throws ChatExportParseException {
+        MessageArrayScanner.Layout layout = plan.layout();
+        int[] starts = {0, layout.arrayEnd()};
+        int[] ends = {layout.arrayStart() + 1, plan.buffer().limit()};
+        ByteRangesInputStream input = new ByteRangesInputStream(plan.buffer(), starts, ends, 0, starts.length);
+        try (JsonParser parser = jsonFactory.createParser(input)) {
+            return sequentialParser.readChatExport(parser, sink);
+        } catch (IOException e) {
+            log.error("Parse error: {}", e.getMessage());
+            throw new ChatExportParseException("Failed to parse JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Получить содержимое файла как буфер с произвольным доступом.
+     *
+     * @return буфер или null для источников, которые можно прочитать только последовательно.
+     */
+    private static ByteBuffer toByteBuffer(RawChatFile file) throws ChatExportParseException {
+        return switch (file.content()) {
+            case RawChatFile.BytesContent content ->
+                    ByteBuffer.wrap(content.bytes(), content.offset(), content.length()).slice();
+            case RawChatFile.BufferContent content -> content.buffer().slice();
+            case RawChatFile.PathContent content -> mapFile(content);
+            case RawChatFile.StringContent content -> null;
+            case RawChatFile.StreamContent content -> null;
+        };
+    }
+
+    private static ByteBuffer mapFile(RawChatFile.PathContent content) throws ChatExportParseException {
+        try (FileChannel channel = FileChannel.open(content.path(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new ChatExportParseException("Failed to read file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * План параллельного разбора: буфер, разметка и границы кусков.
+     */
+    private record Plan(ByteBuffer buffer, MessageArrayScanner.Layout layout, int[] chunkBounds) {
+        int chunkCount() {
+            return chunkBounds.length - 1;
+        }
+    }
+
+    /**
+     * Разбор одного куска: сообщения с индексами [from, to).
+     */
+    @FunctionalInterface
+    private interface ChunkTask<T> {
+        T parse(int chunkIndex, int from, int to) throws IOException;
+    }
+}
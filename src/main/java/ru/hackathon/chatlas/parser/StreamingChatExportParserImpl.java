@@ -0,0 +1,300 @@
+package ru.hackathon.chatlas.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.MessageDates;
+import ru.hackathon.chatlas.domain.RawChatFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый парсер экспорта чата на базе Jackson {@link JsonParser}.
+ * Проходит массив messages по токенам и отдает сообщения по одному, не собирая их в список.
+ * Ненужные поддеревья (text, photo, reactions и т.д.) пропускаются без построения объектов.
+ * В режиме {@link ChatExportSink} объекты сообщений не создаются вовсе: поля передаются событиями.
+ */
+@Slf4j
+public class StreamingChatExportParserImpl implements ChatExportParser {
+
+    private final JsonFactory jsonFactory;
+
+    public StreamingChatExportParserImpl() {
+        this.jsonFactory = new JsonFactory();
+    }
+
+    @Override
+    public ChatExport parse(RawChatFile file) throws ChatExportParseException {
+        List<ChatExport.Message> messages = new ArrayList<>();
+        ChatExport chatExport = parse(file, messages::add);
+        chatExport.setMessages(messages);
+        return chatExport;
+    }
+
+    @Override
+    public ChatExport parse(RawChatFile file, Consumer<ChatExport.Message> messageConsumer)
+            throws ChatExportParseException
+    {
+        return parse(file, ChatExportSink.ofMessages(messageConsumer));
+    }
+
+    @Override
+    public ChatExport parse(RawChatFile file, ChatExportSink sink) throws ChatExportParseException {
+        log.info("Parsing file in streaming mode: {}", file.fileName());
+
+        try (JsonParser parser = JsonSources.createParser(jsonFactory, file)) {
+            return readChatExport(parser, sink);
+        } catch (IOException e) {
+            log.error("Parse error: {}", e.getMessage());
+            throw new ChatExportParseException("Failed to parse JSON: " + e.getMessage(), e);
+        }
+    }
+
+    ChatExport readChatExport(JsonParser parser, ChatExportSink sink)
+            throws IOException, ChatExportParseException
+    {
+        JsonToken firstToken = parser.nextToken();
+        if (firstToken == null) {
+            throw new ChatExportParseException("JSON content is blank");
+        }
+        if (firstToken != JsonToken.START_OBJECT) {
+            throw new ChatExportParseException("Root JSON element must be an object");
+        }
+
+        ChatExport chatExport = new ChatExport();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "name" -> chatExport.setName(readString(parser));
+                case "type" -> {
+                    chatExport.setType(readString(parser));
+                    if (chatExport.getType() != null) {
+                        sink.onChatType(chatExport.getType());
+                    }
+                }
+                case "id" -> {
+                    chatExport.setId(readLong(parser));
+                    if (chatExport.getId() != null) {
+                        sink.onChatId(chatExport.getId());
+                    }
+                }
+                case "messages" -> readMessages(parser, sink);
+                default -> parser.skipChildren();
+            }
+        }
+        return chatExport;
+    }
+
+    private void readMessages(JsonParser parser, ChatExportSink sink) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        // Заголовок и буфер троек (type, text, href) переиспользуются между сообщениями.
+        ChatExportSink.MessageHeader header = new ChatExportSink.MessageHeader();
+        List<String> entityBuffer = new ArrayList<>();
+        ChatExportSink.MessageIdRange skipped = sink.skippedMessageIds();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                readMessage(parser, sink, skipped, header, entityBuffer);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Прочитать последовательность сообщений, записанных подряд как корневые JSON-объекты
+     * (используется параллельным парсером для кусков массива messages).
+     */
+    void readRootMessages(JsonParser parser, ChatExportSink sink) throws IOException {
+        ChatExportSink.MessageHeader header = new ChatExportSink.MessageHeader();
+        List<String> entityBuffer = new ArrayList<>();
+        ChatExportSink.MessageIdRange skipped = sink.skippedMessageIds();
+        while (parser.nextToken() != null) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                readMessage(parser, sink, skipped, header, entityBuffer);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Прочитать id сообщения, записанного как корневой JSON-объект (остальные поля пропускаются).
+     *
+     * @return id сообщения или null, если его нет.
+     */
+    Long readMessageId(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            if ("id".equals(fieldName)) {
+                return readLong(parser);
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    /**
+     * Прочитать одно сообщение и передать его в приемник.
+     * Сущности буферизуются до конца объекта, т.к. порядок полей в JSON не гарантирован,
+     * а приемник должен получить автора до сущностей.
+     * Сообщения из пропускаемого диапазона в приемник не передаются: если id идет первым полем
+     * (как в экспортах Telegram), остаток объекта пропускается без разбора значений.
+     */
+    private void readMessage(
+            JsonParser parser,
+            ChatExportSink sink,
+            ChatExportSink.MessageIdRange skipped,
+            ChatExportSink.MessageHeader header,
+            List<String> entityBuffer) throws IOException
+    {
+        Long id = null;
+        String from = null;
+        String fromId = null;
+        long unixtime = 0;
+        long localDate = 0;
+        entityBuffer.clear();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "id" -> {
+                    id = readLong(parser);
+                    if (isSkipped(id, skipped)) {
+                        skipRestOfObject(parser);
+                        return;
+                    }
+                }
+                case "from" -> from = readString(parser);
+                case "from_id" -> fromId = readString(parser);
+                case "date_unixtime" -> unixtime = readUnixtime(parser);
+                case "date" -> localDate = readLocalDateTime(parser);
+                case "text_entities" -> readTextEntities(parser, entityBuffer);
+                // text, photo, reactions и прочие поля не нужны для анализа.
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (isSkipped(id, skipped)) {
+            return;
+        }
+        // date_unixtime точнее: date (локальное время без пояса) - только для старых экспортов.
+        sink.onMessage(header.set(id, fromId, from, unixtime != 0 ? unixtime : localDate));
+        for (int i = 0; i < entityBuffer.size(); i += 3) {
+            sink.onEntity(entityBuffer.get(i), entityBuffer.get(i + 1), entityBuffer.get(i + 2));
+        }
+        sink.onMessageEnd();
+    }
+
+    private static boolean isSkipped(Long id, ChatExportSink.MessageIdRange skipped) {
+        return skipped != null && id != null && skipped.contains(id);
+    }
+
+    private static void skipRestOfObject(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    private void readTextEntities(JsonParser parser, List<String> entityBuffer) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String type = null;
+            String text = null;
+            String href = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "type" -> type = readString(parser);
+                    case "text" -> text = readString(parser);
+                    case "href" -> href = readString(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            entityBuffer.add(type);
+            entityBuffer.add(text);
+            entityBuffer.add(href);
+        }
+    }
+
+    /**
+     * Прочитать скалярное значение как строку. Вложенные объекты и массивы пропускаются.
+     */
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return parser.getValueAsString();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Прочитать время в секундах Unix (строка или число) прямо из буфера парсера, без создания строки.
+     *
+     * @return секунды Unix или 0, если значение не является датой.
+     */
+    private static long readUnixtime(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return Math.max(0, parser.getLongValue());
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return MessageDates.parseUnixtime(
+                    parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        parser.skipChildren();
+        return 0;
+    }
+
+    /**
+     * Прочитать дату {@code yyyy-MM-ddTHH:mm:ss} прямо из буфера парсера, без создания строки.
+     *
+     * @return секунды Unix (дата считается UTC) или 0, если значение не является датой.
+     */
+    private static long readLocalDateTime(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return MessageDates.parseLocalDateTime(
+                    parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        parser.skipChildren();
+        return 0;
+    }
+
+    private static Long readLong(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_STRING) {
+            return parser.getValueAsLong();
+        }
+        parser.skipChildren();
+        return null;
+    }
+}
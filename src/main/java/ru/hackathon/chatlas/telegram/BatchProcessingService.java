@@ -0,0 +1,151 @@
+package ru.hackathon.chatlas.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.export.ReportRenderer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Пакетная обработка нескольких файлов экспорта в один отчет.
+ * Файлы скачиваются, парсятся и анализируются параллельно на ограниченном пуле:
+ * каждый файл дает свой частичный результат, без общих изменяемых структур.
+ * Частичные результаты объединяются в конце, после чего отчет формируется один раз.
+ */
+@Slf4j
+public class BatchProcessingService {
+
+    private final ChatProcessingService processingService;
+    private final ExecutorService executor;
+
+    /**
+     * @param processingService сервис обработки одного файла (анализ и форматирование).
+     * @param executor ограниченный пул для обработки файлов пакета.
+     */
+    public BatchProcessingService(ChatProcessingService processingService, ExecutorService executor) {
+        this.processingService = processingService;
+        this.executor = executor;
+    }
+
+    /**
+     * Обработать пакет файлов и сформировать общий отчет.
+     *
+     * @param items файлы пакета.
+     * @return отчет по объединенному результату анализа.
+     * @throws BatchItemException если не удалось обработать один из файлов.
+     * @throws ChatProcessingService.ChatProcessingException если не удалось сформировать отчет.
+     */
+    public ReportRenderer.ReportResult process(List<BatchItem> items)
+            throws ChatProcessingService.ChatProcessingException
+    {
+        return process(items, ReportRenderer.ReportFormat.AUTO);
+    }
+
+    /**
+     * Обработать пакет файлов и сформировать общий отчет в заданном формате.
+     *
+     * @param items файлы пакета.
+     * @param reportFormat формат файлового отчета.
+     * @return отчет по объединенному результату анализа.
+     * @throws BatchItemException если не удалось обработать один из файлов.
+     * @throws ChatProcessingService.ChatProcessingException если не удалось сформировать отчет.
+     */
+    public ReportRenderer.ReportResult process(List<BatchItem> items, ReportRenderer.ReportFormat reportFormat)
+            throws ChatProcessingService.ChatProcessingException
+    {
+        return processingService.render(analyzeAll(items), reportFormat);
+    }
+
+    /**
+     * Проанализировать один файл пакета (вызывается из задачи {@link BatchItem}).
+     * Контрольные точки к файлам пакета не применяются: каждый файл подмешал бы накопленный результат чата
+     * заново (счетчики активности сложились бы при объединении), а параллельные файлы одного чата
+     * перезаписывали бы контрольную точку друг друга. Файлы пакета объединяет сам пакет.
+     *
+     * @param file файл пакета.
+     * @return результат анализа файла.
+     * @throws ChatProcessingService.ChatProcessingException если парсинг или анализ не удались.
+     */
+    public ChatAnalysisResult analyze(RawChatFile file) throws ChatProcessingService.ChatProcessingException {
+        return processingService.analyze(file, ChatProcessingService.Request.defaults());
+    }
+
+    /**
+     * Проанализировать файлы пакета параллельно и объединить результаты.
+     *
+     * @param items файлы пакета.
+     * @return объединенный результат анализа.
+     * @throws BatchItemException если не удалось обработать один из файлов (остальные задачи отменяются).
+     */
+    public ChatAnalysisResult analyzeAll(List<BatchItem> items) throws BatchItemException {
+        long start = System.nanoTime();
+        List<Future<ChatAnalysisResult>> futures = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            futures.add(executor.submit(item.analysis()));
+        }
+
+        List<ChatAnalysisResult> partialResults = new ArrayList<>(items.size());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                partialResults.add(await(items.get(i), futures.get(i)));
+            }
+        } finally {
+            // При ошибке остальные файлы обрабатывать незачем.
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        ChatAnalysisResult merged = ChatAnalysisResult.merge(partialResults);
+        log.info("Batch of {} files analyzed in {} ms: {} participants, {} mentions",
+                items.size(), (System.nanoTime() - start) / 1_000_000,
+                merged.getParticipantsCount(), merged.getMentionsCount());
+        return merged;
+    }
+
+    private static ChatAnalysisResult await(BatchItem item, Future<ChatAnalysisResult> future)
+            throws BatchItemException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BatchItemException(item.fileName(), "Batch processing was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new BatchItemException(item.fileName(), "Failed to process file " + item.fileName(), e.getCause());
+        }
+    }
+
+    /**
+     * Файл пакета.
+     *
+     * @param fileName имя файла (для сообщений об ошибках).
+     * @param analysis задача, которая получает файл и возвращает результат его анализа.
+     */
+    public record BatchItem(String fileName, Callable<ChatAnalysisResult> analysis) {
+    }
+
+    /**
+     * Ошибка обработки одного из файлов пакета.
+     */
+    public static class BatchItemException extends ChatProcessingService.ChatProcessingException {
+
+        private final String fileName;
+
+        public BatchItemException(String fileName, String message, Throwable cause) {
+            super(message, cause);
+            this.fileName = fileName;
+        }
+
+        /**
+         * @return имя файла, обработка которого не удалась.
+         */
+        public String getFileName() {
+            return fileName;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.hackathon.chatlas.telegram;
+
+import org.telegram.telegrambots.meta.api.objects.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Активные пакетные сессии (/batch ... /done) по чатам.
+ * В сессии хранятся только метаданные документов Telegram (идентификатор, имя, размер):
+ * содержимое файлов скачивается только при завершении пакета и не сохраняется.
+ */
+public class BatchSessionRegistry {
+
+    private final ConcurrentMap<Long, List<Document>> sessions = new ConcurrentHashMap<>();
+    private final int maxFiles;
+
+    /**
+     * @param maxFiles максимальное количество файлов в одном пакете.
+     */
+    public BatchSessionRegistry(int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * @return максимальное количество файлов в одном пакете.
+     */
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    /**
+     * Начать пакет в чате. Уже начатый пакет начинается заново.
+     */
+    public void start(Long chatId) {
+        sessions.put(chatId, new ArrayList<>());
+    }
+
+    /**
+     * @return true, если в чате собирается пакет.
+     */
+    public boolean isActive(Long chatId) {
+        return sessions.containsKey(chatId);
+    }
+
+    /**
+     * Добавить документ в пакет.
+     *
+     * @return количество файлов в пакете после добавления;
+     * -1, если пакет не начат; 0, если пакет уже заполнен.
+     */
+    public int add(Long chatId, Document document) {
+        int[] size = {-1};
+        sessions.computeIfPresent(chatId, (id, documents) -> {
+            if (documents.size() >= maxFiles) {
+                size[0] = 0;
+            } else {
+                documents.add(document);
+                size[0] = documents.size();
+            }
+            return documents;
+        });
+        return size[0];
+    }
+
+    /**
+     * Завершить пакет.
+     *
+     * @return документы пакета в порядке отправки или null, если пакет не начат.
+     */
+    public List<Document> finish(Long chatId) {
+        return sessions.remove(chatId);
+    }
+}
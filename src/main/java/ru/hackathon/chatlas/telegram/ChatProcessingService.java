@@ -1,7 +1,11 @@
 package ru.hackathon.chatlas.telegram;
 
+import lombok.extern.slf4j.Slf4j;
 import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.checkpoint.ChatCheckpointStore;
+import ru.hackathon.chatlas.checkpoint.CheckpointingAnalysisSink;
 import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatCheckpoint;
 import ru.hackathon.chatlas.domain.ChatExport;
 import ru.hackathon.chatlas.domain.RawChatFile;
 import ru.hackathon.chatlas.export.ReportRenderer;
@@ -10,23 +14,40 @@ import ru.hackathon.chatlas.parser.ChatExportParser;
 /**
  * Фасадный сервис для обработки файла экспорта чата.
  * Координирует работу парсера, анализатора и рендерера.
- *
- * @implNote TODO: Dev3, Dev4: Интегрировать реальные реализации сервисов.
  */
+@Slf4j
 public class ChatProcessingService {
 
     private final ChatExportParser parser;
     private final ChatAnalyzer analyzer;
     private final ReportRenderer renderer;
+    private final PipelineMode pipelineMode;
+    private final ChatCheckpointStore checkpointStore;
+    private final ChatAnalyzer approximateAnalyzer;
 
     public ChatProcessingService(
             ChatExportParser parser,
             ChatAnalyzer analyzer,
             ReportRenderer renderer)
+    {
+        this(parser, analyzer, renderer, Options.defaults());
+    }
+
+    /**
+     * @param options режим конвейера, хранилище контрольных точек и анализатор приближенного режима.
+     */
+    public ChatProcessingService(
+            ChatExportParser parser,
+            ChatAnalyzer analyzer,
+            ReportRenderer renderer,
+            Options options)
     {
         this.parser = parser;
         this.analyzer = analyzer;
         this.renderer = renderer;
+        this.pipelineMode = options.pipelineMode();
+        this.checkpointStore = options.checkpointStore();
+        this.approximateAnalyzer = options.approximateAnalyzer();
     }
 
     /**
@@ -37,25 +58,227 @@ public class ChatProcessingService {
      * @throws ChatProcessingException если обработка не удалась.
      */
     public ReportRenderer.ReportResult process(RawChatFile file) throws ChatProcessingException {
-        try {
-            // 1. Парсим JSON в доменную модель.
-            ChatExport chatExport = parser.parse(file);
+        return process(file, Request.defaults());
+    }
+
+    /**
+     * Обработать один файл экспорта чата с заданными режимом анализа, форматом отчета и чатом бота.
+     *
+     * @param file файл экспорта чата.
+     * @param request параметры обработки.
+     * @return результат обработки в формате текста или файла.
+     * @throws ChatProcessingException если обработка не удалась.
+     */
+    public ReportRenderer.ReportResult process(RawChatFile file, Request request) throws ChatProcessingException {
+        // 1-2. Парсим JSON и извлекаем участников/упоминания.
+        ChatAnalysisResult analysisResult = analyze(file, request);
 
-            // 2. Анализируем и извлекаем участников/упоминания.
-            ChatAnalysisResult analysisResult = analyzer.analyze(chatExport);
+        // 3. Форматируем результат (текст или файл).
+        return render(analysisResult, request.reportFormat());
+    }
 
-            // 3. Форматируем результат в (текст или Excel).
-            return renderer.render(analysisResult);
+    /**
+     * Распарсить и проанализировать один файл экспорта чата без форматирования результата.
+     *
+     * @param file файл экспорта чата.
+     * @return результат анализа.
+     * @throws ChatProcessingException если парсинг или анализ не удались.
+     */
+    public ChatAnalysisResult analyze(RawChatFile file) throws ChatProcessingException {
+        return analyze(file, Request.defaults());
+    }
 
+    /**
+     * Распарсить и проанализировать один файл экспорта чата без форматирования результата
+     * (формат отчета из параметров не используется).
+     * Приближенный анализ всегда идет за один проход (без промежуточной модели и контрольных точек),
+     * иначе память перестала бы быть ограниченной.
+     * Контрольная точка ищется по чату бота вместе с id и типом чата из экспорта: id из экспорта
+     * не уникален между пользователями (в личной переписке это id собеседника).
+     *
+     * @param file файл экспорта чата.
+     * @param request параметры обработки.
+     * @return результат анализа.
+     * @throws ChatProcessingException если парсинг или анализ не удались.
+     */
+    public ChatAnalysisResult analyze(RawChatFile file, Request request) throws ChatProcessingException {
+        try {
+            if (request.analysisMode() == AnalysisMode.APPROXIMATE) {
+                if (approximateAnalyzer == null) {
+                    throw new ChatProcessingException("Approximate analysis is not configured");
+                }
+                return parseAndAnalyze(file, approximateAnalyzer);
+            }
+            if (checkpointStore != null && request.requesterChatId() != null) {
+                return parseAndAnalyzeIncrementally(file, request.requesterChatId());
+            }
+            return switch (pipelineMode) {
+                case TWO_PHASE -> analyzer.analyze(parser.parse(file));
+                case FUSED -> parseAndAnalyze(file, analyzer);
+            };
         } catch (ChatExportParser.ChatExportParseException e) {
             throw new ChatProcessingException("Failed to parse chat export", e);
         } catch (ChatAnalyzer.ChatAnalysisException e) {
             throw new ChatProcessingException("Failed to analyze chat export", e);
+        }
+    }
+
+    /**
+     * @return ведутся ли контрольные точки: тогда результат точного анализа зависит от прошлых экспортов
+     * того же чата бота.
+     */
+    public boolean isIncremental() {
+        return checkpointStore != null;
+    }
+
+    /**
+     * Отформатировать результат анализа в заданном формате файлового отчета.
+     *
+     * @param analysisResult результат анализа.
+     * @param reportFormat формат файлового отчета.
+     * @return результат в формате текста или файла.
+     * @throws ChatProcessingException если форматирование не удалось.
+     */
+    public ReportRenderer.ReportResult render(
+            ChatAnalysisResult analysisResult,
+            ReportRenderer.ReportFormat reportFormat) throws ChatProcessingException
+    {
+        try {
+            return renderer.render(analysisResult, reportFormat);
         } catch (ReportRenderer.ReportRenderException e) {
             throw new ChatProcessingException("Failed to render report", e);
         }
     }
 
+    /**
+     * Совмещенный режим: парсер передает события прямо в анализатор,
+     * извлечение идет по ходу чтения файла без промежуточной доменной модели.
+     */
+    private ChatAnalysisResult parseAndAnalyze(RawChatFile file, ChatAnalyzer analyzer)
+            throws ChatExportParser.ChatExportParseException
+    {
+        ChatAnalyzer.AnalysisSink sink = analyzer.newSink();
+        parser.parse(file, sink);
+        return sink.getResult();
+    }
+
+    /**
+     * Инкрементальный режим: уже учтенные в контрольной точке чата сообщения пропускаются парсером,
+     * анализируются только новые, а их результат объединяется с накопленным и сохраняется.
+     * Пропуск делает парсер по ходу чтения, поэтому этот режим всегда работает через приемник.
+     */
+    private ChatAnalysisResult parseAndAnalyzeIncrementally(RawChatFile file, long requesterChatId)
+            throws ChatExportParser.ChatExportParseException
+    {
+        CheckpointingAnalysisSink sink =
+                new CheckpointingAnalysisSink(analyzer.newSink(), checkpointStore, requesterChatId);
+        parser.parse(file, sink);
+        ChatAnalysisResult result = sink.getResult();
+
+        ChatCheckpoint checkpoint = sink.toCheckpoint(result);
+        if (checkpoint != null) {
+            try {
+                checkpointStore.save(sink.getKey(), checkpoint);
+            } catch (ChatCheckpointStore.ChatCheckpointStoreException e) {
+                log.warn("Failed to save checkpoint for chat {}: {}", checkpoint.chatId(), e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Настройки сервиса. Значения по умолчанию - {@link #defaults()}, отдельные настройки меняются
+     * методами {@code with...}.
+     *
+     * @param pipelineMode режим конвейера обработки.
+     * @param checkpointStore хранилище контрольных точек для инкрементального анализа
+     * повторных экспортов одного чата (null - каждый файл анализируется целиком).
+     * @param approximateAnalyzer анализатор для приближенного режима (null - режим недоступен).
+     */
+    public record Options(
+            PipelineMode pipelineMode,
+            ChatCheckpointStore checkpointStore,
+            ChatAnalyzer approximateAnalyzer)
+    {
+        /**
+         * @return совмещенный конвейер без контрольных точек и без приближенного режима.
+         */
+        public static Options defaults() {
+            return new Options(PipelineMode.FUSED, null, null);
+        }
+
+        public Options withPipelineMode(PipelineMode pipelineMode) {
+            return new Options(pipelineMode, checkpointStore, approximateAnalyzer);
+        }
+
+        public Options withCheckpointStore(ChatCheckpointStore checkpointStore) {
+            return new Options(pipelineMode, checkpointStore, approximateAnalyzer);
+        }
+
+        public Options withApproximateAnalyzer(ChatAnalyzer approximateAnalyzer) {
+            return new Options(pipelineMode, checkpointStore, approximateAnalyzer);
+        }
+    }
+
+    /**
+     * Параметры обработки одного файла. Значения по умолчанию - {@link #defaults()}, отдельные параметры
+     * меняются методами {@code with...}.
+     *
+     * @param analysisMode точный или приближенный анализ.
+     * @param reportFormat формат файлового отчета.
+     * @param requesterChatId чат бота, из которого прислан файл: контрольные точки ведутся отдельно
+     * для каждого такого чата (null - без контрольных точек).
+     */
+    public record Request(AnalysisMode analysisMode, ReportRenderer.ReportFormat reportFormat, Long requesterChatId) {
+
+        /**
+         * @return точный анализ, автоматический выбор формата, без контрольных точек.
+         */
+        public static Request defaults() {
+            return new Request(AnalysisMode.EXACT, ReportRenderer.ReportFormat.AUTO, null);
+        }
+
+        public Request withAnalysisMode(AnalysisMode analysisMode) {
+            return new Request(analysisMode, reportFormat, requesterChatId);
+        }
+
+        public Request withReportFormat(ReportRenderer.ReportFormat reportFormat) {
+            return new Request(analysisMode, reportFormat, requesterChatId);
+        }
+
+        public Request withRequesterChatId(long requesterChatId) {
+            return new Request(analysisMode, reportFormat, requesterChatId);
+        }
+    }
+
+    /**
+     * Режим конвейера обработки.
+     */
+    public enum PipelineMode {
+        /**
+         * Сначала полный парсинг в {@link ChatExport}, затем отдельный проход анализатора.
+         */
+        TWO_PHASE,
+        /**
+         * Парсинг и анализ за один проход через {@link ChatAnalyzer.AnalysisSink}.
+         */
+        FUSED
+    }
+
+    /**
+     * Режим анализа.
+     */
+    public enum AnalysisMode {
+        /**
+         * Точные наборы всех участников и упоминаний.
+         */
+        EXACT,
+        /**
+         * Оценки количества и самые частые элементы с границами погрешности в фиксированной памяти.
+         */
+        APPROXIMATE
+    }
+
     /**
      * Исключение при обработке файла.
      */
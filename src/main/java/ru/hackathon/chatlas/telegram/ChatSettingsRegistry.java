@@ -0,0 +1,52 @@
+package ru.hackathon.chatlas.telegram;
+
+import ru.hackathon.chatlas.export.ReportRenderer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Настройки обработки, выбранные в чате командами бота.
+ * Хранятся только в памяти процесса: после перезапуска действуют значения по умолчанию.
+ */
+public class ChatSettingsRegistry {
+
+    private final ConcurrentMap<Long, ChatProcessingService.AnalysisMode> analysisModes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ReportRenderer.ReportFormat> reportFormats = new ConcurrentHashMap<>();
+
+    /**
+     * @return режим анализа чата (по умолчанию точный).
+     */
+    public ChatProcessingService.AnalysisMode getAnalysisMode(Long chatId) {
+        return analysisModes.getOrDefault(chatId, ChatProcessingService.AnalysisMode.EXACT);
+    }
+
+    /**
+     * Выбрать режим анализа чата.
+     */
+    public void setAnalysisMode(Long chatId, ChatProcessingService.AnalysisMode analysisMode) {
+        if (analysisMode == ChatProcessingService.AnalysisMode.EXACT) {
+            analysisModes.remove(chatId);
+        } else {
+            analysisModes.put(chatId, analysisMode);
+        }
+    }
+
+    /**
+     * @return формат файловых отчетов чата (по умолчанию выбирается по размеру результата).
+     */
+    public ReportRenderer.ReportFormat getReportFormat(Long chatId) {
+        return reportFormats.getOrDefault(chatId, ReportRenderer.ReportFormat.AUTO);
+    }
+
+    /**
+     * Выбрать формат файловых отчетов чата.
+     */
+    public void setReportFormat(Long chatId, ReportRenderer.ReportFormat reportFormat) {
+        if (reportFormat == ReportRenderer.ReportFormat.AUTO) {
+            reportFormats.remove(chatId);
+        } else {
+            reportFormats.put(chatId, reportFormat);
+        }
+    }
+}
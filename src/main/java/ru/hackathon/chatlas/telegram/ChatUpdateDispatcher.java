@@ -0,0 +1,81 @@
+package ru.hackathon.chatlas.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Параллельная обработка обновлений с сохранением порядка внутри чата.
+ * Обновления одного чата выполняются строго по очереди (цепочка задач на чат), обновления разных чатов -
+ * одновременно на исполнителе (обычно виртуальные потоки: почти все время обработки - ожидание сети и диска).
+ * Поэтому долгая обработка большого экспорта в одном чате не задерживает ответы в других.
+ * Цепочка чата удаляется, как только в ней не остается задач, так что память не растет с количеством чатов.
+ */
+@Slf4j
+public class ChatUpdateDispatcher implements LongPollingUpdateConsumer {
+
+    private final Consumer<Update> handler;
+    private final Executor executor;
+    private final ConcurrentMap<Long, CompletableFuture<Void>> chatTails = new ConcurrentHashMap<>();
+
+    /**
+     * @param handler обработчик одного обновления (исключения логируются и не прерывают очередь чата).
+     * @param executor исполнитель обработки.
+     */
+    public ChatUpdateDispatcher(Consumer<Update> handler, Executor executor) {
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    @Override
+    public void consume(List<Update> updates) {
+        for (Update update : updates) {
+            dispatch(update);
+        }
+    }
+
+    /**
+     * Поставить обновление в очередь его чата (обновления без чата выполняются сразу).
+     */
+    public void dispatch(Update update) {
+        Long chatId = chatIdOf(update);
+        if (chatId == null) {
+            executor.execute(() -> handle(update));
+            return;
+        }
+
+        CompletableFuture<Void> tail = chatTails.compute(chatId, (id, previous) -> previous == null
+                ? CompletableFuture.runAsync(() -> handle(update), executor)
+                : previous.thenRunAsync(() -> handle(update), executor));
+        // Удаляем цепочку, только если за это время в нее не добавили следующую задачу.
+        tail.whenComplete((ignored, error) -> chatTails.remove(chatId, tail));
+    }
+
+    /**
+     * @return количество чатов, в которых есть необработанные обновления.
+     */
+    public int activeChats() {
+        return chatTails.size();
+    }
+
+    private void handle(Update update) {
+        try {
+            handler.accept(update);
+        } catch (Throwable e) {
+            // Никакая ошибка (в том числе Error, например OutOfMemoryError) не должна обрывать цепочку:
+            // иначе следующие обновления чата не выполнятся.
+            log.error("Unhandled error while processing update", e);
+        }
+    }
+
+    private static Long chatIdOf(Update update) {
+        return update != null && update.hasMessage() ? update.getMessage().getChatId() : null;
+    }
+}
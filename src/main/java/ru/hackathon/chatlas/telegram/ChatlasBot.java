@@ -1,46 +1,157 @@
 package ru.hackathon.chatlas.telegram;
 
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
 import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
 import org.telegram.telegrambots.longpolling.util.LongPollingSingleThreadUpdateConsumer;
-import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.TelegramUrl;
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.message.Message;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.meta.generics.TelegramClient;
+import ru.hackathon.chatlas.config.BotConfig;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
 import ru.hackathon.chatlas.domain.RawChatFile;
 import ru.hackathon.chatlas.export.ReportRenderer;
+import ru.hackathon.chatlas.parser.ExportDecompressor;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.URL;
-import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
-public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer {
+public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer, AutoCloseable {
 
     private static final String COMMAND_START = "/start";
     private static final String COMMAND_HELP = "/help";
-    private static final String API_TELEGRAM_FILE_BOT_BASE_URL = "https://api.telegram.org/file/bot";
+    private static final String COMMAND_BATCH = "/batch";
+    private static final String COMMAND_DONE = "/done";
+    private static final String COMMAND_MODE = "/mode";
+    private static final String COMMAND_FORMAT = "/format";
+
+    /**
+     * Наименьшая оценка памяти на обработку файла: буферы, парсер и структуры анализа.
+     */
+    private static final long MIN_JOB_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * Оценка для файла без известного размера.
+     */
+    private static final long UNKNOWN_SIZE_JOB_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Во сколько раз сжатый экспорт обычно больше после распаковки (JSON сжимается в 5-10 раз).
+     */
+    private static final int COMPRESSED_EXPANSION = 5;
 
     private final TelegramClient telegramClient;
-    private final String botToken;
+    private final TelegramFileDownloader downloader;
     private final ChatProcessingService processingService;
-
+    private final DownloadSpooler downloadSpooler;
+    private final ExportDecompressor exportDecompressor;
+    private final BatchProcessingService batchProcessingService;
+    private final BatchSessionRegistry batchSessions;
+    private final ReportCache reportCache;
+    private final CpuStageLimiter cpuStages;
+    private final ProcessingScheduler scheduler;
+    private final MessageSender sender;
+    private final ChatSettingsRegistry chatSettings = new ChatSettingsRegistry();
+    private final ExecutorService ownedBatchExecutor;
+
+    /**
+     * Бот с настройками по умолчанию. Пул пакетной обработки создается ботом и останавливается в {@link #close()}.
+     */
     public ChatlasBot(String botToken, ChatProcessingService processingService) {
-        this.telegramClient = new OkHttpTelegramClient(botToken);
-        this.botToken = botToken;
+        this(botToken, processingService, Executors.newFixedThreadPool(BotConfig.BATCH_PARALLELISM));
+    }
+
+    private ChatlasBot(String botToken, ChatProcessingService processingService, ExecutorService batchExecutor) {
+        this(botToken, processingService,
+                new DownloadSpooler(BotConfig.SPOOL_THRESHOLD_BYTES, Path.of(System.getProperty("java.io.tmpdir"))),
+                new ExportDecompressor(BotConfig.MAX_DECOMPRESSED_BYTES),
+                new BatchProcessingService(processingService, batchExecutor),
+                new BatchSessionRegistry(BotConfig.BATCH_MAX_FILES),
+                new ReportCache(BotConfig.REPORT_CACHE_MAX_BYTES, Path.of(System.getProperty("java.io.tmpdir"))),
+                new CpuStageLimiter(BotConfig.CPU_STAGE_PARALLELISM),
+                new ProcessingScheduler(BotConfig.PROCESSING_MEMORY_BUDGET_BYTES, BotConfig.PROCESSING_QUEUE_CAPACITY),
+                batchExecutor);
+    }
+
+    /**
+     * @param cpuStages ограничение одновременных тяжелых для процессора этапов: обновления разных чатов
+     * могут обрабатываться параллельно (см. {@link ChatUpdateDispatcher}).
+     * @param scheduler допуск задач обработки по оценке памяти с очередью.
+     */
+    public ChatlasBot(
+            String botToken,
+            ChatProcessingService processingService,
+            DownloadSpooler downloadSpooler,
+            ExportDecompressor exportDecompressor,
+            BatchProcessingService batchProcessingService,
+            BatchSessionRegistry batchSessions,
+            ReportCache reportCache,
+            CpuStageLimiter cpuStages,
+            ProcessingScheduler scheduler)
+    {
+        this(botToken, processingService, downloadSpooler, exportDecompressor, batchProcessingService, batchSessions,
+                reportCache, cpuStages, scheduler, null);
+    }
+
+    /**
+     * @param ownedBatchExecutor пул пакетной обработки, созданный ботом (null - пул передан снаружи
+     * и его останавливает вызывающий).
+     */
+    private ChatlasBot(
+            String botToken,
+            ChatProcessingService processingService,
+            DownloadSpooler downloadSpooler,
+            ExportDecompressor exportDecompressor,
+            BatchProcessingService batchProcessingService,
+            BatchSessionRegistry batchSessions,
+            ReportCache reportCache,
+            CpuStageLimiter cpuStages,
+            ProcessingScheduler scheduler,
+            ExecutorService ownedBatchExecutor)
+    {
+        // Один клиент с пулом соединений на отправку сообщений и скачивание файлов.
+        OkHttpClient httpClient = TelegramFileDownloader.newHttpClient(
+                BotConfig.HTTP_CONNECT_TIMEOUT, BotConfig.HTTP_READ_TIMEOUT, BotConfig.HTTP_MAX_REQUESTS);
+        this.telegramClient = new OkHttpTelegramClient(httpClient, botToken);
+        this.downloader = new TelegramFileDownloader(telegramClient, httpClient, botToken, TelegramUrl.DEFAULT_URL);
         this.processingService = processingService;
+        this.downloadSpooler = downloadSpooler;
+        this.exportDecompressor = exportDecompressor;
+        this.batchProcessingService = batchProcessingService;
+        this.batchSessions = batchSessions;
+        this.reportCache = reportCache;
+        this.cpuStages = cpuStages;
+        this.scheduler = scheduler;
+        this.ownedBatchExecutor = ownedBatchExecutor;
+        this.sender = new MessageSender(MessageSender.Transport.of(telegramClient),
+                BotConfig.SEND_GLOBAL_PER_SECOND, BotConfig.SEND_CHAT_PER_SECOND, BotConfig.SEND_CHAT_BURST);
         log.info("ChatlasBot instance created");
     }
 
+    /**
+     * Остановить пул пакетной обработки, если его создал бот. Пакеты, которые уже обрабатываются, дорабатывают.
+     */
+    @Override
+    public void close() {
+        if (ownedBatchExecutor != null) {
+            ownedBatchExecutor.shutdown();
+        }
+    }
+
     @Override
     public void consume(Update update) {
         if (update == null) {
@@ -74,21 +185,151 @@ public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer {
     }
 
     private void handleCommand(Long chatId, String text) {
-        String command = text.split("\\s+", 2)[0];
+        String[] parts = text.trim().split("\\s+", 2);
+        String command = parts[0];
         switch (command) {
             case COMMAND_START -> sendStartMessage(chatId);
             case COMMAND_HELP -> sendHelpMessage(chatId);
+            case COMMAND_BATCH -> handleBatchStart(chatId);
+            case COMMAND_DONE -> handleBatchDone(chatId);
+            case COMMAND_MODE -> handleMode(chatId, parts.length > 1 ? parts[1].trim() : "");
+            case COMMAND_FORMAT -> handleFormat(chatId, parts.length > 1 ? parts[1].trim() : "");
             default -> safeSendText(chatId, "Неизвестная команда. Используйте /start или /help.");
         }
     }
 
+    private void handleMode(Long chatId, String argument) {
+        switch (argument.toLowerCase()) {
+            case "exact" -> {
+                chatSettings.setAnalysisMode(chatId, ChatProcessingService.AnalysisMode.EXACT);
+                safeSendText(chatId, "Режим анализа: точный. Отчет содержит всех участников и все упоминания.");
+            }
+            case "approx" -> {
+                chatSettings.setAnalysisMode(chatId, ChatProcessingService.AnalysisMode.APPROXIMATE);
+                safeSendText(chatId, "Режим анализа: приближенный. Для очень больших чатов: " +
+                        "отчет содержит оценку количества участников и упоминаний (погрешность около 1%) " +
+                        "и самых активных из них. Вернуться к точному режиму - /mode exact.");
+            }
+            case "" -> safeSendText(chatId, "Текущий режим анализа: " +
+                    (chatSettings.getAnalysisMode(chatId) == ChatProcessingService.AnalysisMode.APPROXIMATE
+                            ? "приближенный"
+                            : "точный") +
+                    ". Используйте /mode exact или /mode approx.");
+            default -> safeSendText(chatId, "Неизвестный режим. Используйте /mode exact или /mode approx.");
+        }
+    }
+
+    private void handleFormat(Long chatId, String argument) {
+        ReportRenderer.ReportFormat reportFormat = switch (argument.toLowerCase()) {
+            case "auto" -> ReportRenderer.ReportFormat.AUTO;
+            case "xlsx", "excel" -> ReportRenderer.ReportFormat.XLSX;
+            case "csv" -> ReportRenderer.ReportFormat.CSV;
+            case "csv.gz" -> ReportRenderer.ReportFormat.CSV_GZIP;
+            case "tsv" -> ReportRenderer.ReportFormat.TSV;
+            case "tsv.gz" -> ReportRenderer.ReportFormat.TSV_GZIP;
+            default -> null;
+        };
+        if (argument.isEmpty()) {
+            safeSendText(chatId, "Текущий формат отчета: " + formatName(chatSettings.getReportFormat(chatId)) +
+                    ". Используйте /format auto, xlsx, csv, csv.gz, tsv или tsv.gz.");
+        } else if (reportFormat == null) {
+            safeSendText(chatId, "Неизвестный формат. Используйте /format auto, xlsx, csv, csv.gz, tsv или tsv.gz.");
+        } else {
+            chatSettings.setReportFormat(chatId, reportFormat);
+            safeSendText(chatId, "Формат отчета: " + formatName(reportFormat) + ". " +
+                    "Небольшие результаты по-прежнему приходят текстом в чат.");
+        }
+    }
+
+    private static String formatName(ReportRenderer.ReportFormat reportFormat) {
+        return switch (reportFormat) {
+            case AUTO -> "автоматически (Excel, для очень больших чатов - CSV в gzip)";
+            case XLSX -> "Excel";
+            case CSV -> "CSV";
+            case CSV_GZIP -> "CSV в gzip";
+            case TSV -> "TSV";
+            case TSV_GZIP -> "TSV в gzip";
+        };
+    }
+
+    private void handleBatchStart(Long chatId) {
+        batchSessions.start(chatId);
+        safeSendText(chatId, "Пакетный режим: отправьте до " + batchSessions.getMaxFiles() + " файлов экспорта, " +
+                "затем команду /done - я объединю их в один отчет.");
+    }
+
+    private void handleBatchDone(Long chatId) {
+        List<Document> documents = batchSessions.finish(chatId);
+        if (documents == null) {
+            safeSendText(chatId, "Пакет не начат. Используйте /batch, чтобы начать.");
+            return;
+        }
+        if (documents.isEmpty()) {
+            safeSendText(chatId, "В пакете нет файлов. Используйте /batch, чтобы начать заново.");
+            return;
+        }
+
+        log.info("Processing batch of {} files for chat {}", documents.size(), chatId);
+        safeSendText(chatId, "Обрабатываю пакет из " + documents.size() + " файлов...");
+
+        List<BatchProcessingService.BatchItem> items = documents.stream()
+                .map(document -> new BatchProcessingService.BatchItem(
+                        documentFileName(document), () -> analyzeDocument(document)))
+                .toList();
+        long estimatedBytes = 0;
+        for (Document document : documents) {
+            estimatedBytes += estimateProcessingBytes(
+                    ExportDecompressor.Format.detect(documentFileName(document)), document.getFileSize());
+        }
+        try (ProcessingScheduler.Permit ignored = admit(
+                chatId, "Пакет", estimatedBytes, ProcessingScheduler.Priority.BATCH)) {
+            sendResult(chatId, batchProcessingService.process(items, chatSettings.getReportFormat(chatId)));
+            log.info("Batch of {} files processed successfully for chat {}", documents.size(), chatId);
+        } catch (BatchProcessingService.BatchItemException e) {
+            if (hasCause(e, ExportDecompressor.DecompressedSizeLimitException.class)) {
+                log.warn("Decompressed size limit exceeded for file {} in chat {}", e.getFileName(), chatId);
+                sendDecompressedSizeLimitMessage(chatId, e.getFileName());
+                return;
+            }
+            log.error("Failed to process batch file {} for chat {}", e.getFileName(), chatId, e);
+            safeSendText(chatId, "Произошла ошибка при обработке файла \"" + e.getFileName() + "\". " +
+                    "Пакет не обработан.");
+        } catch (ChatProcessingService.ChatProcessingException e) {
+            log.error("Failed to process batch for chat {}", chatId, e);
+            safeSendText(chatId, "Произошла ошибка при обработке пакета.");
+        } catch (ProcessingScheduler.QueueFullException e) {
+            sendQueueFullMessage(chatId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting to process batch for chat {}", chatId);
+        }
+    }
+
+    /**
+     * Скачать и проанализировать файл пакета (вызывается в пуле пакетной обработки).
+     */
+    private ChatAnalysisResult analyzeDocument(Document document) throws Exception {
+        String fileName = documentFileName(document);
+        ExportDecompressor.Format format = ExportDecompressor.Format.detect(fileName);
+        try (InputStream inputStream = TelegramFileDownloader.await(downloader.download(document.getFileId()));
+             DownloadSpooler.Download download = receive(format, fileName, inputStream, document.getFileSize())) {
+            return cpuStages.call(() -> batchProcessingService.analyze(download.rawChatFile()));
+        }
+    }
+
+    private static String documentFileName(Document document) {
+        return document.getFileName() != null ? document.getFileName() : "unknown.json";
+    }
+
     private void sendStartMessage(Long chatId) {
         String msg = """
                 Привет! Я бот Chatlas.
 
-                Пришлите мне один или несколько JSON-файлов экспорта чата из Telegram Desktop.
+                Пришлите мне один или несколько JSON-файлов экспорта чата из Telegram Desktop
+                (можно сжатыми: .zip с result.json внутри или .json.gz).
                 Я обработаю их и подготовлю список участников / Excel-файл согласно заданию хакатона.
 
+                Чтобы получить один общий список по нескольким файлам, используйте /batch.
                 Если нужна справка - используйте команду /help.
                 """.strip();
         safeSendText(chatId, msg);
@@ -99,12 +340,21 @@ public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer {
                 Что я умею:
 
                 - Принимаю JSON-экспорт истории чата (Telegram Desktop -> Export chat history -> JSON).
+                - Принимаю сжатые экспорты: .zip (с файлом result.json внутри) и .json.gz.
                 - Каждый файл обрабатывается сразу после отправки.
+                - /batch - начать пакет: присланные файлы копятся, а по команде /done
+                  обрабатываются вместе, и я присылаю один общий отчет без повторов.
                 - Извлекаю участников (авторов сообщений) и упоминания (@username).
+                - /mode approx - приближенный режим для очень больших чатов: оценка количества
+                  и самые активные участники/упоминания; /mode exact - обратно к точному
+                  (пакеты /batch всегда считаются точно).
                 - Если всего сущностей < 50 - отправляю список прямо в чат.
-                - Если всего сущностей >= 51 - формирую и отправляю Excel-файл.
+                - Если всего сущностей >= 51 - формирую и отправляю Excel-файл
+                  (для очень больших чатов - CSV, сжатый gzip).
+                - /format csv, csv.gz, tsv, tsv.gz или xlsx - выбрать формат файла;
+                  /format auto - выбирать автоматически.
 
-                Просто отправьте мне .json-файл экспорта чата.
+                Просто отправьте мне .json-файл экспорта чата (или .zip / .json.gz).
                 """.strip();
         safeSendText(chatId, msg);
     }
@@ -133,47 +383,65 @@ public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer {
                 mimeType,
                 document.getFileSize());
 
-        if (fileName == null) {
-            fileName = "unknown.json";
-        }
+        fileName = documentFileName(document);
 
-        if (!fileName.toLowerCase().endsWith(".json")) {
-            safeSendText(chatId, "Я принимаю только JSON-файлы экспорта чата (расширение .json). " +
+        ExportDecompressor.Format format = ExportDecompressor.Format.detect(fileName);
+        if (format == null) {
+            safeSendText(chatId, "Я принимаю только JSON-файлы экспорта чата (расширение .json), " +
+                    "а также сжатые экспорты .zip (с файлом result.json внутри) и .json.gz. " +
                     "Проверьте, что вы отправили именно экспорт истории чата Telegram Desktop в формате JSON.");
             return;
         }
 
-        String fileId = document.getFileId();
-
-        try (InputStream inputStream = downloadFileAsStream(fileId)) {
-            // Скачиваем файл в память (обрабатываем "на лету", не сохраняем на диск).
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            inputStream.transferTo(buffer);
-            byte[] fileContent = buffer.toByteArray();
-
-            // Преобразуем байты в строку JSON (UTF-8).
-            String jsonContent = new String(fileContent, java.nio.charset.StandardCharsets.UTF_8);
-            RawChatFile rawFile = new RawChatFile(fileName, jsonContent);
-            safeSendText(chatId, "Обрабатываю файл \"" + fileName + "\"...");
-
-            // Обрабатываем через сервис.
-            ReportRenderer.ReportResult result = processingService.process(rawFile);
+        if (batchSessions.isActive(chatId)) {
+            addToBatch(chatId, document, fileName);
+            return;
+        }
 
-            // Отправляем результат.
-            if (result.getType() == ReportRenderer.OutputType.EXCEL) {
-                sendExcelResult(chatId, result.getExcelBytes(), result.getExcelFileName());
-            } else {
-                sendTextResult(chatId, result.getText());
+        String fileId = document.getFileId();
+        ChatProcessingService.AnalysisMode analysisMode = chatSettings.getAnalysisMode(chatId);
+        ReportRenderer.ReportFormat reportFormat = chatSettings.getReportFormat(chatId);
+
+        // Допуск берется только при вычислении отчета и держится до конца отправки.
+        // Отчет из кэша уже построен и учтен в объеме кэша, поэтому отправляется без допуска.
+        try (Admission admission = new Admission()) {
+            // Повторно присланный (пересланный) файл берется из кэша без скачивания.
+            String fileKey = cacheKey(
+                    ReportCache.fileKey(document.getFileUniqueId()), chatId, analysisMode, reportFormat);
+            ReportRenderer.ReportResult result = fileKey != null
+                    ? reportCache.getOrCompute(fileKey, () -> downloadAndProcess(
+                            chatId, document, format, analysisMode, reportFormat, false, admission))
+                    : downloadAndProcess(chatId, document, format, analysisMode, reportFormat, true, admission);
+
+            // Отправляем результат; после отправки файл отчета больше не нужен этому запросу.
+            try {
+                sendResult(chatId, result);
+            } finally {
+                ReportCache.release(result);
             }
 
             log.info("File {} processed successfully for chat {}", fileName, chatId);
+        } catch (ProcessingScheduler.QueueFullException e) {
+            sendQueueFullMessage(chatId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting to process file {} for chat {}", fileName, chatId);
         } catch (TelegramApiException e) {
             log.error("Failed to download file from Telegram for chat {}, fileId {}", chatId, fileId, e);
             safeSendText(chatId, "Не удалось скачать файл \"" + fileName + "\".");
+        } catch (ExportDecompressor.DecompressedSizeLimitException e) {
+            log.warn("Decompressed size limit exceeded for file {} in chat {}", fileName, chatId);
+            sendDecompressedSizeLimitMessage(chatId, fileName);
         } catch (IOException e) {
             log.error("IO error while downloading file for chat {}, fileId {}", chatId, fileId, e);
             safeSendText(chatId, "Произошла ошибка при чтении файла \"" + fileName + "\".");
         } catch (ChatProcessingService.ChatProcessingException e) {
+            if (hasCause(e, ExportDecompressor.DecompressedSizeLimitException.class)) {
+                // Лимит срабатывает во время разбора, пока парсер читает распакованный поток.
+                log.warn("Decompressed size limit exceeded for file {} in chat {}", fileName, chatId);
+                sendDecompressedSizeLimitMessage(chatId, fileName);
+                return;
+            }
             log.error("Failed to process file {} for chat {}", fileName, chatId, e);
             safeSendText(chatId, "Произошла ошибка при обработке файла \"" + fileName + "\".");
         } catch (Exception e) {
@@ -182,6 +450,162 @@ public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer {
         }
     }
 
+    /**
+     * Скачать и обработать файл.
+     *
+     * @param cacheByContent искать ли отчет в кэше по хэшу содержимого (если у документа нет file_unique_id).
+     * @param admission сюда сохраняется допуск планировщика; его закрывает вызывающий после отправки результата.
+     */
+    private ReportRenderer.ReportResult downloadAndProcess(
+            Long chatId,
+            Document document,
+            ExportDecompressor.Format format,
+            ChatProcessingService.AnalysisMode analysisMode,
+            ReportRenderer.ReportFormat reportFormat,
+            boolean cacheByContent,
+            Admission admission) throws Exception
+    {
+        String fileName = documentFileName(document);
+        long estimatedBytes = estimateProcessingBytes(format, document.getFileSize());
+        // Путь файла запрашивается, пока задача ждет допуска; само скачивание начинается после допуска,
+        // чтобы ответ сервера не простаивал открытым в очереди.
+        CompletableFuture<String> filePath = downloader.resolve(document.getFileId());
+        admission.permit = admit(
+                chatId, "Файл \"" + fileName + "\"", estimatedBytes, ProcessingScheduler.Priority.INTERACTIVE);
+        try (InputStream inputStream = TelegramFileDownloader.await(filePath.thenCompose(downloader::open));
+             DownloadSpooler.Download download = receive(format, fileName, inputStream, document.getFileSize())) {
+            RawChatFile rawFile = download.rawChatFile();
+            safeSendText(chatId, "Обрабатываю файл \"" + fileName + "\"...");
+
+            // Обрабатываем через сервис.
+            String contentKey = cacheByContent
+                    ? cacheKey(ReportCache.contentKey(rawFile), chatId, analysisMode, reportFormat)
+                    : null;
+            // Файл отчета строится сразу на диск: он и кэшируется, и отправляется без повторного построения.
+            Callable<ReportRenderer.ReportResult> processing = () -> cpuStages.call(() -> reportCache.prepare(
+                    processingService.process(
+                            rawFile, new ChatProcessingService.Request(analysisMode, reportFormat, chatId))));
+            return contentKey != null
+                    ? reportCache.getOrCompute(contentKey, processing)
+                    : processing.call();
+        }
+    }
+
+    /**
+     * Дождаться допуска задачи обработки; если она встала в очередь, сообщить пользователю позицию.
+     */
+    private ProcessingScheduler.Permit admit(
+            Long chatId,
+            String subject,
+            long estimatedBytes,
+            ProcessingScheduler.Priority priority) throws ProcessingScheduler.QueueFullException, InterruptedException
+    {
+        return scheduler.acquire(estimatedBytes, priority, position -> safeSendText(chatId,
+                subject + " в очереди на обработку, позиция " + position + ". Я начну, как только освободится место."));
+    }
+
+    /**
+     * Оценка памяти на обработку файла по его размеру: несжатый JSON до порога читается в память целиком,
+     * а структуры анализа растут с объемом переписки; сжатый экспорт после распаковки в несколько раз больше.
+     */
+    private static long estimateProcessingBytes(ExportDecompressor.Format format, Long fileSize) {
+        if (fileSize == null || fileSize <= 0) {
+            return UNKNOWN_SIZE_JOB_BYTES;
+        }
+        long expansion = format == null || format == ExportDecompressor.Format.JSON ? 1 : COMPRESSED_EXPANSION;
+        return Math.max(MIN_JOB_BYTES, fileSize * expansion);
+    }
+
+    private void sendQueueFullMessage(Long chatId) {
+        log.warn("Processing queue is full, rejecting job for chat {}: {}", chatId, scheduler.stats());
+        safeSendText(chatId, "Сейчас я обрабатываю слишком много файлов, и очередь заполнена. " +
+                "Пожалуйста, отправьте файл ещё раз через несколько минут.");
+    }
+
+    /**
+     * Ключ кэша с учетом режима анализа и формата: отчеты по одному файлу в разных режимах и форматах различаются.
+     * С контрольными точками отчет включает накопленное по прошлым экспортам этого чата бота,
+     * поэтому такие отчеты кэшируются отдельно для каждого чата.
+     */
+    private String cacheKey(
+            String key,
+            Long chatId,
+            ChatProcessingService.AnalysisMode analysisMode,
+            ReportRenderer.ReportFormat reportFormat)
+    {
+        if (key == null) {
+            return null;
+        }
+        if (processingService.isIncremental() && analysisMode == ChatProcessingService.AnalysisMode.EXACT) {
+            key += "@" + chatId;
+        }
+        if (analysisMode != ChatProcessingService.AnalysisMode.EXACT) {
+            key += "#" + analysisMode.name().toLowerCase();
+        }
+        if (reportFormat != ReportRenderer.ReportFormat.AUTO) {
+            key += "#" + reportFormat.name().toLowerCase();
+        }
+        return key;
+    }
+
+    private void addToBatch(Long chatId, Document document, String fileName) {
+        int size = batchSessions.add(chatId, document);
+        if (size == 0) {
+            safeSendText(chatId, "В пакете уже " + batchSessions.getMaxFiles() + " файлов - это максимум. " +
+                    "Файл \"" + fileName + "\" не добавлен. Отправьте /done, чтобы обработать пакет.");
+        } else if (size > 0) {
+            safeSendText(chatId, "Файл \"" + fileName + "\" добавлен в пакет (" + size + " из " +
+                    batchSessions.getMaxFiles() + "). Отправьте ещё файлы или /done.");
+        } else {
+            // Пакет успели завершить между проверкой и добавлением.
+            safeSendText(chatId, "Пакет уже завершен. Отправьте файл ещё раз.");
+        }
+    }
+
+    private void sendResult(Long chatId, ReportRenderer.ReportResult result) {
+        if (result.getType() == ReportRenderer.OutputType.TEXT) {
+            sendTextResult(chatId, result.getText());
+        } else {
+            sendFileResult(chatId, result);
+        }
+    }
+
+    /**
+     * Принять скачиваемый файл.
+     * Несжатый JSON известного размера: небольшие файлы читаются в память, большие - во временный файл,
+     * который удаляется после обработки. Байты UTF-8 передаются парсеру напрямую, без промежуточной строки.
+     * Сжатый экспорт и JSON без известного размера разбираются прямо из ответа сервера по мере получения байтов:
+     * распаковка идет на лету, без сохранения в память или на диск. Пока парсер ждет сеть,
+     * разрешение на CPU-этап отдается другим задачам (см. {@link CpuStageLimiter#releaseWhileBlocked}).
+     */
+    private DownloadSpooler.Download receive(
+            ExportDecompressor.Format format,
+            String fileName,
+            InputStream inputStream,
+            Long declaredSize) throws IOException
+    {
+        boolean sizeKnown = declaredSize != null && declaredSize > 0;
+        if (format == ExportDecompressor.Format.JSON && sizeKnown) {
+            return downloadSpooler.receive(fileName, inputStream, declaredSize);
+        }
+        InputStream jsonStream = exportDecompressor.open(format, cpuStages.releaseWhileBlocked(inputStream));
+        return new DownloadSpooler.Download(RawChatFile.ofStream(fileName, jsonStream), null);
+    }
+
+    private void sendDecompressedSizeLimitMessage(Long chatId, String fileName) {
+        safeSendText(chatId, "Файл \"" + fileName + "\" слишком большой после распаковки. " +
+                "Попробуйте отправить экспорт меньшего объема.");
+    }
+
+    private static boolean hasCause(Throwable throwable, Class<? extends Throwable> type) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void sendTextResult(Long chatId, String text) {
         if (text == null || text.isBlank()) {
             log.error("Text is null or blank for chatId {}", chatId);
@@ -189,64 +613,63 @@ public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer {
             return;
         }
 
-        // Telegram ограничивает длину сообщения 4096 символами, разбиваем при необходимости.
-        if (text.length() <= 4096) {
-            safeSendText(chatId, text);
-        } else {
-            // Разбиваем на части
-            int offset = 0;
-            while (offset < text.length()) {
-                int endIndex = Math.min(offset + 4000, text.length());
-                String chunk = text.substring(offset, endIndex);
-                safeSendText(chatId, chunk);
-                offset = endIndex;
-            }
-        }
+        // Telegram ограничивает длину сообщения; длинный текст очередь отправки делит на отдельные сообщения.
+        safeSendText(chatId, text);
     }
 
-    private void sendExcelResult(Long chatId, byte[] excelBytes, String fileName) {
-        if (excelBytes == null || excelBytes.length == 0) {
-            log.error("Excel bytes is null or blank for chatId {}", chatId);
-            safeSendText(chatId, "Ошибка: Excel-файл пуст.");
+    /**
+     * Отправить файловый отчет (Excel, CSV или TSV) с диска потоком, так что в памяти держится только буфер
+     * записи, а не весь файл. Готовый файл ({@link ReportCache.FileReport}) отправляется как есть,
+     * остальные отчеты сначала пишутся во временный файл.
+     */
+    private void sendFileResult(Long chatId, ReportRenderer.ReportResult result) {
+        String fileName = result.getFileName() != null && !result.getFileName().isBlank()
+                ? result.getFileName()
+                : "chatlas_report.xlsx";
+
+        if (result instanceof ReportCache.FileReport report) {
+            // Файл удалит кэш, когда вызывающий освободит ссылку на отчет.
+            sendReportFile(chatId, report.file(), fileName);
             return;
         }
+        try (DownloadSpooler.Upload upload = cpuStages.call(() -> downloadSpooler.spoolReport(result))) {
+            sendReportFile(chatId, upload.file(), fileName);
+        } catch (IOException e) {
+            log.error("Failed to write report file for chat {}", chatId, e);
+            safeSendText(chatId, "Не удалось сформировать файл отчета.");
+        }
+    }
 
+    private void sendReportFile(Long chatId, Path file, String fileName) {
         try {
-            String excelFileName = fileName != null && !fileName.isBlank()
-                    ? fileName
-                    : "chatlas_report.xlsx";
+            if (Files.size(file) == 0) {
+                log.error("Report file is empty for chatId {}", chatId);
+                safeSendText(chatId, "Ошибка: файл отчета пуст.");
+                return;
+            }
 
-            InputFile inputFile = new InputFile(new ByteArrayInputStream(excelBytes), excelFileName);
+            InputFile inputFile = new InputFile(file.toFile(), fileName);
             SendDocument sendDocument = SendDocument.builder()
                     .chatId(String.valueOf(chatId))
                     .document(inputFile)
                     .caption("Отчет по участникам чата")
                     .build();
 
-            telegramClient.execute(sendDocument);
-            log.info("Excel file sent to chat {}", chatId);
+            // Документ идет через общую очередь отправки (после уже поставленных сообщений чата);
+            // ждем отправки, потому что файл удаляется после возврата.
+            sender.sendDocument(chatId, sendDocument).get();
+            log.info("Report file {} sent to chat {}", fileName, chatId);
 
-        } catch (TelegramApiException e) {
-            log.error("Failed to send Excel file to chat {}", chatId, e);
-            safeSendText(chatId, "Не удалось отправить Excel-файл.");
-        }
-    }
-
-    private InputStream downloadFileAsStream(String fileId) throws TelegramApiException, IOException {
-        GetFile getFileMethod = new GetFile(fileId);
-        org.telegram.telegrambots.meta.api.objects.File file = telegramClient.execute(getFileMethod);
-
-        String filePath = file.getFilePath();
-        if (filePath == null || filePath.isBlank()) {
-            throw new IllegalStateException("Received empty filePath for fileId " + fileId);
+        } catch (IOException e) {
+            log.error("Failed to read report file for chat {}", chatId, e);
+            safeSendText(chatId, "Не удалось сформировать файл отчета.");
+        } catch (ExecutionException e) {
+            // Ошибка отправки уже записана в лог очередью отправки.
+            safeSendText(chatId, "Не удалось отправить файл отчета.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while sending report file to chat {}", chatId);
         }
-
-        String urlString = API_TELEGRAM_FILE_BOT_BASE_URL + botToken + "/" + filePath;
-        log.info("Downloading file from Telegram: {}", urlString);
-
-        URL url = URI.create(urlString).toURL();
-        URLConnection connection = url.openConnection();
-        return connection.getInputStream();
     }
 
     private void safeSendText(Long chatId, String text) {
@@ -255,15 +678,22 @@ public class ChatlasBot implements LongPollingSingleThreadUpdateConsumer {
             return;
         }
 
-        SendMessage message = SendMessage.builder()
-                .chatId(String.valueOf(chatId))
-                .text(text)
-                .build();
+        // Не ждем отправки: ошибки записывает в лог очередь отправки.
+        sender.sendText(chatId, text);
+    }
 
-        try {
-            telegramClient.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Failed to send message to chat {}", chatId, e);
+    /**
+     * Допуск планировщика для одного файла: пуст, пока отчет не начали вычислять (например, при попадании в кэш).
+     */
+    private static final class Admission implements AutoCloseable {
+
+        private ProcessingScheduler.Permit permit;
+
+        @Override
+        public void close() {
+            if (permit != null) {
+                permit.close();
+            }
         }
     }
 }
@@ -0,0 +1,116 @@
+package ru.hackathon.chatlas.telegram;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ограничение количества одновременно выполняемых тяжелых для процессора этапов (разбор и анализ экспорта,
+ * построение файла отчета). Обновления обрабатываются на виртуальных потоках без ограничения их количества,
+ * а без этого лимита десяток одновременных больших экспортов делил бы ядра между собой и каждый шел бы
+ * в разы дольше. Ожидание разрешения на виртуальном потоке не занимает поток-носитель.
+ * Этап, который читает данные по мере их скачивания, на время ожидания сети отдает разрешение
+ * (см. {@link #releaseWhileBlocked}).
+ */
+public class CpuStageLimiter {
+
+    private final Semaphore permits;
+    private final ThreadLocal<Boolean> holding = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * @param parallelism максимальное количество одновременно выполняемых этапов.
+     */
+    public CpuStageLimiter(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.permits = new Semaphore(parallelism, true);
+    }
+
+    /**
+     * Выполнить этап, дождавшись свободного разрешения (в порядке очереди).
+     *
+     * @param stage этап.
+     * @return результат этапа.
+     * @throws E исключение этапа.
+     */
+    public <T, E extends Exception> T call(Stage<T, E> stage) throws E {
+        permits.acquireUninterruptibly();
+        holding.set(true);
+        try {
+            return stage.call();
+        } finally {
+            holding.set(false);
+            permits.release();
+        }
+    }
+
+    /**
+     * Обернуть поток, данные которого приходят по сети, чтобы читать его внутри этапа по мере получения:
+     * если чтение в этапе должно ждать данных, разрешение на это время отдается другим этапам,
+     * а перед возвратом данных берется снова (в порядке очереди). Вне этапа поток читается как обычно.
+     *
+     * @param input поток (закрывается вместе с результатом).
+     * @return поток, не занимающий разрешение во время ожидания данных.
+     */
+    public InputStream releaseWhileBlocked(InputStream input) {
+        return new ReleasingInputStream(input);
+    }
+
+    /**
+     * @return количество свободных разрешений.
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Поток, отдающий разрешение этапа, пока чтение ждет данных.
+     * Ожидание определяется по {@link InputStream#available()}: данные, уже полученные клиентом, читаются сразу.
+     */
+    private final class ReleasingInputStream extends FilterInputStream {
+
+        private ReleasingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!mayBlock()) {
+                return in.read();
+            }
+            permits.release();
+            try {
+                return in.read();
+            } finally {
+                permits.acquireUninterruptibly();
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!mayBlock()) {
+                return in.read(b, off, len);
+            }
+            permits.release();
+            try {
+                return in.read(b, off, len);
+            } finally {
+                permits.acquireUninterruptibly();
+            }
+        }
+
+        private boolean mayBlock() throws IOException {
+            return holding.get() && in.available() == 0;
+        }
+    }
+
+    /**
+     * Тяжелый для процессора этап.
+     */
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T call() throws E;
+    }
+}
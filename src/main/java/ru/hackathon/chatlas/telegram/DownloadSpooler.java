@@ -0,0 +1,188 @@
+package ru.hackathon.chatlas.telegram;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.export.ReportRenderer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Размещение скачиваемого файла в зависимости от размера.
+ * Небольшие файлы читаются в память одним массивом байт.
+ * Файлы больше порога сбрасываются во временный файл через {@link FileChannel#transferFrom},
+ * парсятся из отображенного в память {@link MappedByteBuffer} (вне кучи) и удаляются после обработки.
+ */
+@Slf4j
+public class DownloadSpooler {
+
+    private static final long MAX_IN_MEMORY_FILE_SIZE = Integer.MAX_VALUE - 8;
+    private static final long MAX_MAPPED_FILE_SIZE = Integer.MAX_VALUE;
+    private static final long TRANSFER_CHUNK_BYTES = 8L * 1024 * 1024;
+    private static final int UPLOAD_BUFFER_BYTES = 64 * 1024;
+
+    private final long spoolThresholdBytes;
+    private final Path spoolDirectory;
+
+    /**
+     * @param spoolThresholdBytes файлы больше этого размера сбрасываются на диск.
+     * @param spoolDirectory каталог для временных файлов.
+     */
+    public DownloadSpooler(long spoolThresholdBytes, Path spoolDirectory) {
+        this.spoolThresholdBytes = spoolThresholdBytes;
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Принять содержимое файла из потока.
+     *
+     * @param fileName имя файла.
+     * @param inputStream поток с содержимым (не закрывается).
+     * @param declaredSize размер файла по данным Telegram (может быть null).
+     * @return скачанный файл; после обработки его нужно закрыть, чтобы удалить временные данные.
+     * @throws IOException если не удалось прочитать или сохранить файл.
+     */
+    public Download receive(String fileName, InputStream inputStream, Long declaredSize) throws IOException {
+        boolean sizeKnown = declaredSize != null && declaredSize > 0;
+        if (sizeKnown && declaredSize <= Math.min(spoolThresholdBytes, MAX_IN_MEMORY_FILE_SIZE)) {
+            return new Download(readToMemory(fileName, inputStream, declaredSize), null);
+        }
+        return spoolToDisk(fileName, inputStream);
+    }
+
+    /**
+     * Прочитать содержимое файла в один массив байт нужного размера, без промежуточных буферов.
+     * Размер должен совпасть с заявленным: оборванное скачивание не должно разбираться как целый файл.
+     */
+    private static RawChatFile readToMemory(String fileName, InputStream inputStream, long expectedSize)
+            throws IOException
+    {
+        byte[] content = new byte[(int) expectedSize];
+        int read = inputStream.readNBytes(content, 0, content.length);
+        if (read < content.length) {
+            throw new IOException("File ended after " + read + " bytes, declared size is " + expectedSize);
+        }
+        if (inputStream.read() != -1) {
+            throw new IOException("File is larger than declared size " + expectedSize);
+        }
+        return RawChatFile.ofBytes(fileName, content, 0, read);
+    }
+
+    private Download spoolToDisk(String fileName, InputStream inputStream) throws IOException {
+        Path tempFile = Files.createTempFile(spoolDirectory, "chatlas-", ".json");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(inputStream);
+            long size = 0;
+            long transferred;
+            while ((transferred = channel.transferFrom(source, size, TRANSFER_CHUNK_BYTES)) > 0) {
+                size += transferred;
+            }
+            log.info("File {} spooled to disk: {} bytes", fileName, size);
+
+            if (size > MAX_MAPPED_FILE_SIZE) {
+                // Такой файл не помещается в один буфер - читаем его с диска последовательно.
+                return new Download(RawChatFile.ofPath(fileName, tempFile), tempFile);
+            }
+            // Отображение остается действительным и после закрытия канала.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new Download(RawChatFile.ofBuffer(fileName, buffer), tempFile);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Записать отправляемый файловый отчет во временный файл: клиент Telegram передает файл с диска потоком,
+     * а содержимое из {@link InputStream} целиком читает в память.
+     *
+     * @param result файловый отчет (Excel, CSV или TSV).
+     * @return временный файл; после отправки его нужно закрыть, чтобы удалить.
+     * @throws IOException если не удалось построить или записать отчет.
+     */
+    public Upload spoolReport(ReportRenderer.ReportResult result) throws IOException {
+        Path tempFile = Files.createTempFile(spoolDirectory, "chatlas-report-", ".tmp");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(tempFile), UPLOAD_BUFFER_BYTES)) {
+            result.writeFile(output);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+        log.info("Report {} spooled to disk: {} bytes", result.getFileName(), Files.size(tempFile));
+        return new Upload(tempFile);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Скачанный файл. Закрытие удаляет временный файл на диске, если он был создан.
+     *
+     * @param rawChatFile файл для передачи в парсер.
+     * @param tempFile временный файл на диске (null, если файл в памяти).
+     */
+    public record Download(RawChatFile rawChatFile, Path tempFile) implements AutoCloseable {
+
+        /**
+         * @return true, если содержимое сброшено на диск.
+         */
+        public boolean isSpooled() {
+            return tempFile != null;
+        }
+
+        /**
+         * Открыть принятое содержимое как поток (например, чтобы распаковать сжатый экспорт).
+         *
+         * @throws IOException если не удалось открыть временный файл.
+         */
+        public InputStream openStream() throws IOException {
+            return switch (rawChatFile.content()) {
+                case RawChatFile.BytesContent content ->
+                        new ByteArrayInputStream(content.bytes(), content.offset(), content.length());
+                case RawChatFile.BufferContent content -> new ByteBufferBackedInputStream(content.buffer().duplicate());
+                case RawChatFile.PathContent content -> Files.newInputStream(content.path());
+                case RawChatFile.StreamContent content -> content.inputStream();
+                case RawChatFile.StringContent content ->
+                        new ByteArrayInputStream(content.json().getBytes(StandardCharsets.UTF_8));
+            };
+        }
+
+        @Override
+        public void close() {
+            if (tempFile != null) {
+                // В Linux файл можно удалить и при живом отображении: место освободится после его сборки.
+                deleteQuietly(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Отправляемый файл на диске. Закрытие удаляет его.
+     *
+     * @param file временный файл.
+     */
+    public record Upload(Path file) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package ru.hackathon.chatlas.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import org.telegram.telegrambots.meta.api.methods.botapimethods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.message.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.TelegramClient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронная отправка сообщений с ограничением частоты: общим на бота и отдельным на каждый чат
+ * (ведра токенов), чтобы не упираться в лимиты Telegram (около 30 сообщений в секунду всего и около одного
+ * в секунду в чат) и не получать 429.
+ * Сообщения чата отправляются строго по очереди, не больше одного запроса на чат одновременно; чаты
+ * обслуживаются по кругу. Соседние текстовые сообщения одному чату, еще ждущие отправки, склеиваются в одно
+ * (до {@link #MAX_MESSAGE_LENGTH} символов). Более длинный текст делится на части по {@link #MAX_MESSAGE_LENGTH}
+ * символов, которые уходят отдельными сообщениями и ни с чем не склеиваются.
+ * На ответ 429 запрос повторяется через указанное Telegram время {@code retry_after}, остальные очереди
+ * в это время продолжают работать.
+ * Вызывающий поток не ждет сети: запросы выполняются через {@code executeAsync}, а вся очередь живет
+ * в одном потоке планировщика, поэтому ее состояние не требует синхронизации.
+ */
+@Slf4j
+public class MessageSender implements AutoCloseable {
+
+    /**
+     * Наибольшая длина текстового сообщения Telegram.
+     */
+    public static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private static final String COALESCED_SEPARATOR = "\n\n";
+
+    /**
+     * Сколько раз повторяется запрос после 429.
+     */
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final Transport transport;
+    private final double chatPerSecond;
+    private final int chatBurst;
+    private final ScheduledExecutorService scheduler;
+    private final TokenBucket globalBucket;
+    private final Map<Long, ChatQueue> chats = new LinkedHashMap<>();
+    private ScheduledFuture<?> wakeUp;
+    private long wakeUpAt;
+
+    /**
+     * @param transport асинхронная отправка запросов.
+     * @param globalPerSecond сколько сообщений в секунду можно отправить всего.
+     * @param chatPerSecond сколько сообщений в секунду можно отправить в один чат.
+     * @param chatBurst сколько сообщений можно отправить в чат подряд без ожидания.
+     */
+    public MessageSender(Transport transport, double globalPerSecond, double chatPerSecond, int chatBurst) {
+        this.transport = transport;
+        this.chatPerSecond = chatPerSecond;
+        this.chatBurst = chatBurst;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("chatlas-sender").daemon().factory());
+        // Общее ведро без накопления сверх секундного лимита: пик не превышает лимит Telegram.
+        this.globalBucket = new TokenBucket(globalPerSecond, (int) Math.max(1, globalPerSecond), System.nanoTime());
+    }
+
+    /**
+     * Поставить текст в очередь чата. Текст длиннее {@link #MAX_MESSAGE_LENGTH} символов делится на части.
+     *
+     * @return завершается после доставки (всех частей; ошибки уже записаны в лог).
+     */
+    public CompletableFuture<Void> sendText(Long chatId, String text) {
+        if (text.length() > MAX_MESSAGE_LENGTH) {
+            return sendParts(chatId, text);
+        }
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        scheduler.execute(() -> {
+            ChatQueue chat = chat(chatId);
+            Outbound last = chat.pending.peekLast();
+            if (last != null && last.text != null && last.coalescable
+                    && last.text.length() + COALESCED_SEPARATOR.length() + text.length() <= MAX_MESSAGE_LENGTH) {
+                last.text.append(COALESCED_SEPARATOR).append(text);
+                last.result.whenComplete((message, error) -> complete(result, message, error));
+            } else {
+                chat.pending.add(new Outbound(new StringBuilder(text), null, result, true));
+            }
+            pump();
+        });
+        return result.thenApply(message -> null);
+    }
+
+    /**
+     * Поставить длинный текст в очередь частями подряд. Части не склеиваются ни друг с другом,
+     * ни с соседними сообщениями: иначе короткий хвост приклеился бы к предыдущей части
+     * и граница между частями сдвинулась бы.
+     */
+    private CompletableFuture<Void> sendParts(Long chatId, String text) {
+        List<CompletableFuture<Message>> results = new ArrayList<>();
+        List<Outbound> parts = new ArrayList<>();
+        int offset = 0;
+        while (offset < text.length()) {
+            int end = Math.min(offset + MAX_MESSAGE_LENGTH, text.length());
+            // Суррогатная пара не разрывается между частями.
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            CompletableFuture<Message> result = new CompletableFuture<>();
+            results.add(result);
+            parts.add(new Outbound(new StringBuilder(text.substring(offset, end)), null, result, false));
+            offset = end;
+        }
+        scheduler.execute(() -> {
+            chat(chatId).pending.addAll(parts);
+            pump();
+        });
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Поставить отправку документа в очередь чата (после ранее поставленных сообщений).
+     *
+     * @return отправленное сообщение или ошибка отправки.
+     */
+    public CompletableFuture<Message> sendDocument(Long chatId, SendDocument document) {
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        scheduler.execute(() -> {
+            chat(chatId).pending.add(new Outbound(null, document, result, false));
+            pump();
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private ChatQueue chat(Long chatId) {
+        return chats.computeIfAbsent(chatId, id -> new ChatQueue(id, new TokenBucket(chatPerSecond, chatBurst, now())));
+    }
+
+    /**
+     * Отправить все, что разрешают ограничения, и запланировать следующий проход на момент,
+     * когда появится токен или закончится {@code retry_after}.
+     */
+    private void pump() {
+        long now = now();
+        long nextWakeUp = Long.MAX_VALUE;
+        Map<Long, ChatQueue> sent = new LinkedHashMap<>();
+        for (Iterator<ChatQueue> iterator = chats.values().iterator(); iterator.hasNext(); ) {
+            ChatQueue chat = iterator.next();
+            if (chat.inFlight) {
+                continue;
+            }
+            if (chat.pending.isEmpty()) {
+                if (chat.bucket.isFull(now)) {
+                    iterator.remove();
+                }
+                continue;
+            }
+            if (now < chat.blockedUntil) {
+                nextWakeUp = Math.min(nextWakeUp, chat.blockedUntil);
+                continue;
+            }
+            long globalWait = globalBucket.nanosUntilAvailable(now);
+            if (globalWait > 0) {
+                nextWakeUp = Math.min(nextWakeUp, now + globalWait);
+                break;
+            }
+            long chatWait = chat.bucket.nanosUntilAvailable(now);
+            if (chatWait > 0) {
+                nextWakeUp = Math.min(nextWakeUp, now + chatWait);
+                continue;
+            }
+
+            globalBucket.take(now);
+            chat.bucket.take(now);
+            send(chat, chat.pending.poll());
+            // Чат, которому только что отправили, уходит в конец круга.
+            iterator.remove();
+            sent.put(chat.chatId, chat);
+        }
+        chats.putAll(sent);
+        scheduleWakeUp(nextWakeUp, now);
+    }
+
+    private void send(ChatQueue chat, Outbound outbound) {
+        chat.inFlight = true;
+        outbound.attempts++;
+        CompletableFuture<Message> request;
+        try {
+            request = transport.send(outbound.method != null
+                    ? outbound.method
+                    : SendMessage.builder().chatId(String.valueOf(chat.chatId)).text(outbound.text.toString()).build());
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((message, error) -> scheduler.execute(() -> onSent(chat, outbound, message, error)));
+    }
+
+    private void onSent(ChatQueue chat, Outbound outbound, Message message, Throwable error) {
+        chat.inFlight = false;
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        Integer retryAfter = cause instanceof TelegramApiRequestException requestException
+                && requestException.getParameters() != null
+                ? requestException.getParameters().getRetryAfter()
+                : null;
+        if (retryAfter != null && outbound.attempts < MAX_ATTEMPTS) {
+            log.warn("Telegram rate limit hit for chat {}, retrying in {} s", chat.chatId, retryAfter);
+            chat.blockedUntil = now() + TimeUnit.SECONDS.toNanos(retryAfter);
+            chat.pending.addFirst(outbound);
+            // Чат мог быть удален из круга между попытками.
+            chats.putIfAbsent(chat.chatId, chat);
+        } else if (cause != null) {
+            log.error("Failed to send message to chat {}", chat.chatId, cause);
+            outbound.result.completeExceptionally(cause);
+        } else {
+            outbound.result.complete(message);
+        }
+        pump();
+    }
+
+    private void scheduleWakeUp(long at, long now) {
+        if (at == Long.MAX_VALUE || (wakeUp != null && !wakeUp.isDone() && wakeUpAt <= at)) {
+            return;
+        }
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        wakeUpAt = at;
+        wakeUp = scheduler.schedule(this::pump, Math.max(0, at - now), TimeUnit.NANOSECONDS);
+    }
+
+    private static void complete(CompletableFuture<Message> result, Message message, Throwable error) {
+        if (error != null) {
+            result.completeExceptionally(error);
+        } else {
+            result.complete(message);
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Асинхронная отправка запроса в Telegram.
+     */
+    @FunctionalInterface
+    public interface Transport {
+
+        CompletableFuture<Message> send(PartialBotApiMethod<Message> method);
+
+        /**
+         * @return отправка через {@code executeAsync} клиента.
+         */
+        static Transport of(TelegramClient client) {
+            return method -> {
+                try {
+                    return method instanceof SendDocument document
+                            ? client.executeAsync(document)
+                            : client.executeAsync((SendMessage) method);
+                } catch (TelegramApiException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            };
+        }
+    }
+
+    /**
+     * Очередь сообщений чата с его ограничением частоты.
+     */
+    private static final class ChatQueue {
+
+        private final Long chatId;
+        private final TokenBucket bucket;
+        private final Deque<Outbound> pending = new ArrayDeque<>();
+        private boolean inFlight;
+        private long blockedUntil = Long.MIN_VALUE;
+
+        private ChatQueue(Long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Сообщение в очереди: текст (может дополняться, если {@code coalescable}) или готовый запрос.
+     */
+    private static final class Outbound {
+
+        private final StringBuilder text;
+        private final PartialBotApiMethod<Message> method;
+        private final CompletableFuture<Message> result;
+        private final boolean coalescable;
+        private int attempts;
+
+        private Outbound(
+                StringBuilder text,
+                PartialBotApiMethod<Message> method,
+                CompletableFuture<Message> result,
+                boolean coalescable)
+        {
+            this.text = text;
+            this.method = method;
+            this.result = result;
+            this.coalescable = coalescable;
+        }
+    }
+}
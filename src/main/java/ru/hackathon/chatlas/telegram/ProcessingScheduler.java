@@ -0,0 +1,274 @@
+package ru.hackathon.chatlas.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Допуск задач обработки файлов по оценке занимаемой памяти.
+ * Задача начинается, только если ее оценка помещается в свободную часть бюджета памяти, иначе ждет
+ * в ограниченной очереди с приоритетами (одиночные файлы раньше пакетов, внутри приоритета - по порядку
+ * поступления). Очередь строго упорядочена: следующая задача не обгоняет голову очереди, даже если она
+ * меньше, иначе большой файл мог бы ждать бесконечно. Если очередь заполнена, задача сразу отклоняется,
+ * а не ждет неограниченно (и не исчерпывает кучу).
+ * Ожидание построено на {@link ReentrantLock}, а не на synchronized: ожидающий виртуальный поток
+ * не занимает поток-носитель.
+ */
+@Slf4j
+public class ProcessingScheduler {
+
+    private final long memoryBudgetBytes;
+    private final int queueCapacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(Comparator
+            .comparing(Waiter::priority)
+            .thenComparingLong(Waiter::sequence));
+    private long sequence;
+    private long usedBytes;
+    private int running;
+    private long admittedCount;
+    private long rejectedCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    /**
+     * @param memoryBudgetBytes сколько памяти (по оценкам) могут занимать одновременно выполняемые задачи.
+     * @param queueCapacity сколько задач может ждать в очереди.
+     */
+    public ProcessingScheduler(long memoryBudgetBytes, int queueCapacity) {
+        if (memoryBudgetBytes < 1) {
+            throw new IllegalArgumentException("memoryBudgetBytes must be positive: " + memoryBudgetBytes);
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity cannot be negative: " + queueCapacity);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Дождаться допуска задачи.
+     * Оценка больше всего бюджета урезается до бюджета: такая задача выполняется одна.
+     *
+     * @param estimatedBytes оценка памяти задачи.
+     * @param priority приоритет задачи.
+     * @param onQueued вызывается с позицией в очереди (с 1), если задача не допущена сразу
+     * (вызывается вне блокировки, можно отправлять сообщения).
+     * @return разрешение; его нужно закрыть после завершения задачи.
+     * @throws QueueFullException если очередь заполнена.
+     * @throws InterruptedException если ожидание прервано.
+     */
+    public Permit acquire(long estimatedBytes, Priority priority, IntConsumer onQueued)
+            throws QueueFullException, InterruptedException
+    {
+        long cost = Math.max(1, Math.min(estimatedBytes, memoryBudgetBytes));
+        long enqueuedAt = System.nanoTime();
+        Waiter waiter;
+        int position;
+        int depth;
+        int active;
+        lock.lock();
+        try {
+            if (queue.size() >= queueCapacity && !fits(cost)) {
+                rejectedCount++;
+                log.warn("Processing queue is full ({} waiting, {} running), job rejected", queue.size(), running);
+                throw new QueueFullException("Processing queue is full: " + queue.size() + " jobs waiting");
+            }
+            waiter = new Waiter(priority, sequence++, cost, lock.newCondition());
+            queue.add(waiter);
+            admitWaiting();
+            if (waiter.admitted) {
+                return admitted(waiter, enqueuedAt);
+            }
+            position = positionOf(waiter);
+            depth = queue.size();
+            active = running;
+        } finally {
+            lock.unlock();
+        }
+
+        log.info("Job queued at position {} ({} waiting, {} running)", position, depth, active);
+        onQueued.accept(position);
+
+        lock.lock();
+        try {
+            while (!waiter.admitted) {
+                try {
+                    waiter.condition.await();
+                } catch (InterruptedException e) {
+                    if (waiter.admitted) {
+                        // Допуск успел случиться: возвращаем память следующим задачам.
+                        release(waiter.cost);
+                    } else {
+                        queue.remove(waiter);
+                        admitWaiting();
+                    }
+                    throw e;
+                }
+            }
+            return admitted(waiter, enqueuedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return текущее состояние очереди и счетчики.
+     */
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(queue.size(), running, usedBytes, admittedCount, rejectedCount,
+                    admittedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / admittedCount),
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(long cost) {
+        return queue.isEmpty() && usedBytes + cost <= memoryBudgetBytes;
+    }
+
+    /**
+     * Допустить задачи из головы очереди, пока они помещаются в бюджет (вызывается под блокировкой).
+     */
+    private void admitWaiting() {
+        Waiter head;
+        while ((head = queue.peek()) != null && usedBytes + head.cost <= memoryBudgetBytes) {
+            queue.poll();
+            usedBytes += head.cost;
+            running++;
+            head.admitted = true;
+            head.condition.signal();
+        }
+    }
+
+    private Permit admitted(Waiter waiter, long enqueuedAt) {
+        long waitNanos = System.nanoTime() - enqueuedAt;
+        admittedCount++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        if (waitNanos >= TimeUnit.MILLISECONDS.toNanos(1)) {
+            log.info("Job admitted after {} ms in queue ({} waiting, {} running)",
+                    TimeUnit.NANOSECONDS.toMillis(waitNanos), queue.size(), running);
+        }
+        return new Permit(waiter.cost);
+    }
+
+    private int positionOf(Waiter waiter) {
+        int position = 1;
+        for (Waiter other : queue) {
+            if (queue.comparator().compare(other, waiter) < 0) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private void release(long cost) {
+        lock.lock();
+        try {
+            usedBytes -= cost;
+            running--;
+            admitWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Приоритет задачи (меньше - раньше).
+     */
+    public enum Priority {
+        /**
+         * Одиночный файл: пользователь ждет ответа.
+         */
+        INTERACTIVE,
+        /**
+         * Пакет файлов.
+         */
+        BATCH
+    }
+
+    /**
+     * Разрешение на выполнение задачи: закрытие возвращает ее память в бюджет.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final long cost;
+        private boolean closed;
+
+        private Permit(long cost) {
+            this.cost = cost;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(cost);
+            }
+        }
+    }
+
+    /**
+     * Состояние планировщика.
+     *
+     * @param queueDepth сколько задач ждет в очереди.
+     * @param running сколько задач выполняется.
+     * @param usedBytes оценка памяти выполняемых задач.
+     * @param admittedCount сколько задач допущено всего.
+     * @param rejectedCount сколько задач отклонено из-за заполненной очереди.
+     * @param averageWaitMillis среднее ожидание допуска.
+     * @param maxWaitMillis наибольшее ожидание допуска.
+     */
+    public record Stats(
+            int queueDepth,
+            int running,
+            long usedBytes,
+            long admittedCount,
+            long rejectedCount,
+            long averageWaitMillis,
+            long maxWaitMillis)
+    {
+    }
+
+    private static final class Waiter {
+
+        private final Priority priority;
+        private final long sequence;
+        private final long cost;
+        private final Condition condition;
+        private boolean admitted;
+
+        private Waiter(Priority priority, long sequence, long cost, Condition condition) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.cost = cost;
+            this.condition = condition;
+        }
+
+        private Priority priority() {
+            return priority;
+        }
+
+        private long sequence() {
+            return sequence;
+        }
+    }
+
+    /**
+     * Очередь задач заполнена: задача не принята.
+     */
+    public static class QueueFullException extends Exception {
+        public QueueFullException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package ru.hackathon.chatlas.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.export.ReportRenderer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш готовых отчетов по содержимому файла экспорта.
+ * Ключ - {@code file_unique_id} документа Telegram (одинаков у пересланных копий одного файла)
+ * или, если его нет, SHA-256 содержимого. Размер кэша ограничен суммарным объемом отчетов в байтах,
+ * при переполнении вытесняются давно не использованные записи (LRU).
+ * Файловые отчеты хранятся готовыми файлами на диске (см. {@link #prepare}), а не в куче: отчет из кэша
+ * отправляется без повторного построения, а его объем в кэше - реальный размер файла. Файл удаляется
+ * при вытеснении записи (или после отправки, если в этот момент его еще отправляют). Отчет содержит
+ * дату выгрузки, поэтому записи, сохраненные в прошлые дни, не выдаются.
+ * Одновременные запросы одного ключа объединяются: отчет вычисляется один раз, остальные ждут результат.
+ * Каждый полученный из кэша {@link FileReport} после отправки нужно освободить через {@link #release}.
+ */
+@Slf4j
+public class ReportCache {
+
+    private static final String FILE_KEY_PREFIX = "file:";
+    private static final String CONTENT_KEY_PREFIX = "sha256:";
+
+    /**
+     * Оценка накладных расходов на запись кэша (ключ, узлы карты, объект результата).
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    private final long maxBytes;
+    private final Path directory;
+    private final Clock clock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private long sizeBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes максимальный суммарный объем отчетов в кэше (0 - не кэшировать, только объединять запросы).
+     * @param directory каталог для файлов отчетов.
+     */
+    public ReportCache(long maxBytes, Path directory) {
+        this(maxBytes, directory, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param maxBytes максимальный суммарный объем отчетов в кэше (0 - не кэшировать, только объединять запросы).
+     * @param directory каталог для файлов отчетов.
+     * @param clock часы для даты, с которой запись кэша устаревает.
+     */
+    public ReportCache(long maxBytes, Path directory, Clock clock) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        this.clock = clock;
+    }
+
+    /**
+     * @return ключ кэша по {@code file_unique_id} документа или null, если идентификатора нет.
+     */
+    public static String fileKey(String fileUniqueId) {
+        return fileUniqueId == null || fileUniqueId.isBlank() ? null : FILE_KEY_PREFIX + fileUniqueId;
+    }
+
+    /**
+     * Посчитать ключ кэша по содержимому файла.
+     *
+     * @return ключ или null, если содержимое можно прочитать только один раз (поток).
+     */
+    public static String contentKey(RawChatFile file) {
+        MessageDigest digest = sha256();
+        switch (file.content()) {
+            case RawChatFile.BytesContent content -> digest.update(content.bytes(), content.offset(), content.length());
+            case RawChatFile.BufferContent content -> digest.update(content.buffer().slice());
+            case RawChatFile.StringContent content -> digest.update(content.json().getBytes(StandardCharsets.UTF_8));
+            case RawChatFile.StreamContent content -> {
+                return null;
+            }
+            case RawChatFile.PathContent content -> {
+                return null;
+            }
+        }
+        return CONTENT_KEY_PREFIX + HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Получить отчет из кэша или вычислить его.
+     * Если отчет по этому ключу уже вычисляется, ждет его результата вместо повторного вычисления.
+     * Ошибки не кэшируются: ожидающие запросы получают то же исключение, следующий запрос вычисляет заново.
+     * Каждый вызывающий получает свою ссылку на файловый отчет и освобождает ее через {@link #release}.
+     *
+     * @param key ключ кэша.
+     * @param computation вычисление отчета (скачивание и обработка файла).
+     * @return отчет.
+     * @throws Exception исключение вычисления.
+     */
+    public ReportRenderer.ReportResult getOrCompute(String key, Callable<ReportRenderer.ReportResult> computation)
+            throws Exception
+    {
+        InFlight own = new InFlight();
+        while (true) {
+            ReportRenderer.ReportResult cached = get(key);
+            if (cached != null) {
+                hits.increment();
+                log.info("Report cache hit for {}", key);
+                return cached;
+            }
+
+            InFlight existing = inFlight.putIfAbsent(key, own);
+            if (existing == null) {
+                break;
+            }
+            if (existing.join()) {
+                coalesced.increment();
+                log.info("Waiting for in-flight computation of {}", key);
+                return await(existing.future);
+            }
+            // Вычисление уже завершается: его результат вот-вот появится в кэше.
+            Thread.yield();
+        }
+
+        ReportRenderer.ReportResult result = null;
+        try {
+            // Предыдущее вычисление могло завершиться между проверкой кэша и регистрацией.
+            result = get(key);
+            if (result != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                result = computation.call();
+                put(key, result);
+            }
+        } catch (Throwable e) {
+            own.close();
+            inFlight.remove(key, own);
+            own.future.completeExceptionally(e);
+            throw e;
+        }
+
+        // Ожидающим запросам - по своей ссылке на файл, пока его не освободил этот запрос.
+        int waiters = own.close();
+        if (result instanceof FileReport report) {
+            for (int i = 0; i < waiters; i++) {
+                report.retain();
+            }
+        }
+        inFlight.remove(key, own);
+        own.future.complete(result);
+        return result;
+    }
+
+    /**
+     * Записать файловый отчет на диск, чтобы кэшировать и отправлять готовый файл, а не способ его построения.
+     * Вызывается при вычислении отчета, пока действует допуск планировщика и разрешение на CPU-этап:
+     * файл строится один раз и в куче держится только буфер записи. Отчет, который не поместится в кэш,
+     * не кэшируется, но отправляется из этого же файла.
+     *
+     * @param result результат рендерера.
+     * @return отчет с готовым файлом (его нужно освободить через {@link #release}) или исходный текстовый результат.
+     * @throws IOException если файл не удалось построить или записать.
+     */
+    public ReportRenderer.ReportResult prepare(ReportRenderer.ReportResult result) throws IOException {
+        if (result == null || result.getType() == ReportRenderer.OutputType.TEXT || result instanceof FileReport) {
+            return result;
+        }
+        Path file = Files.createTempFile(directory, "chatlas-report-", ".tmp");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file), WRITE_BUFFER_BYTES)) {
+            result.writeFile(output);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        FileReport report = new FileReport(result.getType(), result.getFileName(), file, Files.size(file));
+        log.info("Report {} written to disk: {} bytes", report.getFileName(), report.sizeBytes());
+        return report;
+    }
+
+    /**
+     * Освободить ссылку на файловый отчет после отправки. Файл удаляется, когда его не держит ни кэш,
+     * ни одна отправка. Для остальных результатов ничего не делает.
+     *
+     * @param result отчет из {@link #getOrCompute} или {@link #prepare}.
+     */
+    public static void release(ReportRenderer.ReportResult result) {
+        if (result instanceof FileReport report) {
+            report.release();
+        }
+    }
+
+    /**
+     * @return текущие счетчики кэша.
+     */
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.sum(), misses.sum(), coalesced.sum(), evictions.sum(), entries.size(), sizeBytes);
+        }
+    }
+
+    private ReportRenderer.ReportResult get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.date().isBefore(LocalDate.now(clock))) {
+                entries.remove(key);
+                sizeBytes -= entry.sizeBytes();
+                evictions.increment();
+                release(entry.result());
+                return null;
+            }
+            // Пока запись в кэше, кэш держит свою ссылку, поэтому файл еще не удален.
+            if (entry.result() instanceof FileReport report) {
+                report.retain();
+            }
+            return entry.result();
+        }
+    }
+
+    private void put(String key, ReportRenderer.ReportResult result) {
+        // Файловый отчет без готового файла при каждой отправке строился бы заново: его не кэшируем.
+        if (result == null || (result.getType() != ReportRenderer.OutputType.TEXT
+                && !(result instanceof FileReport))) {
+            return;
+        }
+        long size = sizeOf(result);
+        if (size > maxBytes) {
+            if (result instanceof FileReport) {
+                log.info("Report for {} is larger than the report cache, it will not be cached", key);
+            }
+            return;
+        }
+        if (result instanceof FileReport report) {
+            report.retain();
+        }
+
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(result, size, LocalDate.now(clock)));
+            if (previous != null) {
+                sizeBytes -= previous.sizeBytes();
+                release(previous.result());
+            }
+            sizeBytes += size;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (sizeBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                sizeBytes -= eldest.getValue().sizeBytes();
+                iterator.remove();
+                evictions.increment();
+                release(eldest.getValue().result());
+            }
+        }
+        log.info("Report cached for {}: {}", key, stats());
+    }
+
+    private static ReportRenderer.ReportResult await(CompletableFuture<ReportRenderer.ReportResult> future)
+            throws Exception
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // Ссылку на файл для этого запроса уже взяли: освобождаем ее, когда отчет будет готов.
+            future.thenAccept(ReportCache::release);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static long sizeOf(ReportRenderer.ReportResult result) {
+        return ENTRY_OVERHEAD_BYTES + result.estimatedSizeBytes();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete report file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Entry(ReportRenderer.ReportResult result, long sizeBytes, LocalDate date) {
+    }
+
+    /**
+     * Вычисление отчета, которого ждут другие запросы того же ключа.
+     * После {@link #close()} новые запросы к нему не присоединяются.
+     */
+    private static final class InFlight {
+
+        private final CompletableFuture<ReportRenderer.ReportResult> future = new CompletableFuture<>();
+        private int waiters;
+        private boolean closed;
+
+        /**
+         * @return false, если вычисление уже завершается и ждать его поздно.
+         */
+        private synchronized boolean join() {
+            if (closed) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /**
+         * @return количество присоединившихся запросов.
+         */
+        private synchronized int close() {
+            closed = true;
+            return waiters;
+        }
+    }
+
+    /**
+     * Файловый отчет, записанный на диск: запись в поток только копирует готовый файл.
+     * Файл удаляется, когда освобождены все ссылки на отчет (кэша и отправок).
+     */
+    public static final class FileReport implements ReportRenderer.ReportResult {
+
+        private final ReportRenderer.OutputType type;
+        private final String fileName;
+        private final Path file;
+        private final long sizeBytes;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private FileReport(ReportRenderer.OutputType type, String fileName, Path file, long sizeBytes) {
+            this.type = type;
+            this.fileName = fileName;
+            this.file = file;
+            this.sizeBytes = sizeBytes;
+        }
+
+        /**
+         * @return готовый файл отчета; действителен, пока ссылка на отчет не освобождена.
+         */
+        public Path file() {
+            return file;
+        }
+
+        /**
+         * @return размер файла в байтах.
+         */
+        public long sizeBytes() {
+            return sizeBytes;
+        }
+
+        @Override
+        public ReportRenderer.OutputType getType() {
+            return type;
+        }
+
+        @Override
+        public String getText() {
+            return null;
+        }
+
+        @Override
+        public byte[] getExcelBytes() {
+            if (type != ReportRenderer.OutputType.EXCEL) {
+                return null;
+            }
+            try {
+                return Files.readAllBytes(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String getExcelFileName() {
+            return type == ReportRenderer.OutputType.EXCEL ? fileName : null;
+        }
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public void writeFile(OutputStream output) throws IOException {
+            Files.copy(file, output);
+        }
+
+        @Override
+        public void writeExcel(OutputStream output) throws IOException {
+            if (type != ReportRenderer.OutputType.EXCEL) {
+                throw new IllegalStateException("Report is " + type + ", not Excel: use writeFile");
+            }
+            Files.copy(file, output);
+        }
+
+        @Override
+        public long estimatedSizeBytes() {
+            return sizeBytes + (fileName != null ? 2L * fileName.length() : 0);
+        }
+
+        private void retain() {
+            references.incrementAndGet();
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * Счетчики кэша.
+     *
+     * @param hits запросы, обслуженные из кэша.
+     * @param misses запросы, для которых отчет вычислялся.
+     * @param coalesced запросы, дождавшиеся вычисления, начатого другим запросом.
+     * @param evictions вытесненные записи.
+     * @param entries текущее количество записей.
+     * @param sizeBytes текущий объем кэша в байтах (файлы отчетов и оценка накладных расходов).
+     */
+    public record Stats(long hits, long misses, long coalesced, long evictions, int entries, long sizeBytes) {
+    }
+}
@@ -0,0 +1,189 @@
+package ru.hackathon.chatlas.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.telegram.telegrambots.meta.TelegramUrl;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.TelegramClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скачивание файлов, присланных боту, через общий HTTP-клиент OkHttp (тот же, что у клиента Telegram):
+ * соединения переиспользуются (keep-alive, HTTP/2 по TLS), у запросов есть таймауты.
+ * Запросы асинхронные: {@code GetFile} и открытие файла выполняются цепочкой без блокировки потока обработки,
+ * а поток файла возвращается, как только пришли заголовки ответа. Сжатые экспорты и файлы без известного размера
+ * парсер читает прямо из этого потока по мере получения байтов, отдавая разрешение на CPU-этап на время ожидания
+ * сети (см. {@link CpuStageLimiter#releaseWhileBlocked}); несжатый JSON известного размера принимается целиком
+ * (в память или во временный файл, см. {@link DownloadSpooler}), чтобы большой файл можно было разобрать параллельно.
+ * Адрес файла содержит токен бота, поэтому в лог и в сообщения ошибок попадает только путь файла.
+ */
+@Slf4j
+public class TelegramFileDownloader {
+
+    private final TelegramClient telegramClient;
+    private final OkHttpClient httpClient;
+    private final HttpUrl fileBaseUrl;
+
+    /**
+     * @param telegramClient клиент для запроса {@code GetFile}.
+     * @param httpClient общий HTTP-клиент.
+     * @param botToken токен бота.
+     * @param telegramUrl адрес Bot API (в тестах - локальный сервер).
+     */
+    public TelegramFileDownloader(
+            TelegramClient telegramClient,
+            OkHttpClient httpClient,
+            String botToken,
+            TelegramUrl telegramUrl)
+    {
+        this.telegramClient = telegramClient;
+        this.httpClient = httpClient;
+        HttpUrl.Builder fileBaseUrl = new HttpUrl.Builder()
+                .scheme(telegramUrl.getSchema())
+                .host(telegramUrl.getHost())
+                .port(telegramUrl.getPort())
+                .addPathSegment("file")
+                .addPathSegment("bot" + botToken);
+        if (telegramUrl.isTestServer()) {
+            fileBaseUrl.addPathSegment("test");
+        }
+        this.fileBaseUrl = fileBaseUrl.build();
+    }
+
+    /**
+     * Общий HTTP-клиент для запросов к Telegram с пулом соединений и таймаутами.
+     * Лимит одновременных запросов к одному хосту поднят: все запросы бота идут на один хост.
+     *
+     * @param connectTimeout таймаут установления соединения.
+     * @param readTimeout наибольшая пауза между пакетами ответа.
+     * @param maxRequests сколько запросов может выполняться одновременно.
+     */
+    public static OkHttpClient newHttpClient(Duration connectTimeout, Duration readTimeout, int maxRequests) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxRequests, 5, TimeUnit.MINUTES))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(readTimeout)
+                .build();
+    }
+
+    /**
+     * Узнать путь файла на серверах Telegram ({@code GetFile}).
+     *
+     * @param fileId идентификатор файла.
+     * @return путь файла; его можно запросить заранее, до начала скачивания.
+     */
+    public CompletableFuture<String> resolve(String fileId) {
+        try {
+            return telegramClient.executeAsync(new GetFile(fileId)).thenApply(file -> {
+                String filePath = file.getFilePath();
+                if (filePath == null || filePath.isBlank()) {
+                    throw new IllegalStateException("Received empty filePath for fileId " + fileId);
+                }
+                return filePath;
+            });
+        } catch (TelegramApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Начать скачивание файла.
+     *
+     * @param filePath путь файла из {@link #resolve}.
+     * @return поток тела ответа, как только получены заголовки; его нужно закрыть.
+     */
+    public CompletableFuture<InputStream> open(String filePath) {
+        HttpUrl url = fileBaseUrl.newBuilder().addPathSegments(filePath).build();
+        log.info("Downloading file from Telegram: {}", filePath);
+
+        CompletableFuture<InputStream> result = new CompletableFuture<>();
+        httpClient.newCall(new Request.Builder().url(url).get().build()).enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    response.close();
+                    result.completeExceptionally(new IOException(
+                            "Failed to download file " + filePath + ": HTTP " + response.code()));
+                    return;
+                }
+                // Тело еще не прочитано: вызывающий читает его по мере получения, закрытие потока закрывает ответ.
+                result.complete(body.byteStream());
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(new IOException("Failed to download file " + filePath, e));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Запросить путь файла и сразу начать скачивание.
+     *
+     * @return поток тела ответа; его нужно закрыть.
+     */
+    public CompletableFuture<InputStream> download(String fileId) {
+        return resolve(fileId).thenCompose(this::open);
+    }
+
+    /**
+     * Дождаться начала скачивания.
+     *
+     * @return поток файла; его нужно закрыть.
+     * @throws TelegramApiException если не удалось получить путь файла.
+     * @throws IOException если не удалось скачать файл.
+     * @throws InterruptedException если ожидание прервано (поток, если он все же откроется, будет закрыт).
+     */
+    public static InputStream await(CompletableFuture<InputStream> download)
+            throws TelegramApiException, IOException, InterruptedException
+    {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            download.thenAccept(TelegramFileDownloader::closeQuietly);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TelegramApiException telegramApiException) {
+                throw telegramApiException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to download file", cause);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.warn("Failed to close abandoned download", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.hackathon.chatlas.telegram;
+
+/**
+ * Ведро токенов для ограничения частоты: пополняется равномерно, вмещает не больше {@code burst} токенов.
+ * Не потокобезопасно: используется из одного потока планировщика отправки.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long updatedAt;
+
+    /**
+     * @param perSecond сколько токенов добавляется в секунду.
+     * @param burst сколько токенов можно потратить подряд.
+     * @param now текущее время в наносекундах.
+     */
+    TokenBucket(double perSecond, int burst, long now) {
+        if (perSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive: " + perSecond + ", " + burst);
+        }
+        this.tokensPerNano = perSecond / 1_000_000_000d;
+        this.capacity = burst;
+        this.tokens = burst;
+        this.updatedAt = now;
+    }
+
+    /**
+     * @return сколько наносекунд ждать до появления токена (0 - токен есть).
+     */
+    long nanosUntilAvailable(long now) {
+        refill(now);
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Потратить токен (перед этим нужно убедиться, что он есть).
+     */
+    void take(long now) {
+        refill(now);
+        tokens -= 1;
+    }
+
+    /**
+     * @return полно ли ведро (ограничение давно не использовалось, состояние можно забыть).
+     */
+    boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        if (now > updatedAt) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+            updatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package ru.hackathon.chatlas.telegram;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.hackathon.chatlas.config.BotConfig;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Прием обновлений по вебхуку на встроенном HTTP-сервере JDK вместо long polling.
+ * Каждый запрос обрабатывается в своем виртуальном потоке: обновление разбирается прямо из потока тела запроса,
+ * передается обработчику и сразу подтверждается ответом 200. Обработчик должен только ставить обновление
+ * в очередь ({@link ChatUpdateDispatcher} или однопоточный потребитель библиотеки), а не выполнять его:
+ * иначе Telegram будет ждать ответа и повторит запрос.
+ * Запросы без заголовка {@value #SECRET_TOKEN_HEADER} с секретом вебхука отклоняются, поэтому секрет обязателен.
+ * Тело запроса ограничено по размеру: больший Content-Length или больший поток отклоняются ответом 413.
+ */
+@Slf4j
+public class WebhookServer implements AutoCloseable {
+
+    /**
+     * Заголовок, в котором Telegram присылает секрет, указанный в {@code setWebhook}.
+     */
+    public static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private static final ObjectReader UPDATE_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readerFor(Update.class);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String path;
+    private final byte[] secretToken;
+    private final long maxBodyBytes;
+    private final LongPollingUpdateConsumer consumer;
+
+    public WebhookServer(
+            InetSocketAddress address,
+            String path,
+            String secretToken,
+            LongPollingUpdateConsumer consumer) throws IOException
+    {
+        this(address, path, secretToken, BotConfig.WEBHOOK_MAX_BODY_BYTES, consumer);
+    }
+
+    /**
+     * @param address адрес и порт сервера (порт 0 - любой свободный).
+     * @param path путь вебхука.
+     * @param secretToken секрет вебхука (обязателен).
+     * @param maxBodyBytes наибольший размер тела запроса.
+     * @param consumer получатель обновлений (должен быстро возвращать управление).
+     */
+    public WebhookServer(
+            InetSocketAddress address,
+            String path,
+            String secretToken,
+            long maxBodyBytes,
+            LongPollingUpdateConsumer consumer) throws IOException
+    {
+        if (secretToken == null || secretToken.isEmpty()) {
+            throw new IllegalArgumentException("Webhook secret token is required");
+        }
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.path = path;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+        this.maxBodyBytes = maxBodyBytes;
+        this.consumer = consumer;
+        server.setExecutor(executor);
+        server.createContext(path, this::handle);
+    }
+
+    /**
+     * Начать прием запросов.
+     */
+    public void start() {
+        server.start();
+        log.info("Webhook server listening on port {}, path {}", getPort(), path);
+    }
+
+    /**
+     * @return порт, на котором слушает сервер.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status;
+            try {
+                status = receive(exchange);
+            } catch (RuntimeException e) {
+                // Ошибка обработчика не должна обрывать соединение без ответа: Telegram повторит запрос.
+                log.error("Unhandled error while receiving webhook update", e);
+                status = 500;
+            }
+            exchange.sendResponseHeaders(status, -1);
+        }
+    }
+
+    /**
+     * Принять обновление.
+     *
+     * @return код ответа.
+     */
+    private int receive(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Allow", "POST");
+            return 405;
+        }
+        if (!path.equals(exchange.getRequestURI().getPath())) {
+            return 404;
+        }
+        if (!hasValidSecret(exchange)) {
+            log.warn("Rejected webhook request without valid secret token from {}", exchange.getRemoteAddress());
+            return 401;
+        }
+
+        if (declaredLength(exchange) > maxBodyBytes) {
+            log.warn("Rejected webhook request with body larger than {} bytes from {}",
+                    maxBodyBytes, exchange.getRemoteAddress());
+            return 413;
+        }
+
+        Update update;
+        try (InputStream body = new LimitedInputStream(exchange.getRequestBody(), maxBodyBytes)) {
+            update = UPDATE_READER.readValue(body);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to parse webhook update: {}", e.getOriginalMessage());
+            return 400;
+        } catch (BodyTooLargeException e) {
+            log.warn("Rejected webhook request with body larger than {} bytes from {}",
+                    maxBodyBytes, exchange.getRemoteAddress());
+            return 413;
+        }
+        if (update != null) {
+            consumer.consume(List.of(update));
+        }
+        return 200;
+    }
+
+    /**
+     * @return длина тела из Content-Length или -1, если она не указана (например, при chunked).
+     */
+    private static long declaredLength(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean hasValidSecret(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst(SECRET_TOKEN_HEADER);
+        // Сравнение за постоянное время: по длительности ответа нельзя подобрать секрет.
+        return header != null && MessageDigest.isEqual(secretToken, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Поток тела запроса, который обрывается ошибкой, как только прочитано больше заданного числа байт.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                consume(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            // Читаем на байт больше остатка, чтобы отличить тело ровно на пределе от превышающего его.
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining + 1));
+            if (read > 0) {
+                consume(read);
+            }
+            return read;
+        }
+
+        private void consume(long bytes) throws BodyTooLargeException {
+            remaining -= bytes;
+            if (remaining < 0) {
+                throw new BodyTooLargeException();
+            }
+        }
+    }
+
+    /**
+     * Тело запроса больше допустимого.
+     */
+    private static final class BodyTooLargeException extends IOException {
+    }
+}
@@ -0,0 +1,149 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.analysis.ApproximateChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.benchmark.SyntheticChatExports;
+import ru.hackathon.chatlas.domain.ApproximateSummary;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+import ru.hackathon.chatlas.parser.ParallelChatExportParserImpl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApproximateChatAnalyzerTest {
+
+    private static final int AUTHORS = 50_000;
+    private static final int MESSAGES = 300_000;
+
+    @Test
+    void shouldEstimateDistinctCountsWithinErrorBound() {
+        ChatAnalyzer.AnalysisSink sink = new ApproximateChatAnalyzer(20, 1_000).newSink();
+        Map<String, Integer> exactCounts = feedSkewed(sink, new Random(42));
+
+        ChatAnalysisResult result = sink.getResult();
+        ApproximateSummary summary = result.approximation();
+
+        assertTrue(result.isApproximate());
+        long exact = exactCounts.size();
+        // Три стандартные ошибки: вероятность выйти за границу ~0.3%, а seed фиксирован.
+        double bound = 3 * summary.relativeStandardError() * exact;
+        assertEquals(exact, summary.participantsEstimate(), bound);
+        assertEquals(exact, result.getParticipantsCount(), bound);
+        assertTrue(summary.relativeStandardError() < 0.01);
+    }
+
+    @Test
+    void shouldFindHeavyHittersWithValidErrorBounds() {
+        ChatAnalysisResult result = analyzeInTwoParts(new ApproximateChatAnalyzer(10, 1_000));
+        Map<String, Integer> exactCounts = feedSkewed(new ChatAnalyzerImpl().newSink(), new Random(42));
+
+        ApproximateSummary summary = result.approximation();
+        assertEquals(10, summary.topParticipants().size());
+        assertEquals(10, result.participants().size());
+        for (ApproximateSummary.TopEntry entry : summary.topParticipants()) {
+            int exact = exactCounts.get(entry.id());
+            assertTrue(entry.guaranteedCount() <= exact && exact <= entry.count(),
+                    entry + " does not bound exact count " + exact);
+            assertTrue(result.participants().contains(new Participant(entry.id(), entry.label())));
+        }
+        // Самые активные авторы синтетического потока - первые в распределении.
+        assertEquals("user1000000", summary.topParticipants().get(0).id());
+        assertEquals("Автор 0", summary.topParticipants().get(0).label());
+        for (int i = 1; i < summary.topParticipants().size(); i++) {
+            assertTrue(summary.topParticipants().get(i - 1).count() >= summary.topParticipants().get(i).count());
+        }
+    }
+
+    @Test
+    void shouldBeExactForSmallChats() throws Exception {
+        byte[] json = SyntheticChatExports.generate(2_000, 40, 7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ChatAnalysisResult exact = analyze(new ChatAnalyzerImpl(), json, pool);
+            ChatAnalysisResult approximate = analyze(new ApproximateChatAnalyzer(1_000, 1_000), json, pool);
+
+            assertFalse(exact.isApproximate());
+            assertEquals(exact.getParticipantsCount(), approximate.getParticipantsCount());
+            assertEquals(exact.getMentionsCount(), approximate.getMentionsCount());
+            assertEquals(exact.participants(), approximate.participants());
+            assertEquals(exact.mentions(), approximate.mentions());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void shouldApplySameExtractionRulesAsExactAnalyzer() {
+        ChatAnalyzer.AnalysisSink sink = new ApproximateChatAnalyzer(10, 100).newSink();
+        sink.onMessage(message("user1", "Deleted Account"));
+        sink.onMessage(message("user2", " удалённый аккаунт "));
+        sink.onMessage(message(" ", "Пустой id"));
+        sink.onMessage(message("user3", "Автор"));
+        sink.onEntity("mention", " @valid ");
+        sink.onEntity("mention", "invalid");
+        sink.onEntity("hashtag", "#tag");
+
+        ChatAnalysisResult result = sink.getResult();
+
+        assertEquals(1, result.getParticipantsCount());
+        assertEquals(1, result.getMentionsCount());
+        assertTrue(result.mentions().contains(new Mention("@valid")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ChatAnalysisResult.merge(List.of(result, result)));
+    }
+
+    private static ChatAnalysisResult analyzeInTwoParts(ApproximateChatAnalyzer analyzer) {
+        // Тот же поток, разделенный между двумя приемниками: проверяет слияние сводок.
+        ChatAnalyzer.AnalysisSink sink = analyzer.newSink();
+        ChatAnalyzer.AnalysisSink forked = sink.fork();
+        Random random = new Random(42);
+        for (int i = 0; i < MESSAGES; i++) {
+            int author = skewedAuthor(random);
+            ChatAnalyzer.AnalysisSink target = i % 3 == 0 ? forked : sink;
+            target.onMessage(message("user" + (1_000_000 + author), "Автор " + author));
+        }
+        sink.join(forked);
+        return sink.getResult();
+    }
+
+    private static ChatExportSink.MessageHeader message(String fromId, String from) {
+        return new ChatExportSink.MessageHeader().set(null, fromId, from, 0);
+    }
+
+    private static Map<String, Integer> feedSkewed(ChatAnalyzer.AnalysisSink sink, Random random) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            int author = skewedAuthor(random);
+            String fromId = "user" + (1_000_000 + author);
+            sink.onMessage(message(fromId, "Автор " + author));
+            counts.merge(fromId, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Автор с распределением, близким к закону Ципфа: несколько очень активных и длинный хвост.
+     */
+    private static int skewedAuthor(Random random) {
+        return (int) Math.floor(Math.pow(AUTHORS, random.nextDouble())) - 1;
+    }
+
+    private static ChatAnalysisResult analyze(ChatAnalyzer analyzer, byte[] json, ForkJoinPool pool)
+            throws Exception
+    {
+        ChatAnalyzer.AnalysisSink sink = analyzer.newSink();
+        new ParallelChatExportParserImpl(pool, 0).parse(new RawChatFile("chat.json", json), sink);
+        return sink.getResult();
+    }
+}
@@ -0,0 +1,140 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+import ru.hackathon.chatlas.telegram.BatchProcessingService;
+import ru.hackathon.chatlas.telegram.BatchSessionRegistry;
+import ru.hackathon.chatlas.telegram.ChatProcessingService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchProcessingServiceTest {
+
+    private static final String SECOND_CHAT = """
+            {
+              "name": "Второй чат",
+              "type": "private_group",
+              "id": 42,
+              "messages": [
+                {
+                  "id": 1,
+                  "type": "message",
+                  "from": "Другое имя",
+                  "from_id": "user123456789",
+                  "text_entities": [{"type": "mention", "text": "@new_user"}]
+                },
+                {
+                  "id": 2,
+                  "type": "message",
+                  "from": "Новый участник",
+                  "from_id": "user555",
+                  "text_entities": []
+                }
+              ]
+            }
+            """;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldMergeResultsOfAllFilesIntoOneReport() throws Exception {
+        AtomicReference<ChatAnalysisResult> rendered = new AtomicReference<>();
+        ChatProcessingService processingService = new ChatProcessingService(
+                new StreamingChatExportParserImpl(), new ChatAnalyzerImpl(), analysisResult -> {
+            rendered.set(analysisResult);
+            return null;
+        });
+        BatchProcessingService batchService = new BatchProcessingService(processingService, executor);
+
+        RawChatFile first = new RawChatFile("chat1.json", readResource("chat1.json"));
+        RawChatFile second = new RawChatFile("chat2.json", SECOND_CHAT);
+        batchService.process(List.of(
+                new BatchProcessingService.BatchItem("chat1.json", () -> processingService.analyze(first)),
+                new BatchProcessingService.BatchItem("chat2.json", () -> processingService.analyze(second))));
+
+        ChatAnalysisResult result = rendered.get();
+        ChatAnalysisResult firstOnly = processingService.analyze(first);
+        assertEquals(firstOnly.getParticipantsCount() + 1, result.getParticipantsCount());
+        assertEquals(firstOnly.getMentionsCount() + 1, result.getMentionsCount());
+        assertTrue(result.mentions().contains(new Mention("@new_user")));
+        assertTrue(result.participants().stream()
+                .anyMatch(p -> p.fromId().equals("user123456789") && p.displayName().equals("Владислав Почернин")));
+    }
+
+    @Test
+    void shouldProcessFilesConcurrently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        BatchProcessingService batchService = new BatchProcessingService(
+                new ChatProcessingService(new StreamingChatExportParserImpl(), new ChatAnalyzerImpl(), r -> null),
+                executor);
+        BatchProcessingService.BatchItem item = new BatchProcessingService.BatchItem("chat.json", () -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(10, TimeUnit.SECONDS), "Files are not processed concurrently");
+            return ChatAnalysisResult.merge(List.of());
+        });
+
+        assertEquals(0, batchService.analyzeAll(List.of(item, item)).getTotalCount());
+    }
+
+    @Test
+    void shouldReportFailedFile() throws Exception {
+        ChatProcessingService processingService = new ChatProcessingService(
+                new StreamingChatExportParserImpl(), new ChatAnalyzerImpl(), r -> null);
+        BatchProcessingService batchService = new BatchProcessingService(processingService, executor);
+        RawChatFile good = new RawChatFile("chat1.json", readResource("chat1.json"));
+
+        BatchProcessingService.BatchItemException exception = assertThrows(
+                BatchProcessingService.BatchItemException.class,
+                () -> batchService.process(List.of(
+                        new BatchProcessingService.BatchItem("chat1.json", () -> processingService.analyze(good)),
+                        new BatchProcessingService.BatchItem("broken.json", () -> {
+                            throw new IOException("Connection reset");
+                        }))));
+        assertEquals("broken.json", exception.getFileName());
+        assertInstanceOf(IOException.class, exception.getCause());
+    }
+
+    @Test
+    void shouldLimitFilesInBatchSession() {
+        BatchSessionRegistry sessions = new BatchSessionRegistry(2);
+        Document document = new Document();
+
+        assertEquals(-1, sessions.add(1L, document));
+        sessions.start(1L);
+        assertTrue(sessions.isActive(1L));
+        assertFalse(sessions.isActive(2L));
+        assertEquals(1, sessions.add(1L, document));
+        assertEquals(2, sessions.add(1L, document));
+        assertEquals(0, sessions.add(1L, document));
+
+        assertEquals(2, sessions.finish(1L).size());
+        assertFalse(sessions.isActive(1L));
+        assertNull(sessions.finish(1L));
+    }
+
+    private byte[] readResource(String resourceName) throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
+        assertNotNull(stream, "Resource not found: " + resourceName);
+        return stream.readAllBytes();
+    }
+}
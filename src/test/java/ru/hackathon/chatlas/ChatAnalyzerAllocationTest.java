@@ -0,0 +1,160 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Горячий путь анализатора не выделяет память на повторяющихся авторах, упоминаниях и удалённых аккаунтах.
+ * Точные цифры - в AnalyzerAllocationBenchmark с {@code -prof gc}, здесь - грубая защита от регрессий.
+ */
+class ChatAnalyzerAllocationTest {
+
+    private static final int AUTHORS = 100;
+    private static final int ROUNDS = 10_000;
+    private static final long MAX_ALLOCATED_BYTES = 64 * 1024;
+
+    @Test
+    void shouldNotAllocateForRepeatedAuthorsAndMentions() {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        String[] fromIds = new String[AUTHORS];
+        String[] names = new String[AUTHORS];
+        String[] mentions = new String[AUTHORS];
+        for (int i = 0; i < AUTHORS; i++) {
+            fromIds[i] = "user" + i;
+            names[i] = "Author " + i;
+            mentions[i] = "@author" + i;
+        }
+        ChatAnalyzer.AnalysisSink sink = new ChatAnalyzerImpl().newSink();
+
+        // Прогрев: первый проход добавляет участников, остальные дают JIT скомпилировать горячий путь.
+        feed(sink, fromIds, names, mentions, ROUNDS);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        feed(sink, fromIds, names, mentions, ROUNDS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated < MAX_ALLOCATED_BYTES,
+                "Expected no allocation per repeated message, allocated " + allocated + " bytes for "
+                        + (long) AUTHORS * ROUNDS + " messages");
+        ChatAnalysisResult result = sink.getResult();
+        assertEquals(AUTHORS, result.getParticipantsCount());
+        assertEquals(AUTHORS, result.getMentionsCount());
+    }
+
+    @Test
+    void shouldNotAllocateForDeletedAccounts() {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        String[] fromIds = new String[AUTHORS];
+        String[] names = new String[AUTHORS];
+        String[] mentions = new String[AUTHORS];
+        for (int i = 0; i < AUTHORS; i++) {
+            fromIds[i] = "user" + i;
+            names[i] = i % 2 == 0 ? " DELETED ACCOUNT" : "удалённый аккаунт ";
+            mentions[i] = "  ";
+        }
+        ChatAnalyzer.AnalysisSink sink = new ChatAnalyzerImpl().newSink();
+
+        feed(sink, fromIds, names, mentions, ROUNDS);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        feed(sink, fromIds, names, mentions, ROUNDS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated < MAX_ALLOCATED_BYTES,
+                "Expected no allocation per deleted account message, allocated " + allocated + " bytes");
+        ChatAnalysisResult result = sink.getResult();
+        assertEquals(0, result.getParticipantsCount());
+        assertEquals(0, result.getMentionsCount());
+    }
+
+    @Test
+    void shouldNotAllocatePerMessageWhenAnalyzingExport() throws Exception {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        String[] fromIds = new String[AUTHORS];
+        String[] names = new String[AUTHORS];
+        String[] mentions = new String[AUTHORS];
+        for (int i = 0; i < AUTHORS; i++) {
+            fromIds[i] = "user" + i;
+            names[i] = "Author " + i;
+            mentions[i] = "@author" + i;
+        }
+        // Одинаковые авторы и упоминания: выделение памяти на результат и таблицы в обоих экспортах одно и то же,
+        // разница - только то, что выделяется на каждое сообщение.
+        ChatExport small = export(fromIds, names, mentions, 1);
+        ChatExport large = export(fromIds, names, mentions, ROUNDS / 10);
+        ChatAnalyzer analyzer = new ChatAnalyzerImpl();
+        for (int i = 0; i < 20; i++) {
+            analyzer.analyze(small);
+            analyzer.analyze(large);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        analyzer.analyze(small);
+        long smallAllocated = threads.getCurrentThreadAllocatedBytes() - before;
+        before = threads.getCurrentThreadAllocatedBytes();
+        ChatAnalysisResult result = analyzer.analyze(large);
+        long largeAllocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(largeAllocated - smallAllocated < MAX_ALLOCATED_BYTES,
+                "Expected no allocation per message, allocated " + largeAllocated + " bytes for "
+                        + large.getMessages().size() + " messages and " + smallAllocated + " bytes for "
+                        + small.getMessages().size());
+        assertEquals(AUTHORS, result.getParticipantsCount());
+        assertEquals(AUTHORS, result.getMentionsCount());
+    }
+
+    private static ChatExport export(String[] fromIds, String[] names, String[] mentions, int rounds) {
+        List<ChatExport.Message> messages = new ArrayList<>(fromIds.length * rounds);
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < fromIds.length; i++) {
+                ChatExport.TextEntity mention = new ChatExport.TextEntity();
+                mention.setType("mention");
+                mention.setText(mentions[i]);
+                ChatExport.Message message = new ChatExport.Message();
+                message.setId((long) round * fromIds.length + i);
+                message.setFromId(fromIds[i]);
+                message.setFrom(names[i]);
+                message.setTextEntities(List.of(mention));
+                messages.add(message);
+            }
+        }
+        ChatExport chatExport = new ChatExport();
+        chatExport.setMessages(messages);
+        return chatExport;
+    }
+
+    private static void feed(
+            ChatAnalyzer.AnalysisSink sink,
+            String[] fromIds,
+            String[] names,
+            String[] mentions,
+            int rounds)
+    {
+        ChatExportSink.MessageHeader header = new ChatExportSink.MessageHeader();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < fromIds.length; i++) {
+                sink.onMessage(header.set(null, fromIds[i], names[i], 0));
+                sink.onEntity("mention", mentions[i]);
+                sink.onMessageEnd();
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "Per-thread allocation counters are not available");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "Per-thread allocation counters are disabled");
+        return threads;
+    }
+}
@@ -7,7 +7,9 @@ import ru.hackathon.chatlas.domain.ChatAnalysisResult;
 import ru.hackathon.chatlas.domain.ChatExport;
 import ru.hackathon.chatlas.domain.Mention;
 import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -15,7 +17,14 @@ import static org.junit.jupiter.api.Assertions.*;
 
 class ChatAnalyzerImplTest {
 
-    private final ChatAnalyzer analyzer = new ChatAnalyzerImpl();
+    private final ChatAnalyzer analyzer = createAnalyzer();
+
+    /**
+     * Анализатор под тестом: наследники проверяют на тех же сценариях другие реализации.
+     */
+    protected ChatAnalyzer createAnalyzer() {
+        return new ChatAnalyzerImpl();
+    }
 
     @Test
     void shouldExtractParticipantsAndMentions() throws Exception {
@@ -206,6 +215,30 @@ class ChatAnalyzerImplTest {
         assertEquals(1, result.getParticipantsCount());
     }
 
+    @Test
+    void shouldKeepExactFromIdsOfAllFormats() throws Exception {
+        // Числовые id разных типов и id, которые не укладываются в "префикс + число", должны сохраниться как есть.
+        List<String> fromIds = List.of(
+                "user0", "user123456789", "channel123456789", "chat123456789",
+                "user007", "user12345678901234567890", "user", "bot_42", "User5", "user5 ");
+        List<ChatExport.Message> messages = new ArrayList<>();
+        for (String fromId : fromIds) {
+            messages.add(message(fromId, "Первое имя " + fromId));
+            messages.add(message(fromId, "Второе имя " + fromId));
+        }
+        ChatExport chatExport = new ChatExport();
+        chatExport.setMessages(messages);
+
+        ChatAnalysisResult result = analyzer.analyze(chatExport);
+
+        assertEquals(fromIds.size(), result.getParticipantsCount());
+        for (String fromId : fromIds) {
+            assertTrue(result.participants().stream()
+                    .anyMatch(p -> p.fromId().equals(fromId) && p.displayName().equals("Первое имя " + fromId)),
+                    "Missing participant " + fromId);
+        }
+    }
+
     @Test
     void shouldNotCountDuplicateMentions() throws Exception {
         ChatExport.TextEntity mention1 = new ChatExport.TextEntity();
@@ -253,11 +286,55 @@ class ChatAnalyzerImplTest {
         assertTrue(result.mentions().contains(new Mention("@username")));
     }
 
+    @Test
+    void shouldCountParticipantActivity() throws Exception {
+        List<ChatExport.Message> messages = new ArrayList<>();
+        messages.add(message("user1", "Анна", 1_000, "@ivan", "@petr"));
+        messages.add(message("user2", "Иван", 0));
+        messages.add(message("user1", "Анна (новое имя)", 3_000, "@ivan"));
+        messages.add(message("Deleted Account", "Deleted Account", 4_000, "@ivan"));
+        messages.add(message("user2", "Иван", 2_000, "not a mention"));
+        messages.add(message("user1", "Анна", 500));
+        messages.add(message("user3", "Петр", 0, "@ivan"));
+        ChatExport chatExport = new ChatExport();
+        chatExport.setMessages(messages);
+
+        ChatAnalysisResult result = analyzer.analyze(chatExport);
+
+        assertEquals(new ParticipantActivity("user1", "Анна", 3, 3, 500, 3_000), result.activity().get("user1"));
+        assertEquals(new ParticipantActivity("user2", "Иван", 2, 0, 2_000, 2_000), result.activity().get("user2"));
+        assertEquals(new ParticipantActivity("user3", "Петр", 1, 1, 0, 0), result.activity().get("user3"));
+        assertEquals(3, result.activity().size());
+        assertEquals(List.of("user1", "user2", "user3"), result.activity().values().stream()
+                .sorted(ParticipantActivity.BY_ACTIVITY).map(ParticipantActivity::fromId).toList());
+    }
+
     @Test
     void shouldThrowExceptionOnNullChatExport() {
         assertThrows(ChatAnalyzer.ChatAnalysisException.class, () -> analyzer.analyze(null));
     }
 
+    private static ChatExport.Message message(String fromId, String from) {
+        ChatExport.Message message = new ChatExport.Message();
+        message.setFromId(fromId);
+        message.setFrom(from);
+        return message;
+    }
+
+    private static ChatExport.Message message(String fromId, String from, long date, String... mentions) {
+        ChatExport.Message message = message(fromId, from);
+        message.setDateUnixtime(date);
+        List<ChatExport.TextEntity> entities = new ArrayList<>();
+        for (String text : mentions) {
+            ChatExport.TextEntity entity = new ChatExport.TextEntity();
+            entity.setType("mention");
+            entity.setText(text);
+            entities.add(entity);
+        }
+        message.setTextEntities(entities);
+        return message;
+    }
+
     private ChatExport createTestChatExport() {
         ChatExport chatExport = new ChatExport();
         chatExport.setName("Тест");
@@ -6,8 +6,10 @@ import ru.hackathon.chatlas.domain.ChatAnalysisResult;
 import ru.hackathon.chatlas.domain.ChatExport;
 import ru.hackathon.chatlas.domain.Mention;
 import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.RawChatFile;
 import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
 import ru.hackathon.chatlas.parser.ChatExportParser.ChatExportParseException;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
 
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -39,6 +41,24 @@ class ChatAnalyzerIntegrationTest {
         assertEquals(4, result.getTotalCount());
     }
 
+    @Test
+    void shouldAnalyzeRealChatExportInFusedMode() throws Exception {
+        String jsonContent = readResourceAsString("chat1.json");
+        var parser = new StreamingChatExportParserImpl();
+        var analyzer = new ChatAnalyzerImpl();
+
+        var sink = analyzer.newSink();
+        parser.parse(new RawChatFile("chat1.json", jsonContent), sink);
+        ChatAnalysisResult result = sink.getResult();
+
+        assertEquals(2, result.getParticipantsCount());
+        assertTrue(result.participants().contains(new Participant("user123456789", "Владислав Почернин")));
+        assertTrue(result.participants().contains(new Participant("user123123123", "Егор Мартынов")));
+        assertEquals(2, result.getMentionsCount());
+        assertTrue(result.mentions().contains(new Mention("@vspochernin")));
+        assertTrue(result.mentions().contains(new Mention("@vspocherninwork")));
+    }
+
     private String readResourceAsString(String resourceName) throws Exception {
         InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
         assertNotNull(stream, "Resource not found: " + resourceName);
@@ -0,0 +1,80 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.analysis.ApproximateChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.ChatExportParser;
+import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+import ru.hackathon.chatlas.telegram.ChatProcessingService;
+import ru.hackathon.chatlas.telegram.ChatProcessingService.PipelineMode;
+
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatProcessingServiceTest {
+
+    @Test
+    void shouldProduceSameResultInTwoPhaseAndFusedModes() throws Exception {
+        ChatAnalysisResult twoPhase = processAndCapture(new JacksonChatExportParserImpl(), PipelineMode.TWO_PHASE);
+        ChatAnalysisResult fused = processAndCapture(new StreamingChatExportParserImpl(), PipelineMode.FUSED);
+        ChatAnalysisResult fusedWithDefaultEvents =
+                processAndCapture(new JacksonChatExportParserImpl(), PipelineMode.FUSED);
+
+        assertEquals(4, twoPhase.getTotalCount());
+        assertEquals(twoPhase, fused);
+        assertEquals(twoPhase, fusedWithDefaultEvents);
+    }
+
+    @Test
+    void shouldWrapParseErrors() {
+        ChatProcessingService service = new ChatProcessingService(
+                new StreamingChatExportParserImpl(), new ChatAnalyzerImpl(), analysisResult -> null);
+
+        assertThrows(ChatProcessingService.ChatProcessingException.class,
+                () -> service.process(new RawChatFile("bad.json", "{ bad")));
+    }
+
+    @Test
+    void shouldUseApproximateAnalyzerOnlyInApproximateMode() throws Exception {
+        ChatProcessingService service = new ChatProcessingService(
+                new StreamingChatExportParserImpl(), new ChatAnalyzerImpl(), analysisResult -> null,
+                ChatProcessingService.Options.defaults()
+                        .withPipelineMode(PipelineMode.TWO_PHASE)
+                        .withApproximateAnalyzer(new ApproximateChatAnalyzer(10, 100)));
+        ChatProcessingService.Request approximateRequest = ChatProcessingService.Request.defaults()
+                .withAnalysisMode(ChatProcessingService.AnalysisMode.APPROXIMATE);
+        RawChatFile file = new RawChatFile("chat1.json", readResource("chat1.json"));
+
+        ChatAnalysisResult exact = service.analyze(file);
+        ChatAnalysisResult approximate = service.analyze(file, approximateRequest);
+
+        assertFalse(exact.isApproximate());
+        assertTrue(approximate.isApproximate());
+        assertEquals(exact.getTotalCount(), approximate.getTotalCount());
+        assertThrows(ChatProcessingService.ChatProcessingException.class,
+                () -> new ChatProcessingService(new StreamingChatExportParserImpl(), new ChatAnalyzerImpl(),
+                        analysisResult -> null).analyze(file, approximateRequest));
+    }
+
+    private ChatAnalysisResult processAndCapture(ChatExportParser parser, PipelineMode mode) throws Exception {
+        AtomicReference<ChatAnalysisResult> captured = new AtomicReference<>();
+        ChatProcessingService service = new ChatProcessingService(parser, new ChatAnalyzerImpl(), analysisResult -> {
+            captured.set(analysisResult);
+            return null;
+        }, ChatProcessingService.Options.defaults().withPipelineMode(mode));
+
+        service.process(new RawChatFile("chat1.json", readResource("chat1.json")));
+        return captured.get();
+    }
+
+    private byte[] readResource(String resourceName) throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
+        assertNotNull(stream, "Resource not found: " + resourceName);
+        return stream.readAllBytes();
+    }
+}
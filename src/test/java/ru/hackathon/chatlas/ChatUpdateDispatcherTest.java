@@ -0,0 +1,143 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.chat.Chat;
+import org.telegram.telegrambots.meta.api.objects.message.Message;
+import ru.hackathon.chatlas.telegram.ChatUpdateDispatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatUpdateDispatcherTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldKeepOrderWithinChat() throws Exception {
+        int chats = 4;
+        int updatesPerChat = 50;
+        Map<Long, List<Integer>> processed = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(chats * updatesPerChat);
+        ChatUpdateDispatcher dispatcher = dispatcher(update -> {
+            sleepQuietly(ThreadLocalRandom.current().nextInt(2));
+            // Список чата не синхронизирован: обновления одного чата не должны выполняться одновременно.
+            processed.computeIfAbsent(update.getMessage().getChatId(), id -> new ArrayList<>())
+                    .add(update.getUpdateId());
+            done.countDown();
+        });
+
+        List<Update> updates = new ArrayList<>();
+        for (int i = 0; i < updatesPerChat; i++) {
+            for (long chatId = 1; chatId <= chats; chatId++) {
+                updates.add(update(i, chatId));
+            }
+        }
+        dispatcher.consume(updates);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < updatesPerChat; i++) {
+            expected.add(i);
+        }
+        for (long chatId = 1; chatId <= chats; chatId++) {
+            assertEquals(expected, processed.get(chatId), "Chat " + chatId);
+        }
+        awaitNoActiveChats(dispatcher);
+    }
+
+    @Test
+    void shouldNotBlockOtherChats() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherChatDone = new CountDownLatch(1);
+        CountDownLatch blockedChatDone = new CountDownLatch(2);
+        ChatUpdateDispatcher dispatcher = dispatcher(update -> {
+            if (update.getMessage().getChatId() == 1) {
+                awaitQuietly(release);
+                blockedChatDone.countDown();
+            } else {
+                otherChatDone.countDown();
+            }
+        });
+
+        dispatcher.consume(List.of(update(1, 1), update(2, 1), update(3, 2)));
+
+        // Долгая обработка в первом чате не задерживает второй.
+        assertTrue(otherChatDone.await(5, TimeUnit.SECONDS));
+        assertEquals(2, blockedChatDone.getCount());
+        release.countDown();
+        assertTrue(blockedChatDone.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldContinueChatAfterFailure() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        ChatUpdateDispatcher dispatcher = dispatcher(update -> {
+            if (update.getUpdateId() == 1) {
+                throw new IllegalStateException("boom");
+            }
+            if (update.getUpdateId() == 2) {
+                throw new OutOfMemoryError("boom");
+            }
+            done.countDown();
+        });
+
+        dispatcher.consume(List.of(update(1, 7), update(2, 7), update(3, 7)));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        awaitNoActiveChats(dispatcher);
+    }
+
+    private ChatUpdateDispatcher dispatcher(Consumer<Update> handler) {
+        return new ChatUpdateDispatcher(handler, executor);
+    }
+
+    private static Update update(int updateId, long chatId) {
+        Message message = new Message();
+        message.setChat(Chat.builder().id(chatId).type("private").build());
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+
+    private static void awaitNoActiveChats(ChatUpdateDispatcher dispatcher) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.activeChats() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, dispatcher.activeChats(), "Finished chat queues must be removed");
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.benchmark.SyntheticChatExports;
+import ru.hackathon.chatlas.checkpoint.ChatCheckpointStore;
+import ru.hackathon.chatlas.checkpoint.FileChatCheckpointStoreImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatCheckpoint;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.ChatExportParser;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+import ru.hackathon.chatlas.parser.ForkableSink;
+import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
+import ru.hackathon.chatlas.parser.ParallelChatExportParserImpl;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+import ru.hackathon.chatlas.telegram.BatchProcessingService;
+import ru.hackathon.chatlas.telegram.ChatProcessingService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointingAnalysisTest {
+
+    private static final long SYNTHETIC_CHAT_ID = 1234567890L;
+    private static final long REQUESTER_CHAT_ID = 100L;
+    private static final ChatCheckpointStore.Key SYNTHETIC_KEY =
+            new ChatCheckpointStore.Key(REQUESTER_CHAT_ID, "private_supergroup", SYNTHETIC_CHAT_ID);
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final ExecutorService batchExecutor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        batchExecutor.shutdownNow();
+    }
+
+    @Test
+    void shouldStoreAndReplaceCheckpoints() throws Exception {
+        ChatCheckpointStore store = new FileChatCheckpointStoreImpl(tempDir.resolve("checkpoints"));
+        ChatCheckpointStore.Key key = new ChatCheckpointStore.Key(7, "personal_chat", 42);
+        assertNull(store.load(key));
+
+        store.save(key, new ChatCheckpoint(42, 10, 20, new ChatAnalysisResult(
+                Set.of(new Participant("user1", "Старое имя")), Set.of(new Mention("@a")), Map.of(), Map.of(), null)));
+        store.save(key, new ChatCheckpoint(42, 15, 30, new ChatAnalysisResult(
+                Set.of(new Participant("user1", "Новое имя"), new Participant("user2", "")),
+                Set.of(new Mention("@b")), Map.of(), Map.of(), null)));
+
+        ChatCheckpoint loaded = new FileChatCheckpointStoreImpl(tempDir.resolve("checkpoints")).load(key);
+        assertEquals(15, loaded.firstMessageId());
+        assertEquals(30, loaded.lastMessageId());
+        assertEquals(Set.of(new Participant("user1", ""), new Participant("user2", "")),
+                loaded.result().participants());
+        assertEquals("Новое имя", loaded.result().participants().stream()
+                .filter(p -> p.fromId().equals("user1"))
+                .findFirst()
+                .orElseThrow()
+                .displayName());
+        assertEquals(Set.of(new Mention("@b")), loaded.result().mentions());
+        try (var files = Files.list(tempDir.resolve("checkpoints").resolve("7"))) {
+            assertEquals(List.of("personal_chat-42.json.gz"), files.map(f -> f.getFileName().toString()).toList());
+        }
+        // Тот же id из экспорта у другого пользователя или другого типа чата - другая контрольная точка.
+        assertNull(store.load(new ChatCheckpointStore.Key(8, "personal_chat", 42)));
+        assertNull(store.load(new ChatCheckpointStore.Key(7, "private_group", 42)));
+    }
+
+    @Test
+    void shouldNotShareCheckpointsBetweenRequesters() throws Exception {
+        byte[] firstExport = SyntheticChatExports.generate(3_000, 40, 11);
+        byte[] secondExport = SyntheticChatExports.generate(6_000, 80, 11);
+        ChatCheckpointStore store = new FileChatCheckpointStoreImpl(tempDir);
+        ChatProcessingService incremental = service(new StreamingChatExportParserImpl(), store);
+
+        analyze(incremental, "first.json", firstExport);
+        // Другой пользователь прислал экспорт с тем же id чата: точка первого не подмешивается.
+        ChatAnalysisResult otherResult = incremental.analyze(new RawChatFile("second.json", secondExport),
+                ChatProcessingService.Request.defaults().withRequesterChatId(REQUESTER_CHAT_ID + 1));
+        ChatAnalysisResult expected = service(new StreamingChatExportParserImpl(), null)
+                .analyze(new RawChatFile("second.json", secondExport));
+
+        assertEquals(expected, otherResult);
+        assertEquals(3_000, store.load(SYNTHETIC_KEY).lastMessageId());
+        assertEquals(6_000, store.load(new ChatCheckpointStore.Key(
+                REQUESTER_CHAT_ID + 1, "private_supergroup", SYNTHETIC_CHAT_ID)).lastMessageId());
+        // Без чата бота контрольные точки не ведутся.
+        assertEquals(expected, incremental.analyze(new RawChatFile("second.json", secondExport)));
+        assertEquals(3_000, store.load(SYNTHETIC_KEY).lastMessageId());
+    }
+
+    @Test
+    void shouldNotApplyCheckpointToBatchFilesOfCheckpointedChat() throws Exception {
+        byte[] firstExport = SyntheticChatExports.generate(3_000, 40, 11);
+        byte[] secondExport = SyntheticChatExports.generate(6_000, 80, 11);
+        ChatCheckpointStore store = new FileChatCheckpointStoreImpl(tempDir);
+        ChatProcessingService incremental = service(new StreamingChatExportParserImpl(), store);
+        ChatProcessingService full = service(new StreamingChatExportParserImpl(), null);
+        analyze(incremental, "first.json", firstExport);
+        ChatCheckpoint checkpoint = store.load(SYNTHETIC_KEY);
+
+        // Оба файла пакета - экспорты чата, для которого уже есть контрольная точка.
+        BatchProcessingService batchService = new BatchProcessingService(incremental, batchExecutor);
+        RawChatFile first = new RawChatFile("first.json", firstExport);
+        RawChatFile second = new RawChatFile("second.json", secondExport);
+        ChatAnalysisResult result = batchService.analyzeAll(List.of(
+                new BatchProcessingService.BatchItem("first.json", () -> batchService.analyze(first)),
+                new BatchProcessingService.BatchItem("second.json", () -> batchService.analyze(second))));
+        ChatAnalysisResult expected = ChatAnalysisResult.merge(List.of(full.analyze(first), full.analyze(second)));
+
+        assertEquals(expected, result);
+        assertEquals(messageCount(expected), messageCount(result));
+        // Пакет не меняет контрольную точку чата.
+        assertEquals(checkpoint.lastMessageId(), store.load(SYNTHETIC_KEY).lastMessageId());
+        assertEquals(checkpoint.result(), store.load(SYNTHETIC_KEY).result());
+    }
+
+    @Test
+    void shouldAnalyzeOnlyNewMessagesWithStreamingParser() throws Exception {
+        assertIncrementalResultMatchesFullAnalysis(new StreamingChatExportParserImpl());
+    }
+
+    @Test
+    void shouldAnalyzeOnlyNewMessagesWithParallelParser() throws Exception {
+        assertIncrementalResultMatchesFullAnalysis(new ParallelChatExportParserImpl(pool, 0));
+    }
+
+    @Test
+    void shouldAnalyzeOnlyNewMessagesWithTreeParser() throws Exception {
+        assertIncrementalResultMatchesFullAnalysis(new JacksonChatExportParserImpl());
+    }
+
+    @Test
+    void shouldKeepParticipantActivityAcrossCheckpoints() throws Exception {
+        // Экспорты с одинаковыми авторами и зерном: первый - точное начало второго.
+        byte[] firstExport = SyntheticChatExports.generate(3_000, 40, 11);
+        byte[] secondExport = SyntheticChatExports.generate(6_000, 40, 11);
+        ChatProcessingService incremental =
+                service(new StreamingChatExportParserImpl(), new FileChatCheckpointStoreImpl(tempDir));
+
+        analyze(incremental, "first.json", firstExport);
+        ChatAnalysisResult secondResult = analyze(incremental, "second.json", secondExport);
+        ChatAnalysisResult expected = service(new StreamingChatExportParserImpl(), null)
+                .analyze(new RawChatFile("second.json", secondExport));
+
+        assertFalse(expected.activity().isEmpty());
+        assertEquals(expected.activity(), secondResult.activity());
+    }
+
+    @Test
+    void shouldNotRecountActivityOnRepeatedExports() throws Exception {
+        // Три экспорта растущего чата: каждый следующий продолжает предыдущий.
+        ChatCheckpointStore store = new FileChatCheckpointStoreImpl(tempDir);
+        ChatProcessingService incremental = service(new StreamingChatExportParserImpl(), store);
+        ChatProcessingService full = service(new StreamingChatExportParserImpl(), null);
+
+        for (int count : new int[]{10, 20, 30}) {
+            byte[] export = SyntheticChatExports.generate(count, 3, 11);
+            ChatAnalysisResult result = analyze(incremental, "export-" + count + ".json", export);
+            ChatAnalysisResult expected = full.analyze(new RawChatFile("export.json", export));
+
+            assertEquals(messageCount(expected), messageCount(result), "export of " + count);
+            assertEquals(expected.activity(), result.activity(), "export of " + count);
+            assertEquals(expected.activity(), store.load(SYNTHETIC_KEY).result().activity(), "export of " + count);
+        }
+    }
+
+    @Test
+    void shouldNotCoverGapBetweenExports() throws Exception {
+        ChatCheckpointStore store = new FileChatCheckpointStoreImpl(tempDir);
+        ChatProcessingService incremental = service(new StreamingChatExportParserImpl(), store);
+        byte[] fullExport = export(1, 60);
+
+        analyze(incremental, "start.json", export(1, 10));
+        analyze(incremental, "end.json", export(50, 60));
+        // Сообщения 11..49 (среди них все сообщения user2) не было ни в одном экспорте.
+        ChatAnalysisResult result = analyze(incremental, "full.json", fullExport);
+        ChatAnalysisResult expected = service(new StreamingChatExportParserImpl(), null)
+                .analyze(new RawChatFile("full.json", fullExport));
+
+        assertEquals(21, expected.activity().get("user2").messageCount());
+        assertEquals(expected.participants(), result.participants());
+        assertEquals(expected.activity(), result.activity());
+        ChatCheckpoint checkpoint = store.load(new ChatCheckpointStore.Key(REQUESTER_CHAT_ID, "private_group", 5));
+        assertEquals(1, checkpoint.firstMessageId());
+        assertEquals(60, checkpoint.lastMessageId());
+    }
+
+    @Test
+    void shouldSkipCheckpointedPrefixInParser() throws Exception {
+        byte[] export = SyntheticChatExports.generate(5_000, 50, 7);
+        ChatExportSink.MessageIdRange skipped = new ChatExportSink.MessageIdRange(1, 4_000);
+
+        for (ChatExportParser parser : List.of(
+                new StreamingChatExportParserImpl(),
+                new ParallelChatExportParserImpl(pool, 0),
+                new JacksonChatExportParserImpl())) {
+            CountingSink sink = new CountingSink(skipped);
+            parser.parse(new RawChatFile("export.json", export), sink);
+
+            assertEquals(SYNTHETIC_CHAT_ID, sink.chatId.get(), parser.getClass().getSimpleName());
+            // Из 1000 новых сообщений около 1% - null-элементы массива.
+            assertTrue(sink.messages.get() > 950 && sink.messages.get() <= 1_000, parser.getClass().getSimpleName());
+            assertEquals(0, sink.skippedSeen.get(), parser.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Первая загрузка - начало чата, вторая - повторный экспорт того же чата с новыми сообщениями.
+     * Итог второй загрузки должен совпасть с полным анализом, а проанализированы - только новые сообщения.
+     */
+    private void assertIncrementalResultMatchesFullAnalysis(ChatExportParser parser) throws Exception {
+        byte[] firstExport = SyntheticChatExports.generate(3_000, 40, 11);
+        byte[] secondExport = SyntheticChatExports.generate(6_000, 80, 11);
+        ChatCheckpointStore store = new FileChatCheckpointStoreImpl(tempDir);
+        ChatProcessingService incremental = service(parser, store);
+
+        ChatAnalysisResult firstResult = analyze(incremental, "first.json", firstExport);
+        ChatCheckpoint checkpoint = store.load(SYNTHETIC_KEY);
+        assertNotNull(checkpoint);
+        assertEquals(firstResult, checkpoint.result());
+
+        ChatAnalysisResult secondResult = analyze(incremental, "second.json", secondExport);
+        ChatAnalysisResult expected = service(new StreamingChatExportParserImpl(), null)
+                .analyze(new RawChatFile("second.json", secondExport));
+        assertEquals(expected.participants(), secondResult.participants());
+        assertEquals(expected.mentions(), secondResult.mentions());
+        assertEquals(6_000, store.load(SYNTHETIC_KEY).lastMessageId());
+    }
+
+    /**
+     * Экспорт группы с сообщениями from..to: сообщения 20..40 написаны user2, остальные - user1.
+     */
+    private static byte[] export(int from, int to) {
+        StringBuilder messages = new StringBuilder();
+        for (int id = from; id <= to; id++) {
+            String author = id >= 20 && id <= 40 ? "user2" : "user1";
+            messages.append(id > from ? ",\n" : "")
+                    .append("{\"id\": ").append(id)
+                    .append(", \"date_unixtime\": \"").append(1_700_000_000L + id * 60L)
+                    .append("\", \"from\": \"").append(author)
+                    .append("\", \"from_id\": \"").append(author).append("\"}");
+        }
+        return ("{\"type\": \"private_group\", \"id\": 5, \"messages\": [" + messages + "]}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long messageCount(ChatAnalysisResult result) {
+        return result.activity().values().stream().mapToLong(ParticipantActivity::messageCount).sum();
+    }
+
+    private static ChatAnalysisResult analyze(ChatProcessingService service, String fileName, byte[] export)
+            throws ChatProcessingService.ChatProcessingException
+    {
+        return service.analyze(new RawChatFile(fileName, export),
+                ChatProcessingService.Request.defaults().withRequesterChatId(REQUESTER_CHAT_ID));
+    }
+
+    private ChatProcessingService service(ChatExportParser parser, ChatCheckpointStore store) {
+        return new ChatProcessingService(parser, new ChatAnalyzerImpl(), r -> null,
+                ChatProcessingService.Options.defaults().withCheckpointStore(store));
+    }
+
+    /**
+     * Приемник, считающий полученные сообщения (с поддержкой параллельного разбора).
+     */
+    private static class CountingSink implements ForkableSink {
+
+        private final ChatExportSink.MessageIdRange skipped;
+        private final AtomicInteger messages;
+        private final AtomicInteger skippedSeen;
+        private final AtomicLong chatId;
+
+        CountingSink(ChatExportSink.MessageIdRange skipped) {
+            this(skipped, new AtomicInteger(), new AtomicInteger(), new AtomicLong());
+        }
+
+        private CountingSink(MessageIdRange skipped, AtomicInteger messages, AtomicInteger skippedSeen,
+                             AtomicLong chatId) {
+            this.skipped = skipped;
+            this.messages = messages;
+            this.skippedSeen = skippedSeen;
+            this.chatId = chatId;
+        }
+
+        @Override
+        public void onChatId(long id) {
+            chatId.set(id);
+        }
+
+        @Override
+        public MessageIdRange skippedMessageIds() {
+            return skipped;
+        }
+
+        @Override
+        public void onMessage(MessageHeader message) {
+            messages.incrementAndGet();
+            if (message.hasId() && skipped.contains(message.id())) {
+                skippedSeen.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onEntity(String type, String text) {
+        }
+
+        @Override
+        public ForkableSink fork() {
+            return new CountingSink(skipped, messages, skippedSeen, chatId);
+        }
+
+        @Override
+        public void join(ForkableSink forked) {
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.telegram.CpuStageLimiter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuStageLimiterTest {
+
+    @Test
+    void shouldLimitConcurrentStages() throws Exception {
+        CpuStageLimiter limiter = new CpuStageLimiter(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                int value = i;
+                futures.add(executor.submit(() -> limiter.call(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(10);
+                    running.decrementAndGet();
+                    return value;
+                })));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, futures.get(i).get());
+            }
+        }
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(2, limiter.availablePermits());
+    }
+
+    @Test
+    void shouldReleasePermitOnFailure() {
+        CpuStageLimiter limiter = new CpuStageLimiter(1);
+
+        assertThrows(IOException.class, () -> limiter.call(() -> {
+            throw new IOException("boom");
+        }));
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void shouldReleasePermitWhileStageWaitsForNetwork() throws Exception {
+        CpuStageLimiter limiter = new CpuStageLimiter(1);
+        PipedOutputStream network = new PipedOutputStream();
+        InputStream download = limiter.releaseWhileBlocked(new PipedInputStream(network));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<byte[]> parsing = executor.submit(() -> limiter.call(() -> download.readNBytes(3)));
+            // Пока разбор ждет данных, другой этап получает единственное разрешение.
+            Future<Integer> other = executor.submit(() -> limiter.call(() -> 42));
+            assertEquals(42, other.get(10, TimeUnit.SECONDS));
+
+            network.write(new byte[]{1, 2, 3});
+            network.flush();
+            assertArrayEquals(new byte[]{1, 2, 3}, parsing.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void shouldRejectNonPositiveParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new CpuStageLimiter(0));
+    }
+}
@@ -0,0 +1,139 @@
+package ru.hackathon.chatlas;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.export.ReportRenderer;
+import ru.hackathon.chatlas.export.ReportRendererImpl;
+import ru.hackathon.chatlas.parser.ParallelChatExportParserImpl;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+import ru.hackathon.chatlas.telegram.DownloadSpooler;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadSpoolerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldKeepSmallFileInMemory() throws Exception {
+        byte[] json = readResource("chat1.json");
+        DownloadSpooler spooler = new DownloadSpooler(json.length, tempDir);
+
+        try (DownloadSpooler.Download download =
+                     spooler.receive("chat1.json", new ByteArrayInputStream(json), (long) json.length)) {
+            assertFalse(download.isSpooled());
+            assertInstanceOf(RawChatFile.BytesContent.class, download.rawChatFile().content());
+            assertEquals(4, analyze(download.rawChatFile()).getTotalCount());
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void shouldSpoolLargeFileToDiskAndDeleteAfterClose() throws Exception {
+        byte[] json = readResource("chat1.json");
+        DownloadSpooler spooler = new DownloadSpooler(json.length - 1, tempDir);
+
+        Path tempFile;
+        try (DownloadSpooler.Download download =
+                     spooler.receive("chat1.json", new ByteArrayInputStream(json), (long) json.length)) {
+            assertTrue(download.isSpooled());
+            tempFile = download.tempFile();
+            assertTrue(Files.exists(tempFile));
+            assertEquals(json.length, Files.size(tempFile));
+            assertInstanceOf(RawChatFile.BufferContent.class, download.rawChatFile().content());
+            assertEquals(4, analyze(download.rawChatFile()).getTotalCount());
+        }
+        assertFalse(Files.exists(tempFile));
+    }
+
+    @Test
+    void shouldSpoolFileOfUnknownSize() throws Exception {
+        byte[] json = readResource("chat1.json");
+        DownloadSpooler spooler = new DownloadSpooler(Long.MAX_VALUE, tempDir);
+
+        try (DownloadSpooler.Download download = spooler.receive("chat1.json", new ByteArrayInputStream(json), null)) {
+            assertTrue(download.isSpooled());
+            ForkJoinPool pool = new ForkJoinPool(2);
+            try {
+                ChatAnalyzer.AnalysisSink sink = new ChatAnalyzerImpl().newSink();
+                new ParallelChatExportParserImpl(pool, 0).parse(download.rawChatFile(), sink);
+                assertEquals(4, sink.getResult().getTotalCount());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void shouldSpoolReportToDiskAndDeleteAfterClose() throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+        }
+        ReportRenderer.ReportResult report = new ReportRendererImpl(ReportRendererImpl.Options.defaults()
+                .withExcelThreshold(51)
+                .withRowWindow(100)
+                .withClock(Clock.systemUTC()))
+                .render(new ChatAnalysisResult(participants, Set.of(), Map.of(), Map.of(), null));
+        DownloadSpooler spooler = new DownloadSpooler(0, tempDir);
+
+        Path reportFile;
+        try (DownloadSpooler.Upload upload = spooler.spoolReport(report)) {
+            reportFile = upload.file();
+            try (XSSFWorkbook workbook = new XSSFWorkbook(Files.newInputStream(reportFile))) {
+                assertEquals(1_000, workbook.getSheet("Участники").getLastRowNum());
+            }
+        }
+        assertFalse(Files.exists(reportFile));
+    }
+
+    @Test
+    void shouldRejectFileLargerThanDeclared() {
+        byte[] json = "{\"messages\": []}".getBytes();
+        DownloadSpooler spooler = new DownloadSpooler(1024, tempDir);
+
+        assertThrows(java.io.IOException.class,
+                () -> spooler.receive("chat.json", new ByteArrayInputStream(json), 4L));
+    }
+
+    @Test
+    void shouldRejectFileShorterThanDeclared() {
+        byte[] json = "{\"messages\": []}".getBytes();
+        DownloadSpooler spooler = new DownloadSpooler(1024, tempDir);
+
+        // Скачивание оборвалось: обрезанный файл не должен уйти в парсер.
+        assertThrows(java.io.IOException.class,
+                () -> spooler.receive("chat.json", new ByteArrayInputStream(json), json.length + 10L));
+    }
+
+    private ChatAnalysisResult analyze(RawChatFile file) throws Exception {
+        ChatAnalyzer.AnalysisSink sink = new ChatAnalyzerImpl().newSink();
+        new StreamingChatExportParserImpl().parse(file, sink);
+        return sink.getResult();
+    }
+
+    private byte[] readResource(String resourceName) throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
+        assertNotNull(stream, "Resource not found: " + resourceName);
+        return stream.readAllBytes();
+    }
+}
@@ -0,0 +1,193 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.analysis.EntityExtractor;
+import ru.hackathon.chatlas.analysis.EntityExtractors;
+import ru.hackathon.chatlas.analysis.ParallelChatAnalyzer;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityExtractorTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private static final String CHAT_JSON = """
+            {
+              "name": "Сущности",
+              "type": "private_supergroup",
+              "id": 42,
+              "messages": [
+                {
+                  "id": 1,
+                  "type": "message",
+                  "from": "Анна",
+                  "from_id": "user1",
+                  "text_entities": [
+                    {"type": "mention", "text": "@ivan"},
+                    {"type": "hashtag", "text": "#release"},
+                    {"type": "url", "text": "https://example.com"},
+                    {"type": "text_link", "text": "документация", "href": "https://docs.example.com"},
+                    {"type": "phone", "text": "+7 (900) 123-45-67"},
+                    {"type": "email", "text": "anna@example.com"},
+                    {"type": "bot_command", "text": "/start"},
+                    {"type": "mention_name", "text": "Иван", "user_id": 5},
+                    {"type": "bold", "text": "важно"}
+                  ]
+                },
+                {
+                  "id": 2,
+                  "type": "message",
+                  "from": "Иван",
+                  "from_id": "user2",
+                  "text_entities": [
+                    {"type": "hashtag", "text": "#release"},
+                    {"type": "phone", "text": "+79001234567"},
+                    {"type": "text_link", "text": "без адреса"}
+                  ]
+                }
+              ]
+            }
+            """;
+
+    @AfterAll
+    static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void shouldCollectEnabledEntityTypesInSinglePass() throws Exception {
+        ChatAnalyzer analyzer = new ChatAnalyzerImpl(allOptionalExtractors());
+
+        ChatAnalysisResult result = analyzeStreaming(analyzer);
+
+        assertEquals(Set.of(new Mention("@ivan")), result.mentions());
+        assertEquals(Set.of("#release"), result.getEntities(EntityExtractors.HASHTAG));
+        assertEquals(Set.of("https://example.com"), result.getEntities(EntityExtractors.URL));
+        assertEquals(Set.of("https://docs.example.com"), result.getEntities(EntityExtractors.TEXT_LINK));
+        assertEquals(Set.of("+79001234567"), result.getEntities(EntityExtractors.PHONE));
+        assertEquals(Set.of("anna@example.com"), result.getEntities(EntityExtractors.EMAIL));
+        assertEquals(Set.of("/start"), result.getEntities(EntityExtractors.BOT_COMMAND));
+        assertEquals(Set.of("Иван"), result.getEntities(EntityExtractors.MENTION_NAME));
+        assertFalse(result.entities().containsKey("bold"));
+    }
+
+    @Test
+    void shouldReadHrefWithBothParsers() throws Exception {
+        ChatAnalyzer analyzer = new ChatAnalyzerImpl(List.of(EntityExtractors.textLink()));
+
+        ChatAnalysisResult streaming = analyzeStreaming(analyzer);
+        ChatExport chatExport = new JacksonChatExportParserImpl().parse(new RawChatFile("chat.json", CHAT_JSON));
+        ChatAnalysisResult jackson = analyzer.analyze(chatExport);
+
+        assertEquals(Set.of("https://docs.example.com"), streaming.getEntities(EntityExtractors.TEXT_LINK));
+        assertEquals(streaming, jackson);
+    }
+
+    @Test
+    void shouldCollectOnlyMentionsByDefault() throws Exception {
+        ChatAnalysisResult result = analyzeStreaming(new ChatAnalyzerImpl());
+
+        assertEquals(1, result.getMentionsCount());
+        assertTrue(result.entities().isEmpty());
+        assertEquals(Set.of(), result.getEntities(EntityExtractors.HASHTAG));
+    }
+
+    @Test
+    void shouldAcceptCustomExtractor() throws Exception {
+        EntityExtractor lowerCaseHashtags = new EntityExtractor() {
+            @Override
+            public String entityType() {
+                return EntityExtractors.HASHTAG;
+            }
+
+            @Override
+            public String extract(String text, String href) {
+                return text == null ? null : text.substring(1).toLowerCase();
+            }
+        };
+
+        ChatAnalysisResult result = analyzeStreaming(new ChatAnalyzerImpl(List.of(lowerCaseHashtags)));
+
+        assertEquals(Set.of("release"), result.getEntities(EntityExtractors.HASHTAG));
+    }
+
+    @Test
+    void shouldMatchSequentialResultInParallel() throws Exception {
+        List<ChatExport.Message> messages = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            ChatExport.Message message = new ChatExport.Message();
+            message.setId((long) i);
+            message.setFrom("Автор " + i % 300);
+            message.setFromId("user" + i % 300);
+            message.setTextEntities(List.of(
+                    entity(EntityExtractors.HASHTAG, "#tag" + i % 97, null),
+                    entity(EntityExtractors.TEXT_LINK, "ссылка", "https://example.com/" + i % 31),
+                    entity(EntityExtractors.MENTION, "@user" + i % 50, null)));
+            messages.add(message);
+        }
+        ChatExport chatExport = new ChatExport();
+        chatExport.setMessages(messages);
+
+        ChatAnalysisResult sequential = new ChatAnalyzerImpl(allOptionalExtractors()).analyze(chatExport);
+        ChatAnalysisResult parallel = new ParallelChatAnalyzer(POOL, 0, allOptionalExtractors()).analyze(chatExport);
+
+        assertEquals(97, sequential.getEntities(EntityExtractors.HASHTAG).size());
+        assertEquals(31, sequential.getEntities(EntityExtractors.TEXT_LINK).size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void shouldRejectDuplicateEntityTypes() {
+        List<EntityExtractor> duplicates = List.of(EntityExtractors.forType("url"), EntityExtractors.forType("url"));
+
+        assertThrows(IllegalArgumentException.class, () -> new ChatAnalyzerImpl(duplicates));
+        assertThrows(IllegalArgumentException.class, () -> new ChatAnalyzerImpl(List.of(EntityExtractors.mention())));
+    }
+
+    @Test
+    void shouldNormalizePhones() {
+        EntityExtractor phone = EntityExtractors.phone();
+
+        assertEquals("+79001234567", phone.extract("+7 (900) 123-45-67", null));
+        assertEquals("89001234567", phone.extract("8 900 123 45 67", null));
+        assertNull(phone.extract("+", null));
+        assertNull(phone.extract(null, null));
+        assertNull(EntityExtractors.forType("bold"));
+    }
+
+    private static List<EntityExtractor> allOptionalExtractors() {
+        List<EntityExtractor> extractors = new ArrayList<>();
+        for (String type : EntityExtractors.OPTIONAL_TYPES) {
+            extractors.add(EntityExtractors.forType(type));
+        }
+        return extractors;
+    }
+
+    private static ChatAnalysisResult analyzeStreaming(ChatAnalyzer analyzer) throws Exception {
+        ChatAnalyzer.AnalysisSink sink = analyzer.newSink();
+        new StreamingChatExportParserImpl().parse(new RawChatFile("chat.json", CHAT_JSON), sink);
+        return sink.getResult();
+    }
+
+    private static ChatExport.TextEntity entity(String type, String text, String href) {
+        ChatExport.TextEntity entity = new ChatExport.TextEntity();
+        entity.setType(type);
+        entity.setText(text);
+        entity.setHref(href);
+        return entity;
+    }
+}
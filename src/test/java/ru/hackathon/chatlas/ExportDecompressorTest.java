@@ -0,0 +1,136 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.ChatExportParser;
+import ru.hackathon.chatlas.parser.ExportDecompressor;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportDecompressorTest {
+
+    private static final long LIMIT = 16L * 1024 * 1024;
+
+    @Test
+    void shouldDetectFormatByFileName() {
+        assertEquals(ExportDecompressor.Format.JSON, ExportDecompressor.Format.detect("result.JSON"));
+        assertEquals(ExportDecompressor.Format.GZIP, ExportDecompressor.Format.detect("result.json.gz"));
+        assertEquals(ExportDecompressor.Format.ZIP, ExportDecompressor.Format.detect("ChatExport.zip"));
+        assertNull(ExportDecompressor.Format.detect("result.txt"));
+        assertNull(ExportDecompressor.Format.detect("result.gz"));
+    }
+
+    @Test
+    void shouldParseGzippedExport() throws Exception {
+        byte[] gzipped = gzip(readResource("chat1.json"));
+
+        ChatAnalysisResult result = analyze(ExportDecompressor.Format.GZIP, gzipped, LIMIT);
+
+        assertEquals(4, result.getTotalCount());
+    }
+
+    @Test
+    void shouldPickResultJsonEntryFromZip() throws Exception {
+        byte[] zipped = zip(
+                "ChatExport_2025-12-06/photos/photo_1.jpg", new byte[10_000],
+                "ChatExport_2025-12-06/export_results.html", "<html></html>".getBytes(),
+                "ChatExport_2025-12-06/result.json", readResource("chat1.json"));
+
+        ChatAnalysisResult result = analyze(ExportDecompressor.Format.ZIP, zipped, LIMIT);
+
+        assertEquals(4, result.getTotalCount());
+    }
+
+    @Test
+    void shouldFailWhenZipHasNoResultJson() throws Exception {
+        byte[] zipped = zip("chat.json", readResource("chat1.json"));
+        ExportDecompressor decompressor = new ExportDecompressor(LIMIT);
+
+        IOException exception = assertThrows(IOException.class,
+                () -> decompressor.open(ExportDecompressor.Format.ZIP, new ByteArrayInputStream(zipped)));
+        assertTrue(exception.getMessage().contains("result.json"));
+    }
+
+    @Test
+    void shouldStopGzipBombAtLimit() throws Exception {
+        byte[] bomb = gzip(new byte[4 * 1024 * 1024]);
+        ExportDecompressor decompressor = new ExportDecompressor(1024 * 1024);
+
+        try (InputStream stream = decompressor.open(ExportDecompressor.Format.GZIP, new ByteArrayInputStream(bomb))) {
+            assertThrows(ExportDecompressor.DecompressedSizeLimitException.class, stream::readAllBytes);
+        }
+    }
+
+    @Test
+    void shouldCountSkippedZipEntriesTowardsLimit() throws Exception {
+        byte[] zipped = zip(
+                "padding.bin", new byte[4 * 1024 * 1024],
+                "result.json", readResource("chat1.json"));
+        ExportDecompressor decompressor = new ExportDecompressor(1024 * 1024);
+
+        assertThrows(ExportDecompressor.DecompressedSizeLimitException.class,
+                () -> decompressor.open(ExportDecompressor.Format.ZIP, new ByteArrayInputStream(zipped)));
+    }
+
+    @Test
+    void shouldReportLimitAsParseErrorWhenExceededWhileParsing() throws Exception {
+        byte[] gzipped = gzip(readResource("chat1.json"));
+
+        ChatExportParser.ChatExportParseException exception = assertThrows(
+                ChatExportParser.ChatExportParseException.class,
+                () -> analyze(ExportDecompressor.Format.GZIP, gzipped, 64));
+        assertInstanceOf(ExportDecompressor.DecompressedSizeLimitException.class, exception.getCause());
+    }
+
+    private ChatAnalysisResult analyze(ExportDecompressor.Format format, byte[] compressed, long limit)
+            throws Exception
+    {
+        ExportDecompressor decompressor = new ExportDecompressor(limit);
+        try (InputStream stream = decompressor.open(format, new ByteArrayInputStream(compressed))) {
+            ChatAnalyzer.AnalysisSink sink = new ChatAnalyzerImpl().newSink();
+            new StreamingChatExportParserImpl().parse(RawChatFile.ofStream("chat1.json", stream), sink);
+            return sink.getResult();
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Собрать zip-архив из пар (имя записи, содержимое).
+     */
+    private static byte[] zip(Object... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry((String) entries[i]));
+                zip.write((byte[]) entries[i + 1]);
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] readResource(String resourceName) throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
+        assertNotNull(stream, "Resource not found: " + resourceName);
+        return stream.readAllBytes();
+    }
+}
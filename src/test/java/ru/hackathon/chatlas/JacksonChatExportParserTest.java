@@ -139,6 +139,36 @@ class JacksonChatExportParserTest {
         assertEquals("", message.getText());
     }
 
+    @Test
+    void shouldParseFromUtf8Bytes() throws Exception {
+        byte[] bytes = readResourceAsString("chat1.json").getBytes(StandardCharsets.UTF_8);
+        RawChatFile file = new RawChatFile("chat1.json", bytes);
+
+        ChatExport result = new JacksonChatExportParserImpl().parse(file);
+
+        assertEquals("Егор", result.getName());
+        assertEquals(5, result.getMessages().size());
+        assertEquals("Владислав Почернин", result.getMessages().get(0).getFrom());
+    }
+
+    @Test
+    void shouldParseFromStream() throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream("chat1.json");
+        RawChatFile file = RawChatFile.ofStream("chat1.json", stream);
+
+        ChatExport result = new JacksonChatExportParserImpl().parse(file);
+
+        assertEquals("Егор", result.getName());
+        assertEquals(5, result.getMessages().size());
+    }
+
+    @Test
+    void shouldThrowExceptionOnBlankBytes() {
+        RawChatFile file = new RawChatFile("empty.json", "  \n ".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(ChatExportParseException.class, () -> new JacksonChatExportParserImpl().parse(file));
+    }
+
     private String readResourceAsString(String resourceName) throws Exception {
         InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
         assertNotNull(stream, "Resource not found: " + resourceName);
@@ -0,0 +1,165 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.botapimethods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.api.objects.message.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.hackathon.chatlas.telegram.MessageSender;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageSenderTest {
+
+    private final BlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+    private MessageSender sender;
+
+    @AfterEach
+    void tearDown() {
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    @Test
+    void shouldLimitSendRatePerChat() throws Exception {
+        sender = new MessageSender(completeImmediately(), 100, 10, 1);
+
+        // Длинные тексты не склеиваются: каждый уходит отдельным сообщением.
+        List<CompletableFuture<Void>> results = List.of(
+                sender.sendText(1L, "a".repeat(3000)),
+                sender.sendText(1L, "b".repeat(3000)),
+                sender.sendText(1L, "c".repeat(3000)));
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        Call first = next();
+        Call second = next();
+        Call third = next();
+        assertEquals('a', first.text().charAt(0));
+        assertEquals('b', second.text().charAt(0));
+        assertEquals('c', third.text().charAt(0));
+        // 10 сообщений в секунду: между отправками не меньше 100 мс (с запасом на точность таймера).
+        assertTrue(second.at() - first.at() >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertTrue(third.at() - second.at() >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    void shouldCoalesceTextsWaitingBehindInFlightMessage() throws Exception {
+        CompletableFuture<Message> firstResponse = new CompletableFuture<>();
+        sender = new MessageSender(method -> {
+            Call call = record(method);
+            return call.text().equals("first") ? firstResponse : CompletableFuture.completedFuture(new Message());
+        }, 100, 100, 10);
+
+        CompletableFuture<Void> first = sender.sendText(1L, "first");
+        assertEquals("first", next().text());
+        CompletableFuture<Void> second = sender.sendText(1L, "second");
+        CompletableFuture<Void> third = sender.sendText(1L, "third");
+
+        firstResponse.complete(new Message());
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+        assertEquals("second\n\nthird", next().text());
+        assertNull(calls.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void shouldSendLongTextAsSeparateParts() throws Exception {
+        CompletableFuture<Message> firstResponse = new CompletableFuture<>();
+        sender = new MessageSender(method -> {
+            Call call = record(method);
+            return call.text().equals("first") ? firstResponse : CompletableFuture.completedFuture(new Message());
+        }, 100, 100, 10);
+
+        CompletableFuture<Void> first = sender.sendText(1L, "first");
+        assertEquals("first", next().text());
+        // Пока первое сообщение в пути, длинный текст и следующий короткий ждут в очереди.
+        String text = "a".repeat(MessageSender.MAX_MESSAGE_LENGTH) + "tail";
+        CompletableFuture<Void> parts = sender.sendText(1L, text);
+        CompletableFuture<Void> after = sender.sendText(1L, "after");
+
+        firstResponse.complete(new Message());
+        CompletableFuture.allOf(first, parts, after).get(5, TimeUnit.SECONDS);
+        assertEquals("a".repeat(MessageSender.MAX_MESSAGE_LENGTH), next().text());
+        assertEquals("tail", next().text());
+        assertEquals("after", next().text());
+        assertNull(calls.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void shouldRetryAfterTooManyRequests() throws Exception {
+        sender = new MessageSender(method -> {
+            Call call = record(method);
+            return calls.size() == 1
+                    ? CompletableFuture.failedFuture(new TelegramApiRequestException("Too Many Requests",
+                            new ApiResponse<>(false, 429, "Too Many Requests: retry after 1",
+                                    new ResponseParameters(null, 1), null)))
+                    : CompletableFuture.completedFuture(new Message());
+        }, 100, 100, 10);
+
+        sender.sendText(1L, "hello").get(5, TimeUnit.SECONDS);
+
+        Call rejected = next();
+        Call retried = next();
+        assertEquals("hello", retried.text());
+        assertTrue(retried.at() - rejected.at() >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    void shouldNotBlockOtherChatsWhileMessageIsInFlight() throws Exception {
+        sender = new MessageSender(method -> {
+            Call call = record(method);
+            // Запрос в первый чат не завершается никогда.
+            return call.chatId().equals("1") ? new CompletableFuture<>() : CompletableFuture.completedFuture(new Message());
+        }, 100, 100, 10);
+
+        CompletableFuture<Void> stuck = sender.sendText(1L, "stuck");
+        sender.sendText(2L, "hello").get(5, TimeUnit.SECONDS);
+
+        assertFalse(stuck.isDone());
+    }
+
+    @Test
+    void shouldFailResultOnSendError() {
+        sender = new MessageSender(method -> {
+            record(method);
+            return CompletableFuture.failedFuture(new TelegramApiRequestException("Bad Request: chat not found"));
+        }, 100, 100, 10);
+
+        CompletableFuture<Void> result = sender.sendText(1L, "hello");
+
+        Exception error = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TelegramApiRequestException.class, error.getCause());
+    }
+
+    private MessageSender.Transport completeImmediately() {
+        return method -> {
+            record(method);
+            return CompletableFuture.completedFuture(new Message());
+        };
+    }
+
+    private Call record(PartialBotApiMethod<Message> method) {
+        SendMessage message = (SendMessage) method;
+        Call call = new Call(message.getChatId(), message.getText(), System.nanoTime());
+        calls.add(call);
+        return call;
+    }
+
+    private Call next() throws InterruptedException {
+        Call call = calls.poll(5, TimeUnit.SECONDS);
+        assertNotNull(call, "Expected a send");
+        return call;
+    }
+
+    private record Call(String chatId, String text, long at) {
+    }
+}
@@ -0,0 +1,100 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.analysis.ParallelChatAnalyzer;
+import ru.hackathon.chatlas.benchmark.SyntheticChatExports;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Все сценарии {@link ChatAnalyzerImplTest} для параллельного анализатора плюс сверка с последовательным.
+ */
+class ParallelChatAnalyzerTest extends ChatAnalyzerImplTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    // Нулевой порог: параллельный режим включается даже для маленьких чатов.
+    @Override
+    protected ChatAnalyzer createAnalyzer() {
+        return new ParallelChatAnalyzer(POOL, 0);
+    }
+
+    @Test
+    void shouldProduceSameResultAsSequentialAnalyzer() throws Exception {
+        byte[] json = SyntheticChatExports.generate(20_000, 500, 42);
+        ChatExport chatExport = new JacksonChatExportParserImpl().parse(new RawChatFile("chat.json", json));
+
+        ChatAnalysisResult sequential = new ChatAnalyzerImpl().analyze(chatExport);
+        ChatAnalysisResult parallel = new ParallelChatAnalyzer(POOL, 0).analyze(chatExport);
+
+        assertTrue(sequential.getParticipantsCount() > 0);
+        assertTrue(sequential.getMentionsCount() > 0);
+        assertEquals(sequential, parallel);
+        assertParticipantNamesEqual(sequential, parallel);
+    }
+
+    @Test
+    void shouldKeepFirstDisplayNameAcrossRanges() throws Exception {
+        // Автор меняет имя в каждом сообщении: побеждать должно имя из самого раннего сообщения,
+        // даже если оно попало в другой диапазон, чем остальные.
+        List<ChatExport.Message> messages = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            ChatExport.Message message = new ChatExport.Message();
+            message.setFromId("user" + (i % 700));
+            message.setFrom("Name " + i);
+            messages.add(message);
+        }
+        ChatExport chatExport = new ChatExport();
+        chatExport.setMessages(messages);
+
+        ChatAnalysisResult sequential = new ChatAnalyzerImpl().analyze(chatExport);
+        ChatAnalysisResult parallel = new ParallelChatAnalyzer(POOL, 0).analyze(chatExport);
+
+        assertEquals(700, parallel.getParticipantsCount());
+        assertParticipantNamesEqual(sequential, parallel);
+    }
+
+    @Test
+    void shouldFallBackToSequentialBelowThreshold() throws Exception {
+        byte[] json = SyntheticChatExports.generate(500, 50, 7);
+        ChatExport chatExport = new JacksonChatExportParserImpl().parse(new RawChatFile("chat.json", json));
+        // Остановленный пул отклоняет задачи: анализ проходит, только если параллельный путь не запускался.
+        ForkJoinPool rejectingPool = new ForkJoinPool(2);
+        rejectingPool.shutdown();
+
+        ChatAnalysisResult sequential = new ChatAnalyzerImpl().analyze(chatExport);
+        ChatAnalysisResult result = new ParallelChatAnalyzer(rejectingPool, 1_000).analyze(chatExport);
+
+        assertTrue(result.getParticipantsCount() > 0);
+        assertEquals(sequential, result);
+        assertParticipantNamesEqual(sequential, result);
+        assertThrows(ChatAnalyzer.ChatAnalysisException.class,
+                () -> new ParallelChatAnalyzer(rejectingPool, 0).analyze(chatExport));
+    }
+
+    /**
+     * Проверить, что у каждого участника из {@code expected} в {@code actual} то же отображаемое имя.
+     */
+    static void assertParticipantNamesEqual(ChatAnalysisResult expected, ChatAnalysisResult actual) {
+        expected.participants().forEach(participant -> assertTrue(actual.participants().stream()
+                .anyMatch(p -> p.fromId().equals(participant.fromId())
+                        && p.displayName().equals(participant.displayName())),
+                "Display name differs for " + participant.fromId()));
+    }
+}
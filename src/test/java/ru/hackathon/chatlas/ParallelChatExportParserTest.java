@@ -0,0 +1,137 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.benchmark.SyntheticChatExports;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.ChatExportParser.ChatExportParseException;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+import ru.hackathon.chatlas.parser.ParallelChatExportParserImpl;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.hackathon.chatlas.ParallelChatAnalyzerTest.assertParticipantNamesEqual;
+
+class ParallelChatExportParserTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    // Нулевой порог: параллельный режим включается даже для маленьких файлов.
+    private final ParallelChatExportParserImpl parser = new ParallelChatExportParserImpl(POOL, 0);
+    private final StreamingChatExportParserImpl sequentialParser = new StreamingChatExportParserImpl();
+    private final ChatAnalyzer analyzer = new ChatAnalyzerImpl();
+
+    @AfterAll
+    static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void shouldProduceSameAnalysisAsSequentialParser() throws Exception {
+        byte[] json = SyntheticChatExports.generate(5_000, 300, 42);
+
+        ChatAnalysisResult sequential = analyzeWith(sequentialParser, new RawChatFile("chat.json", json));
+        ChatAnalysisResult parallel = analyzeWith(parser, new RawChatFile("chat.json", json));
+
+        assertTrue(sequential.getParticipantsCount() > 0);
+        assertTrue(sequential.getMentionsCount() > 0);
+        assertEquals(sequential, parallel);
+        assertParticipantNamesEqual(sequential, parallel);
+    }
+
+    @Test
+    void shouldKeepMessageOrderAndHeader() throws Exception {
+        byte[] json = SyntheticChatExports.generate(3_000, 100, 7);
+
+        ChatExport sequential = sequentialParser.parse(new RawChatFile("chat.json", json));
+        ChatExport parallel = parser.parse(new RawChatFile("chat.json", json));
+
+        assertEquals(sequential.getName(), parallel.getName());
+        assertEquals(sequential.getType(), parallel.getType());
+        assertEquals(sequential.getId(), parallel.getId());
+        assertEquals(sequential.getMessages(), parallel.getMessages());
+    }
+
+    @Test
+    void shouldParseMappedFile(@TempDir Path tempDir) throws Exception {
+        byte[] json = SyntheticChatExports.generate(2_000, 50, 1);
+        Path path = tempDir.resolve("chat.json");
+        Files.write(path, json);
+
+        ChatAnalysisResult sequential = analyzeWith(sequentialParser, new RawChatFile("chat.json", json));
+        ChatAnalysisResult parallel = analyzeWith(parser, RawChatFile.ofPath("chat.json", path));
+
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void shouldParseRealChatJson() throws Exception {
+        RawChatFile file = new RawChatFile("chat1.json", readResource("chat1.json"));
+
+        ChatAnalysisResult result = analyzeWith(parser, file);
+
+        assertEquals(2, result.getParticipantsCount());
+        assertEquals(2, result.getMentionsCount());
+    }
+
+    @Test
+    void shouldFallBackToSequentialForNonForkableSink() throws Exception {
+        RawChatFile file = new RawChatFile("chat1.json", readResource("chat1.json"));
+        List<String> authors = new ArrayList<>();
+
+        parser.parse(file, new ChatExportSink() {
+            @Override
+            public void onMessage(MessageHeader message) {
+                authors.add(message.fromId());
+            }
+
+            @Override
+            public void onEntity(String type, String text) {
+            }
+        });
+
+        assertEquals(5, authors.size());
+    }
+
+    @Test
+    void shouldThrowExceptionOnInvalidJson() {
+        RawChatFile file = new RawChatFile("invalid.json", "{\"messages\": [{\"from\": }, {}]}".getBytes());
+
+        assertThrows(ChatExportParseException.class, () -> analyzeWith(parser, file));
+    }
+
+    @Test
+    void shouldThrowExceptionOnTruncatedJson() {
+        byte[] json = SyntheticChatExports.generate(100, 10, 3);
+        RawChatFile file = RawChatFile.ofBytes("truncated.json", json, 0, json.length / 2);
+
+        assertThrows(ChatExportParseException.class, () -> analyzeWith(parser, file));
+    }
+
+    private ChatAnalysisResult analyzeWith(
+            ru.hackathon.chatlas.parser.ChatExportParser chatExportParser,
+            RawChatFile file) throws Exception
+    {
+        ChatAnalyzer.AnalysisSink sink = analyzer.newSink();
+        chatExportParser.parse(file, sink);
+        return sink.getResult();
+    }
+
+    private byte[] readResource(String resourceName) throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
+        assertNotNull(stream, "Resource not found: " + resourceName);
+        return stream.readAllBytes();
+    }
+}
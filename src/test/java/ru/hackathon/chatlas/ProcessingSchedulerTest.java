@@ -0,0 +1,138 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.telegram.ProcessingScheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessingSchedulerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldQueueJobsOverBudgetAndAdmitInPriorityOrder() throws Exception {
+        ProcessingScheduler scheduler = new ProcessingScheduler(100 * MB, 10);
+        ProcessingScheduler.Permit running = scheduler.acquire(80 * MB, ProcessingScheduler.Priority.INTERACTIVE,
+                position -> fail("Job within budget must not be queued"));
+
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        List<Integer> batchPositions = new CopyOnWriteArrayList<>();
+        List<Integer> interactivePositions = new CopyOnWriteArrayList<>();
+        CountDownLatch batchQueued = new CountDownLatch(1);
+        CountDownLatch interactiveQueued = new CountDownLatch(1);
+        Future<?> batch = executor.submit(() -> {
+            try (ProcessingScheduler.Permit ignored = scheduler.acquire(50 * MB, ProcessingScheduler.Priority.BATCH,
+                    position -> {
+                        batchPositions.add(position);
+                        batchQueued.countDown();
+                    })) {
+                admitted.add("batch");
+            }
+            return null;
+        });
+        assertTrue(batchQueued.await(5, TimeUnit.SECONDS));
+        Future<?> interactive = executor.submit(() -> {
+            try (ProcessingScheduler.Permit ignored = scheduler.acquire(
+                    50 * MB, ProcessingScheduler.Priority.INTERACTIVE, position -> {
+                        interactivePositions.add(position);
+                        interactiveQueued.countDown();
+                    })) {
+                admitted.add("interactive");
+            }
+            return null;
+        });
+        assertTrue(interactiveQueued.await(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of(1), batchPositions);
+        // Одиночный файл обгоняет ранее пришедший пакет.
+        assertEquals(List.of(1), interactivePositions);
+        assertEquals(2, scheduler.stats().queueDepth());
+        assertEquals(1, scheduler.stats().running());
+
+        running.close();
+        batch.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("interactive", "batch"), admitted);
+        ProcessingScheduler.Stats stats = scheduler.stats();
+        assertEquals(0, stats.queueDepth());
+        assertEquals(0, stats.running());
+        assertEquals(0, stats.usedBytes());
+        assertEquals(3, stats.admittedCount());
+        assertEquals(0, stats.rejectedCount());
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        ProcessingScheduler scheduler = new ProcessingScheduler(10 * MB, 1);
+        ProcessingScheduler.Permit running = scheduler.acquire(10 * MB, ProcessingScheduler.Priority.INTERACTIVE,
+                position -> { });
+        CountDownLatch queued = new CountDownLatch(1);
+        Future<?> waiting = executor.submit(() -> {
+            scheduler.acquire(MB, ProcessingScheduler.Priority.INTERACTIVE, position -> queued.countDown()).close();
+            return null;
+        });
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ProcessingScheduler.QueueFullException.class,
+                () -> scheduler.acquire(MB, ProcessingScheduler.Priority.INTERACTIVE, position -> { }));
+        assertEquals(1, scheduler.stats().rejectedCount());
+
+        running.close();
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(0, scheduler.stats().usedBytes());
+    }
+
+    @Test
+    void shouldRunOversizedJobAlone() throws Exception {
+        ProcessingScheduler scheduler = new ProcessingScheduler(10 * MB, 0);
+
+        try (ProcessingScheduler.Permit ignored = scheduler.acquire(
+                1024 * MB, ProcessingScheduler.Priority.INTERACTIVE, position -> { })) {
+            assertEquals(10 * MB, scheduler.stats().usedBytes());
+            assertThrows(ProcessingScheduler.QueueFullException.class,
+                    () -> scheduler.acquire(MB, ProcessingScheduler.Priority.INTERACTIVE, position -> { }));
+        }
+        assertEquals(0, scheduler.stats().usedBytes());
+    }
+
+    @Test
+    void shouldLeaveQueueWhenInterrupted() throws Exception {
+        ProcessingScheduler scheduler = new ProcessingScheduler(10 * MB, 5);
+        ProcessingScheduler.Permit running = scheduler.acquire(10 * MB, ProcessingScheduler.Priority.INTERACTIVE,
+                position -> { });
+        CountDownLatch queued = new CountDownLatch(1);
+        Future<?> waiting = executor.submit(() -> {
+            scheduler.acquire(MB, ProcessingScheduler.Priority.INTERACTIVE, position -> queued.countDown()).close();
+            return null;
+        });
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+
+        waiting.cancel(true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.stats().queueDepth() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, scheduler.stats().queueDepth());
+
+        running.close();
+        assertEquals(0, scheduler.stats().usedBytes());
+        assertEquals(0, scheduler.stats().running());
+    }
+}
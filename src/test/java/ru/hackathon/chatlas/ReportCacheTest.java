@@ -0,0 +1,375 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.export.ReportRenderer;
+import ru.hackathon.chatlas.telegram.ReportCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReturnCachedReportWithoutRecomputation() throws Exception {
+        ReportCache cache = new ReportCache(1024 * 1024, tempDir);
+        AtomicInteger computations = new AtomicInteger();
+
+        ReportRenderer.ReportResult first = cache.getOrCompute("file:A", () -> text("report", computations));
+        ReportRenderer.ReportResult second = cache.getOrCompute("file:A", () -> text("other", computations));
+
+        assertSame(first, second);
+        assertEquals(1, computations.get());
+        ReportCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesWhenOverByteLimit() throws Exception {
+        // Каждый отчет ~ 256 + 2 * 300 байт, в кэш помещаются два.
+        ReportCache cache = new ReportCache(2_000, tempDir);
+        AtomicInteger computations = new AtomicInteger();
+        String body = "x".repeat(300);
+
+        cache.getOrCompute("A", () -> text(body, computations));
+        cache.getOrCompute("B", () -> text(body, computations));
+        cache.getOrCompute("A", () -> text(body, computations));
+        cache.getOrCompute("C", () -> text(body, computations));
+
+        assertEquals(3, computations.get());
+        assertEquals(1, cache.stats().evictions());
+        assertTrue(cache.stats().sizeBytes() <= 2_000);
+        cache.getOrCompute("A", () -> text(body, computations));
+        assertEquals(3, computations.get(), "Recently used entry must survive eviction");
+        cache.getOrCompute("B", () -> text(body, computations));
+        assertEquals(4, computations.get(), "Least recently used entry must be evicted");
+    }
+
+    @Test
+    void shouldNotCacheReportLargerThanLimit() throws Exception {
+        ReportCache cache = new ReportCache(100, tempDir);
+        AtomicInteger computations = new AtomicInteger();
+
+        cache.getOrCompute("A", () -> text("report", computations));
+        cache.getOrCompute("A", () -> text("report", computations));
+
+        assertEquals(2, computations.get());
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void shouldCoalesceConcurrentRequestsForSameKey() throws Exception {
+        ReportCache cache = new ReportCache(0, tempDir);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch computationStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ReportRenderer.ReportResult> leader = executor.submit(() -> cache.getOrCompute("A", () -> {
+                computationStarted.countDown();
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+                return text("report", computations);
+            }));
+            assertTrue(computationStarted.await(10, TimeUnit.SECONDS));
+            Future<ReportRenderer.ReportResult> follower =
+                    executor.submit(() -> cache.getOrCompute("A", () -> text("again", computations)));
+            while (cache.stats().coalesced() == 0) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertSame(leader.get(10, TimeUnit.SECONDS), follower.get(10, TimeUnit.SECONDS));
+            assertEquals(1, computations.get());
+            assertEquals(1, cache.stats().misses());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldNotCacheFailures() throws Exception {
+        ReportCache cache = new ReportCache(1024 * 1024, tempDir);
+        AtomicInteger computations = new AtomicInteger();
+
+        assertThrows(IOException.class, () -> cache.getOrCompute("A", () -> {
+            throw new IOException("Download failed");
+        }));
+        cache.getOrCompute("A", () -> text("report", computations));
+
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    void shouldServePreparedFileWithoutRebuildingIt() throws Exception {
+        ReportCache cache = new ReportCache(1024 * 1024, tempDir);
+        AtomicInteger builds = new AtomicInteger();
+
+        ReportRenderer.ReportResult first = cache.getOrCompute("A", () -> cache.prepare(file(5_000, 100, builds)));
+        ReportRenderer.ReportResult second = cache.getOrCompute("A", () -> cache.prepare(file(5_000, 100, builds)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        second.writeFile(output);
+
+        assertSame(first, second);
+        assertEquals(1, builds.get(), "Cached report must not be rebuilt on send");
+        assertEquals(5_000, output.size());
+        assertEquals("report.csv", second.getFileName());
+        // В кэше учитывается реальный размер файла, а не оценка рендерера.
+        assertTrue(cache.stats().sizeBytes() >= 5_000 && cache.stats().sizeBytes() < 5_500);
+    }
+
+    @Test
+    void shouldNotCacheFileReportsThatAreNotPrepared() throws Exception {
+        ReportCache cache = new ReportCache(1024 * 1024, tempDir);
+        AtomicInteger builds = new AtomicInteger();
+        AtomicInteger computations = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            cache.getOrCompute("A", () -> {
+                computations.incrementAndGet();
+                return file(5_000, 100, builds);
+            });
+        }
+
+        assertEquals(2, computations.get());
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void shouldBuildReportLargerThanCacheOnceWithoutCachingIt() throws Exception {
+        ReportCache cache = new ReportCache(2_000, tempDir);
+        AtomicInteger builds = new AtomicInteger();
+
+        ReportRenderer.ReportResult prepared = cache.getOrCompute("A", () -> cache.prepare(file(5_000, 100, builds)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        prepared.writeFile(output);
+
+        // Файл строится один раз на диск и отправляется из него, но в кэш не попадает.
+        assertEquals(1, builds.get());
+        assertEquals(5_000, output.size());
+        assertEquals(0, cache.stats().entries());
+        Path file = ((ReportCache.FileReport) prepared).file();
+        ReportCache.release(prepared);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void shouldDeleteEvictedReportFileAfterItIsReleased() throws Exception {
+        // В кэш помещается один файл.
+        ReportCache cache = new ReportCache(6_000, tempDir);
+        AtomicInteger builds = new AtomicInteger();
+
+        ReportRenderer.ReportResult first = cache.getOrCompute("A", () -> cache.prepare(file(5_000, 100, builds)));
+        Path firstFile = ((ReportCache.FileReport) first).file();
+        ReportCache.release(first);
+        assertTrue(Files.exists(firstFile), "Cached report file must stay on disk");
+
+        ReportRenderer.ReportResult sending = cache.getOrCompute("A", () -> cache.prepare(file(5_000, 100, builds)));
+        ReportRenderer.ReportResult second = cache.getOrCompute("B", () -> cache.prepare(file(5_000, 100, builds)));
+        assertEquals(1, cache.stats().evictions());
+        // Вытесненный файл еще отправляется: он удаляется после освобождения.
+        assertTrue(Files.exists(firstFile));
+        ReportCache.release(sending);
+        assertFalse(Files.exists(firstFile));
+
+        Path secondFile = ((ReportCache.FileReport) second).file();
+        ReportCache.release(second);
+        assertTrue(Files.exists(secondFile));
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    void shouldGiveCoalescedRequestItsOwnReferenceToReportFile() throws Exception {
+        ReportCache cache = new ReportCache(0, tempDir);
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch computationStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ReportRenderer.ReportResult> leader = executor.submit(() -> cache.getOrCompute("A", () -> {
+                computationStarted.countDown();
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+                return cache.prepare(file(5_000, 100, builds));
+            }));
+            assertTrue(computationStarted.await(10, TimeUnit.SECONDS));
+            Future<ReportRenderer.ReportResult> follower =
+                    executor.submit(() -> cache.getOrCompute("A", () -> fail("Must wait for the leader")));
+            while (cache.stats().coalesced() == 0) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            ReportRenderer.ReportResult leaderResult = leader.get(10, TimeUnit.SECONDS);
+            ReportRenderer.ReportResult followerResult = follower.get(10, TimeUnit.SECONDS);
+            Path file = ((ReportCache.FileReport) leaderResult).file();
+            ReportCache.release(leaderResult);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            followerResult.writeFile(output);
+            assertEquals(5_000, output.size());
+            ReportCache.release(followerResult);
+            assertFalse(Files.exists(file));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldNotServeReportsCachedOnPreviousDay() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2025-12-07T23:59:00Z"));
+        ReportCache cache = new ReportCache(1024 * 1024, tempDir, clock);
+        AtomicInteger computations = new AtomicInteger();
+
+        cache.getOrCompute("A", () -> text("report", computations));
+        cache.getOrCompute("A", () -> text("report", computations));
+        assertEquals(1, computations.get());
+
+        // В отчете дата выгрузки: после смены дня отчет строится заново.
+        clock.advance(Duration.ofMinutes(2));
+        cache.getOrCompute("A", () -> text("report", computations));
+        assertEquals(2, computations.get());
+        assertEquals(1, cache.stats().entries());
+    }
+
+    @Test
+    void shouldComputeSameContentKeyForAllInMemoryRepresentations() {
+        String json = "{\"messages\": []}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        String fromString = ReportCache.contentKey(new RawChatFile("a.json", json));
+        String fromBytes = ReportCache.contentKey(new RawChatFile("b.json", bytes));
+        String fromBuffer = ReportCache.contentKey(RawChatFile.ofBuffer("c.json", ByteBuffer.wrap(bytes)));
+
+        assertNotNull(fromString);
+        assertEquals(fromString, fromBytes);
+        assertEquals(fromString, fromBuffer);
+        assertNotEquals(fromString, ReportCache.contentKey(new RawChatFile("d.json", "{}")));
+        assertNull(ReportCache.contentKey(RawChatFile.ofStream("e.json", new ByteArrayInputStream(bytes))));
+        assertNull(ReportCache.fileKey(null));
+        assertEquals("file:AgADBQAD", ReportCache.fileKey("AgADBQAD"));
+    }
+
+    /**
+     * Файловый отчет, который строится при каждой записи, как потоковые отчеты рендерера.
+     */
+    private static ReportRenderer.ReportResult file(int size, long estimatedSize, AtomicInteger builds) {
+        return new ReportRenderer.ReportResult() {
+            @Override
+            public ReportRenderer.OutputType getType() {
+                return ReportRenderer.OutputType.CSV;
+            }
+
+            @Override
+            public String getText() {
+                return null;
+            }
+
+            @Override
+            public byte[] getExcelBytes() {
+                return null;
+            }
+
+            @Override
+            public String getExcelFileName() {
+                return null;
+            }
+
+            @Override
+            public String getFileName() {
+                return "report.csv";
+            }
+
+            @Override
+            public void writeFile(OutputStream output) throws IOException {
+                builds.incrementAndGet();
+                byte[] line = new byte[100];
+                Arrays.fill(line, (byte) 'x');
+                for (int written = 0; written < size; written += line.length) {
+                    output.write(line, 0, Math.min(line.length, size - written));
+                }
+            }
+
+            @Override
+            public long estimatedSizeBytes() {
+                return estimatedSize;
+            }
+        };
+    }
+
+    private static ReportRenderer.ReportResult text(String text, AtomicInteger computations) {
+        computations.incrementAndGet();
+        return new ReportRenderer.ReportResult() {
+            @Override
+            public ReportRenderer.OutputType getType() {
+                return ReportRenderer.OutputType.TEXT;
+            }
+
+            @Override
+            public String getText() {
+                return text;
+            }
+
+            @Override
+            public byte[] getExcelBytes() {
+                return null;
+            }
+
+            @Override
+            public String getExcelFileName() {
+                return null;
+            }
+        };
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
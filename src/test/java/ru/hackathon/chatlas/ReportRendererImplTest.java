@@ -0,0 +1,448 @@
+package ru.hackathon.chatlas;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.hackathon.chatlas.analysis.EntityExtractors;
+import ru.hackathon.chatlas.domain.ApproximateSummary;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+import ru.hackathon.chatlas.export.ReportRenderer;
+import ru.hackathon.chatlas.export.ReportRendererImpl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportRendererImplTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-12-07T10:15:30Z"), ZoneOffset.UTC);
+
+    private static final int LARGE_ROWS = 200_000;
+
+    /**
+     * Куча дочерней JVM для отчета на {@link #LARGE_ROWS} строк: большую ее часть занимает сам результат анализа,
+     * на рендеринг остается немного.
+     */
+    private static final String LARGE_REPORT_HEAP = "-Xmx96m";
+
+    private final ReportRenderer renderer = new ReportRendererImpl(options());
+
+    @Test
+    void shouldRenderTextBelowThreshold() throws Exception {
+        ChatAnalysisResult result = new ChatAnalysisResult(
+                Set.of(new Participant("user1", "Анна"), new Participant("user2", "Иван")),
+                Set.of(new Mention("@ivan")),
+                Map.of(EntityExtractors.HASHTAG, Set.of("#release")),
+                Map.of(
+                        "user1", new ParticipantActivity("user1", "Анна", 1, 0, 1765034458, 1765034458),
+                        "user2", new ParticipantActivity("user2", "Иван", 3, 1, 1765034459, 1765034500)), null);
+
+        ReportRenderer.ReportResult report = renderer.render(result);
+
+        assertEquals(ReportRenderer.OutputType.TEXT, report.getType());
+        assertNull(report.getExcelBytes());
+        String text = report.getText();
+        assertTrue(text.contains("Участники (2):\n1. Иван (user2) - сообщений: 3\n2. Анна (user1) - сообщений: 1"),
+                text);
+        assertTrue(text.contains("Упоминания (1):\n@ivan"), text);
+        assertTrue(text.contains("Хэштеги (1):\n#release"), text);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ReportRendererImpl.ExcelEngine.class)
+    void shouldRenderExcelFromThreshold(ReportRendererImpl.ExcelEngine engine) throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        Map<String, ParticipantActivity> activity = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+            activity.put("user" + i, new ParticipantActivity("user" + i, "Автор " + i, i, i % 3, 1765034458, 1765045262));
+        }
+        ChatAnalysisResult result = new ChatAnalysisResult(
+                participants,
+                Set.of(new Mention("@ivan")),
+                Map.of(EntityExtractors.URL, Set.of("https://example.com")),
+                activity, null);
+
+        ReportRenderer.ReportResult report = renderer(engine).render(result);
+
+        assertEquals(ReportRenderer.OutputType.EXCEL, report.getType());
+        assertNull(report.getText());
+        assertEquals("chatlas_2025-12-07_10-15-30.xlsx", report.getExcelFileName());
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(report.getExcelBytes()))) {
+            Sheet participantsSheet = workbook.getSheet("Участники");
+            assertEquals(50, participantsSheet.getLastRowNum());
+            assertEquals("Username", participantsSheet.getRow(0).getCell(1).getStringCellValue());
+            Row mostActive = participantsSheet.getRow(1);
+            assertEquals(LocalDateTime.of(2025, 12, 7, 0, 0), mostActive.getCell(0).getLocalDateTimeCellValue());
+            assertEquals("user49", mostActive.getCell(1).getStringCellValue());
+            assertEquals("Автор 49", mostActive.getCell(2).getStringCellValue());
+            assertEquals(49, mostActive.getCell(3).getNumericCellValue());
+            assertEquals(1, mostActive.getCell(4).getNumericCellValue());
+            assertEquals(LocalDateTime.of(2025, 12, 6, 15, 20, 58), mostActive.getCell(5).getLocalDateTimeCellValue());
+            assertEquals(LocalDateTime.of(2025, 12, 6, 18, 21, 2), mostActive.getCell(6).getLocalDateTimeCellValue());
+
+            Sheet mentionsSheet = workbook.getSheet("Упоминания");
+            assertEquals("@ivan", mentionsSheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("https://example.com", workbook.getSheet("Ссылки").getRow(1).getCell(1).getStringCellValue());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ReportRendererImpl.ExcelEngine.class)
+    void shouldRenderApproximateSummary(ReportRendererImpl.ExcelEngine engine) throws Exception {
+        ApproximateSummary summary = new ApproximateSummary(
+                120_000,
+                40_000,
+                0.008,
+                List.of(new ApproximateSummary.TopEntry("user1", "Анна", 500, 20)),
+                List.of(new ApproximateSummary.TopEntry("@ivan", "@ivan", 300, 0)));
+        ChatAnalysisResult result = new ChatAnalysisResult(Set.of(), Set.of(), Map.of(), Map.of(), summary);
+
+        ReportRenderer.ReportResult report = renderer(engine).render(result);
+
+        assertEquals(ReportRenderer.OutputType.EXCEL, report.getType());
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(report.getExcelBytes()))) {
+            Sheet summarySheet = workbook.getSheet("Сводка");
+            assertEquals(120_000, summarySheet.getRow(2).getCell(1).getNumericCellValue());
+            assertEquals(40_000, summarySheet.getRow(3).getCell(1).getNumericCellValue());
+            assertEquals(0.008, summarySheet.getRow(4).getCell(1).getNumericCellValue());
+            Row topParticipant = workbook.getSheet("Участники").getRow(1);
+            assertEquals("Анна", topParticipant.getCell(2).getStringCellValue());
+            assertEquals(500, topParticipant.getCell(3).getNumericCellValue());
+            assertEquals(480, topParticipant.getCell(4).getNumericCellValue());
+            assertEquals(300, workbook.getSheet("Упоминания").getRow(1).getCell(2).getNumericCellValue());
+        }
+    }
+
+    @Test
+    void shouldWriteExcelOnDemand() throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+        }
+        ChatAnalysisResult result = new ChatAnalysisResult(participants, Set.of(), Map.of(), Map.of(), null);
+
+        ReportRenderer.ReportResult report = renderer(ReportRendererImpl.ExcelEngine.OOXML).render(result);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        report.writeExcel(first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        report.writeExcel(second);
+
+        // Кэш отчетов оценивает размер без построения файла.
+        assertTrue(report.estimatedSizeBytes() > 0);
+        for (byte[] excel : List.of(first.toByteArray(), second.toByteArray(), report.getExcelBytes())) {
+            try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excel))) {
+                assertEquals(500, workbook.getSheet("Участники").getLastRowNum());
+            }
+        }
+    }
+
+    @Test
+    void shouldEscapeTextInOoxmlReport() throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+        }
+        participants.add(new Participant("channel7", "  <Tom & \"Jerry\">\u0001 "));
+        ChatAnalysisResult result = new ChatAnalysisResult(participants, Set.of(), Map.of(), Map.of(), null);
+
+        ReportRenderer.ReportResult report = renderer(ReportRendererImpl.ExcelEngine.OOXML).render(result);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(report.getExcelBytes()))) {
+            Row first = workbook.getSheet("Участники").getRow(1);
+            assertEquals("channel7", first.getCell(1).getStringCellValue());
+            assertEquals("  <Tom & \"Jerry\"> ", first.getCell(2).getStringCellValue());
+            assertEquals(3, workbook.getSheet("Участники").getRow(0).getLastCellNum());
+        }
+    }
+
+    @Test
+    void shouldRenderCsvSections() throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        Map<String, ParticipantActivity> activity = new HashMap<>();
+        for (int i = 0; i < 60; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+            activity.put("user" + i, new ParticipantActivity("user" + i, "Автор " + i, 1, 0, 1765034458, 1765045262));
+        }
+        participants.add(new Participant("user99", "Иван \"Ваня\", мл.\nстарший"));
+        activity.put("user99", new ParticipantActivity("user99", "Иван \"Ваня\", мл.\nстарший", 5, 2, 1765034458, 0));
+        ChatAnalysisResult result = new ChatAnalysisResult(
+                participants,
+                Set.of(new Mention("@ivan")),
+                Map.of(EntityExtractors.URL, Set.of("https://example.com")),
+                activity, null);
+
+        ReportRenderer.ReportResult report = renderer.render(result, ReportRenderer.ReportFormat.CSV);
+
+        assertEquals(ReportRenderer.OutputType.CSV, report.getType());
+        assertEquals("chatlas_2025-12-07_10-15-30.csv", report.getFileName());
+        assertNull(report.getExcelBytes());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        report.writeFile(output);
+        String csv = output.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("\uFEFFУчастники\r\nДата экспорта,Username,Имя и фамилия,Сообщений,Упоминаний,"
+                + "Первое сообщение (UTC),Последнее сообщение (UTC)\r\n"
+                + "2025-12-07,user99,\"Иван \"\"Ваня\"\", мл.\nстарший\",5,2,2025-12-06 15:20:58,\r\n"
+                + "2025-12-07,user0,Автор 0,1,0,2025-12-06 15:20:58,2025-12-06 18:21:02\r\n"), csv);
+        assertTrue(csv.contains("\r\n\r\nУпоминания\r\nДата экспорта,Username\r\n2025-12-07,@ivan\r\n"), csv);
+        assertTrue(csv.endsWith("\r\n\r\nСсылки\r\nДата экспорта,Значение\r\n2025-12-07,https://example.com\r\n"),
+                csv);
+    }
+
+    @Test
+    void shouldNeutralizeFormulasInDelimitedReports() throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+        }
+        participants.add(new Participant("user99", "=HYPERLINK(\"http://evil.example\",\"Нажми\")"));
+        participants.add(new Participant("user98", "@SUM(1+1)"));
+        participants.add(new Participant("user97", "-1+1"));
+        ChatAnalysisResult result =
+                new ChatAnalysisResult(participants, Set.of(new Mention("@ivan"), new Mention("@evil()")),
+                        Map.of(), Map.of(), null);
+
+        ByteArrayOutputStream csvOutput = new ByteArrayOutputStream();
+        ReportRenderer.ReportResult csvReport = renderer.render(result, ReportRenderer.ReportFormat.CSV);
+        csvReport.writeFile(csvOutput);
+        String csv = csvOutput.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.contains(",user99,\"'=HYPERLINK(\"\"http://evil.example\"\",\"\"Нажми\"\")\"\r\n"), csv);
+        assertTrue(csv.contains(",user98,\"'@SUM(1+1)\"\r\n"), csv);
+        assertTrue(csv.contains(",user97,\"'-1+1\"\r\n"), csv);
+        // Обычное упоминание формулой быть не может и остается без апострофа, как в Excel.
+        assertTrue(csv.contains("2025-12-07,@ivan\r\n"), csv);
+        assertTrue(csv.contains("2025-12-07,\"'@evil()\"\r\n"), csv);
+        // CSV и TSV - не Excel: пустой файл вместо ошибки отправил бы пользователю пустой отчет.
+        assertThrows(IllegalStateException.class, () -> csvReport.writeExcel(new ByteArrayOutputStream()));
+
+        ByteArrayOutputStream tsvOutput = new ByteArrayOutputStream();
+        renderer.render(result, ReportRenderer.ReportFormat.TSV).writeFile(tsvOutput);
+        String tsv = tsvOutput.toString(StandardCharsets.UTF_8);
+        assertTrue(tsv.contains("\tuser98\t'@SUM(1+1)\r\n"), tsv);
+    }
+
+    @Test
+    void shouldRenderCompressedTsv() throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            participants.add(new Participant("user" + i, "Автор\t" + i));
+        }
+        ChatAnalysisResult result = new ChatAnalysisResult(participants, Set.of(), Map.of(), Map.of(), null);
+
+        ReportRenderer.ReportResult report = renderer.render(result, ReportRenderer.ReportFormat.TSV_GZIP);
+
+        assertEquals(ReportRenderer.OutputType.TSV, report.getType());
+        assertEquals("chatlas_2025-12-07_10-15-30.tsv.gz", report.getFileName());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        report.writeFile(output);
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            String[] lines = new String(input.readAllBytes(), StandardCharsets.UTF_8).split("\r\n");
+            assertEquals("\uFEFFУчастники", lines[0]);
+            assertEquals("Дата экспорта\tUsername\tИмя и фамилия", lines[1]);
+            assertEquals("2025-12-07\tuser0\tАвтор 0", lines[2]);
+            // Пустой раздел упоминаний: пустая строка, название и заголовки.
+            assertEquals(65, lines.length);
+            assertEquals("Упоминания", lines[63]);
+        }
+    }
+
+    @Test
+    void shouldChooseCompressedCsvForExpensiveReports() throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+        }
+        ChatAnalysisResult result =
+                new ChatAnalysisResult(participants, Set.of(new Mention("@ivan")), Map.of(), Map.of(), null);
+
+        // 60 участников по 3 колонки и одно упоминание - 182 ячейки.
+        ReportRenderer cheap = new ReportRendererImpl(
+                options(ReportRendererImpl.ExcelEngine.OOXML).withCsvCellThreshold(183));
+        ReportRenderer expensive =
+                new ReportRendererImpl(options(ReportRendererImpl.ExcelEngine.OOXML).withCsvCellThreshold(182));
+
+        assertEquals(ReportRenderer.OutputType.EXCEL, cheap.render(result).getType());
+        ReportRenderer.ReportResult report = expensive.render(result);
+        assertEquals(ReportRenderer.OutputType.CSV, report.getType());
+        assertEquals("chatlas_2025-12-07_10-15-30.csv.gz", report.getFileName());
+        // Явно выбранный формат важнее оценки.
+        assertEquals(ReportRenderer.OutputType.EXCEL,
+                expensive.render(result, ReportRenderer.ReportFormat.XLSX).getType());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ReportRendererImpl.ExcelEngine.class)
+    void shouldRenderSameSheetsConcurrently(ReportRendererImpl.ExcelEngine engine) throws Exception {
+        Set<Participant> participants = new HashSet<>();
+        Set<Mention> mentions = new HashSet<>();
+        Map<String, ParticipantActivity> activity = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            participants.add(new Participant("user" + i, "Автор " + i));
+            mentions.add(new Mention("@mention" + i));
+            activity.put("user" + i, new ParticipantActivity("user" + i, "Автор " + i, i % 17, i % 3, 1765034458, 0));
+        }
+        ChatAnalysisResult result = new ChatAnalysisResult(
+                participants,
+                mentions,
+                Map.of(
+                        EntityExtractors.URL, Set.of("https://example.com", "https://example.org"),
+                        EntityExtractors.HASHTAG, Set.of("#release", "#bug")),
+                activity, null);
+
+        byte[] sequential = renderer(engine).render(result).getExcelBytes();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            byte[] concurrent = new ReportRendererImpl(options(engine).withSectionExecutor(pool))
+                    .render(result).getExcelBytes();
+
+            Map<String, List<List<String>>> expected = sheetContents(sequential);
+            assertEquals(List.of("Участники", "Упоминания", "Хэштеги", "Ссылки"), List.copyOf(expected.keySet()));
+            assertEquals(expected, sheetContents(concurrent));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void shouldRejectNullResult() {
+        assertThrows(ReportRenderer.ReportRenderException.class, () -> renderer.render(null));
+    }
+
+    /**
+     * Отчет на 200 000 участников строится в отдельной JVM с маленькой кучей: проверяется потолок памяти рендерера.
+     */
+    @ParameterizedTest
+    @EnumSource(ReportRendererImpl.ExcelEngine.class)
+    void shouldWriteLargeReportWithinSmallHeap(ReportRendererImpl.ExcelEngine engine, @TempDir Path tempDir)
+            throws Exception
+    {
+        Path report = tempDir.resolve("large.xlsx");
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(
+                java,
+                LARGE_REPORT_HEAP,
+                "-Djava.io.tmpdir=" + tempDir,
+                "-cp",
+                System.getProperty("java.class.path"),
+                LargeReportWriter.class.getName(),
+                engine.name(),
+                report.toString())
+                .redirectErrorStream(true)
+                .start();
+        byte[] output = process.getInputStream().readAllBytes();
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES), "Large report writer timed out");
+        assertEquals(0, process.exitValue(), new String(output, StandardCharsets.UTF_8));
+
+        assertEquals(LARGE_ROWS + 1, countRows(report, "xl/worksheets/sheet1.xml"));
+        try (var files = Files.walk(tempDir)) {
+            assertEquals(List.of(report), files.filter(Files::isRegularFile).toList(),
+                    "Temporary sheet files must be deleted");
+        }
+    }
+
+    private static ReportRenderer renderer(ReportRendererImpl.ExcelEngine engine) {
+        return new ReportRendererImpl(options(engine));
+    }
+
+    private static ReportRendererImpl.Options options() {
+        return ReportRendererImpl.Options.defaults().withExcelThreshold(51).withRowWindow(100).withClock(CLOCK);
+    }
+
+    private static ReportRendererImpl.Options options(ReportRendererImpl.ExcelEngine engine) {
+        return options().withExcelEngine(engine);
+    }
+
+    private static Map<String, List<List<String>>> sheetContents(byte[] excel) throws Exception {
+        Map<String, List<List<String>>> contents = new LinkedHashMap<>();
+        DataFormatter formatter = new DataFormatter();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excel))) {
+            for (Sheet sheet : workbook) {
+                List<List<String>> rows = new ArrayList<>();
+                for (Row row : sheet) {
+                    List<String> cells = new ArrayList<>();
+                    row.forEach(cell -> cells.add(formatter.formatCellValue(cell)));
+                    rows.add(cells);
+                }
+                contents.put(sheet.getSheetName(), rows);
+            }
+        }
+        return contents;
+    }
+
+    private static int countRows(Path report, String sheetEntry) throws Exception {
+        try (ZipFile zip = new ZipFile(report.toFile())) {
+            ZipEntry entry = zip.getEntry(sheetEntry);
+            assertNotNull(entry, "Sheet not found: " + sheetEntry);
+            try (InputStream input = new BufferedInputStream(zip.getInputStream(entry))) {
+                return countOccurrences(input, "<row ".getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    private static int countOccurrences(InputStream input, byte[] pattern) throws Exception {
+        int count = 0;
+        int matched = 0;
+        for (int b = input.read(); b != -1; b = input.read()) {
+            matched = b == pattern[matched] ? matched + 1 : (b == pattern[0] ? 1 : 0);
+            if (matched == pattern.length) {
+                count++;
+                matched = 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Точка входа дочерней JVM: строит результат на {@link #LARGE_ROWS} участников и пишет отчет в файл.
+     */
+    public static final class LargeReportWriter {
+
+        public static void main(String[] args) throws Exception {
+            Set<Participant> participants = HashSet.newHashSet(LARGE_ROWS);
+            Map<String, ParticipantActivity> activity = HashMap.newHashMap(LARGE_ROWS);
+            for (int i = 0; i < LARGE_ROWS; i++) {
+                String fromId = "user" + (1_000_000_000L + i);
+                String name = "Участник " + i;
+                participants.add(new Participant(fromId, name));
+                activity.put(fromId, new ParticipantActivity(fromId, name, i % 1000, i % 7, 1765034458, 1765045262));
+            }
+            ChatAnalysisResult result = new ChatAnalysisResult(participants, Set.of(), Map.of(), activity, null);
+
+            ReportRendererImpl.ExcelEngine engine = ReportRendererImpl.ExcelEngine.valueOf(args[0]);
+            try (OutputStream output = Files.newOutputStream(Path.of(args[1]))) {
+                new ReportRendererImpl(options(engine)).writeExcel(result, output);
+            }
+        }
+    }
+}
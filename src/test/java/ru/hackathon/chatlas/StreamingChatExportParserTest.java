@@ -0,0 +1,249 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.Test;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.ChatExportParser.ChatExportParseException;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingChatExportParserTest {
+
+    private final StreamingChatExportParserImpl parser = new StreamingChatExportParserImpl();
+
+    @Test
+    void shouldParseRealChatJson() throws Exception {
+        RawChatFile file = new RawChatFile("chat1.json", readResourceAsString("chat1.json"));
+
+        ChatExport result = parser.parse(file);
+
+        assertNotNull(result);
+        assertEquals("Егор", result.getName());
+        assertEquals("personal_chat", result.getType());
+        assertEquals(123123123L, result.getId());
+        assertEquals(5, result.getMessages().size());
+    }
+
+    @Test
+    void shouldPassMessagesOneByOne() throws Exception {
+        RawChatFile file = new RawChatFile("chat1.json", readResourceAsString("chat1.json"));
+        List<ChatExport.Message> received = new ArrayList<>();
+
+        ChatExport header = parser.parse(file, received::add);
+
+        assertEquals("Егор", header.getName());
+        assertNull(header.getMessages());
+        assertEquals(5, received.size());
+
+        ChatExport.Message firstMessage = received.get(0);
+        assertEquals(13276L, firstMessage.getId());
+        assertEquals("Владислав Почернин", firstMessage.getFrom());
+        assertEquals("user123456789", firstMessage.getFromId());
+        assertEquals("first message", firstMessage.getText());
+
+        ChatExport.Message lastMessage = received.get(4);
+        assertEquals(2, lastMessage.getTextEntities().stream()
+                .filter(e -> "mention".equals(e.getType()))
+                .count());
+    }
+
+    @Test
+    void shouldParseMessageDates() throws Exception {
+        String json = """
+                {
+                  "messages": [
+                    {"id": 1, "date": "2025-12-06T18:20:58", "date_unixtime": "1765034458", "from_id": "user1"},
+                    {"id": 2, "date_unixtime": 1765034460, "date": "2000-01-01T00:00:00", "from_id": "user1"},
+                    {"id": 3, "date": "2025-12-06T18:21:02", "from_id": "user1"},
+                    {"id": 4, "date": "not a date", "date_unixtime": "-5", "from_id": "user1"},
+                    {"id": 5, "from_id": "user1"}
+                  ]
+                }
+                """;
+        RawChatFile file = new RawChatFile("dates.json", json);
+        List<Long> expected = List.of(1765034458L, 1765034460L, 1765045262L, 0L, 0L);
+
+        List<ChatExport.Message> streamed = new ArrayList<>();
+        parser.parse(file, streamed::add);
+        ChatExport tree = new JacksonChatExportParserImpl().parse(file);
+
+        assertEquals(expected, streamed.stream().map(ChatExport.Message::getDateUnixtime).toList());
+        assertEquals(expected, tree.getMessages().stream().map(ChatExport.Message::getDateUnixtime).toList());
+    }
+
+    @Test
+    void shouldSkipIrrelevantSubtrees() throws Exception {
+        String json = """
+                {
+                  "name": "Test",
+                  "messages": [
+                    {
+                      "from": "User",
+                      "from_id": "user1",
+                      "text": ["plain ", {"type": "mention", "text": "@inside_text"}],
+                      "photo": "photos/photo_1.jpg",
+                      "reactions": [{"type": "emoji", "count": 2, "recent": [{"from": "X", "from_id": "user2"}]}],
+                      "text_entities": [{"type": "mention", "text": "@real", "extra": {"nested": [1, 2]}}]
+                    },
+                    null
+                  ],
+                  "unknown": {"messages": []}
+                }
+                """;
+        List<ChatExport.Message> received = new ArrayList<>();
+
+        parser.parse(new RawChatFile("test.json", json), received::add);
+
+        assertEquals(1, received.size());
+        ChatExport.Message message = received.get(0);
+        assertEquals("user1", message.getFromId());
+        assertEquals(1, message.getTextEntities().size());
+        assertEquals("@real", message.getTextEntities().get(0).getText());
+    }
+
+    @Test
+    void shouldEmitEventsInOrderEvenIfEntitiesComeBeforeAuthor() throws Exception {
+        String json = """
+                {
+                  "messages": [
+                    {
+                      "text_entities": [{"type": "mention", "text": "@first"}, {"type": "plain", "text": " hi"}],
+                      "from_id": "user1",
+                      "from": "User"
+                    },
+                    {"from": "Other", "from_id": "user2"}
+                  ]
+                }
+                """;
+        List<String> events = new ArrayList<>();
+        ChatExportSink sink = new ChatExportSink() {
+            @Override
+            public void onMessage(MessageHeader message) {
+                events.add("message:" + message.fromId() + ":" + message.from());
+            }
+
+            @Override
+            public void onEntity(String type, String text) {
+                events.add("entity:" + type + ":" + text);
+            }
+
+            @Override
+            public void onMessageEnd() {
+                events.add("end");
+            }
+        };
+
+        parser.parse(new RawChatFile("test.json", json), sink);
+
+        assertEquals(List.of(
+                "message:user1:User", "entity:mention:@first", "entity:plain: hi", "end",
+                "message:user2:Other", "end"), events);
+    }
+
+    @Test
+    void shouldReadMessageIdsAndSkipRequestedRange() throws Exception {
+        String json = """
+                {
+                  "id": 77,
+                  "messages": [
+                    {"id": 1, "from": "A", "from_id": "user1"},
+                    {"id": 2, "from": "B", "from_id": "user2", "text_entities": [{"type": "mention", "text": "@b"}]},
+                    {"from": "C", "from_id": "user3", "id": 3},
+                    {"id": 4, "from": "D", "from_id": "user4"}
+                  ]
+                }
+                """;
+        List<String> events = new ArrayList<>();
+        ChatExportSink sink = new ChatExportSink() {
+            @Override
+            public void onChatId(long chatId) {
+                events.add("chat:" + chatId);
+            }
+
+            @Override
+            public MessageIdRange skippedMessageIds() {
+                return new MessageIdRange(2, 3);
+            }
+
+            @Override
+            public void onMessage(MessageHeader message) {
+                assertTrue(message.hasId(), "Message id must be passed");
+                events.add("message:" + message.id() + ":" + message.fromId());
+            }
+
+            @Override
+            public void onEntity(String type, String text) {
+                events.add("entity:" + text);
+            }
+        };
+
+        parser.parse(new RawChatFile("test.json", json), sink);
+
+        assertEquals(List.of("chat:77", "message:1:user1", "message:4:user4"), events);
+    }
+
+    @Test
+    void shouldThrowExceptionOnBlankContent() {
+        RawChatFile file = new RawChatFile("empty.json", "");
+
+        assertThrows(ChatExportParseException.class, () -> parser.parse(file));
+    }
+
+    @Test
+    void shouldThrowExceptionOnInvalidJson() {
+        RawChatFile file = new RawChatFile("invalid.json", "{ invalid json }");
+
+        assertThrows(ChatExportParseException.class, () -> parser.parse(file));
+    }
+
+    @Test
+    void shouldThrowExceptionOnNonObjectRoot() {
+        RawChatFile file = new RawChatFile("array.json", "[1, 2, 3]");
+
+        assertThrows(ChatExportParseException.class, () -> parser.parse(file));
+    }
+
+    @Test
+    void shouldParseFromUtf8Bytes() throws Exception {
+        byte[] bytes = readResourceAsString("chat1.json").getBytes(StandardCharsets.UTF_8);
+        RawChatFile file = new RawChatFile("chat1.json", bytes);
+
+        ChatExport result = parser.parse(file);
+
+        assertEquals("Егор", result.getName());
+        assertEquals(5, result.getMessages().size());
+        assertEquals("Владислав Почернин", result.getMessages().get(0).getFrom());
+    }
+
+    @Test
+    void shouldParseFromStream() throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream("chat1.json");
+        RawChatFile file = RawChatFile.ofStream("chat1.json", stream);
+
+        ChatExport result = parser.parse(file);
+
+        assertEquals("Егор", result.getName());
+        assertEquals(5, result.getMessages().size());
+    }
+
+    @Test
+    void shouldThrowExceptionOnBlankBytes() {
+        RawChatFile file = new RawChatFile("empty.json", "  \n ".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(ChatExportParseException.class, () -> parser.parse(file));
+    }
+
+    private String readResourceAsString(String resourceName) throws Exception {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(resourceName);
+        assertNotNull(stream, "Resource not found: " + resourceName);
+        return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,148 @@
+package ru.hackathon.chatlas;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
+import org.telegram.telegrambots.meta.TelegramUrl;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import ru.hackathon.chatlas.telegram.TelegramFileDownloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Скачивание файлов против локального сервера, который отвечает вместо Bot API и файлового сервера Telegram.
+ */
+class TelegramFileDownloaderTest {
+
+    private static final String TOKEN = "123:secret-token";
+    private static final String FILE_PATH = "documents/file_1.json";
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private OkHttpClient httpClient;
+    private TelegramFileDownloader downloader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/bot" + TOKEN + "/getFile", exchange -> {
+            requests.add(exchange.getRequestURI().getPath());
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 200, ("{\"ok\":true,\"result\":{\"file_id\":\"f1\","
+                    + "\"file_unique_id\":\"u1\",\"file_path\":\"" + FILE_PATH + "\"}}").getBytes(StandardCharsets.UTF_8));
+        });
+
+        httpClient = TelegramFileDownloader.newHttpClient(Duration.ofSeconds(5), Duration.ofSeconds(5), 4);
+        TelegramUrl telegramUrl = new TelegramUrl("http", "localhost", server.getAddress().getPort(), false);
+        downloader = new TelegramFileDownloader(
+                new OkHttpTelegramClient(httpClient, TOKEN, telegramUrl), httpClient, TOKEN, telegramUrl);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Test
+    void shouldResolvePathAndDownloadFile() throws Exception {
+        byte[] content = "{\"name\":\"Chat\",\"messages\":[]}".getBytes(StandardCharsets.UTF_8);
+        server.createContext("/file/bot" + TOKEN + "/" + FILE_PATH, exchange -> {
+            requests.add(exchange.getRequestURI().getPath());
+            respond(exchange, 200, content);
+        });
+        server.start();
+
+        try (InputStream stream = TelegramFileDownloader.await(downloader.download("f1"))) {
+            assertArrayEquals(content, stream.readAllBytes());
+        }
+        assertEquals(List.of("/bot" + TOKEN + "/getFile", "/file/bot" + TOKEN + "/" + FILE_PATH), requests);
+
+        // Повторное скачивание идет по тому же соединению из пула.
+        try (InputStream stream = TelegramFileDownloader.await(downloader.download("f1"))) {
+            assertArrayEquals(content, stream.readAllBytes());
+        }
+        assertEquals(1, httpClient.connectionPool().connectionCount());
+    }
+
+    @Test
+    void shouldStreamFileBeforeTransferCompletes() throws Exception {
+        CountDownLatch firstPartRead = new CountDownLatch(1);
+        server.createContext("/file/bot" + TOKEN + "/" + FILE_PATH, exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("first".getBytes(StandardCharsets.UTF_8));
+                body.flush();
+                // Остаток отправляется только после того, как клиент прочитал начало.
+                if (!firstPartRead.await(5, TimeUnit.SECONDS)) {
+                    throw new IOException("First part was not read while transfer was in progress");
+                }
+                body.write("second".getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+
+        try (InputStream stream = TelegramFileDownloader.await(downloader.open(FILE_PATH))) {
+            // readNBytes(int) делает лишнее чтение нулевой длины, которое в Okio ждет следующих байтов.
+            byte[] first = new byte[5];
+            assertEquals(5, stream.readNBytes(first, 0, first.length));
+            assertEquals("first", new String(first, StandardCharsets.UTF_8));
+            firstPartRead.countDown();
+            assertEquals("second", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void shouldFailWithoutTokenInMessage() {
+        server.createContext("/file/bot" + TOKEN + "/" + FILE_PATH,
+                exchange -> respond(exchange, 404, new byte[0]));
+        server.start();
+
+        IOException error = assertThrows(IOException.class,
+                () -> TelegramFileDownloader.await(downloader.download("f1")));
+        assertTrue(error.getMessage().contains(FILE_PATH));
+        assertTrue(error.getMessage().contains("404"));
+        assertFalse(error.getMessage().contains(TOKEN));
+    }
+
+    @Test
+    void shouldReportGetFileErrors() {
+        server.removeContext("/bot" + TOKEN + "/getFile");
+        server.createContext("/bot" + TOKEN + "/getFile", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: invalid file_id\"}"
+                    .getBytes(StandardCharsets.UTF_8));
+        });
+        server.start();
+
+        assertThrows(TelegramApiException.class, () -> TelegramFileDownloader.await(downloader.download("bad")));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
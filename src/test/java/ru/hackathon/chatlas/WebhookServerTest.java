@@ -0,0 +1,168 @@
+package ru.hackathon.chatlas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.hackathon.chatlas.telegram.ChatUpdateDispatcher;
+import ru.hackathon.chatlas.telegram.WebhookServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookServerTest {
+
+    private static final String PATH = "/telegram/webhook";
+    private static final String SECRET = "webhook-secret";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private WebhookServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void shouldDeliverPostedUpdate() throws Exception {
+        List<Update> received = new CopyOnWriteArrayList<>();
+        start(SECRET, received::addAll);
+
+        HttpResponse<Void> response = post(updateJson(1, 42L, "/start"), SECRET);
+
+        assertEquals(200, response.statusCode());
+        assertEquals(1, received.size());
+        Update update = received.get(0);
+        assertEquals(1, update.getUpdateId());
+        assertEquals(42L, update.getMessage().getChatId());
+        assertEquals("/start", update.getMessage().getText());
+    }
+
+    @Test
+    void shouldAcknowledgeBeforeProcessingCompletes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch processed = new CountDownLatch(1);
+        start(SECRET, new ChatUpdateDispatcher(update -> {
+            try {
+                release.await();
+                processed.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Executors.newVirtualThreadPerTaskExecutor()));
+
+        HttpResponse<Void> response = post(updateJson(1, 42L, "hello"), SECRET);
+
+        assertEquals(200, response.statusCode());
+        assertEquals(1, processed.getCount());
+        release.countDown();
+        assertTrue(processed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldRejectRequestsWithoutSecret() throws Exception {
+        List<Update> received = new CopyOnWriteArrayList<>();
+        start(SECRET, received::addAll);
+
+        assertEquals(401, post(updateJson(1, 42L, "hello"), null).statusCode());
+        assertEquals(401, post(updateJson(2, 42L, "hello"), "wrong").statusCode());
+        assertEquals(200, post(updateJson(3, 42L, "hello"), SECRET).statusCode());
+
+        assertEquals(1, received.size());
+        assertEquals(3, received.get(0).getUpdateId());
+    }
+
+    @Test
+    void shouldRejectMalformedRequests() throws Exception {
+        List<Update> received = new CopyOnWriteArrayList<>();
+        start(SECRET, received::addAll);
+
+        assertEquals(400, post("{\"update_id\": ", SECRET).statusCode());
+        HttpResponse<Void> get = client.send(
+                HttpRequest.newBuilder(uri(PATH)).GET().build(), HttpResponse.BodyHandlers.discarding());
+        assertEquals(405, get.statusCode());
+        HttpResponse<Void> otherPath = client.send(
+                HttpRequest.newBuilder(uri(PATH + "/other"))
+                        .POST(HttpRequest.BodyPublishers.ofString(updateJson(1, 42L, "hello")))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertEquals(404, otherPath.statusCode());
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void shouldRejectOversizedBodies() throws Exception {
+        List<Update> received = new CopyOnWriteArrayList<>();
+        server = new WebhookServer(new InetSocketAddress("localhost", 0), PATH, SECRET, 1024, received::addAll);
+        server.start();
+        String padded = updateJson(1, 42L, "x".repeat(2048));
+
+        // Размер известен заранее из Content-Length.
+        assertEquals(413, post(padded, SECRET).statusCode());
+        // Размер неизвестен (chunked): запрос обрывается при чтении тела.
+        HttpResponse<Void> chunked = client.send(HttpRequest.newBuilder(uri(PATH))
+                        .header(WebhookServer.SECRET_TOKEN_HEADER, SECRET)
+                        .POST(HttpRequest.BodyPublishers.ofInputStream(
+                                () -> new ByteArrayInputStream(padded.getBytes(StandardCharsets.UTF_8))))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertEquals(413, chunked.statusCode());
+        assertEquals(200, post(updateJson(2, 42L, "hello"), SECRET).statusCode());
+
+        assertEquals(1, received.size());
+        assertEquals(2, received.get(0).getUpdateId());
+    }
+
+    @Test
+    void shouldRequireSecret() {
+        InetSocketAddress address = new InetSocketAddress("localhost", 0);
+        assertThrows(IllegalArgumentException.class, () -> new WebhookServer(address, PATH, null, updates -> {}));
+        assertThrows(IllegalArgumentException.class, () -> new WebhookServer(address, PATH, "", updates -> {}));
+    }
+
+    private void start(String secret, LongPollingUpdateConsumer consumer) throws IOException {
+        server = new WebhookServer(new InetSocketAddress("localhost", 0), PATH, secret, consumer);
+        server.start();
+    }
+
+    private HttpResponse<Void> post(String body, String secret) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(PATH))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            request.header(WebhookServer.SECRET_TOKEN_HEADER, secret);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    private static String updateJson(int updateId, long chatId, String text) {
+        return """
+                {"update_id": %d,
+                 "message": {"message_id": 10, "date": 1700000000,
+                             "chat": {"id": %d, "type": "private"},
+                             "from": {"id": %d, "is_bot": false, "first_name": "Test"},
+                             "text": "%s",
+                             "some_future_field": true}}
+                """.formatted(updateId, chatId, chatId, text);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.hackathon.chatlas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.parser.ChatExportSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выделение памяти в горячем пути анализатора на повторяющихся авторах и упоминаниях.
+ * Запускать с профилировщиком GC ({@code -prof gc}): ожидаемое значение gc.alloc.rate.norm - около 0 B/op.
+ * {@link #analyzeExport()} идет через {@link ChatAnalyzerImpl#analyze(ChatExport)} и включает постоянные затраты
+ * на таблицы и результат, разделенные на {@value #EXPORT_ROUNDS} повторов каждого автора.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class AnalyzerAllocationBenchmark {
+
+    private static final int AUTHORS = 1_000;
+    private static final int EXPORT_ROUNDS = 100;
+
+    private final String[] fromIds = new String[AUTHORS];
+    private final String[] names = new String[AUTHORS];
+    private final String[] mentions = new String[AUTHORS];
+    private final String[] deletedIds = new String[AUTHORS];
+    private final String[] deletedNames = new String[AUTHORS];
+    private final ChatExportSink.MessageHeader header = new ChatExportSink.MessageHeader();
+    private ChatAnalyzer.AnalysisSink sink;
+    private final ChatAnalyzer analyzer = new ChatAnalyzerImpl();
+    private ChatExport chatExport;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < AUTHORS; i++) {
+            fromIds[i] = "user" + (100_000 + i);
+            names[i] = "Author " + i;
+            mentions[i] = "@author" + i;
+            deletedIds[i] = "user" + (900_000 + i);
+            deletedNames[i] = i % 2 == 0 ? "Deleted Account" : " Удалённый аккаунт ";
+        }
+        List<ChatExport.Message> messages = new ArrayList<>(AUTHORS * EXPORT_ROUNDS);
+        for (int round = 0; round < EXPORT_ROUNDS; round++) {
+            for (int i = 0; i < AUTHORS; i++) {
+                ChatExport.TextEntity mention = new ChatExport.TextEntity();
+                mention.setType("mention");
+                mention.setText(mentions[i]);
+                ChatExport.Message message = new ChatExport.Message();
+                message.setId((long) round * AUTHORS + i);
+                message.setFromId(fromIds[i]);
+                message.setFrom(names[i]);
+                message.setTextEntities(List.of(mention));
+                messages.add(message);
+            }
+        }
+        chatExport = new ChatExport();
+        chatExport.setMessages(messages);
+        sink = new ChatAnalyzerImpl().newSink();
+        // Все авторы и упоминания уже встречены: измеряется только повторная обработка.
+        repeatAuthors();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AUTHORS)
+    public void repeatAuthors() {
+        for (int i = 0; i < AUTHORS; i++) {
+            sink.onMessage(header.set(null, fromIds[i], names[i], 0));
+            sink.onEntity("mention", mentions[i]);
+            sink.onMessageEnd();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AUTHORS)
+    public void deletedAccounts() {
+        for (int i = 0; i < AUTHORS; i++) {
+            sink.onMessage(header.set(null, deletedIds[i], deletedNames[i], 0));
+            sink.onMessageEnd();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AUTHORS * EXPORT_ROUNDS)
+    public ChatAnalysisResult analyzeExport() throws Exception {
+        return analyzer.analyze(chatExport);
+    }
+}
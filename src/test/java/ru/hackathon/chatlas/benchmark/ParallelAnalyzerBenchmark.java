@@ -0,0 +1,72 @@
+package ru.hackathon.chatlas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.analysis.ParallelChatAnalyzer;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.ChatExport;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.JacksonChatExportParserImpl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование анализатора уже разобранного чата (режим TWO_PHASE) по количеству потоков.
+ * threads = 0 - базовая линия: последовательный {@link ChatAnalyzerImpl}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ParallelAnalyzerBenchmark {
+
+    @Param({"0", "1", "2", "4", "8"})
+    private int threads;
+
+    @Param({"1000000"})
+    private int messages;
+
+    private ChatExport chatExport;
+    private ForkJoinPool pool;
+    private ChatAnalyzer analyzer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        byte[] json = SyntheticChatExports.generate(messages, messages / 20, 42);
+        chatExport = new JacksonChatExportParserImpl().parse(new RawChatFile("benchmark.json", json));
+        if (threads == 0) {
+            analyzer = new ChatAnalyzerImpl();
+        } else {
+            pool = new ForkJoinPool(threads);
+            analyzer = new ParallelChatAnalyzer(pool, 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public ChatAnalysisResult analyze() throws Exception {
+        return analyzer.analyze(chatExport);
+    }
+}
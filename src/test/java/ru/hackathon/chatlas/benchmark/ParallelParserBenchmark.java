@@ -0,0 +1,75 @@
+package ru.hackathon.chatlas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.hackathon.chatlas.analysis.ChatAnalyzer;
+import ru.hackathon.chatlas.analysis.ChatAnalyzerImpl;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.RawChatFile;
+import ru.hackathon.chatlas.parser.ChatExportParser;
+import ru.hackathon.chatlas.parser.ParallelChatExportParserImpl;
+import ru.hackathon.chatlas.parser.StreamingChatExportParserImpl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование параллельного парсера по количеству потоков.
+ * threads = 0 - базовая линия: последовательный потоковый парсер.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class ParallelParserBenchmark {
+
+    @Param({"0", "1", "2", "4", "8"})
+    private int threads;
+
+    @Param({"200000"})
+    private int messages;
+
+    private byte[] json;
+    private ForkJoinPool pool;
+    private ChatExportParser parser;
+    private ChatAnalyzer analyzer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        json = SyntheticChatExports.generate(messages, messages / 20, 42);
+        analyzer = new ChatAnalyzerImpl();
+        if (threads == 0) {
+            parser = new StreamingChatExportParserImpl();
+        } else {
+            pool = new ForkJoinPool(threads);
+            parser = new ParallelChatExportParserImpl(pool, 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public ChatAnalysisResult parseAndAnalyze() throws Exception {
+        ChatAnalyzer.AnalysisSink sink = analyzer.newSink();
+        parser.parse(new RawChatFile("benchmark.json", json), sink);
+        return sink.getResult();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.hackathon.chatlas.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.hackathon.chatlas.domain.ChatAnalysisResult;
+import ru.hackathon.chatlas.domain.Mention;
+import ru.hackathon.chatlas.domain.Participant;
+import ru.hackathon.chatlas.domain.ParticipantActivity;
+import ru.hackathon.chatlas.export.ReportRenderer;
+import ru.hackathon.chatlas.export.ReportRendererImpl;
+
+import java.io.OutputStream;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение реализаций записи Excel: Apache POI (SXSSF) и прямая запись OOXML.
+ * {@code render} - время и выделение памяти (с {@code -prof gc}) на прогретой JVM,
+ * {@code coldRender} - первый отчет в свежей JVM вместе с загрузкой классов.
+ * {@code concurrent} - листы строятся одновременно в общем пуле ({@code CHATLAS_REPORT_RENDER_MODE=CONCURRENT}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class ReportRendererBenchmark {
+
+    @Param({"POI", "OOXML"})
+    private ReportRendererImpl.ExcelEngine engine;
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    @Param({"false", "true"})
+    private boolean concurrent;
+
+    private ChatAnalysisResult result;
+    private ReportRendererImpl renderer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Set<Participant> participants = HashSet.newHashSet(rows);
+        Map<String, ParticipantActivity> activity = HashMap.newHashMap(rows);
+        Set<Mention> mentions = HashSet.newHashSet(rows / 2);
+        for (int i = 0; i < rows; i++) {
+            String fromId = "user" + (1_000_000_000L + i);
+            String name = "Участник " + i;
+            participants.add(new Participant(fromId, name));
+            activity.put(fromId, new ParticipantActivity(fromId, name, i % 1000, i % 7, 1765034458, 1765045262 + i));
+            if (i % 2 == 0) {
+                mentions.add(new Mention("@author" + i));
+            }
+        }
+        result = new ChatAnalysisResult(participants, mentions, Map.of(), activity, null);
+        renderer = new ReportRendererImpl(ReportRendererImpl.Options.defaults()
+                .withExcelThreshold(0)
+                .withRowWindow(100)
+                .withExcelEngine(engine)
+                .withSectionExecutor(concurrent ? ForkJoinPool.commonPool() : null)
+                .withClock(Clock.systemUTC()));
+    }
+
+    @Benchmark
+    public void render() throws ReportRenderer.ReportRenderException {
+        renderer.writeExcel(result, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public void coldRender() throws ReportRenderer.ReportRenderException {
+        renderer.writeExcel(result, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,82 @@
+package ru.hackathon.chatlas.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Генератор синтетических экспортов чата в формате Telegram Desktop для тестов и бенчмарков.
+ * Содержит "неудобные" для структурного разбора данные: скобки и кавычки внутри строк,
+ * экранирование, вложенные массивы text/reactions, null-элементы и сервисные сообщения.
+ */
+public final class SyntheticChatExports {
+
+    private SyntheticChatExports() {
+        // Утильный класс.
+    }
+
+    /**
+     * Сгенерировать экспорт в байтах UTF-8.
+     *
+     * @param messageCount количество сообщений.
+     * @param authorCount количество различных авторов.
+     * @param seed зерно генератора случайных чисел.
+     */
+    public static byte[] generate(int messageCount, int authorCount, long seed) {
+        Random random = new Random(seed);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(messageCount * 400);
+        try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            out.write("{\n \"name\": \"Синтетический [чат] {1}\",\n \"type\": \"private_supergroup\",\n");
+            out.write(" \"id\": 1234567890,\n \"messages\": [\n");
+            for (int i = 0; i < messageCount; i++) {
+                if (i > 0) {
+                    out.write(",\n");
+                }
+                writeMessage(out, i, random, authorCount);
+            }
+            out.write("\n ],\n \"trailer\": {\"messages\": \"not an array\"}\n}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeMessage(Writer out, int index, Random random, int authorCount) throws IOException {
+        int kind = random.nextInt(100);
+        if (kind == 0) {
+            out.write("  null");
+            return;
+        }
+
+        int author = random.nextInt(authorCount);
+        String mention = "@user_" + random.nextInt(authorCount * 2);
+        out.write("  {\n   \"id\": " + (index + 1) + ",\n");
+        if (kind < 5) {
+            // Сервисное сообщение без автора.
+            out.write("   \"type\": \"service\",\n   \"actor\": \"Кто-то\",\n   \"actor_id\": \"user" + author + "\",\n");
+            out.write("   \"action\": \"join_group_by_link\",\n   \"text\": \"\",\n   \"text_entities\": []\n  }");
+            return;
+        }
+
+        String from = kind < 8 ? "Deleted Account" : "Автор \\\"" + author + "\\\" [x]";
+        out.write("   \"type\": \"message\",\n   \"date\": \"2025-12-06T18:20:58\",\n");
+        out.write("   \"date_unixtime\": \"" + (1765034458L + index) + "\",\n");
+        out.write("   \"from\": \"" + from + "\",\n   \"from_id\": \"user" + (100000 + author) + "\",\n");
+        out.write("   \"text\": [\"скобки ] } в тексте \\\\\", {\"type\": \"mention\", \"text\": \"" + mention + "\"}],\n");
+        if (kind % 3 == 0) {
+            out.write("   \"photo\": \"photos/photo_" + index + ".jpg\",\n");
+            out.write("   \"reactions\": [{\"type\": \"emoji\", \"count\": 2, \"emoji\": \"👍\"}],\n");
+        }
+        out.write("   \"text_entities\": [\n");
+        out.write("    {\"type\": \"plain\", \"text\": \"скобки ] } в тексте \\\\\"},\n");
+        out.write("    {\"type\": \"mention\", \"text\": \"" + mention + "\"}");
+        if (kind % 4 == 0) {
+            out.write(",\n    {\"type\": \"hashtag\", \"text\": \"#tag" + random.nextInt(50) + "\"}");
+        }
+        out.write("\n   ]\n  }");
+    }
+}
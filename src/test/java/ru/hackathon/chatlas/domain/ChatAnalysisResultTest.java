@@ -0,0 +1,89 @@
+package ru.hackathon.chatlas.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatAnalysisResultTest {
+
+    @Test
+    void shouldMergeResultsWithDeduplication() {
+        ChatAnalysisResult first = new ChatAnalysisResult(
+                Set.of(new Participant("user1", "Первое имя"), new Participant("user2", "Второй")),
+                Set.of(new Mention("@alice")), Map.of(), Map.of(), null);
+        ChatAnalysisResult second = new ChatAnalysisResult(
+                Set.of(new Participant("user1", "Новое имя"), new Participant("user3", "Третий")),
+                Set.of(new Mention("@alice"), new Mention("@bob")), Map.of(), Map.of(), null);
+
+        ChatAnalysisResult merged = ChatAnalysisResult.merge(List.of(first, second));
+
+        assertEquals(3, merged.getParticipantsCount());
+        assertEquals(2, merged.getMentionsCount());
+        Map<String, String> names = merged.participants().stream()
+                .collect(Collectors.toMap(Participant::fromId, Participant::displayName));
+        assertEquals("Первое имя", names.get("user1"));
+        assertEquals(Set.of("@alice", "@bob"), merged.mentions().stream()
+                .map(Mention::mentionText)
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    void shouldMergeEmptyList() {
+        ChatAnalysisResult merged = ChatAnalysisResult.merge(List.of());
+
+        assertEquals(0, merged.getTotalCount());
+    }
+
+    @Test
+    void shouldReturnMutableCopyOnMerge() {
+        ChatAnalysisResult single =
+                new ChatAnalysisResult(Set.of(new Participant("user1", "Имя")), Set.of(), Map.of(), Map.of(), null);
+
+        ChatAnalysisResult merged = ChatAnalysisResult.merge(List.of(single));
+
+        assertEquals(single.participants(), merged.participants());
+        assertNotSame(single.participants(), merged.participants());
+    }
+
+    @Test
+    void shouldMergeEntitiesByType() {
+        ChatAnalysisResult first = new ChatAnalysisResult(
+                Set.of(), Set.of(), Map.of("hashtag", Set.of("#a", "#b"), "url", Set.of("https://a.example")),
+                Map.of(), null);
+        ChatAnalysisResult second = new ChatAnalysisResult(
+                Set.of(), Set.of(), Map.of("hashtag", Set.of("#b", "#c")), Map.of(), null);
+
+        ChatAnalysisResult merged = ChatAnalysisResult.merge(List.of(first, second));
+
+        assertEquals(Set.of("#a", "#b", "#c"), merged.getEntities("hashtag"));
+        assertEquals(Set.of("https://a.example"), merged.getEntities("url"));
+        assertEquals(Set.of(), merged.getEntities("email"));
+    }
+
+    @Test
+    void shouldMergeActivity() {
+        ChatAnalysisResult first = new ChatAnalysisResult(
+                Set.of(new Participant("user1", "Анна"), new Participant("user2", "Иван")),
+                Set.of(),
+                Map.of(),
+                Map.of("user1", new ParticipantActivity("user1", "Анна", 2, 1, 100, 200),
+                        "user2", new ParticipantActivity("user2", "Иван", 5, 0, 150, 150)), null);
+        ChatAnalysisResult second = new ChatAnalysisResult(
+                Set.of(new Participant("user1", "Анна (новое имя)"), new Participant("user3", "Петр")),
+                Set.of(),
+                Map.of(),
+                Map.of("user1", new ParticipantActivity("user1", "Анна (новое имя)", 4, 2, 50, 0),
+                        "user3", new ParticipantActivity("user3", "Петр", 1, 0, 0, 0)), null);
+
+        ChatAnalysisResult merged = ChatAnalysisResult.merge(List.of(first, second));
+
+        assertEquals(new ParticipantActivity("user1", "Анна", 6, 3, 50, 200), merged.activity().get("user1"));
+        assertEquals(List.of("user1", "user2", "user3"), merged.activity().values().stream()
+                .sorted(ParticipantActivity.BY_ACTIVITY).map(ParticipantActivity::fromId).toList());
+    }
+}
@@ -0,0 +1,54 @@
+package ru.hackathon.chatlas.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawChatFileTest {
+
+    @Test
+    void shouldCreateFromString() {
+        RawChatFile file = new RawChatFile("chat.json", "{}");
+        assertInstanceOf(RawChatFile.StringContent.class, file.content());
+        assertEquals("{}", ((RawChatFile.StringContent) file.content()).json());
+    }
+
+    @Test
+    void shouldCreateFromByteSliceWithoutCopy() {
+        byte[] bytes = "xx{}xx".getBytes(StandardCharsets.UTF_8);
+        RawChatFile file = RawChatFile.ofBytes("chat.json", bytes, 2, 2);
+
+        RawChatFile.BytesContent content = (RawChatFile.BytesContent) file.content();
+        assertSame(bytes, content.bytes());
+        assertEquals(2, content.offset());
+        assertEquals(2, content.length());
+    }
+
+    @Test
+    void shouldCreateFromStream() {
+        RawChatFile file = RawChatFile.ofStream("chat.json", new ByteArrayInputStream(new byte[0]));
+        assertInstanceOf(RawChatFile.StreamContent.class, file.content());
+    }
+
+    @Test
+    void shouldThrowExceptionOnInvalidByteRange() {
+        byte[] bytes = new byte[4];
+        assertThrows(IllegalArgumentException.class, () -> RawChatFile.ofBytes("chat.json", bytes, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> RawChatFile.ofBytes("chat.json", bytes, -1, 1));
+    }
+
+    @Test
+    void shouldThrowExceptionOnNullContent() {
+        assertThrows(IllegalArgumentException.class, () -> new RawChatFile("chat.json", (String) null));
+        assertThrows(IllegalArgumentException.class, () -> new RawChatFile("chat.json", (byte[]) null));
+        assertThrows(IllegalArgumentException.class, () -> RawChatFile.ofStream("chat.json", null));
+    }
+
+    @Test
+    void shouldThrowExceptionOnBlankFileName() {
+        assertThrows(IllegalArgumentException.class, () -> new RawChatFile(" ", "{}"));
+    }
+}